@@ -169,6 +169,8 @@ public class RealmAuthenticationProvider extends AbstractAuthenticationProvider
     }
     
     public UsernamePasswordAuthenticationToken createOnlineSession(LoginCredential credential,UserInfo userInfo) {
+        //authenticated , load the full profile for session
+        userInfo = authenticationRealm.loadUserProfile(userInfo);
         String currentUserSessionId = WebContext.genId();
         //Online Tickit Id
         String onlineTickitId = WebConstants.ONLINE_TICKET_PREFIX + "-" + currentUserSessionId;
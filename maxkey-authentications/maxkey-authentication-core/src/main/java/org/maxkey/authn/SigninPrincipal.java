@@ -19,6 +19,7 @@ package org.maxkey.authn;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 
 import org.maxkey.authn.online.OnlineTicket;
 import org.maxkey.entity.UserInfo;
@@ -34,7 +35,7 @@ public class SigninPrincipal implements  UserDetails {
     
     OnlineTicket onlineTicket;
     ArrayList<GrantedAuthority> grantedAuthority;
-    ArrayList<GrantedAuthority> grantedAuthorityApps;
+    HashSet<GrantedAuthority> grantedAuthorityApps;
     boolean authenticated;
     boolean roleAdministrators;
     
@@ -146,11 +147,11 @@ public class SigninPrincipal implements  UserDetails {
         return this.enabled;
     }
 
-    public ArrayList<GrantedAuthority> getGrantedAuthorityApps() {
+    public HashSet<GrantedAuthority> getGrantedAuthorityApps() {
         return grantedAuthorityApps;
     }
 
-    public void setGrantedAuthorityApps(ArrayList<GrantedAuthority> grantedAuthorityApps) {
+    public void setGrantedAuthorityApps(HashSet<GrantedAuthority> grantedAuthorityApps) {
         this.grantedAuthorityApps = grantedAuthorityApps;
     }
 
@@ -17,7 +17,6 @@
 
 package org.maxkey.authn.online;
 
-import java.time.Duration;
 import java.time.LocalTime;
 import java.util.concurrent.TimeUnit;
 
@@ -26,19 +25,55 @@ import org.slf4j.LoggerFactory;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 
 
+/**
+ * InMemoryOnlineTicketServices<br>
+ * Caffeine store,the ticket expire after validitySeconds without access,
+ * validitySeconds change at runtime apply to the tickets on next access,no ticket lost.<br>
+ *
+ */
 public class InMemoryOnlineTicketServices implements OnlineTicketServices{
     private static final Logger _logger = LoggerFactory.getLogger(InMemoryOnlineTicketServices.class);
 
-	protected  static  Cache<String, OnlineTicket> onlineTicketStore = 
-        	        Caffeine.newBuilder()
-        	            .expireAfterWrite(30, TimeUnit.MINUTES)
-        	            .maximumSize(200000)
-        	            .build();
+    public static final int DEFAULT_MAXIMUM_SIZE = 200000;
+    
+    protected volatile long validityNanos = TimeUnit.MINUTES.toNanos(30); //default 30 minutes.
+    
+	protected final Cache<String, OnlineTicket> onlineTicketStore;
 	
 	public InMemoryOnlineTicketServices() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+	
+	/**
+	 * @param maximumSize maximum tickets in store
+	 */
+	public InMemoryOnlineTicketServices(int maximumSize) {
         super();
+        onlineTicketStore = Caffeine.newBuilder()
+                .expireAfter(new Expiry<String, OnlineTicket>() {
+                    @Override
+                    public long expireAfterCreate(String ticketId, OnlineTicket ticket, long currentTime) {
+                        return validityNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String ticketId, OnlineTicket ticket, 
+                            long currentTime, long currentDuration) {
+                        return validityNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String ticketId, OnlineTicket ticket, 
+                            long currentTime, long currentDuration) {
+                        return validityNanos;
+                    }
+                })
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
     }
 
     @Override
@@ -48,8 +83,7 @@ public class InMemoryOnlineTicketServices implements OnlineTicketServices{
 
 	@Override
 	public OnlineTicket remove(String ticketId) {
-	    OnlineTicket ticket=onlineTicketStore.getIfPresent(ticketId);	
-	    onlineTicketStore.invalidate(ticketId);
+	    OnlineTicket ticket = onlineTicketStore.asMap().remove(ticketId);
 		return ticket;
 	}
 
@@ -61,12 +95,11 @@ public class InMemoryOnlineTicketServices implements OnlineTicketServices{
 
     @Override
     public void setValiditySeconds(int validitySeconds) {
-        onlineTicketStore = 
-                Caffeine.newBuilder()
-                    .expireAfterWrite(validitySeconds/60, TimeUnit.MINUTES)
-                    .maximumSize(200000)
-                    .build();
-        
+        this.validityNanos = TimeUnit.SECONDS.toNanos(validitySeconds);
+    }
+
+    public Cache<String, OnlineTicket> getOnlineTicketStore() {
+        return onlineTicketStore;
     }
 
     @Override
@@ -76,19 +109,15 @@ public class InMemoryOnlineTicketServices implements OnlineTicketServices{
         store(ticketId , onlineTicket);
     }
 
+    /**
+     * expire after read,get the ticket refresh the expiry without write
+     */
     @Override
     public void refresh(String ticketId) {
-        OnlineTicket onlineTicket = get(ticketId);
-        
-        LocalTime currentTime = LocalTime.now();
-        Duration duration = Duration.between(currentTime, onlineTicket.getTicketTime());
-        
-        _logger.trace("OnlineTicket duration " + duration.getSeconds());
-        
-        if(duration.getSeconds() > OnlineTicket.MAX_EXPIRY_DURATION) {
-            onlineTicket.setTicketTime(currentTime);
-            refresh(ticketId,currentTime);
+        if(get(ticketId) == null) {
+            throw new IllegalStateException("OnlineTicket " + ticketId + " is removed or timeout");
         }
+        _logger.trace("refresh OnlineTicket {}", ticketId);
     }
 
 }
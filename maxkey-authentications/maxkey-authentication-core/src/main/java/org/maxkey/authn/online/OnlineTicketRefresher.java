@@ -0,0 +1,175 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authn.online;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OnlineTicketRefresher<br>
+ * write-behind refresh of online ticket expiry,
+ * refreshes of the same ticket within the window coalesce to one write in background,
+ * the tickets due in one flush are written by one batch.<br>
+ * all refreshers flush on one shared daemon thread,
+ * it starts with the first refresher and stops when the last refresher shutdown.<br>
+ *
+ */
+public class OnlineTicketRefresher {
+    private static final Logger _logger = LoggerFactory.getLogger(OnlineTicketRefresher.class);
+
+    public static final int DEFAULT_WINDOW_SECONDS = 60;
+
+    static final long FLUSH_PERIOD_MILLIS = 1000;
+
+    static final String THREAD_NAME = "online-ticket-refresher";
+
+    /**
+     * shared by refreshers,guarded by OnlineTicketRefresher.class
+     */
+    static ScheduledExecutorService sharedScheduler;
+
+    static int sharedSchedulerUsers;
+
+    /**
+     * ticketId and the time of first refresh in window
+     */
+    final ConcurrentHashMap<String, Long> pending = new ConcurrentHashMap<String, Long>();
+
+    final Consumer<List<String>> writer;
+
+    final ScheduledFuture<?> flushFuture;
+
+    boolean shutdown;
+
+    volatile long windowMillis = DEFAULT_WINDOW_SECONDS * 1000L;
+
+    final LongAdder refreshCount = new LongAdder();
+
+    final LongAdder writeCount = new LongAdder();
+
+    /**
+     * @param writer write the expiry of tickets
+     */
+    public OnlineTicketRefresher(Consumer<List<String>> writer) {
+        this.writer = writer;
+        this.flushFuture = acquireScheduler().scheduleWithFixedDelay(
+                () -> flush(false), FLUSH_PERIOD_MILLIS, FLUSH_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    static synchronized ScheduledExecutorService acquireScheduler() {
+        if (sharedScheduler == null) {
+            sharedScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        sharedSchedulerUsers++;
+        return sharedScheduler;
+    }
+
+    static synchronized void releaseScheduler() {
+        if (--sharedSchedulerUsers == 0) {
+            sharedScheduler.shutdown();
+            sharedScheduler = null;
+        }
+    }
+
+    public void refresh(String ticketId) {
+        refreshCount.increment();
+        pending.putIfAbsent(ticketId, System.currentTimeMillis());
+    }
+
+    /**
+     * ticket removed,not need to write
+     * @param ticketId
+     */
+    public void cancel(String ticketId) {
+        pending.remove(ticketId);
+    }
+
+    /**
+     * the window should be much shorter than the validity of ticket
+     * @param validitySeconds
+     */
+    public void setValiditySeconds(int validitySeconds) {
+        setWindowSeconds(Math.max(1, Math.min(DEFAULT_WINDOW_SECONDS, validitySeconds / 10)));
+    }
+
+    public void setWindowSeconds(int windowSeconds) {
+        this.windowMillis = windowSeconds * 1000L;
+    }
+
+    void flush(boolean all) {
+        long deadline = System.currentTimeMillis() - windowMillis;
+        List<String> ticketIds = new ArrayList<String>();
+        for (Map.Entry<String, Long> entry : pending.entrySet()) {
+            if ((all || entry.getValue() <= deadline) && pending.remove(entry.getKey(), entry.getValue())) {
+                ticketIds.add(entry.getKey());
+            }
+        }
+        if (ticketIds.isEmpty()) {
+            return;
+        }
+        try {
+            writer.accept(ticketIds);
+            writeCount.add(ticketIds.size());
+            _logger.trace("refresh {} tickets", ticketIds.size());
+        } catch (RuntimeException e) {
+            _logger.error("refresh " + ticketIds.size() + " tickets error", e);
+        }
+    }
+
+    /**
+     * write all pending and stop,the shared thread stop with the last refresher
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+        }
+        flushFuture.cancel(false);
+        releaseScheduler();
+        flush(true);
+    }
+
+    public long getRefreshCount() {
+        return refreshCount.sum();
+    }
+
+    public long getWriteCount() {
+        return writeCount.sum();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+}
@@ -31,13 +31,37 @@ public class OnlineTicketServicesFactory {
 			 	int persistence,
 			 	JdbcTemplate jdbcTemplate,
 	            RedisConnectionFactory redisConnFactory){
+		 return getService(persistence, jdbcTemplate, redisConnFactory, 
+				 InMemoryOnlineTicketServices.DEFAULT_MAXIMUM_SIZE, false, 
+				 TieredOnlineTicketServices.DEFAULT_NEAR_CACHE_SECONDS, 
+				 TieredOnlineTicketServices.DEFAULT_NEAR_CACHE_SIZE);
+	 }
+	 
+	 /**
+	  * @param inMemorySize maximum tickets of InMemoryOnlineTicketServices
+	  * @param nearCache redis persistence with local near cache,TieredOnlineTicketServices
+	  * @param nearCacheSeconds
+	  * @param nearCacheSize
+	  */
+	 public OnlineTicketServices getService(
+			 	int persistence,
+			 	JdbcTemplate jdbcTemplate,
+	            RedisConnectionFactory redisConnFactory,
+	            int inMemorySize,
+	            boolean nearCache,
+	            int nearCacheSeconds,
+	            int nearCacheSize){
 		 
 		 OnlineTicketServices onlineTicketServices = null;
 		if (persistence == ConstantsPersistence.INMEMORY) {
-		    onlineTicketServices = new InMemoryOnlineTicketServices();
+		    onlineTicketServices = new InMemoryOnlineTicketServices(inMemorySize);
 		    _logger.debug("InMemoryOnlineTicketServices");
 		} else if (persistence == ConstantsPersistence.JDBC) {
 		    _logger.debug("OnlineTicketServices not support "); 
+		} else if (persistence == ConstantsPersistence.REDIS && nearCache) {
+		    onlineTicketServices = new TieredOnlineTicketServices(
+		    		redisConnFactory, nearCacheSeconds, nearCacheSize);
+		    _logger.debug("TieredOnlineTicketServices");
 		} else if (persistence == ConstantsPersistence.REDIS) {
 		    onlineTicketServices = new RedisOnlineTicketServices(redisConnFactory);
 		    _logger.debug("RedisOnlineTicketServices");
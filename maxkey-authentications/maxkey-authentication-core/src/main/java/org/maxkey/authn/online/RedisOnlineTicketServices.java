@@ -17,8 +17,8 @@
 
 package org.maxkey.authn.online;
 
-import java.time.Duration;
 import java.time.LocalTime;
+import java.util.List;
 
 import org.maxkey.persistence.redis.RedisConnection;
 import org.maxkey.persistence.redis.RedisConnectionFactory;
@@ -34,6 +34,13 @@ public class RedisOnlineTicketServices implements OnlineTicketServices {
 	RedisConnectionFactory connectionFactory;
 	
 	public static String PREFIX="REDIS_ONLINE_TICKET_";
+	
+	/**
+	 * refresh only EXPIRE the ticket,write-behind,
+	 * flushed by the refresher thread shared with other instances
+	 */
+	OnlineTicketRefresher refresher = new OnlineTicketRefresher(this::expire);
+	
 	/**
 	 * @param connectionFactory
 	 */
@@ -63,9 +70,9 @@ public class RedisOnlineTicketServices implements OnlineTicketServices {
 	@Override
 	public OnlineTicket remove(String ticketId) {
 		RedisConnection conn=connectionFactory.getConnection();
-		OnlineTicket ticket = conn.getObject(PREFIX+ticketId);
-		conn.delete(PREFIX+ticketId);
+		OnlineTicket ticket = conn.getObjectAndDelete(PREFIX+ticketId);
 		conn.close();
+		refresher.cancel(ticketId);
 		return ticket;
 	}
 
@@ -80,7 +87,7 @@ public class RedisOnlineTicketServices implements OnlineTicketServices {
     @Override
     public void setValiditySeconds(int validitySeconds) {
        this.serviceTicketValiditySeconds = validitySeconds;
-        
+       refresher.setValiditySeconds(validitySeconds);
     }
 
     @Override
@@ -90,20 +97,51 @@ public class RedisOnlineTicketServices implements OnlineTicketServices {
         store(ticketId , onlineTicket);
     }
     
+    /**
+     * check the ticket exists,EXPIRE the ticket by refresher in background
+     */
     @Override
     public void refresh(String ticketId) {
-        OnlineTicket onlineTicket = get(ticketId);
-        
-        LocalTime currentTime = LocalTime.now();
-        Duration duration = Duration.between(currentTime, onlineTicket.getTicketTime());
-        
-        _logger.trace("OnlineTicket duration " + duration.getSeconds());
-        
-        if(duration.getSeconds() > OnlineTicket.MAX_EXPIRY_DURATION) {
-            onlineTicket.setTicketTime(currentTime);
-            refresh(ticketId,currentTime);
+        RedisConnection conn=connectionFactory.getConnection();
+        boolean exists = conn.exists(PREFIX+ticketId);
+        conn.close();
+        if(!exists) {
+            throw new IllegalStateException("OnlineTicket " + ticketId + " is removed or timeout");
         }
+        refreshExpiry(ticketId);
+        _logger.trace("refresh OnlineTicket {}", ticketId);
+    }
+    
+    void refreshExpiry(String ticketId) {
+        refresher.refresh(ticketId);
+    }
+    
+    /**
+     * EXPIRE tickets in one pipeline
+     * @param ticketIds
+     */
+    void expire(List<String> ticketIds) {
+        RedisConnection conn=connectionFactory.getConnection();
+        try {
+            conn.openPipeline();
+            for(String ticketId : ticketIds) {
+                conn.expire(PREFIX+ticketId, serviceTicketValiditySeconds);
+            }
+            conn.closePipeline();
+        }finally {
+            conn.close();
+        }
+    }
+    
+    public OnlineTicketRefresher getRefresher() {
+        return refresher;
+    }
+    
+    /**
+     * write pending refresh and release the shared refresher thread when bean destroy
+     */
+    public void shutdown() {
+        refresher.shutdown();
     }
-
 	
 }
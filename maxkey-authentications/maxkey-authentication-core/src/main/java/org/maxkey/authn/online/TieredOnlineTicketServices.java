@@ -0,0 +1,165 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authn.online;
+
+import java.time.LocalTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.maxkey.persistence.redis.RedisConnection;
+import org.maxkey.persistence.redis.RedisConnectionFactory;
+import org.maxkey.persistence.redis.RedisMessageSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * TieredOnlineTicketServices<br>
+ * local Caffeine near cache with short TTL in front of RedisOnlineTicketServices.<br>
+ * store and remove write through to redis and PUBLISH the ticketId,
+ * other nodes evict the ticket from near cache,so logout on one node evict everywhere.<br>
+ *
+ */
+public class TieredOnlineTicketServices implements OnlineTicketServices {
+    private static final Logger _logger = LoggerFactory.getLogger(TieredOnlineTicketServices.class);
+
+    public static final String INVALIDATE_CHANNEL = "REDIS_ONLINE_TICKET_INVALIDATE";
+
+    public static final int DEFAULT_NEAR_CACHE_SECONDS = 30;
+
+    public static final int DEFAULT_NEAR_CACHE_SIZE = 20000;
+
+    /**
+     * message from this node is ignored
+     */
+    final String nodeId = UUID.randomUUID().toString();
+
+    RedisConnectionFactory connectionFactory;
+
+    RedisOnlineTicketServices redisOnlineTicketServices;
+
+    Cache<String, OnlineTicket> nearCache;
+
+    RedisMessageSubscriber invalidateSubscriber;
+
+    public TieredOnlineTicketServices(RedisConnectionFactory connectionFactory) {
+        this(connectionFactory, DEFAULT_NEAR_CACHE_SECONDS, DEFAULT_NEAR_CACHE_SIZE);
+    }
+
+    /**
+     * @param connectionFactory
+     * @param nearCacheSeconds seconds of ticket in near cache
+     * @param nearCacheSize maximum tickets in near cache
+     */
+    public TieredOnlineTicketServices(
+            RedisConnectionFactory connectionFactory, int nearCacheSeconds, int nearCacheSize) {
+        this.connectionFactory = connectionFactory;
+        this.redisOnlineTicketServices = new RedisOnlineTicketServices(connectionFactory);
+        this.nearCache = Caffeine.newBuilder()
+                .expireAfterWrite(nearCacheSeconds, TimeUnit.SECONDS)
+                .maximumSize(nearCacheSize)
+                .recordStats()
+                .build();
+        this.invalidateSubscriber = new RedisMessageSubscriber(
+                connectionFactory, INVALIDATE_CHANNEL, this::onInvalidate, nearCache::invalidateAll);
+        this.invalidateSubscriber.start();
+    }
+
+    @Override
+    public void store(String ticketId, OnlineTicket ticket) {
+        redisOnlineTicketServices.store(ticketId, ticket);
+        nearCache.put(ticketId, ticket);
+        publishInvalidate(ticketId);
+    }
+
+    @Override
+    public OnlineTicket remove(String ticketId) {
+        OnlineTicket ticket = redisOnlineTicketServices.remove(ticketId);
+        //after redis remove,a concurrent get can not load it again
+        nearCache.invalidate(ticketId);
+        publishInvalidate(ticketId);
+        return ticket;
+    }
+
+    @Override
+    public OnlineTicket get(String ticketId) {
+        //concurrent get of the same ticket load from redis once,null not cached
+        return nearCache.get(ticketId, redisOnlineTicketServices::get);
+    }
+
+    @Override
+    public void refresh(String ticketId, LocalTime refreshTime) {
+        OnlineTicket onlineTicket = get(ticketId);
+        onlineTicket.setTicketTime(refreshTime);
+        store(ticketId, onlineTicket);
+    }
+
+    /**
+     * check the ticket in near cache,EXPIRE in redis write-behind
+     */
+    @Override
+    public void refresh(String ticketId) {
+        if(get(ticketId) == null) {
+            throw new IllegalStateException("OnlineTicket " + ticketId + " is removed or timeout");
+        }
+        redisOnlineTicketServices.refreshExpiry(ticketId);
+    }
+
+    @Override
+    public void setValiditySeconds(int validitySeconds) {
+        redisOnlineTicketServices.setValiditySeconds(validitySeconds);
+    }
+
+    void publishInvalidate(String ticketId) {
+        try {
+            RedisConnection conn = connectionFactory.getConnection();
+            conn.publish(INVALIDATE_CHANNEL, nodeId + ":" + ticketId);
+            conn.close();
+        } catch (Exception e) {
+            //near cache on other nodes expire after nearCacheSeconds
+            _logger.error("publish invalidate of ticket " + ticketId + " error", e);
+        }
+    }
+
+    void onInvalidate(String message) {
+        int split = message.indexOf(':');
+        if (split > 0 && !message.startsWith(nodeId + ":")) {
+            _logger.trace("invalidate ticket {}", message.substring(split + 1));
+            nearCache.invalidate(message.substring(split + 1));
+        }
+    }
+
+    public Cache<String, OnlineTicket> getNearCache() {
+        return nearCache;
+    }
+
+    public RedisMessageSubscriber getInvalidateSubscriber() {
+        return invalidateSubscriber;
+    }
+
+    /**
+     * stop subscribe when bean destroy
+     */
+    public void shutdown() {
+        invalidateSubscriber.stop();
+        redisOnlineTicketServices.shutdown();
+    }
+
+}
@@ -18,7 +18,9 @@
 package org.maxkey.authn.realm;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import javax.servlet.http.HttpServletResponse;
 
@@ -30,6 +32,7 @@ import org.maxkey.persistence.db.LoginHistoryService;
 import org.maxkey.persistence.db.PasswordPolicyValidator;
 import org.maxkey.persistence.service.UserInfoService;
 import org.maxkey.persistence.db.LoginService;
+import org.maxkey.persistence.ldap.LdapStatistics;
 import org.maxkey.util.DateUtils;
 import org.maxkey.web.WebConstants;
 import org.maxkey.web.WebContext;
@@ -88,8 +91,28 @@ public abstract class AbstractAuthenticationRealm {
     public UserInfo loadUserInfo(String username, String password) {
         return loginService.find(username, password);
     }
+    
+    /**
+     * full profile after authentication,loadUserInfo only load the columns for authentication
+     * 
+     * @param userInfo
+     * @return UserInfo
+     */
+    public UserInfo loadUserProfile(UserInfo userInfo) {
+        return loginService.loadProfile(userInfo);
+    }
 
     public abstract boolean passwordMatches(UserInfo userInfo, String password);
+
+    /**
+     * statistics of ldap servers,empty when ldap not supported
+     */
+    public List<LdapStatistics> getLdapStatistics() {
+        if (ldapSupport && ldapAuthenticationRealm != null) {
+            return ldapAuthenticationRealm.getLdapStatistics();
+        }
+        return Collections.emptyList();
+    }
     
 
     public static boolean isAuthenticated() {
@@ -119,9 +142,9 @@ public abstract class AbstractAuthenticationRealm {
      * grant Authority by grantedAuthoritys
      * 
      * @param grantedAuthoritys
-     * @return ArrayList<GrantedAuthority Apps>
+     * @return HashSet<GrantedAuthority Apps>
      */
-    public ArrayList<GrantedAuthority> queryAuthorizedApps(ArrayList<GrantedAuthority> grantedAuthoritys) {
+    public HashSet<GrantedAuthority> queryAuthorizedApps(ArrayList<GrantedAuthority> grantedAuthoritys) {
         return loginService.queryAuthorizedApps(grantedAuthoritys);
     }
 
@@ -0,0 +1,147 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authn.realm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * FailoverAuthenticationServer<br>
+ * authenticate with servers in order,the next server started when the running servers
+ * not answered in failoverMillis or answered false,not waiting for a down server timeout.<br>
+ * true when any server authenticated,false when all servers answered false.
+ *
+ */
+public class FailoverAuthenticationServer implements IAuthenticationServer {
+    private static final Logger _logger = LoggerFactory.getLogger(FailoverAuthenticationServer.class);
+
+    public static final long DEFAULT_FAILOVER_MILLIS = 500;
+
+    static final ExecutorService executor = createExecutor();
+
+    final List<IAuthenticationServer> servers;
+
+    long failoverMillis = DEFAULT_FAILOVER_MILLIS;
+
+    public FailoverAuthenticationServer(List<IAuthenticationServer> servers) {
+        this.servers = new ArrayList<IAuthenticationServer>(servers);
+    }
+
+    @Override
+    public boolean authenticate(String username, String password) {
+        if (servers.size() == 1) {
+            return authenticate(servers.get(0), username, password);
+        }
+        CompletionService<Boolean> completionService = new ExecutorCompletionService<Boolean>(executor);
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(servers.size());
+        int started = 0;
+        int answered = 0;
+        try {
+            futures.add(submit(completionService, servers.get(started++), username, password));
+            while (answered < servers.size()) {
+                Future<Boolean> future = started < servers.size()
+                        ? completionService.poll(failoverMillis, TimeUnit.MILLISECONDS)
+                        : completionService.take();
+                if (future == null) {
+                    _logger.debug("no answer in {} ms , failover to {}", failoverMillis, servers.get(started));
+                    futures.add(submit(completionService, servers.get(started++), username, password));
+                    continue;
+                }
+                answered++;
+                if (isAuthenticated(future)) {
+                    return true;
+                }
+                if (started < servers.size()) {
+                    futures.add(submit(completionService, servers.get(started++), username, password));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<Boolean> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return false;
+    }
+
+    Future<Boolean> submit(CompletionService<Boolean> completionService,
+            IAuthenticationServer server, String username, String password) {
+        return completionService.submit(() -> authenticate(server, username, password));
+    }
+
+    boolean isAuthenticated(Future<Boolean> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            _logger.error("authenticate error", e.getCause());
+            return false;
+        }
+    }
+
+    boolean authenticate(IAuthenticationServer server, String username, String password) {
+        long startTime = System.nanoTime();
+        boolean authenticated = server.authenticate(username, password);
+        _logger.debug("authenticate {} at {} : {} , {} ms", username, server, authenticated,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        return authenticated;
+    }
+
+    static ExecutorService createExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        return new ThreadPoolExecutor(0, 64, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "authentication-server-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public List<IAuthenticationServer> getServers() {
+        return servers;
+    }
+
+    public long getFailoverMillis() {
+        return failoverMillis;
+    }
+
+    /**
+     * @param failoverMillis wait before the next server started,0 for all servers at once
+     */
+    public void setFailoverMillis(long failoverMillis) {
+        this.failoverMillis = failoverMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "FailoverAuthenticationServer " + servers;
+    }
+}
@@ -17,14 +17,17 @@
 
 package org.maxkey.authn.realm.activedirectory;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 
 import org.maxkey.authn.realm.AbstractAuthenticationRealm;
+import org.maxkey.authn.realm.FailoverAuthenticationServer;
 import org.maxkey.authn.realm.IAuthenticationServer;
 import org.maxkey.entity.UserInfo;
+import org.maxkey.persistence.ldap.LdapStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -36,6 +39,10 @@ public class ActiveDirectoryAuthenticationRealm extends AbstractAuthenticationRe
 	@NotNull
     @Size(min=1)
     private List<IAuthenticationServer> activeDirectoryServers;
+	
+	private FailoverAuthenticationServer failoverServer;
+	
+	private long failoverMillis = FailoverAuthenticationServer.DEFAULT_FAILOVER_MILLIS;
 
 	/**
 	 * 
@@ -52,23 +59,38 @@ public class ActiveDirectoryAuthenticationRealm extends AbstractAuthenticationRe
 	}
 
 
+	/**
+	 * servers in order with failover,see FailoverAuthenticationServer
+	 */
 	@Override
 	public boolean passwordMatches(UserInfo userInfo, String password) {
-		boolean isAuthenticated=false;
-		for (final IAuthenticationServer activeDirectoryServer : this.activeDirectoryServers) {
-            _logger.debug("Attempting to authenticate {} at {}", userInfo.getUsername(), activeDirectoryServer);
-            isAuthenticated= activeDirectoryServer.authenticate(userInfo.getUsername(), password);
-            if (isAuthenticated ) {
-            	return true;
-            }
-		 }
-		return false;
+		_logger.debug("Attempting to authenticate {} at {}", userInfo.getUsername(), failoverServer);
+		return failoverServer.authenticate(userInfo.getUsername(), password);
 	}
 
+	@Override
+	public List<LdapStatistics> getLdapStatistics() {
+		List<LdapStatistics> ldapStatistics = new ArrayList<LdapStatistics>();
+		for(IAuthenticationServer activeDirectoryServer : activeDirectoryServers) {
+			ldapStatistics.add(((ActiveDirectoryServer) activeDirectoryServer).getActiveDirectoryUtils().getStatistics());
+		}
+		return ldapStatistics;
+	}
 
-	public void setActiveDirectoryServers(
-			List<IAuthenticationServer> activeDirectoryServers) {
+	public void setActiveDirectoryServers(List<IAuthenticationServer> activeDirectoryServers) {
 		this.activeDirectoryServers = activeDirectoryServers;
+		this.failoverServer = new FailoverAuthenticationServer(activeDirectoryServers);
+		this.failoverServer.setFailoverMillis(failoverMillis);
+	}
+
+	/**
+	 * @param failoverMillis wait before the next server started
+	 */
+	public void setFailoverMillis(long failoverMillis) {
+		this.failoverMillis = failoverMillis;
+		if(failoverServer != null) {
+			failoverServer.setFailoverMillis(failoverMillis);
+		}
 	}
 
 }
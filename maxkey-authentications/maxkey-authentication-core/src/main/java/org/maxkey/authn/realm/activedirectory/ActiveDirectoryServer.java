@@ -20,6 +20,8 @@
  */
 package org.maxkey.authn.realm.activedirectory;
 
+import javax.naming.NamingException;
+
 import org.maxkey.authn.realm.IAuthenticationServer;
 import org.maxkey.persistence.ldap.ActiveDirectoryUtils;
 import org.slf4j.Logger;
@@ -41,21 +43,17 @@ public final class ActiveDirectoryServer implements IAuthenticationServer {
 	 */
 	@Override
 	public boolean authenticate(String username, String password) {
-		ActiveDirectoryUtils ldapPassWordValid = 
-    		        new ActiveDirectoryUtils(
-    		                activeDirectoryUtils.getProviderUrl(),
-    		                username, 
-    		                password,
-    		                activeDirectoryUtils.getDomain()
-    		         );
-		ldapPassWordValid.openConnection();
-		if(ldapPassWordValid.getCtx()!=null){
-			_logger.debug("Active Directory user " + username + "  is validate .");
-			ldapPassWordValid.close();
-			return true;
+		try {
+			//bind with DOMAIN\\username,the connection from bind pool
+			if(activeDirectoryUtils.bind(
+					activeDirectoryUtils.getActiveDirectoryPrincipal(username), password)) {
+				_logger.debug("Active Directory user " + username + "  is validate .");
+				return true;
+			}
+		} catch (NamingException e) {
+			_logger.error("authenticate " + username + " at " + activeDirectoryUtils.getProviderUrl()
+					+ " throw NamingException:" + e.getMessage());
 		}
-		
-		ldapPassWordValid.close();
 		return false;
 	}
 
@@ -75,4 +73,10 @@ public final class ActiveDirectoryServer implements IAuthenticationServer {
 		this.filter = filter;
 	}
 
+	@Override
+	public String toString() {
+		return "ActiveDirectoryServer [" 
+				+ (activeDirectoryUtils == null ? null : activeDirectoryUtils.getProviderUrl()) + "]";
+	}
+
 }
@@ -103,6 +103,11 @@ public class JdbcAuthenticationRealm extends AbstractAuthenticationRealm {
         //        + PasswordReciprocal.getInstance().rawPassword(userInfo.getUsername(), password));
         passwordMatches = passwordEncoder.matches(password,userInfo.getPassword());
         
+        //hash of outdated encoder or lower cost,rehash with current encoder
+        if(passwordMatches && passwordEncoder.upgradeEncoding(userInfo.getPassword())) {
+            rehashPassword(userInfo, password);
+        }
+        
         //passwordMatches == false and ldapSupport ==true
         //validate password with LDAP
         if(!passwordMatches && ldapSupport) {
@@ -136,4 +141,17 @@ public class JdbcAuthenticationRealm extends AbstractAuthenticationRealm {
         return passwordMatches;
     }
 
+    /**
+     * rehash after login,login not failed when rehash failed.
+     */
+    protected void rehashPassword(UserInfo userInfo, String password) {
+        try {
+            if(loginService.updatePasswordHash(userInfo, passwordEncoder.encode(password))) {
+                _logger.debug("password rehashed of user {}" , userInfo.getUsername());
+            }
+        }catch(Exception e) {
+            _logger.error("rehash password Exception",e);
+        }
+    }
+
 }
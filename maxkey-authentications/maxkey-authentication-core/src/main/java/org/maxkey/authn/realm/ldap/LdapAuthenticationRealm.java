@@ -17,14 +17,17 @@
 
 package org.maxkey.authn.realm.ldap;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 
 import org.maxkey.authn.realm.AbstractAuthenticationRealm;
+import org.maxkey.authn.realm.FailoverAuthenticationServer;
 import org.maxkey.authn.realm.IAuthenticationServer;
 import org.maxkey.entity.UserInfo;
+import org.maxkey.persistence.ldap.LdapStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -36,6 +39,10 @@ public class LdapAuthenticationRealm  extends AbstractAuthenticationRealm{
     @Size(min=1)
     private List<IAuthenticationServer> ldapServers;
 	
+	private FailoverAuthenticationServer failoverServer;
+	
+	private long failoverMillis = FailoverAuthenticationServer.DEFAULT_FAILOVER_MILLIS;
+	
 	/**
 	 * 
 	 */
@@ -51,21 +58,38 @@ public class LdapAuthenticationRealm  extends AbstractAuthenticationRealm{
 	}
 	
 	
+	/**
+	 * servers in order with failover,see FailoverAuthenticationServer
+	 */
 	@Override
 	public boolean passwordMatches(UserInfo userInfo, String password) {
-		 boolean isAuthenticated=false;
-		 for (final IAuthenticationServer ldapServer : this.ldapServers) {
-            _logger.debug("Attempting to authenticate {} at {}", userInfo.getUsername(), ldapServer);
-            isAuthenticated= ldapServer.authenticate(userInfo.getUsername(), password);
-            if (isAuthenticated ) {
-            	return true;
-            }
-		 }
-		return false;
+		_logger.debug("Attempting to authenticate {} at {}", userInfo.getUsername(), failoverServer);
+		return failoverServer.authenticate(userInfo.getUsername(), password);
+	}
+
+	@Override
+	public List<LdapStatistics> getLdapStatistics() {
+		List<LdapStatistics> ldapStatistics = new ArrayList<LdapStatistics>();
+		for(IAuthenticationServer ldapServer : ldapServers) {
+			ldapStatistics.add(((LdapServer) ldapServer).getLdapUtils().getStatistics());
+		}
+		return ldapStatistics;
 	}
 
 	public void setLdapServers(List<IAuthenticationServer> ldapServers) {
 		this.ldapServers = ldapServers;
+		this.failoverServer = new FailoverAuthenticationServer(ldapServers);
+		this.failoverServer.setFailoverMillis(failoverMillis);
+	}
+
+	/**
+	 * @param failoverMillis wait before the next server started
+	 */
+	public void setFailoverMillis(long failoverMillis) {
+		this.failoverMillis = failoverMillis;
+		if(failoverServer != null) {
+			failoverServer.setFailoverMillis(failoverMillis);
+		}
 	}
 
 
@@ -20,7 +20,10 @@
  */
 package org.maxkey.authn.realm.ldap;
 
-import javax.naming.NamingEnumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
 import javax.naming.NamingException;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
@@ -30,58 +33,121 @@ import org.maxkey.persistence.ldap.LdapUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 /**
+ * search user dn with principal and bind with the user dn and password.<br>
+ * user dn cached by username for dnCacheSeconds,login without search.
  * @author Crystal.Sea
  *
  */
 public final class LdapServer implements IAuthenticationServer {
 	private final static Logger _logger = LoggerFactory.getLogger(LdapServer.class);
 	
+	public static final long DEFAULT_DN_CACHE_SECONDS = 600;
+	
+	public static final long DN_CACHE_MAXIMUM_SIZE = 100000;
+	
 	LdapUtils ldapUtils;
 	
 	String filterAttribute;
 	
+	Cache<String, String> dnCache = createDnCache(DEFAULT_DN_CACHE_SECONDS);
+	
 	/* (non-Javadoc)
 	 * @see com.connsec.web.authentication.realm.IAuthenticationServer#authenticate(java.lang.String, java.lang.String)
 	 */
 	@Override
 	public boolean authenticate(String username, String password) {
-		String queryFilter = String.format(filterAttribute, username);
-		_logger.info(" filter : " + queryFilter);
-		String dn="";
-		SearchControls constraints = new SearchControls();
-		constraints.setSearchScope(ldapUtils.getSearchScope());
+		if(password == null || password.isEmpty()) {
+			return false;
+		}
+		String cacheKey = username.toLowerCase(Locale.ROOT);
 		try {
-			NamingEnumeration<SearchResult> results = ldapUtils.getConnection()
-					.search(ldapUtils.getBaseDN(), queryFilter, constraints);
+			String dn = dnCache == null ? null : dnCache.getIfPresent(cacheKey);
+			boolean cached = dn != null;
+			if(!cached) {
+				dn = searchDn(username);
+				if(dn == null) {
+					return false;
+				}
+				putDn(cacheKey, dn);
+			}
 			
-			if (results == null || !results.hasMore()) {
-				_logger.error("Ldap user "+username +" not found . ");
-				return false;
-			}else{
-				while (results != null && results.hasMore()) {
-					SearchResult sr = (SearchResult) results.next();
-					//String rdn = sr.getName();
-					dn = sr.getNameInNamespace();
-					_logger.debug("Directory user dn is "+dn+" .");
+			if(ldapUtils.bind(dn, password)) {
+				_logger.debug("Directory user " + username + "  is validate .");
+				return true;
+			}
+			
+			if(cached) {
+				//user may be moved or renamed since cached
+				dnCache.invalidate(cacheKey);
+				String searchDn = searchDn(username);
+				if(searchDn != null && !searchDn.equalsIgnoreCase(dn)) {
+					putDn(cacheKey, searchDn);
+					return ldapUtils.bind(searchDn, password);
 				}
 			}
 		} catch (NamingException e) {
-			_logger.error("query throw NamingException:" + e.getMessage());
-		} finally {
-			//ldapUtils.close();
-		}
-		
-		LdapUtils ldapPassWordValid=new LdapUtils(ldapUtils.getProviderUrl(),dn,password);
-		ldapPassWordValid.openConnection();
-		if(ldapPassWordValid.getCtx()!=null){
-			_logger.debug("Directory user " + username + "  is validate .");
-			ldapPassWordValid.close();
-			return true;
+			_logger.error("authenticate " + username + " at " + ldapUtils.getProviderUrl()
+					+ " throw NamingException:" + e.getMessage());
 		}
 		return false;
 	}
 	
+	/**
+	 * @param username
+	 * @return dn of user,null when not found or more than one
+	 * @throws NamingException
+	 */
+	String searchDn(String username) throws NamingException {
+		String queryFilter = String.format(filterAttribute, LdapUtils.escapeFilterValue(username));
+		_logger.info(" filter : " + queryFilter);
+		SearchControls constraints = new SearchControls();
+		constraints.setSearchScope(ldapUtils.getSearchScope());
+		constraints.setReturningAttributes(new String[0]);
+		List<SearchResult> results = ldapUtils.search(queryFilter, constraints);
+		if (results.isEmpty()) {
+			_logger.error("Ldap user "+username +" not found . ");
+			return null;
+		}
+		if (results.size() > 1) {
+			_logger.error("Ldap user "+username +" found " + results.size() + " entries . ");
+			return null;
+		}
+		String dn = results.get(0).getNameInNamespace();
+		_logger.debug("Directory user dn is "+dn+" .");
+		return dn;
+	}
+	
+	void putDn(String cacheKey, String dn) {
+		if(dnCache != null) {
+			dnCache.put(cacheKey, dn);
+		}
+	}
+	
+	static Cache<String, String> createDnCache(long dnCacheSeconds) {
+		if(dnCacheSeconds <= 0) {
+			return null;
+		}
+		return Caffeine.newBuilder()
+				.expireAfterWrite(dnCacheSeconds, TimeUnit.SECONDS)
+				.maximumSize(DN_CACHE_MAXIMUM_SIZE)
+				.build();
+	}
+	
+	/**
+	 * @param dnCacheSeconds 0 for search every login
+	 */
+	public void setDnCacheSeconds(long dnCacheSeconds) {
+		this.dnCache = createDnCache(dnCacheSeconds);
+	}
+	
+	public Cache<String, String> getDnCache() {
+		return dnCache;
+	}
+	
 	public LdapUtils getLdapUtils() {
 		return ldapUtils;
 	}
@@ -95,4 +161,9 @@ public final class LdapServer implements IAuthenticationServer {
 		this.filterAttribute = filterAttribute;
 	}
 
+	@Override
+	public String toString() {
+		return "LdapServer [" + (ldapUtils == null ? null : ldapUtils.getProviderUrl()) + "]";
+	}
+
 }
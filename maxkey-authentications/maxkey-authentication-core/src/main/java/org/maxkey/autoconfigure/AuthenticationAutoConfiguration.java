@@ -17,17 +17,23 @@
 
 package org.maxkey.autoconfigure;
 
+import java.util.Collections;
+
 import org.maxkey.authn.AbstractAuthenticationProvider;
 import org.maxkey.authn.RealmAuthenticationProvider;
 import org.maxkey.authn.SavedRequestAwareAuthenticationSuccessHandler;
+import org.maxkey.authn.online.InMemoryOnlineTicketServices;
 import org.maxkey.authn.online.OnlineTicketServices;
 import org.maxkey.authn.online.OnlineTicketServicesFactory;
+import org.maxkey.authn.online.TieredOnlineTicketServices;
 import org.maxkey.authn.realm.AbstractAuthenticationRealm;
 import org.maxkey.authn.support.rememberme.AbstractRemeberMeService;
 import org.maxkey.authn.support.rememberme.RemeberMeServiceFactory;
 import org.maxkey.configuration.ApplicationConfig;
+import org.maxkey.constants.ConstantsPersistence;
 import org.maxkey.password.onetimepwd.AbstractOtpAuthn;
 import org.maxkey.persistence.db.PasswordPolicyValidator;
+import org.maxkey.persistence.db.RedisLoginAttemptStore;
 import org.maxkey.persistence.redis.RedisConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,8 +43,16 @@ import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.maxkey.persistence.db.GroupAppsIndex;
+import org.maxkey.persistence.db.InMemoryLoginAttemptStore;
 import org.maxkey.persistence.db.LoginService;
 import org.maxkey.persistence.db.LoginHistoryService;
+import org.maxkey.persistence.db.LoginHistoryWriter;
+import org.maxkey.persistence.db.LoginHistoryWriterMetrics;
+import org.maxkey.persistence.ldap.LdapMetrics;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 
 
 @Configuration
@@ -75,18 +89,101 @@ public class AuthenticationAutoConfiguration  implements InitializingBean {
         
     }
     
+    /**
+     * failed attempts of user and ip in memory or redis when redis persistence,
+     * mxk_userinfo updated when user locked
+     */
     @Bean(name = "passwordPolicyValidator")
-    public PasswordPolicyValidator passwordPolicyValidator(JdbcTemplate jdbcTemplate,MessageSource messageSource) {
-        return new PasswordPolicyValidator(jdbcTemplate,messageSource);
+    public PasswordPolicyValidator passwordPolicyValidator(
+            JdbcTemplate jdbcTemplate,
+            MessageSource messageSource,
+            @Value("${maxkey.server.persistence}") int persistence,
+            RedisConnectionFactory redisConnFactory,
+            @Value("${maxkey.login.attempts.ip.max:100}") int ipAttempts,
+            @Value("${maxkey.login.attempts.ip.seconds:600}") int ipAttemptsSeconds,
+            @Value("${maxkey.login.attempts.inmemory.size:1000000}") int inMemorySize) {
+        PasswordPolicyValidator passwordPolicyValidator = new PasswordPolicyValidator(jdbcTemplate,messageSource);
+        if (persistence == ConstantsPersistence.REDIS) {
+            passwordPolicyValidator.setLoginAttemptStore(new RedisLoginAttemptStore(redisConnFactory));
+        } else {
+            passwordPolicyValidator.setLoginAttemptStore(new InMemoryLoginAttemptStore(inMemorySize));
+        }
+        _logger.debug("login attempts store {} , ip attempts {} in {} seconds" , 
+                passwordPolicyValidator.getLoginAttemptStore().getClass().getSimpleName() ,
+                ipAttempts , ipAttemptsSeconds);
+        passwordPolicyValidator.setIpAttempts(ipAttempts, ipAttemptsSeconds);
+        return passwordPolicyValidator;
     }
     
     @Bean(name = "loginService")
-    public LoginService LoginService(JdbcTemplate jdbcTemplate) {
-        return new LoginService(jdbcTemplate);
+    public LoginService LoginService(
+            JdbcTemplate jdbcTemplate,
+            LoginHistoryWriter loginHistoryWriter,
+            GroupAppsIndex groupAppsIndex,
+            @Value("${maxkey.login.authorizedapps.index:true}") boolean authorizedAppsIndex) {
+        LoginService loginService = new LoginService(jdbcTemplate);
+        loginService.setLoginHistoryWriter(loginHistoryWriter);
+        if(authorizedAppsIndex) {
+            loginService.setGroupAppsIndex(groupAppsIndex);
+        }
+        return loginService;
     }
+    
+    /**
+     * apps of groups in memory for authorized apps of login,
+     * invalidate on other nodes by redis when redis persistence
+     */
+    @Bean(name = "groupAppsIndex")
+    public GroupAppsIndex groupAppsIndex(
+            JdbcTemplate jdbcTemplate,
+            @Value("${maxkey.server.persistence}") int persistence,
+            RedisConnectionFactory redisConnFactory,
+            @Value("${maxkey.login.authorizedapps.refresh-seconds:30}") int refreshSeconds) {
+        _logger.debug("group apps index refresh seconds {}" , refreshSeconds);
+        return new GroupAppsIndex(jdbcTemplate, refreshSeconds,
+                persistence == ConstantsPersistence.REDIS ? redisConnFactory : null);
+    }
+    
+    /**
+     * login history , sign on apps history , system logs and last login writer.
+     * async false for strict audit , write on request thread
+     */
+    @Bean(name = "loginHistoryWriter")
+    public LoginHistoryWriter loginHistoryWriter(
+            JdbcTemplate jdbcTemplate,
+            @Value("${maxkey.login.history.async:true}") boolean async,
+            @Value("${maxkey.login.history.queue-capacity:10000}") int queueCapacity,
+            @Value("${maxkey.login.history.batch-size:500}") int batchSize,
+            @Value("${maxkey.login.history.flush-millis:1000}") int flushMillis,
+            @Value("${maxkey.login.history.offer-timeout:1000}") long offerTimeoutMillis,
+            @Value("${maxkey.login.history.spill-dir:}") String spillDir) {
+        _logger.debug("login history writer async {} , spill directory {}" , async , spillDir);
+        LoginHistoryWriter loginHistoryWriter = 
+                new LoginHistoryWriter(jdbcTemplate, async, queueCapacity, batchSize, flushMillis);
+        loginHistoryWriter.setOfferTimeoutMillis(offerTimeoutMillis);
+        loginHistoryWriter.setSpillDirectory(spillDir);
+        return loginHistoryWriter;
+    }
+    
+    /**
+     * view on /actuator/metrics/maxkey.login.history.*
+     */
+    @Bean
+    public LoginHistoryWriterMetrics loginHistoryWriterMetrics(LoginHistoryWriter loginHistoryWriter) {
+        return new LoginHistoryWriterMetrics(loginHistoryWriter);
+    }
+    
+    /**
+     * ldap servers of the realm,view on /actuator/metrics/maxkey.ldap.*
+     */
+    @Bean
+    public LdapMetrics ldapMetrics(AbstractAuthenticationRealm authenticationRealm) {
+        return new LdapMetrics(authenticationRealm.getLdapStatistics());
+    }
+    
     @Bean(name = "loginHistoryService")
-    public LoginHistoryService loginHistoryService(JdbcTemplate jdbcTemplate) {
-        return new LoginHistoryService(jdbcTemplate);
+    public LoginHistoryService loginHistoryService(JdbcTemplate jdbcTemplate,LoginHistoryWriter loginHistoryWriter) {
+        return new LoginHistoryService(jdbcTemplate,loginHistoryWriter);
     }
     
     /**
@@ -107,15 +204,39 @@ public class AuthenticationAutoConfiguration  implements InitializingBean {
             @Value("${maxkey.server.persistence}") int persistence,
             JdbcTemplate jdbcTemplate,
             RedisConnectionFactory redisConnFactory,
-            @Value("${server.servlet.session.timeout:1800}") int timeout
+            @Value("${server.servlet.session.timeout:1800}") int timeout,
+            @Value("${maxkey.onlineticket.inmemory.size:200000}") int inMemorySize,
+            @Value("${maxkey.onlineticket.nearcache.enabled:false}") boolean nearCache,
+            @Value("${maxkey.onlineticket.nearcache.seconds:30}") int nearCacheSeconds,
+            @Value("${maxkey.onlineticket.nearcache.size:20000}") int nearCacheSize
             ) {
         OnlineTicketServices  onlineTicketServices  = 
-                new OnlineTicketServicesFactory().getService(persistence, jdbcTemplate, redisConnFactory);
+                new OnlineTicketServicesFactory().getService(
+                        persistence, jdbcTemplate, redisConnFactory, 
+                        inMemorySize, nearCache, nearCacheSeconds, nearCacheSize);
         onlineTicketServices.setValiditySeconds(timeout);
         _logger.trace("onlineTicket timeout " + timeout);
         return onlineTicketServices;
     }
     
+    /**
+     * hit rate,evictions and size of the online ticket Caffeine cache
+     * view on /actuator/metrics/cache.*?tag=cache:onlineTicket
+     */
+    @Bean
+    public MeterBinder onlineTicketCacheMetrics(OnlineTicketServices onlineTicketServices) {
+        if (onlineTicketServices instanceof InMemoryOnlineTicketServices) {
+            return new CaffeineCacheMetrics(
+                    ((InMemoryOnlineTicketServices) onlineTicketServices).getOnlineTicketStore(),
+                    "onlineTicket", Collections.emptyList());
+        } else if (onlineTicketServices instanceof TieredOnlineTicketServices) {
+            return new CaffeineCacheMetrics(
+                    ((TieredOnlineTicketServices) onlineTicketServices).getNearCache(),
+                    "onlineTicket", Collections.emptyList());
+        }
+        return registry -> { };
+    }
+    
     @Override
     public void afterPropertiesSet() throws Exception {
         
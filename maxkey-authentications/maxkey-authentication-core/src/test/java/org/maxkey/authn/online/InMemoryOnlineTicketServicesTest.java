@@ -0,0 +1,46 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authn.online;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class InMemoryOnlineTicketServicesTest {
+
+    @Test
+    public void testValiditySeconds() throws Exception {
+        InMemoryOnlineTicketServices onlineTicketServices = new InMemoryOnlineTicketServices(100);
+        onlineTicketServices.setValiditySeconds(59);
+        OnlineTicket onlineTicket = new OnlineTicket("OT-1");
+        onlineTicketServices.store(onlineTicket.getTicketId(), onlineTicket);
+        assertNotNull(onlineTicketServices.get(onlineTicket.getTicketId()));
+
+        //change validity,the ticket not lost
+        onlineTicketServices.setValiditySeconds(1);
+        assertNotNull(onlineTicketServices.get(onlineTicket.getTicketId()));
+        onlineTicketServices.refresh(onlineTicket.getTicketId());
+
+        Thread.sleep(1500);
+        assertNull(onlineTicketServices.get(onlineTicket.getTicketId()));
+        assertEquals(3, onlineTicketServices.getOnlineTicketStore().stats().hitCount());
+        assertEquals(1, onlineTicketServices.getOnlineTicketStore().stats().missCount());
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authn.online;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.maxkey.authn.SigninPrincipal;
+import org.maxkey.entity.UserInfo;
+import org.maxkey.entity.apps.Apps;
+import org.maxkey.persistence.redis.BinaryRedisObjectCodec;
+import org.maxkey.persistence.redis.RedisObjectCodec;
+import org.maxkey.util.ObjectTransformer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+/**
+ * OnlineTicket redis value encode/decode,HEX String vs binary codec
+ * run main,the value size print before benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OnlineTicketCodecBenchmark {
+
+    OnlineTicket onlineTicket;
+
+    RedisObjectCodec binaryCodec = new BinaryRedisObjectCodec();
+
+    String hexValue;
+
+    byte[] binaryValue;
+
+    @Setup
+    public void setup() {
+        onlineTicket = createOnlineTicket();
+        hexValue = ObjectTransformer.serialize(onlineTicket);
+        binaryValue = binaryCodec.encode(onlineTicket);
+    }
+
+    @Benchmark
+    public String encodeHex() {
+        return ObjectTransformer.serialize(onlineTicket);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return binaryCodec.encode(onlineTicket);
+    }
+
+    @Benchmark
+    public OnlineTicket decodeHex() {
+        return ObjectTransformer.deserialize(hexValue);
+    }
+
+    @Benchmark
+    public OnlineTicket decodeBinary() {
+        return binaryCodec.decode(binaryValue);
+    }
+
+    public static OnlineTicket createOnlineTicket() {
+        UserInfo userInfo = new UserInfo();
+        userInfo.setId("8584804d-b5ac-45d2-9f91-4dd8e7a090a7");
+        userInfo.setInstId("1");
+        userInfo.setUsername("maxkey");
+        userInfo.setPassword("{bcrypt}$2a$10$sWSrhdWLpF2PC7b7L4dfT.2iYFqrH0SBYnQLzc8P1cQJPOUvGRHhS");
+        userInfo.setDisplayName("MaxKey Admin");
+        userInfo.setGivenName("Max");
+        userInfo.setFamilyName("Key");
+        userInfo.setUserType("EMPLOYEE");
+        userInfo.setEmail("maxkey@maxkey.top");
+        userInfo.setMobile("13800000000");
+        userInfo.setEmployeeNumber("20220101");
+        userInfo.setOrganization("MaxKey");
+        userInfo.setDepartmentId("8584804d-b5ac-45d2-9f91-4dd8e7a090a8");
+        userInfo.setDepartment("Research and Development");
+        userInfo.setJobTitle("Administrator");
+        userInfo.setLocale("zh_CN");
+        userInfo.setTimeZone("Asia/Shanghai");
+        userInfo.setLastLoginIp("192.168.1.100");
+        userInfo.setLastLoginTime("2022-01-01 08:30:00");
+        userInfo.setPasswordLastSetTime("2021-12-01 08:30:00");
+        userInfo.setCreatedDate("2021-01-01 08:30:00");
+        userInfo.setStatus(1);
+
+        OnlineTicket onlineTicket = new OnlineTicket("OT-0c9a5c0e-f7ef-4d4b-8e06-3a3f0bbf7a5e");
+        SigninPrincipal signinPrincipal = new SigninPrincipal(userInfo);
+        signinPrincipal.setOnlineTicket(onlineTicket);
+
+        ArrayList<GrantedAuthority> grantedAuthoritys = new ArrayList<GrantedAuthority>();
+        grantedAuthoritys.add(new SimpleGrantedAuthority("ROLE_USER"));
+        grantedAuthoritys.add(new SimpleGrantedAuthority("ROLE_ORDINARY_USER"));
+        HashSet<GrantedAuthority> grantedAuthorityApps = new HashSet<GrantedAuthority>();
+        for(int i = 0 ; i < 20 ; i++) {
+            grantedAuthoritys.add(new SimpleGrantedAuthority("group-" + i));
+            grantedAuthorityApps.add(new SimpleGrantedAuthority("app-" + i));
+        }
+        signinPrincipal.setGrantedAuthority(grantedAuthoritys);
+        signinPrincipal.setGrantedAuthorityApps(grantedAuthorityApps);
+
+        UsernamePasswordAuthenticationToken authenticationToken =
+                new UsernamePasswordAuthenticationToken(signinPrincipal, "PASSWORD", grantedAuthoritys);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("192.168.1.100");
+        authenticationToken.setDetails(new WebAuthenticationDetails(request));
+        onlineTicket.setAuthentication(authenticationToken);
+
+        for(int i = 0 ; i < 5 ; i++) {
+            Apps app = new Apps();
+            app.setId("app-" + i);
+            app.setName("Application " + i);
+            app.setProtocol("OAuth_v2.0");
+            app.setLoginUrl("https://app" + i + ".maxkey.top/login");
+            onlineTicket.setAuthorizedApp(app);
+        }
+        return onlineTicket;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        OnlineTicket onlineTicket = createOnlineTicket();
+        System.out.println("HEX String bytes : "
+                + ObjectTransformer.serialize(onlineTicket).getBytes(StandardCharsets.US_ASCII).length);
+        System.out.println("Binary bytes : "
+                + new BinaryRedisObjectCodec(0).encode(onlineTicket).length);
+        System.out.println("Binary deflate bytes : "
+                + new BinaryRedisObjectCodec(1).encode(onlineTicket).length);
+
+        Options opt = new OptionsBuilder()
+                .include(OnlineTicketCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authn.online;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.maxkey.persistence.redis.EmbeddedRedisServer;
+import org.maxkey.persistence.redis.RedisConnectionFactory;
+
+/**
+ * refresh EXPIRE the ticket once per window,not rewrite the ticket
+ */
+public class RedisOnlineTicketServicesTest {
+
+    EmbeddedRedisServer redisServer;
+
+    RedisConnectionFactory connectionFactory;
+
+    RedisOnlineTicketServices onlineTicketServices;
+
+    @Before
+    public void setUp() throws Exception {
+        redisServer = new EmbeddedRedisServer().start();
+        connectionFactory = redisServer.createConnectionFactory();
+        onlineTicketServices = new RedisOnlineTicketServices(connectionFactory);
+        onlineTicketServices.setValiditySeconds(600);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        onlineTicketServices.shutdown();
+        connectionFactory.getJedisPool().close();
+        redisServer.close();
+    }
+
+    @Test
+    public void testRefreshCoalesce() {
+        OnlineTicket onlineTicket = OnlineTicketCodecBenchmark.createOnlineTicket();
+        String key = RedisOnlineTicketServices.PREFIX + onlineTicket.getTicketId();
+        onlineTicketServices.store(onlineTicket.getTicketId(), onlineTicket);
+        byte[] value = redisServer.get(key);
+        //time passed
+        redisServer.expire(key, 100);
+
+        for (int i = 0; i < 100; i++) {
+            onlineTicketServices.refresh(onlineTicket.getTicketId());
+        }
+        OnlineTicketRefresher refresher = onlineTicketServices.getRefresher();
+        assertEquals(100, refresher.getRefreshCount());
+        assertEquals(1, refresher.getPendingCount());
+        //window not passed
+        refresher.flush(false);
+        assertEquals(0, refresher.getWriteCount());
+        assertEquals(100, redisServer.ttl(key));
+
+        refresher.flush(true);
+        assertEquals(1, refresher.getWriteCount());
+        assertEquals(600, redisServer.ttl(key));
+        //value not rewrite
+        assertSame(value, redisServer.get(key));
+    }
+
+    @Test
+    public void testSharedRefresherThread() {
+        int users = OnlineTicketRefresher.sharedSchedulerUsers;
+        RedisOnlineTicketServices otherTicketServices = new RedisOnlineTicketServices(connectionFactory);
+        assertEquals(users + 1, OnlineTicketRefresher.sharedSchedulerUsers);
+        //shutdown twice release once
+        otherTicketServices.shutdown();
+        otherTicketServices.shutdown();
+        assertEquals(users, OnlineTicketRefresher.sharedSchedulerUsers);
+        assertNotNull(OnlineTicketRefresher.sharedScheduler);
+        onlineTicketServices.shutdown();
+        assertEquals(users - 1, OnlineTicketRefresher.sharedSchedulerUsers);
+        if (users == 1) {
+            assertNull(OnlineTicketRefresher.sharedScheduler);
+        }
+    }
+
+    @Test
+    public void testRefreshRemoved() {
+        OnlineTicket onlineTicket = OnlineTicketCodecBenchmark.createOnlineTicket();
+        onlineTicketServices.store(onlineTicket.getTicketId(), onlineTicket);
+        onlineTicketServices.refresh(onlineTicket.getTicketId());
+        onlineTicketServices.remove(onlineTicket.getTicketId());
+        assertEquals(0, onlineTicketServices.getRefresher().getPendingCount());
+        try {
+            onlineTicketServices.refresh(onlineTicket.getTicketId());
+            fail("removed ticket refreshed");
+        } catch (IllegalStateException e) {
+            //logout
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authn.online;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.maxkey.persistence.redis.EmbeddedRedisServer;
+import org.maxkey.persistence.redis.RedisConnectionFactory;
+
+/**
+ * two nodes share one redis,logout on one node evict the near cache of the other
+ */
+public class TieredOnlineTicketServicesTest {
+
+    EmbeddedRedisServer redisServer;
+
+    RedisConnectionFactory connectionFactory;
+
+    TieredOnlineTicketServices node1;
+
+    TieredOnlineTicketServices node2;
+
+    @Before
+    public void setUp() throws Exception {
+        redisServer = new EmbeddedRedisServer().start();
+        connectionFactory = redisServer.createConnectionFactory();
+        node1 = new TieredOnlineTicketServices(connectionFactory, 60, 1000);
+        node2 = new TieredOnlineTicketServices(connectionFactory, 60, 1000);
+        awaitSubscribed(node1);
+        awaitSubscribed(node2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        node1.shutdown();
+        node2.shutdown();
+        connectionFactory.getJedisPool().close();
+        redisServer.close();
+    }
+
+    @Test
+    public void testGetFromNearCache() {
+        OnlineTicket onlineTicket = OnlineTicketCodecBenchmark.createOnlineTicket();
+        node1.store(onlineTicket.getTicketId(), onlineTicket);
+
+        assertNotNull(node2.get(onlineTicket.getTicketId()));
+        long roundTrips = connectionFactory.getRoundTrips();
+        for (int i = 0; i < 100; i++) {
+            assertNotNull(node1.get(onlineTicket.getTicketId()));
+            assertNotNull(node2.get(onlineTicket.getTicketId()));
+        }
+        assertEquals(roundTrips, connectionFactory.getRoundTrips());
+    }
+
+    @Test
+    public void testRemoveEvictOtherNodes() throws Exception {
+        OnlineTicket onlineTicket = OnlineTicketCodecBenchmark.createOnlineTicket();
+        String ticketId = onlineTicket.getTicketId();
+        node1.store(ticketId, onlineTicket);
+        assertNotNull(node2.get(ticketId));
+
+        //logout on node1
+        assertNotNull(node1.remove(ticketId));
+        assertNull(node1.get(ticketId));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (node2.getNearCache().getIfPresent(ticketId) != null
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNull(node2.get(ticketId));
+    }
+
+    static void awaitSubscribed(TieredOnlineTicketServices node) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!node.getInvalidateSubscriber().isSubscribed()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(node.getInvalidateSubscriber().isSubscribed());
+    }
+}
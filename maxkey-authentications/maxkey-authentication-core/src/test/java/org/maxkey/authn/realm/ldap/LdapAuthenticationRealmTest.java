@@ -0,0 +1,147 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authn.realm.ldap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.maxkey.authn.realm.IAuthenticationServer;
+import org.maxkey.entity.UserInfo;
+import org.maxkey.persistence.ldap.EmbeddedLdapServer;
+import org.maxkey.persistence.ldap.LdapMetrics;
+import org.maxkey.persistence.ldap.LdapUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class LdapAuthenticationRealmTest {
+
+    List<EmbeddedLdapServer> ldapServers = new ArrayList<EmbeddedLdapServer>();
+
+    List<LdapServer> servers = new ArrayList<LdapServer>();
+
+    LdapAuthenticationRealm realm;
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            EmbeddedLdapServer ldapServer = new EmbeddedLdapServer().start();
+            ldapServer.addEntry("dc=maxkey,dc=top", "dc=maxkey");
+            ldapServer.addEntry("cn=Manager,dc=maxkey,dc=top", "cn=Manager", "userPassword=secret");
+            ldapServer.addEntry("uid=shimingxy,ou=people,dc=maxkey,dc=top",
+                    "uid=shimingxy", "userPassword=maxkey@2022");
+            ldapServers.add(ldapServer);
+
+            LdapServer server = new LdapServer();
+            LdapUtils ldapUtils = new LdapUtils(ldapServer.getProviderUrl(),
+                    "cn=Manager,dc=maxkey,dc=top", "secret", "dc=maxkey,dc=top");
+            ldapUtils.setReadTimeout(5000);
+            server.setLdapUtils(ldapUtils);
+            server.setFilterAttribute("(uid=%s)");
+            servers.add(server);
+        }
+        realm = new LdapAuthenticationRealm();
+        realm.setFailoverMillis(200);
+        realm.setLdapServers(new ArrayList<IAuthenticationServer>(servers));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (LdapServer server : servers) {
+            server.getLdapUtils().closePool();
+        }
+        for (EmbeddedLdapServer ldapServer : ldapServers) {
+            ldapServer.close();
+        }
+    }
+
+    @Test
+    public void testDnCache() {
+        EmbeddedLdapServer ldapServer = ldapServers.get(0);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(realm.passwordMatches(userInfo("shimingxy"), "maxkey@2022"));
+        }
+        //searched once,dn cached
+        assertEquals(1, ldapServer.getSearchCount());
+        assertEquals(10, servers.get(0).getLdapUtils().getStatistics().getBindCount());
+        //connections of search and bind pool
+        assertEquals(2, ldapServer.getConnectionCount());
+        assertEquals(0, ldapServers.get(1).getConnectionCount());
+
+        assertFalse(realm.passwordMatches(userInfo("shimingxy"), "maxkey@2021"));
+        assertFalse(realm.passwordMatches(userInfo("shimingxy"), ""));
+        assertFalse(realm.passwordMatches(userInfo("*"), "maxkey@2022"));
+    }
+
+    @Test
+    public void testLdapMetrics() {
+        assertTrue(realm.passwordMatches(userInfo("shimingxy"), "maxkey@2022"));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new LdapMetrics(realm.getLdapStatistics()).bindTo(registry);
+
+        String server = ldapServers.get(0).getProviderUrl();
+        assertEquals(1, (long) registry.get("maxkey.ldap.search").tag("server", server).functionTimer().count());
+        assertEquals(1, (long) registry.get("maxkey.ldap.bind").tag("server", server).functionTimer().count());
+        assertTrue(registry.get("maxkey.ldap.connect").tag("server", server).functionTimer()
+                .totalTime(TimeUnit.NANOSECONDS) > 0);
+        assertEquals(0, (long) registry.get("maxkey.ldap.search")
+                .tag("server", ldapServers.get(1).getProviderUrl()).functionTimer().count());
+    }
+
+    @Test
+    public void testDnMoved() {
+        EmbeddedLdapServer ldapServer = ldapServers.get(0);
+        assertTrue(realm.passwordMatches(userInfo("shimingxy"), "maxkey@2022"));
+        ldapServer.removeEntry("uid=shimingxy,ou=people,dc=maxkey,dc=top");
+        ldapServer.addEntry("uid=shimingxy,ou=staff,dc=maxkey,dc=top", "uid=shimingxy", "userPassword=maxkey@2022");
+        assertTrue(realm.passwordMatches(userInfo("shimingxy"), "maxkey@2022"));
+        assertEquals("uid=shimingxy,ou=staff,dc=maxkey,dc=top", servers.get(0).getDnCache().getIfPresent("shimingxy"));
+    }
+
+    @Test
+    public void testFailoverSlowServer() {
+        ldapServers.get(0).setDelayMillis(2000);
+        long startTime = System.currentTimeMillis();
+        assertTrue(realm.passwordMatches(userInfo("shimingxy"), "maxkey@2022"));
+        long costMillis = System.currentTimeMillis() - startTime;
+        assertTrue("cost " + costMillis, costMillis < 1500);
+        //bind of principal for search and bind of user
+        assertEquals(2, ldapServers.get(1).getBindCount());
+    }
+
+    @Test
+    public void testFailoverServerDown() throws Exception {
+        ldapServers.get(0).close();
+        assertTrue(realm.passwordMatches(userInfo("shimingxy"), "maxkey@2022"));
+        assertFalse(realm.passwordMatches(userInfo("shimingxy"), "maxkey@2021"));
+        assertTrue(servers.get(0).getLdapUtils().getStatistics().getFailureCount() > 0);
+    }
+
+    UserInfo userInfo(String username) {
+        UserInfo userInfo = new UserInfo();
+        userInfo.setUsername(username);
+        return userInfo;
+    }
+}
@@ -55,9 +55,8 @@ public class RedisOtpTokenStore  extends AbstractOtpTokenStore {
     @Override
     public boolean validate(UserInfo userInfo, String token, String type, int interval) {
         RedisConnection conn = connectionFactory.getConnection();
-        OneTimePassword otp = (OneTimePassword)conn.getObject(
+        OneTimePassword otp = (OneTimePassword)conn.getObjectAndDelete(
                 PREFIX + userInfo.getUsername() + "_" + type + "_" + token);
-        conn.delete(PREFIX + userInfo.getUsername() + "_" + type + "_" + token);
         conn.close();
         if (otp != null) { 
             return true;
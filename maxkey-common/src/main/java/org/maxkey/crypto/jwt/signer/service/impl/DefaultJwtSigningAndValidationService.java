@@ -35,6 +35,8 @@ import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSSigner;
 import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
 import com.nimbusds.jose.crypto.MACSigner;
 import com.nimbusds.jose.crypto.MACVerifier;
 import com.nimbusds.jose.crypto.RSASSASigner;
@@ -173,8 +175,13 @@ public class DefaultJwtSigningAndValidationService implements JwtSigningAndValid
 			} else if (jwk instanceof ECKey) {
 				// build EC signers & verifiers
 
-				//  add support for EC keys
-				logger.warn("EC Keys are not yet supported.");
+				if (jwk.isPrivate()) {
+					ECDSASigner signer = new ECDSASigner((ECKey) jwk);
+					signers.put(id, signer);
+				}
+
+				ECDSAVerifier verifier = new ECDSAVerifier((ECKey) jwk);
+				verifiers.put(id, verifier);
 
 			} else if (jwk instanceof OctetSequenceKey) {
 				// build HMAC signers & verifiers
@@ -249,6 +256,9 @@ public class DefaultJwtSigningAndValidationService implements JwtSigningAndValid
 	public boolean validateSignature(SignedJWT jwt) {
 
 		for (JWSVerifier verifier : verifiers.values()) {
+			if (!verifier.supportedJWSAlgorithms().contains(jwt.getHeader().getAlgorithm())) {
+				continue;
+			}
 			try {
 				if (jwt.verify(verifier)) {
 					return true;
@@ -19,8 +19,15 @@
  */
 package org.maxkey.crypto.jwt.signer.service.impl;
 
-import java.util.concurrent.ExecutionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
@@ -31,124 +38,252 @@ import org.maxkey.crypto.jwt.signer.service.JwtSigningAndValidationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
-import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.base.Strings;
+import com.nimbusds.jose.jwk.JWK;
 import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.OctetSequenceKey;
+import com.nimbusds.jose.jwk.RSAKey;
 
 /**
  * 
  * Creates a caching map of JOSE signers/validators and encrypters/decryptors
  * keyed on the JWK Set URI. Dynamically loads JWK Sets to create the services.
  * 
+ * <p>JWK Sets are fetched in background threads,the first request of a JWK Set URI waits at most fetchTimeout,
+ * after refreshSeconds the next request triggers a refresh and keeps using the current services until it completes,
+ * the services are only rebuilt when the JWK Set changed. After a failed fetch the JWK Set URI is not fetched again
+ * for a backoff doubling from backoffSeconds up to maxBackoffSeconds,the current services,if any,are kept.</p>
+ * 
  * @author jricher
  * 
  */
-@Service
 public class JWKSetCacheService {
 
 	private static Logger logger = LoggerFactory.getLogger(JWKSetCacheService.class);
 
-	// map of jwk set uri -> signing/validation service built on the keys found in that jwk set
-	private LoadingCache<String, JwtSigningAndValidationService> validators;
+	public static final int DEFAULT_REFRESH_SECONDS = 3600;
+
+	public static final int DEFAULT_BACKOFF_SECONDS = 5;
+
+	public static final int DEFAULT_MAX_BACKOFF_SECONDS = 300;
+
+	public static final int DEFAULT_FETCH_TIMEOUT_MILLIS = 3000;
+
+	// map of jwk set uri -> signing/validation and encryption/decryption services built on the keys found in that jwk set
+	private final Cache<String, JWKSetEntry> entries;
+
+	private final ExecutorService fetchExecutor;
+
+	private final RestTemplate restTemplate;
 
-	// map of jwk set uri -> encryption/decryption service built on the keys found in that jwk set
-	private LoadingCache<String, JwtEncryptionAndDecryptionService> encrypters;
+	private final long refreshMillis;
+
+	private final long backoffMillis;
+
+	private final long maxBackoffMillis;
+
+	private final int fetchTimeoutMillis;
 
 	public JWKSetCacheService() {
-		this.validators = CacheBuilder.newBuilder()
-				.expireAfterWrite(1, TimeUnit.HOURS) // expires 1 hour after fetch
-				.maximumSize(100)
-				.build(new JWKSetVerifierFetcher());
-		this.encrypters = CacheBuilder.newBuilder()
-				.expireAfterWrite(1, TimeUnit.HOURS) // expires 1 hour after fetch
-				.maximumSize(100)
-				.build(new JWKSetEncryptorFetcher());
+		this(DEFAULT_REFRESH_SECONDS, DEFAULT_BACKOFF_SECONDS, DEFAULT_MAX_BACKOFF_SECONDS, DEFAULT_FETCH_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * @param refreshSeconds refresh the JWK Set after
+	 * @param backoffSeconds first wait after a failed fetch
+	 * @param maxBackoffSeconds maximum wait after failed fetches
+	 * @param fetchTimeoutMillis connect and read timeout,and the wait of the first request
+	 */
+	public JWKSetCacheService(int refreshSeconds, int backoffSeconds, int maxBackoffSeconds, int fetchTimeoutMillis) {
+		this.refreshMillis = TimeUnit.SECONDS.toMillis(refreshSeconds);
+		this.backoffMillis = TimeUnit.SECONDS.toMillis(backoffSeconds);
+		this.maxBackoffMillis = TimeUnit.SECONDS.toMillis(maxBackoffSeconds);
+		this.fetchTimeoutMillis = fetchTimeoutMillis;
+		// jwk set uris not used for a day removed
+		this.entries = Caffeine.newBuilder()
+				.expireAfterAccess(1, TimeUnit.DAYS)
+				.maximumSize(10000)
+				.build();
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.fetchExecutor = Executors.newFixedThreadPool(2, runnable -> {
+			Thread thread = new Thread(runnable, "jwks-fetch-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		HttpClient httpClient = HttpClientBuilder.create().useSystemProperties().build();
+		HttpComponentsClientHttpRequestFactory httpFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+		httpFactory.setConnectTimeout(fetchTimeoutMillis);
+		httpFactory.setConnectionRequestTimeout(fetchTimeoutMillis);
+		httpFactory.setReadTimeout(fetchTimeoutMillis);
+		this.restTemplate = new RestTemplate(httpFactory);
 	}
 
 	/**
 	 * @param jwksUri
-	 * @return
-	 * @throws ExecutionException
-	 * @see com.google.common.cache.Cache#get(java.lang.Object)
+	 * @return validator of the JWK Set,null if not loaded
 	 */
 	public JwtSigningAndValidationService getValidator(String jwksUri) {
-		try {
-			return validators.get(jwksUri);
-		} catch (UncheckedExecutionException ue) {
-			logger.warn("Couldn't load JWK Set from " + jwksUri, ue);
-			return null;
-		} catch (ExecutionException e) {
-			logger.warn("Couldn't load JWK Set from " + jwksUri, e);
-			return null;
-		}
+		JWKSetServices services = getServices(jwksUri);
+		return services == null ? null : services.validator;
 	}
 
+	/**
+	 * @param jwksUri
+	 * @return encrypter with the first encryption key of the JWK Set,null if not loaded or without encryption key
+	 */
 	public JwtEncryptionAndDecryptionService getEncrypter(String jwksUri) {
-		try {
-			return encrypters.get(jwksUri);
-		} catch (UncheckedExecutionException ue) {
-			logger.warn("Couldn't load JWK Set from " + jwksUri, ue);
+		JWKSetServices services = getServices(jwksUri);
+		return services == null ? null : services.encrypter;
+	}
+
+	/**
+	 * stop fetch threads when bean destroy
+	 */
+	public void shutdown() {
+		fetchExecutor.shutdownNow();
+	}
+
+	private JWKSetServices getServices(String jwksUri) {
+		if (Strings.isNullOrEmpty(jwksUri)) {
 			return null;
-		} catch (ExecutionException e) {
-			logger.warn("Couldn't load JWK Set from " + jwksUri, e);
+		}
+		JWKSetEntry entry = entries.get(jwksUri, JWKSetEntry::new);
+		long now = System.currentTimeMillis();
+		JWKSetServices services = entry.services;
+		if (services != null) {
+			if (now >= entry.refreshAt) {
+				// refresh ahead,keep the current services
+				entry.fetch(now);
+			}
+			return services;
+		}
+		CompletableFuture<JWKSetServices> loading = entry.fetch(now);
+		if (loading == null) {
+			logger.debug("JWK Set from {} failed,retry after {}", jwksUri, entry.retryAt);
 			return null;
 		}
+		try {
+			return loading.get(fetchTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			logger.warn("Couldn't load JWK Set from " + jwksUri + " in " + fetchTimeoutMillis + " ms");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			// logged when completed
+			logger.debug("Couldn't load JWK Set from " + jwksUri, e);
+		}
+		return null;
 	}
 
 	/**
-	 * @author jricher
-	 *
+	 * keys with kid or the thumbprint as kid,encryption keys are RSA or symmetric without use or use enc
 	 */
-	private class JWKSetVerifierFetcher extends CacheLoader<String, JwtSigningAndValidationService> {
-		private HttpClient httpClient = HttpClientBuilder.create().useSystemProperties().build();
-		private HttpComponentsClientHttpRequestFactory httpFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
-		private RestTemplate restTemplate = new RestTemplate(httpFactory);
+	JWKSetServices build(String jsonString) throws Exception {
+		JWKSet jwkSet = JWKSet.parse(jsonString);
+		JwtSigningAndValidationService validator = new DefaultJwtSigningAndValidationService(new JWKSetKeyStore(jwkSet));
 
-		/**
-		 * Load the JWK Set and build the appropriate signing service.
-		 */
-		@Override
-		public JwtSigningAndValidationService load(String key) throws Exception {
+		Map<String, JWK> encryptionKeys = new LinkedHashMap<String, JWK>();
+		for (JWK key : jwkSet.getKeys()) {
+			if ((key.getKeyUse() == null || KeyUse.ENCRYPTION.equals(key.getKeyUse()))
+					&& (key instanceof RSAKey || key instanceof OctetSequenceKey)) {
+				encryptionKeys.put(Strings.isNullOrEmpty(key.getKeyID())
+						? key.computeThumbprint().toString() : key.getKeyID(), key);
+			}
+		}
+		DefaultJwtEncryptionAndDecryptionService encrypter = null;
+		if (!encryptionKeys.isEmpty()) {
+			encrypter = new DefaultJwtEncryptionAndDecryptionService(encryptionKeys);
+			encrypter.setDefaultEncryptionKeyId(encryptionKeys.keySet().iterator().next());
+		}
+		return new JWKSetServices(jsonString, validator, encrypter);
+	}
 
-			String jsonString = restTemplate.getForObject(key, String.class);
-			JWKSet jwkSet = JWKSet.parse(jsonString);
+	private static class JWKSetServices {
 
-			JWKSetKeyStore keyStore = new JWKSetKeyStore(jwkSet);
+		final String jsonString;
 
-			JwtSigningAndValidationService service = new DefaultJwtSigningAndValidationService(keyStore);
+		final JwtSigningAndValidationService validator;
 
-			return service;
+		final JwtEncryptionAndDecryptionService encrypter;
 
+		JWKSetServices(String jsonString, JwtSigningAndValidationService validator,
+				JwtEncryptionAndDecryptionService encrypter) {
+			this.jsonString = jsonString;
+			this.validator = validator;
+			this.encrypter = encrypter;
 		}
-
 	}
 
-	/**
-	 * @author jricher
-	 *
-	 */
-	private class JWKSetEncryptorFetcher extends CacheLoader<String, JwtEncryptionAndDecryptionService> {
-		private HttpClient httpClient = HttpClientBuilder.create().useSystemProperties().build();
-		private HttpComponentsClientHttpRequestFactory httpFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
-		private RestTemplate restTemplate = new RestTemplate(httpFactory);
-		/* (non-Javadoc)
-		 * @see com.google.common.cache.CacheLoader#load(java.lang.Object)
-		 */
-		@Override
-		public JwtEncryptionAndDecryptionService load(String key) throws Exception {
-			String jsonString = restTemplate.getForObject(key, String.class);
-			JWKSet jwkSet = JWKSet.parse(jsonString);
+	private class JWKSetEntry {
+
+		final String jwksUri;
+
+		volatile JWKSetServices services;
+
+		volatile long refreshAt;
 
-			JWKSetKeyStore keyStore = new JWKSetKeyStore(jwkSet);
+		volatile long retryAt;
 
-			JwtEncryptionAndDecryptionService service = new DefaultJwtEncryptionAndDecryptionService(keyStore);
+		int failures;
+
+		CompletableFuture<JWKSetServices> loading;
+
+		JWKSetEntry(String jwksUri) {
+			this.jwksUri = jwksUri;
+		}
+
+		/**
+		 * @return the fetch in progress or started,null in backoff
+		 */
+		synchronized CompletableFuture<JWKSetServices> fetch(long now) {
+			if (loading != null) {
+				return loading;
+			}
+			if (now < retryAt) {
+				return null;
+			}
+			CompletableFuture<JWKSetServices> future = CompletableFuture.supplyAsync(this::load, fetchExecutor);
+			loading = future;
+			future.whenComplete(this::completed);
+			return future;
+		}
+
+		JWKSetServices load() {
+			logger.debug("fetch JWK Set from {}", jwksUri);
+			String jsonString = restTemplate.getForObject(jwksUri, String.class);
+			JWKSetServices current = services;
+			if (current != null && current.jsonString.equals(jsonString)) {
+				return current;
+			}
+			try {
+				return build(jsonString);
+			} catch (Exception e) {
+				throw new IllegalStateException("Couldn't build services of JWK Set from " + jwksUri, e);
+			}
+		}
 
-			return service;
+		synchronized void completed(JWKSetServices loaded, Throwable e) {
+			loading = null;
+			long now = System.currentTimeMillis();
+			if (e == null) {
+				services = loaded;
+				failures = 0;
+				retryAt = 0;
+				refreshAt = now + refreshMillis;
+			} else {
+				failures++;
+				long backoff = Math.min(maxBackoffMillis, backoffMillis << Math.min(failures - 1, 20));
+				retryAt = now + backoff;
+				Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+				logger.warn("Couldn't load JWK Set from {} , failures {} , retry after {} ms : {}",
+						jwksUri, failures, backoff, cause.toString());
+				logger.debug("Couldn't load JWK Set from " + jwksUri, cause);
+			}
 		}
 	}
 
@@ -16,100 +16,109 @@
  *******************************************************************************/
 package org.maxkey.crypto.jwt.signer.service.impl;
 
-import java.security.NoSuchAlgorithmException;
-import java.security.spec.InvalidKeySpecException;
-import java.util.Map;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import org.maxkey.crypto.jwt.signer.service.JwtSigningAndValidationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.base.Strings;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.util.concurrent.UncheckedExecutionException;
-import com.nimbusds.jose.jwk.JWK;
 
 /**
  * Creates and caches symmetrical validators for clients based on client secrets.
  * 
+ * <p>Validators are cached by client id with the version of the secret (e.g. the stored,encoded secret),
+ * the secret is only read and the validator rebuilt when the version changes.</p>
+ * 
  * @author jricher
  *
  */
-@Service
 public class SymmetricCacheService {
 
 	private static Logger logger = LoggerFactory.getLogger(SymmetricCacheService.class);
 
-	private LoadingCache<String, JwtSigningAndValidationService> validators;
+	private final SymmetricSigningAndValidationServiceBuilder serviceBuilder = 
+			new SymmetricSigningAndValidationServiceBuilder();
 
+	private final Cache<String, SymmetricValidator> validators;
 
 	public SymmetricCacheService() {
-		validators = CacheBuilder.newBuilder()
-				.expireAfterAccess(24, TimeUnit.HOURS)
-				.maximumSize(100)
-				.build(new SymmetricValidatorBuilder());
+		this(24 * 3600, 10000);
 	}
 
+	/**
+	 * @param expireSeconds expire after not used
+	 * @param maximumSize maximum clients
+	 */
+	public SymmetricCacheService(int expireSeconds, int maximumSize) {
+		validators = Caffeine.newBuilder()
+				.expireAfterAccess(expireSeconds, TimeUnit.SECONDS)
+				.maximumSize(maximumSize)
+				.build();
+	}
 
 	/**
-	 * Create a symmetric signing and validation service for the given client
+	 * Create a symmetric signing and validation service for the given client secret
 	 * 
-	 * @param client
+	 * @param clientSecret
 	 * @return
 	 */
 	public JwtSigningAndValidationService getSymmetricValidtor(String clientSecret) {
+		return getSymmetricValidtor(clientSecret, clientSecret, () -> clientSecret);
+	}
 
-		if (clientSecret == null) {
-			logger.error("Couldn't create symmetric validator for null client");
-			return null;
-		}
-
-		if (Strings.isNullOrEmpty(clientSecret)) {
+	/**
+	 * Get the symmetric signing and validation service of the client,
+	 * rebuilt when the secret version changed
+	 * 
+	 * @param clientId
+	 * @param secretVersion changes when the secret changes
+	 * @param clientSecret read the secret when (re)build
+	 * @return null without client secret
+	 */
+	public JwtSigningAndValidationService getSymmetricValidtor(
+			String clientId, String secretVersion, Supplier<String> clientSecret) {
+		if (clientId == null || Strings.isNullOrEmpty(secretVersion)) {
 			logger.error("Couldn't create symmetric validator for client  without a client secret");
 			return null;
 		}
 
-		try {
-			return validators.get(clientSecret);
-		} catch (UncheckedExecutionException ue) {
-			logger.error("Problem loading client validator", ue);
-			return null;
-		} catch (ExecutionException e) {
-			logger.error("Problem loading client validator", e);
-			return null;
+		SymmetricValidator validator = validators.getIfPresent(clientId);
+		if (validator != null && validator.secretVersion.equals(secretVersion)) {
+			return validator.service;
 		}
-
+		validator = validators.asMap().compute(clientId, (key, current) -> {
+			if (current != null && current.secretVersion.equals(secretVersion)) {
+				return current;
+			}
+			logger.debug("build symmetric validator for client {}", clientId);
+			JwtSigningAndValidationService service = serviceBuilder.serviceBuilder(clientSecret.get());
+			return service == null ? null : new SymmetricValidator(secretVersion, service);
+		});
+		return validator == null ? null : validator.service;
 	}
 
-	public class SymmetricValidatorBuilder extends CacheLoader<String, JwtSigningAndValidationService> {
-		@Override
-		public JwtSigningAndValidationService load(String key) throws Exception {
-			try {
+	public void invalidate(String clientId) {
+		validators.invalidate(clientId);
+	}
 
-				String id = "SYMMETRIC-KEY";
+	public long size() {
+		return validators.estimatedSize();
+	}
 
-				JWK jwk =null;
-				//JWK jwk = new OctetSequenceKey(Base64URL.encode(key), KeyUse.SIGNATURE, null, null, id, null, null, null);
-				Map<String, JWK> keys = ImmutableMap.of(id, jwk);
-				JwtSigningAndValidationService service = new DefaultJwtSigningAndValidationService(keys);
+	private static class SymmetricValidator {
 
-				return service;
+		final String secretVersion;
 
-			} catch (NoSuchAlgorithmException e) {
-				logger.error("Couldn't create symmetric validator for client", e);
-			} catch (InvalidKeySpecException e) {
-				logger.error("Couldn't create symmetric validator for client", e);
-			}
+		final JwtSigningAndValidationService service;
 
-			throw new IllegalArgumentException("Couldn't create symmetric validator for client");
+		SymmetricValidator(String secretVersion, JwtSigningAndValidationService service) {
+			this.secretVersion = secretVersion;
+			this.service = service;
 		}
-
 	}
 
 }
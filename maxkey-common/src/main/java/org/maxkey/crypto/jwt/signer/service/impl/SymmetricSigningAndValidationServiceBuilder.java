@@ -20,6 +20,7 @@
  */
 package org.maxkey.crypto.jwt.signer.service.impl;
 
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Map;
@@ -31,6 +32,8 @@ import org.slf4j.LoggerFactory;
 import com.google.common.collect.ImmutableMap;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.OctetSequenceKey;
 
 /**
  * @author Crystal.Sea
@@ -57,8 +60,8 @@ public class SymmetricSigningAndValidationServiceBuilder {
 		/**
 		 * Builder Symmetric Signing And Validation Service
 		 */
-		JWK jwk = null;
-		//JWK jwk = new OctetSequenceKey(Base64URL.encode(sharedSecret), KeyUse.SIGNATURE, null, null, SYMMETRIC_KEY, null, null, null);
+		JWK jwk = new OctetSequenceKey.Builder(sharedSecret.getBytes(StandardCharsets.UTF_8))
+				.keyUse(KeyUse.SIGNATURE).keyID(SYMMETRIC_KEY).build();
 		Map<String, JWK> keys = ImmutableMap.of(SYMMETRIC_KEY, jwk);
 		try {
 			JwtSigningAndValidationService  symmetricSigningAndValidationService = new DefaultJwtSigningAndValidationService(keys);
@@ -0,0 +1,117 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.crypto.password;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+import org.springframework.security.crypto.scrypt.SCryptPasswordEncoder;
+
+/**
+ * PasswordEncoderFactory<br>
+ * password encoders by id,the stored hash is prefixed with {id},
+ * DelegatingPasswordEncoder matches with the encoder of the prefix and encodes with idForEncode.<br>
+ * upgradeEncoding is true when the prefix is not idForEncode or bcrypt strength is lower,
+ * the password can be rehashed after login.
+ *
+ */
+public class PasswordEncoderFactory {
+    private static final Logger _logger = LoggerFactory.getLogger(PasswordEncoderFactory.class);
+
+    public static final String DEFAULT_ID_FOR_ENCODE = "bcrypt";
+
+    public static final int MIN_BCRYPT_STRENGTH = 10;
+
+    public static final int MAX_BCRYPT_STRENGTH = 16;
+
+    public static final int CALIBRATE_SAMPLES = 3;
+
+    /**
+     * encoders by id
+     * @param bcryptStrength
+     * @return encoders
+     */
+    public static Map<String, PasswordEncoder> createEncoders(int bcryptStrength) {
+        Map<String, PasswordEncoder> encoders = new LinkedHashMap<String, PasswordEncoder>();
+        encoders.put("bcrypt", new BCryptPasswordEncoder(bcryptStrength));
+        encoders.put("plain", NoOpPasswordEncoder.getInstance());
+        encoders.put("pbkdf2", new Pbkdf2PasswordEncoder());
+        encoders.put("scrypt", new SCryptPasswordEncoder());
+        //md
+        encoders.put("md4", new Md4PasswordEncoder());
+        encoders.put("md5", new MessageDigestPasswordEncoder("MD5"));
+        //sha
+        encoders.put("sha1", new StandardPasswordEncoder("SHA-1",""));
+        encoders.put("sha256", new StandardPasswordEncoder());
+        encoders.put("sha384", new StandardPasswordEncoder("SHA-384",""));
+        encoders.put("sha512", new StandardPasswordEncoder("SHA-512",""));
+
+        encoders.put("sm3", new SM3PasswordEncoder());
+
+        encoders.put("ldap", new LdapShaPasswordEncoder());
+        return encoders;
+    }
+
+    /**
+     * @param idForEncode
+     * @param bcryptStrength
+     * @return DelegatingPasswordEncoder
+     */
+    public static DelegatingPasswordEncoder createDelegatingPasswordEncoder(
+            String idForEncode, int bcryptStrength) {
+        Map<String, PasswordEncoder> encoders = createEncoders(bcryptStrength);
+        if (!encoders.containsKey(idForEncode)) {
+            throw new IllegalArgumentException("password encoder " + idForEncode + " not supported");
+        }
+        return new DelegatingPasswordEncoder(idForEncode, encoders);
+    }
+
+    /**
+     * bcrypt strength with encode time closest to targetMillis and not more,
+     * each strength + 1 doubles the time.<br>
+     * not lower than MIN_BCRYPT_STRENGTH.
+     * @param targetMillis
+     * @return strength
+     */
+    public static int calibrateBCryptStrength(long targetMillis) {
+        BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(MIN_BCRYPT_STRENGTH);
+        //first encode loads classes and the random
+        passwordEncoder.encode("calibrate");
+        long nanos = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATE_SAMPLES; i++) {
+            long startTime = System.nanoTime();
+            passwordEncoder.encode("calibrate");
+            nanos = Math.min(nanos, System.nanoTime() - startTime);
+        }
+        int strength = MIN_BCRYPT_STRENGTH;
+        long targetNanos = targetMillis * 1000000L;
+        while (strength < MAX_BCRYPT_STRENGTH && nanos * 2 <= targetNanos) {
+            nanos = nanos * 2;
+            strength++;
+        }
+        _logger.info("bcrypt strength {} , encode about {} ms , target {} ms",
+                strength, nanos / 1000000, targetMillis);
+        return strength;
+    }
+}
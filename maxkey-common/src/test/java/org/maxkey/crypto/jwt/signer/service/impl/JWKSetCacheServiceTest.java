@@ -0,0 +1,185 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.crypto.jwt.signer.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.maxkey.crypto.jwt.encryption.service.JwtEncryptionAndDecryptionService;
+
+import com.nimbusds.jose.EncryptionMethod;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEHeader;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.RSADecrypter;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.EncryptedJWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * JWKSetCacheService against a local http server serving the relying party jwks.
+ */
+public class JWKSetCacheServiceTest {
+
+    HttpServer server;
+
+    String jwksUri;
+
+    volatile String jwks;
+
+    volatile int status = 200;
+
+    AtomicInteger requests = new AtomicInteger();
+
+    RSAKey encryptionKey;
+
+    ECKey signingKey;
+
+    JWKSetCacheService cacheService;
+
+    @Before
+    public void setUp() throws Exception {
+        encryptionKey = new RSAKeyGenerator(2048).keyUse(KeyUse.ENCRYPTION).keyID("rp-enc").generate();
+        signingKey = new ECKeyGenerator(Curve.P_256).keyUse(KeyUse.SIGNATURE).keyID("rp-sig").generate();
+        jwks = new JWKSet(Arrays.asList(signingKey, encryptionKey)).toPublicJWKSet().toString();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/jwks", exchange -> {
+            requests.incrementAndGet();
+            byte[] body = jwks.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        jwksUri = "http://127.0.0.1:" + server.getAddress().getPort() + "/jwks";
+        //refresh after 1 second,backoff 1 second up to 2 seconds
+        cacheService = new JWKSetCacheService(1, 1, 2, 2000);
+    }
+
+    @After
+    public void tearDown() {
+        cacheService.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testEncryptAndValidate() throws Exception {
+        JwtEncryptionAndDecryptionService encrypter = cacheService.getEncrypter(jwksUri);
+        assertNotNull(encrypter);
+        assertSame(encrypter, cacheService.getEncrypter(jwksUri));
+        assertEquals(1, requests.get());
+
+        EncryptedJWT encryptedJWT = new EncryptedJWT(
+                new JWEHeader(JWEAlgorithm.RSA_OAEP_256, EncryptionMethod.A128GCM),
+                new JWTClaimsSet.Builder().subject("shimingxy").build());
+        encrypter.encryptJwt(encryptedJWT);
+        EncryptedJWT received = EncryptedJWT.parse(encryptedJWT.serialize());
+        received.decrypt(new RSADecrypter(encryptionKey));
+        assertEquals("shimingxy", received.getJWTClaimsSet().getSubject());
+
+        SignedJWT signedJWT = new SignedJWT(new JWSHeader(JWSAlgorithm.ES256),
+                new JWTClaimsSet.Builder().subject("shimingxy").build());
+        signedJWT.sign(new ECDSASigner(signingKey));
+        assertTrue(cacheService.getValidator(jwksUri).validateSignature(signedJWT));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        JwtEncryptionAndDecryptionService encrypter = cacheService.getEncrypter(jwksUri);
+        Thread.sleep(1100);
+        //served from cache while refreshing,unchanged jwks not rebuilt
+        assertSame(encrypter, cacheService.getEncrypter(jwksUri));
+        await(() -> requests.get() == 2);
+        assertSame(encrypter, cacheService.getEncrypter(jwksUri));
+
+        RSAKey rotatedKey = new RSAKeyGenerator(2048).keyUse(KeyUse.ENCRYPTION).keyID("rp-enc-2").generate();
+        jwks = new JWKSet(rotatedKey).toPublicJWKSet().toString();
+        Thread.sleep(1100);
+        assertSame(encrypter, cacheService.getEncrypter(jwksUri));
+        await(() -> cacheService.getEncrypter(jwksUri) != encrypter);
+        assertNotSame(encrypter, cacheService.getEncrypter(jwksUri));
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    public void testBackoffAfterFailures() throws Exception {
+        status = 500;
+        assertNull(cacheService.getEncrypter(jwksUri));
+        //in backoff,not fetched
+        assertNull(cacheService.getEncrypter(jwksUri));
+        assertEquals(1, requests.get());
+
+        Thread.sleep(1100);
+        assertNull(cacheService.getEncrypter(jwksUri));
+        assertEquals(2, requests.get());
+        //second failure,backoff 2 seconds
+        Thread.sleep(1100);
+        assertNull(cacheService.getEncrypter(jwksUri));
+        assertEquals(2, requests.get());
+
+        status = 200;
+        Thread.sleep(1000);
+        JwtEncryptionAndDecryptionService encrypter = cacheService.getEncrypter(jwksUri);
+        assertNotNull(encrypter);
+        assertEquals(3, requests.get());
+
+        //refresh failed,the loaded services kept
+        status = 500;
+        Thread.sleep(1100);
+        assertSame(encrypter, cacheService.getEncrypter(jwksUri));
+        await(() -> requests.get() == 4);
+        Thread.sleep(100);
+        assertSame(encrypter, cacheService.getEncrypter(jwksUri));
+        assertEquals(4, requests.get());
+    }
+
+    static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
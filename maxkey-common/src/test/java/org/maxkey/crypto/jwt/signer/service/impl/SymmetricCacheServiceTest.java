@@ -0,0 +1,78 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.crypto.jwt.signer.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.maxkey.crypto.jwt.signer.service.JwtSigningAndValidationService;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+public class SymmetricCacheServiceTest {
+
+    static final String SECRET_1 = "7a1c5d2e9f3b4c8a6d0e1f2a3b4c5d6e";
+
+    static final String SECRET_2 = "0f9e8d7c6b5a49382716a5b4c3d2e1f0";
+
+    SymmetricCacheService cacheService = new SymmetricCacheService();
+
+    AtomicInteger secretReads = new AtomicInteger();
+
+    @Test
+    public void testRebuildWhenSecretChanged() throws Exception {
+        JwtSigningAndValidationService signer = get("client-1", "v1", SECRET_1);
+        assertSame(signer, get("client-1", "v1", SECRET_1));
+        assertEquals(1, secretReads.get());
+
+        SignedJWT signedJWT = sign(signer, JWSAlgorithm.HS256);
+        assertTrue(signer.validateSignature(signedJWT));
+
+        JwtSigningAndValidationService rotated = get("client-1", "v2", SECRET_2);
+        assertNotSame(signer, rotated);
+        assertEquals(2, secretReads.get());
+        assertFalse(rotated.validateSignature(signedJWT));
+        assertEquals(1, cacheService.size());
+
+        assertNull(get("client-2", null, null));
+    }
+
+    JwtSigningAndValidationService get(String clientId, String version, String secret) {
+        return cacheService.getSymmetricValidtor(clientId, version, () -> {
+            secretReads.incrementAndGet();
+            return secret;
+        });
+    }
+
+    static SignedJWT sign(JwtSigningAndValidationService signer, JWSAlgorithm algorithm) {
+        SignedJWT signedJWT = new SignedJWT(new JWSHeader(algorithm),
+                new JWTClaimsSet.Builder().subject("shimingxy").build());
+        signer.signJwt(signedJWT);
+        return signedJWT;
+    }
+}
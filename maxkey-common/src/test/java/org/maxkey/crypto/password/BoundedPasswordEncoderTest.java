@@ -0,0 +1,126 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.crypto.password;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+public class BoundedPasswordEncoderTest {
+
+    @Test
+    public void testMatchesAndUpgrade() {
+        BoundedPasswordEncoder passwordEncoder = new BoundedPasswordEncoder(
+                PasswordEncoderFactory.createDelegatingPasswordEncoder("bcrypt", 11), 2, 10);
+        try {
+            String encoded = passwordEncoder.encode("maxkey@2022");
+            assertTrue(encoded.startsWith("{bcrypt}$2a$11$"));
+            assertTrue(passwordEncoder.matches("maxkey@2022", encoded));
+            assertFalse(passwordEncoder.matches("maxkey@2021", encoded));
+            assertFalse(passwordEncoder.upgradeEncoding(encoded));
+
+            //lower strength
+            String lowerStrength = "{bcrypt}" + new BCryptPasswordEncoder(10).encode("maxkey@2022");
+            assertTrue(passwordEncoder.matches("maxkey@2022", lowerStrength));
+            assertTrue(passwordEncoder.upgradeEncoding(lowerStrength));
+
+            //outdated encoders
+            for (String id : new String[] { "md5", "sha256", "sm3", "ldap", "plain" }) {
+                String outdated = "{" + id + "}"
+                        + PasswordEncoderFactory.createEncoders(10).get(id).encode("maxkey@2022");
+                assertTrue(id, passwordEncoder.matches("maxkey@2022", outdated));
+                assertTrue(id, passwordEncoder.upgradeEncoding(outdated));
+            }
+        } finally {
+            passwordEncoder.shutdown();
+        }
+    }
+
+    @Test
+    public void testCalibrateBCryptStrength() {
+        assertEquals(PasswordEncoderFactory.MIN_BCRYPT_STRENGTH, PasswordEncoderFactory.calibrateBCryptStrength(1));
+        int strength = PasswordEncoderFactory.calibrateBCryptStrength(200);
+        assertTrue(strength >= PasswordEncoderFactory.MIN_BCRYPT_STRENGTH);
+        assertTrue(strength <= PasswordEncoderFactory.MAX_BCRYPT_STRENGTH);
+    }
+
+    @Test
+    public void testRejectedWhenQueueFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BoundedPasswordEncoder passwordEncoder = new BoundedPasswordEncoder(
+                new BlockingPasswordEncoder(started, release), 1, 1);
+        try {
+            Thread running = new Thread(() -> passwordEncoder.matches("running", "running"));
+            running.start();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Thread waiting = new Thread(() -> passwordEncoder.matches("waiting", "waiting"));
+            waiting.start();
+            while (passwordEncoder.getQueueSize() == 0) {
+                Thread.sleep(1);
+            }
+            try {
+                passwordEncoder.matches("rejected", "rejected");
+                fail("password encoder not busy");
+            } catch (IllegalStateException e) {
+                assertEquals(1, passwordEncoder.getRejectedCount());
+            }
+            release.countDown();
+            running.join();
+            waiting.join();
+            assertTrue(passwordEncoder.matches("after", "after"));
+        } finally {
+            passwordEncoder.shutdown();
+        }
+    }
+
+    static class BlockingPasswordEncoder implements PasswordEncoder {
+        final CountDownLatch started;
+
+        final CountDownLatch release;
+
+        BlockingPasswordEncoder(CountDownLatch started, CountDownLatch release) {
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return rawPassword.toString().equals(encodedPassword);
+        }
+    }
+}
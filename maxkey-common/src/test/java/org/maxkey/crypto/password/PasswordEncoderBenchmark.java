@@ -0,0 +1,97 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.crypto.password;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * encode and matches of each encoder of PasswordEncoderFactory,
+ * the time of login password check and password change.<br>
+ * run main,bcrypt encode time of each strength and the calibrated strength print before benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+
+    static final String PASSWORD = "maxkey@2022";
+
+    @Param({ "bcrypt", "pbkdf2", "scrypt", "md4", "md5",
+            "sha1", "sha256", "sha384", "sha512", "sm3", "ldap", "plain" })
+    String id;
+
+    PasswordEncoder passwordEncoder;
+
+    String encodedPassword;
+
+    @Setup
+    public void setup() {
+        passwordEncoder = PasswordEncoderFactory.createEncoders(
+                PasswordEncoderFactory.MIN_BCRYPT_STRENGTH).get(id);
+        encodedPassword = passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public String encode() {
+        return passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordEncoder.matches(PASSWORD, encodedPassword);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int strength = PasswordEncoderFactory.MIN_BCRYPT_STRENGTH; strength <= 13; strength++) {
+            BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(strength);
+            passwordEncoder.encode(PASSWORD);
+            long startTime = System.nanoTime();
+            passwordEncoder.encode(PASSWORD);
+            System.out.println("bcrypt strength " + strength + " encode "
+                    + (System.nanoTime() - startTime) / 1000000 + " ms");
+        }
+        System.out.println("calibrated bcrypt strength for 100 ms : "
+                + PasswordEncoderFactory.calibrateBCryptStrength(100));
+
+        Options opt = new OptionsBuilder()
+                .include(PasswordEncoderBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -17,18 +17,13 @@
 
 package org.maxkey.autoconfigure;
 
-import java.util.HashMap;
 import java.util.Map;
 import javax.sql.DataSource;
 
 import org.maxkey.crypto.keystore.KeyStoreLoader;
-import org.maxkey.crypto.password.LdapShaPasswordEncoder;
-import org.maxkey.crypto.password.Md4PasswordEncoder;
-import org.maxkey.crypto.password.NoOpPasswordEncoder;
-import org.maxkey.crypto.password.MessageDigestPasswordEncoder;
+import org.maxkey.crypto.password.BoundedPasswordEncoder;
+import org.maxkey.crypto.password.PasswordEncoderFactory;
 import org.maxkey.crypto.password.PasswordReciprocal;
-import org.maxkey.crypto.password.SM3PasswordEncoder;
-import org.maxkey.crypto.password.StandardPasswordEncoder;
 import org.maxkey.util.IdGenerator;
 import org.maxkey.util.SnowFlakeId;
 import org.maxkey.web.WebContext;
@@ -40,12 +35,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
-import org.springframework.security.crypto.scrypt.SCryptPasswordEncoder;
 
 @Configuration
 public class ApplicationAutoConfiguration  implements InitializingBean {
@@ -64,40 +55,35 @@ public class ApplicationAutoConfiguration  implements InitializingBean {
     
     /**
      * Authentication Password Encoder .
+     * hash with idForEncode,bcrypt strength is fixed,
+     * calibrated on this node only when configured 0,
+     * encode and matches in bounded threads.
      * @return
      */
     @Bean(name = "passwordEncoder")
-    public PasswordEncoder passwordEncoder() {
-        String idForEncode = "bcrypt";
-        Map<String ,PasswordEncoder > encoders = new HashMap<String ,PasswordEncoder>();
-        encoders.put(idForEncode, new BCryptPasswordEncoder());
-        encoders.put("plain", NoOpPasswordEncoder.getInstance());
-        encoders.put("pbkdf2", new Pbkdf2PasswordEncoder());
-        encoders.put("scrypt", new SCryptPasswordEncoder());
-        //md
-        encoders.put("md4", new Md4PasswordEncoder());
-        encoders.put("md5", new MessageDigestPasswordEncoder("MD5"));
-        //sha
-        encoders.put("sha1", new StandardPasswordEncoder("SHA-1",""));
-        encoders.put("sha256", new StandardPasswordEncoder());
-        encoders.put("sha384", new StandardPasswordEncoder("SHA-384",""));
-        encoders.put("sha512", new StandardPasswordEncoder("SHA-512",""));
-        
-        encoders.put("sm3", new SM3PasswordEncoder());
-        
-        encoders.put("ldap", new LdapShaPasswordEncoder());
-        
+    public PasswordEncoder passwordEncoder(
+            @Value("${maxkey.password.encoder.id:bcrypt}") String idForEncode,
+            @Value("${maxkey.password.encoder.bcrypt.strength:10}") int bcryptStrength,
+            @Value("${maxkey.password.encoder.bcrypt.target-millis:100}") long bcryptTargetMillis,
+            @Value("${maxkey.password.encoder.threads:0}") int threads,
+            @Value("${maxkey.password.encoder.queue-capacity:200}") int queueCapacity) {
+        if(bcryptStrength <= 0) {
+            bcryptStrength = PasswordEncoderFactory.calibrateBCryptStrength(bcryptTargetMillis);
+        }
         //idForEncode is default for encoder
-        PasswordEncoder passwordEncoder =
-            new DelegatingPasswordEncoder(idForEncode, encoders);
+        PasswordEncoder passwordEncoder = new BoundedPasswordEncoder(
+                PasswordEncoderFactory.createDelegatingPasswordEncoder(idForEncode, bcryptStrength),
+                threads,
+                queueCapacity);
        
         if(_logger.isDebugEnabled()) {
+            Map<String ,PasswordEncoder > encoders = PasswordEncoderFactory.createEncoders(bcryptStrength);
         	 _logger.debug("Password Encoders :");
 	        for (String key : encoders.keySet()) {
 	            _logger.debug(key + "=" + encoders.get(key).getClass().getName());
 	        }
         }
-        _logger.debug("default encoder " + idForEncode);
+        _logger.debug("default encoder " + idForEncode + " , bcrypt strength " + bcryptStrength);
         return passwordEncoder;
     }
 
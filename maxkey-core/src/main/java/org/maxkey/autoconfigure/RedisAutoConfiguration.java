@@ -17,7 +17,10 @@
 
 package org.maxkey.autoconfigure;
 
+import org.maxkey.persistence.redis.BinaryRedisObjectCodec;
+import org.maxkey.persistence.redis.HexRedisObjectCodec;
 import org.maxkey.persistence.redis.RedisConnectionFactory;
+import org.maxkey.persistence.redis.RedisConnectionMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
@@ -40,6 +43,8 @@ public class RedisAutoConfiguration implements InitializingBean {
      * @param maxWait int
      * @param maxIdle int
      * @param minIdle int
+     * @param codec String binary or hex
+     * @param compressThreshold int
      * @return RedisConnectionFactory
      */
     @Bean
@@ -59,7 +64,11 @@ public class RedisAutoConfiguration implements InitializingBean {
             @Value("${spring.redis.jedis.pool.max-idle:100}")
             int maxIdle,
             @Value("${spring.redis.lettuce.pool.min-idle:0}")
-            int minIdle) {
+            int minIdle,
+            @Value("${maxkey.redis.codec:binary}")
+            String codec,
+            @Value("${maxkey.redis.compress-threshold:4096}")
+            int compressThreshold) {
         _logger.debug("redisConnFactory init .");
         RedisConnectionFactory factory = new RedisConnectionFactory();
         factory.setHostName(host);
@@ -75,8 +84,26 @@ public class RedisAutoConfiguration implements InitializingBean {
         
         factory.setPoolConfig(poolConfig);
         
+        if(codec.equalsIgnoreCase("hex")) {
+            factory.setObjectCodec(new HexRedisObjectCodec());
+        }else {
+            factory.setObjectCodec(new BinaryRedisObjectCodec(compressThreshold));
+        }
+        _logger.debug("redis object codec " + factory.getObjectCodec().getClass().getSimpleName());
+        
+        factory.initConnectionFactory();
         return factory;
     }
+    
+    /**
+     * RedisConnectionMetrics.
+     * @param redisConnFactory RedisConnectionFactory
+     * @return RedisConnectionMetrics
+     */
+    @Bean
+    public RedisConnectionMetrics redisConnectionMetrics(RedisConnectionFactory redisConnFactory) {
+        return new RedisConnectionMetrics(redisConnFactory);
+    }
 
     @Override
     public void afterPropertiesSet() throws Exception {
@@ -0,0 +1,119 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.entity;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.apache.mybatis.jpa.persistence.JpaBaseEntity;
+
+/**
+ * archive table of history table for one month
+ *
+ */
+@Entity
+@Table(name = "MXK_HISTORY_ARCHIVE")  
+public class HistoryArchive  extends JpaBaseEntity  implements Serializable{
+
+    private static final long serialVersionUID = 4619723436357052315L;
+    @Id
+    @Column
+    @GeneratedValue(strategy=GenerationType.AUTO,generator="snowflakeid")
+    String id;
+    @Column
+    String tableName;
+    //yyyyMM
+    @Column
+    String archiveMonth;
+    @Column
+    String archiveTable;
+    @Column
+    String createdDate;
+
+    public HistoryArchive() {
+        super();
+    }
+
+    public HistoryArchive(String tableName, String archiveMonth, String archiveTable) {
+        super();
+        this.tableName = tableName;
+        this.archiveMonth = archiveMonth;
+        this.archiveTable = archiveTable;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public String getArchiveMonth() {
+        return archiveMonth;
+    }
+
+    public void setArchiveMonth(String archiveMonth) {
+        this.archiveMonth = archiveMonth;
+    }
+
+    public String getArchiveTable() {
+        return archiveTable;
+    }
+
+    public void setArchiveTable(String archiveTable) {
+        this.archiveTable = archiveTable;
+    }
+
+    public String getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(String createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("HistoryArchive [id=");
+        builder.append(id);
+        builder.append(", tableName=");
+        builder.append(tableName);
+        builder.append(", archiveMonth=");
+        builder.append(archiveMonth);
+        builder.append(", archiveTable=");
+        builder.append(archiveTable);
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -18,6 +18,7 @@
 package org.maxkey.entity;
 
 import java.io.Serializable;
+import java.util.List;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -28,6 +29,8 @@ import javax.persistence.Table;
 
 import org.apache.mybatis.jpa.persistence.JpaBaseEntity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 @Entity
 @Table(name = "MXK_HISTORY_CONNECTOR")  
 public class HistoryConnector  extends JpaBaseEntity  implements Serializable{
@@ -77,6 +80,10 @@ public class HistoryConnector  extends JpaBaseEntity  implements Serializable{
     
     String endDate;
     
+    //archive tables of startDate and endDate
+    @JsonIgnore
+    List<String> archiveTables;
+    
 	@Column
 	private String instId;
 
@@ -201,6 +208,14 @@ public class HistoryConnector  extends JpaBaseEntity  implements Serializable{
         this.endDate = endDate;
     }
 
+    public List<String> getArchiveTables() {
+        return archiveTables;
+    }
+
+    public void setArchiveTables(List<String> archiveTables) {
+        this.archiveTables = archiveTables;
+    }
+
 
     public String getConAction() {
 		return conAction;
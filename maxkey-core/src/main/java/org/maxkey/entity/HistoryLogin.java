@@ -18,6 +18,7 @@
 package org.maxkey.entity;
 
 import java.io.Serializable;
+import java.util.List;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -28,6 +29,8 @@ import javax.persistence.Table;
 
 import org.apache.mybatis.jpa.persistence.JpaBaseEntity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 
 /**
  * @author Crystal.Sea
@@ -85,6 +88,10 @@ public class HistoryLogin  extends JpaBaseEntity  implements Serializable{
 	String startDate;
 	String endDate;
 	
+	//archive tables of startDate and endDate
+	@JsonIgnore
+	List<String> archiveTables;
+	
 	public HistoryLogin() {
 		super();
 	}
@@ -257,6 +264,14 @@ public class HistoryLogin  extends JpaBaseEntity  implements Serializable{
 		this.instName = instName;
 	}
 
+	public List<String> getArchiveTables() {
+		return archiveTables;
+	}
+
+	public void setArchiveTables(List<String> archiveTables) {
+		this.archiveTables = archiveTables;
+	}
+
 	@Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -17,6 +17,8 @@
 
 package org.maxkey.entity;
 
+import java.util.List;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -26,6 +28,8 @@ import javax.persistence.Table;
 
 import org.apache.mybatis.jpa.persistence.JpaBaseEntity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * @author Crystal.Sea
  *
@@ -60,6 +64,10 @@ public class HistoryLoginApps extends JpaBaseEntity {
 	String startDate;
 	String endDate;
 	
+	//archive tables of startDate and endDate
+	@JsonIgnore
+	List<String> archiveTables;
+	
 	/**
 	 * 
 	 */
@@ -212,6 +220,14 @@ public class HistoryLoginApps extends JpaBaseEntity {
 		this.endDate = endDate;
 	}
 
+	public List<String> getArchiveTables() {
+		return archiveTables;
+	}
+
+	public void setArchiveTables(List<String> archiveTables) {
+		this.archiveTables = archiveTables;
+	}
+
 
 	public String getInstId() {
 		return instId;
@@ -18,6 +18,7 @@
 package org.maxkey.entity;
 
 import java.io.Serializable;
+import java.util.List;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -26,6 +27,8 @@ import javax.persistence.Id;
 import javax.persistence.Table;
 import org.apache.mybatis.jpa.persistence.JpaBaseEntity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * .
  * @author Crystal.Sea
@@ -67,6 +70,10 @@ public class HistoryLogs extends JpaBaseEntity implements Serializable {
 	private String instName;
     String startDate;
     String endDate;
+    
+    //archive tables of startDate and endDate
+    @JsonIgnore
+    List<String> archiveTables;
 
     public HistoryLogs() {
         super();
@@ -214,6 +221,14 @@ public class HistoryLogs extends JpaBaseEntity implements Serializable {
         this.endDate = endDate;
     }
 
+    public List<String> getArchiveTables() {
+        return archiveTables;
+    }
+
+    public void setArchiveTables(List<String> archiveTables) {
+        this.archiveTables = archiveTables;
+    }
+
     public String getInstId() {
 		return instId;
 	}
@@ -18,6 +18,7 @@
 package org.maxkey.entity;
 
 import java.io.Serializable;
+import java.util.List;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -28,6 +29,8 @@ import javax.persistence.Table;
 
 import org.apache.mybatis.jpa.persistence.JpaBaseEntity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 @Entity
 @Table(name = "MXK_HISTORY_SYNCHRONIZER")  
 public class HistorySynchronizer  extends JpaBaseEntity  implements Serializable{
@@ -64,6 +67,10 @@ public class HistorySynchronizer  extends JpaBaseEntity  implements Serializable
     String startDate;
     String endDate;
     
+    //archive tables of startDate and endDate
+    @JsonIgnore
+    List<String> archiveTables;
+    
     public String getId() {
         return id;
     }
@@ -128,6 +135,14 @@ public class HistorySynchronizer  extends JpaBaseEntity  implements Serializable
     public void setEndDate(String endDate) {
         this.endDate = endDate;
     }
+
+    public List<String> getArchiveTables() {
+        return archiveTables;
+    }
+
+    public void setArchiveTables(List<String> archiveTables) {
+        this.archiveTables = archiveTables;
+    }
     public String getSessionId() {
         return sessionId;
     }
@@ -0,0 +1,131 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.entity.apps.oauth2.provider;
+
+import java.util.Date;
+
+/**
+ * row of mxk_oauth_access_token or mxk_oauth_refresh_token,
+ * token and authentication are serialized objects,
+ * tokenId and refreshToken are md5 of the token value.
+ *
+ */
+public class OAuth2StoredToken {
+
+    String tokenId;
+
+    byte[] token;
+
+    String authenticationId;
+
+    String userName;
+
+    String clientId;
+
+    byte[] authentication;
+
+    String refreshToken;
+
+    //null when never expire
+    Date expiration;
+
+    public OAuth2StoredToken() {
+        super();
+    }
+
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    public void setTokenId(String tokenId) {
+        this.tokenId = tokenId;
+    }
+
+    public byte[] getToken() {
+        return token;
+    }
+
+    public void setToken(byte[] token) {
+        this.token = token;
+    }
+
+    public String getAuthenticationId() {
+        return authenticationId;
+    }
+
+    public void setAuthenticationId(String authenticationId) {
+        this.authenticationId = authenticationId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public byte[] getAuthentication() {
+        return authentication;
+    }
+
+    public void setAuthentication(byte[] authentication) {
+        this.authentication = authentication;
+    }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+
+    public Date getExpiration() {
+        return expiration;
+    }
+
+    public void setExpiration(Date expiration) {
+        this.expiration = expiration;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("OAuth2StoredToken [tokenId=");
+        builder.append(tokenId);
+        builder.append(", authenticationId=");
+        builder.append(authenticationId);
+        builder.append(", userName=");
+        builder.append(userName);
+        builder.append(", clientId=");
+        builder.append(clientId);
+        builder.append(", expiration=");
+        builder.append(expiration);
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+/**
+ * AbstractLoginAttemptStore<br>
+ * failed login attempts of user or source ip counted in sliding window,
+ * not write to mxk_userinfo.<br>
+ * the window split to buckets of windowSeconds,
+ * attempts = current bucket + previous bucket * (rest of current window / window).<br>
+ * bucket expire after two windows.
+ *
+ */
+public abstract class AbstractLoginAttemptStore {
+
+    /**
+     * plus one attempt
+     * @param key user or ip
+     * @param windowSeconds sliding window,0 not count
+     * @return attempts in window include this one
+     */
+    public int plusAttempts(String key, int windowSeconds) {
+        if (windowSeconds <= 0) {
+            return 0;
+        }
+        long currentTime = currentTimeMillis();
+        long window = currentTime / (windowSeconds * 1000L);
+        int[] attempts = plusAttempts(
+                bucketKey(key, windowSeconds, window),
+                bucketKey(key, windowSeconds, window - 1),
+                windowSeconds * 2);
+        return slidingAttempts(attempts, currentTime, windowSeconds);
+    }
+
+    /**
+     * @param key user or ip
+     * @param windowSeconds sliding window
+     * @return attempts in window
+     */
+    public int getAttempts(String key, int windowSeconds) {
+        if (windowSeconds <= 0) {
+            return 0;
+        }
+        long currentTime = currentTimeMillis();
+        long window = currentTime / (windowSeconds * 1000L);
+        int[] attempts = getAttempts(
+                bucketKey(key, windowSeconds, window),
+                bucketKey(key, windowSeconds, window - 1));
+        return slidingAttempts(attempts, currentTime, windowSeconds);
+    }
+
+    /**
+     * login success or unlock,remove the attempts
+     * @param key user or ip
+     * @param windowSeconds sliding window
+     */
+    public void resetAttempts(String key, int windowSeconds) {
+        if (windowSeconds <= 0) {
+            return;
+        }
+        long window = currentTimeMillis() / (windowSeconds * 1000L);
+        removeAttempts(
+                bucketKey(key, windowSeconds, window),
+                bucketKey(key, windowSeconds, window - 1));
+    }
+
+    /**
+     * unlocked by other node,remove the attempts counted before the unlock
+     * @param key user or ip
+     * @param windowSeconds sliding window
+     * @param unlockTimeMillis unlock time persisted by the other node
+     */
+    public void resetAttemptsBefore(String key, int windowSeconds, long unlockTimeMillis) {
+        if (windowSeconds <= 0) {
+            return;
+        }
+        long window = currentTimeMillis() / (windowSeconds * 1000L);
+        removeAttemptsBefore(
+                bucketKey(key, windowSeconds, window),
+                bucketKey(key, windowSeconds, window - 1),
+                unlockTimeMillis);
+    }
+
+    /**
+     * plus current bucket
+     * @param currentKey
+     * @param previousKey
+     * @param expireSeconds of current bucket
+     * @return attempts of current and previous bucket
+     */
+    protected abstract int[] plusAttempts(String currentKey, String previousKey, int expireSeconds);
+
+    /**
+     * @param currentKey
+     * @param previousKey
+     * @return attempts of current and previous bucket
+     */
+    protected abstract int[] getAttempts(String currentKey, String previousKey);
+
+    protected abstract void removeAttempts(String currentKey, String previousKey);
+
+    /**
+     * shared store is removed by the unlock node,nothing to do by default
+     * @param currentKey
+     * @param previousKey
+     * @param timeMillis buckets created before
+     */
+    protected void removeAttemptsBefore(String currentKey, String previousKey, long timeMillis) {
+    }
+
+    static String bucketKey(String key, int windowSeconds, long window) {
+        return key + ":" + windowSeconds + ":" + window;
+    }
+
+    static int slidingAttempts(int[] attempts, long currentTime, int windowSeconds) {
+        long windowMillis = windowSeconds * 1000L;
+        long restMillis = windowMillis - currentTime % windowMillis;
+        return attempts[0] + (int) (attempts[1] * restMillis / windowMillis);
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
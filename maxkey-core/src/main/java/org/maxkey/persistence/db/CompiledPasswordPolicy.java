@@ -0,0 +1,137 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.maxkey.entity.PasswordPolicy;
+import org.passay.CharacterOccurrencesRule;
+import org.passay.CharacterRule;
+import org.passay.DictionaryRule;
+import org.passay.EnglishCharacterData;
+import org.passay.EnglishSequenceData;
+import org.passay.IllegalSequenceRule;
+import org.passay.LengthRule;
+import org.passay.MessageResolver;
+import org.passay.PasswordData;
+import org.passay.PasswordValidator;
+import org.passay.Rule;
+import org.passay.RuleResult;
+import org.passay.UsernameRule;
+import org.passay.WhitespaceRule;
+import org.passay.dictionary.Dictionary;
+
+/**
+ * CompiledPasswordPolicy<br>
+ * PasswordPolicy with the rules and PasswordValidator built once,
+ * not changed after build and shared by all threads.<br>
+ * PasswordPolicyValidator replace the whole object when policy changed.
+ *
+ */
+public final class CompiledPasswordPolicy {
+
+    final PasswordPolicy passwordPolicy;
+
+    final List<Rule> rules;
+
+    final PasswordValidator passwordValidator;
+
+    final long compileTime = System.currentTimeMillis();
+
+    /**
+     * @param passwordPolicy
+     * @param messageResolver
+     * @param dictionary weak password dictionary,null when not loaded
+     */
+    public CompiledPasswordPolicy(PasswordPolicy passwordPolicy,
+            MessageResolver messageResolver, Dictionary dictionary) {
+        //RandomPasswordLength =(MaxLength +MinLength)/2
+        passwordPolicy.setRandomPasswordLength(
+                Math.round((passwordPolicy.getMaxLength() + passwordPolicy.getMinLength()) / 2));
+        this.passwordPolicy = passwordPolicy;
+
+        List<Rule> ruleList = new ArrayList<Rule>();
+        ruleList.add(new WhitespaceRule());
+        ruleList.add(new LengthRule(passwordPolicy.getMinLength(), passwordPolicy.getMaxLength()));
+
+        if(passwordPolicy.getUpperCase()>0) {
+            ruleList.add(new CharacterRule(EnglishCharacterData.UpperCase, passwordPolicy.getUpperCase()));
+        }
+
+        if(passwordPolicy.getLowerCase()>0) {
+            ruleList.add(new CharacterRule(EnglishCharacterData.LowerCase, passwordPolicy.getLowerCase()));
+        }
+
+        if(passwordPolicy.getDigits()>0) {
+            ruleList.add(new CharacterRule(EnglishCharacterData.Digit, passwordPolicy.getDigits()));
+        }
+
+        if(passwordPolicy.getSpecialChar()>0) {
+            ruleList.add(new CharacterRule(EnglishCharacterData.Special, passwordPolicy.getSpecialChar()));
+        }
+
+        if(passwordPolicy.getUsername()>0) {
+            ruleList.add(new UsernameRule());
+        }
+
+        if(passwordPolicy.getOccurances()>0) {
+            ruleList.add(new CharacterOccurrencesRule(passwordPolicy.getOccurances()));
+        }
+
+        if(passwordPolicy.getAlphabetical()>0) {
+            ruleList.add(new IllegalSequenceRule(EnglishSequenceData.Alphabetical, 4, false));
+        }
+
+        if(passwordPolicy.getNumerical()>0) {
+            ruleList.add(new IllegalSequenceRule(EnglishSequenceData.Numerical, 4, false));
+        }
+
+        if(passwordPolicy.getQwerty()>0) {
+            ruleList.add(new IllegalSequenceRule(EnglishSequenceData.USQwerty, 4, false));
+        }
+
+        if(passwordPolicy.getDictionary()>0 && dictionary != null) {
+            ruleList.add(new DictionaryRule(dictionary));
+        }
+
+        this.rules = Collections.unmodifiableList(ruleList);
+        this.passwordValidator = new PasswordValidator(messageResolver, rules);
+    }
+
+    public RuleResult validate(String username, String password) {
+        return passwordValidator.validate(new PasswordData(username, password));
+    }
+
+    public List<String> getMessages(RuleResult result) {
+        return passwordValidator.getMessages(result);
+    }
+
+    public PasswordPolicy getPasswordPolicy() {
+        return passwordPolicy;
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    public long getCompileTime() {
+        return compileTime;
+    }
+}
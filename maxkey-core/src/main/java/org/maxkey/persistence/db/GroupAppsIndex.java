@@ -0,0 +1,208 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.maxkey.persistence.redis.RedisConnection;
+import org.maxkey.persistence.redis.RedisConnectionFactory;
+import org.maxkey.persistence.redis.RedisMessageSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * GroupAppsIndex<br>
+ * apps of each group in mxk_group_privileges held in memory,
+ * the authorized apps of user computed from the groups without SQL.<br>
+ * reload after refreshSeconds by one login thread,other threads use the old index during reload.<br>
+ * invalidate when group privileges changed,PUBLISH to other nodes when redis connection factory set.
+ *
+ */
+public class GroupAppsIndex {
+    private static final Logger _logger = LoggerFactory.getLogger(GroupAppsIndex.class);
+
+    public static final String INVALIDATE_CHANNEL = "MXK_GROUP_APPS_INVALIDATE";
+
+    public static final int DEFAULT_REFRESH_SECONDS = 30;
+
+    static final String GROUP_APPS_SELECT_STATEMENT = "select distinct gp.groupid,gp.appid from mxk_apps app,mxk_group_privileges gp,mxk_groups g  where app.id=gp.appid and gp.groupid=g.id";
+
+    /**
+     * message from this node is ignored
+     */
+    final String nodeId = UUID.randomUUID().toString();
+
+    JdbcTemplate jdbcTemplate;
+
+    long refreshMillis;
+
+    volatile Map<String, Set<String>> groupApps;
+
+    volatile long loadTime;
+
+    /**
+     * increase when invalidate,index loaded before invalidate is dropped
+     */
+    final AtomicLong generation = new AtomicLong();
+
+    final AtomicBoolean reloading = new AtomicBoolean();
+
+    RedisConnectionFactory connectionFactory;
+
+    RedisMessageSubscriber invalidateSubscriber;
+
+    public GroupAppsIndex(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, DEFAULT_REFRESH_SECONDS, null);
+    }
+
+    /**
+     * @param jdbcTemplate
+     * @param refreshSeconds seconds to reload the index
+     * @param connectionFactory null for single node
+     */
+    public GroupAppsIndex(JdbcTemplate jdbcTemplate, int refreshSeconds, RedisConnectionFactory connectionFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.refreshMillis = TimeUnit.SECONDS.toMillis(refreshSeconds);
+        this.connectionFactory = connectionFactory;
+        if (connectionFactory != null) {
+            this.invalidateSubscriber = new RedisMessageSubscriber(
+                    connectionFactory, INVALIDATE_CHANNEL, this::onInvalidate, this::invalidateLocal);
+            this.invalidateSubscriber.start();
+        }
+    }
+
+    /**
+     * authorized apps of the groups
+     * @param groupIds
+     * @return app ids
+     */
+    public HashSet<String> queryAuthorizedApps(Collection<String> groupIds) {
+        Map<String, Set<String>> currentGroupApps = getGroupApps();
+        HashSet<String> authorizedApps = new HashSet<String>();
+        for (String groupId : groupIds) {
+            Set<String> apps = currentGroupApps.get(groupId);
+            if (apps != null) {
+                authorizedApps.addAll(apps);
+            }
+        }
+        return authorizedApps;
+    }
+
+    Map<String, Set<String>> getGroupApps() {
+        Map<String, Set<String>> currentGroupApps = groupApps;
+        if (currentGroupApps == null) {
+            //first load or invalidated,wait for the new index
+            synchronized (this) {
+                currentGroupApps = groupApps;
+                if (currentGroupApps == null) {
+                    currentGroupApps = reload();
+                }
+            }
+        } else if (System.currentTimeMillis() - loadTime > refreshMillis
+                && reloading.compareAndSet(false, true)) {
+            try {
+                currentGroupApps = reload();
+            } catch (RuntimeException e) {
+                //use the old index,reload next time
+                _logger.error("reload group apps index error", e);
+            } finally {
+                reloading.set(false);
+            }
+        }
+        return currentGroupApps;
+    }
+
+    Map<String, Set<String>> reload() {
+        long loadGeneration = generation.get();
+        long startTime = System.currentTimeMillis();
+        HashMap<String, Set<String>> loadGroupApps = new HashMap<String, Set<String>>();
+        jdbcTemplate.query(GROUP_APPS_SELECT_STATEMENT, rs -> {
+            loadGroupApps.computeIfAbsent(rs.getString("groupid"), groupId -> new HashSet<String>())
+                .add(rs.getString("appid"));
+        });
+        Map<String, Set<String>> newGroupApps = Collections.unmodifiableMap(loadGroupApps);
+        synchronized (this) {
+            if (generation.get() == loadGeneration) {
+                groupApps = newGroupApps;
+                loadTime = startTime;
+            }
+        }
+        _logger.debug("load group apps index , {} groups , cost {} ms",
+                loadGroupApps.size(), System.currentTimeMillis() - startTime);
+        return newGroupApps;
+    }
+
+    /**
+     * group privileges changed,reload on next query
+     */
+    public void invalidate() {
+        invalidateLocal();
+        publishInvalidate();
+    }
+
+    void invalidateLocal() {
+        synchronized (this) {
+            generation.incrementAndGet();
+            groupApps = null;
+        }
+    }
+
+    void publishInvalidate() {
+        if (connectionFactory == null) {
+            return;
+        }
+        try {
+            RedisConnection conn = connectionFactory.getConnection();
+            conn.publish(INVALIDATE_CHANNEL, nodeId);
+            conn.close();
+        } catch (Exception e) {
+            //other nodes reload after refreshSeconds
+            _logger.error("publish invalidate of group apps index error", e);
+        }
+    }
+
+    void onInvalidate(String message) {
+        if (!nodeId.equals(message)) {
+            _logger.trace("invalidate group apps index from {}", message);
+            invalidateLocal();
+        }
+    }
+
+    public RedisMessageSubscriber getInvalidateSubscriber() {
+        return invalidateSubscriber;
+    }
+
+    /**
+     * stop subscribe when bean destroy
+     */
+    public void shutdown() {
+        if (invalidateSubscriber != null) {
+            invalidateSubscriber.stop();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+/**
+ * InMemoryLoginAttemptStore<br>
+ * attempts of single node in caffeine,
+ * bucket expire after expireSeconds of it's window.<br>
+ * the size is limited,spraying from many ip evict the oldest buckets.<br>
+ * unlock on other node is not shared,
+ * the buckets created before the persisted unlock time are removed.
+ *
+ */
+public class InMemoryLoginAttemptStore extends AbstractLoginAttemptStore {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000000;
+
+    final Cache<String, Attempts> attemptsStore;
+
+    public InMemoryLoginAttemptStore() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public InMemoryLoginAttemptStore(int maximumSize) {
+        attemptsStore = Caffeine.newBuilder()
+                .expireAfter(new Expiry<String, Attempts>() {
+                    @Override
+                    public long expireAfterCreate(String key, Attempts value, long currentTime) {
+                        return value.expireNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Attempts value,
+                            long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Attempts value,
+                            long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    @Override
+    protected int[] plusAttempts(String currentKey, String previousKey, int expireSeconds) {
+        int current = attemptsStore.get(currentKey,
+                key -> new Attempts(expireSeconds, currentTimeMillis())).incrementAndGet();
+        return new int[] { current, attempts(previousKey) };
+    }
+
+    @Override
+    protected int[] getAttempts(String currentKey, String previousKey) {
+        return new int[] { attempts(currentKey), attempts(previousKey) };
+    }
+
+    @Override
+    protected void removeAttempts(String currentKey, String previousKey) {
+        attemptsStore.invalidate(currentKey);
+        attemptsStore.invalidate(previousKey);
+    }
+
+    @Override
+    protected void removeAttemptsBefore(String currentKey, String previousKey, long timeMillis) {
+        attemptsStore.asMap().computeIfPresent(currentKey,
+                (key, attempts) -> attempts.createdMillis < timeMillis ? null : attempts);
+        attemptsStore.asMap().computeIfPresent(previousKey,
+                (key, attempts) -> attempts.createdMillis < timeMillis ? null : attempts);
+    }
+
+    int attempts(String key) {
+        Attempts attempts = attemptsStore.getIfPresent(key);
+        return attempts == null ? 0 : attempts.get();
+    }
+
+    public long size() {
+        return attemptsStore.estimatedSize();
+    }
+
+    static class Attempts extends AtomicInteger {
+        private static final long serialVersionUID = 1L;
+
+        final long expireNanos;
+
+        final long createdMillis;
+
+        Attempts(int expireSeconds, long createdMillis) {
+            this.expireNanos = TimeUnit.SECONDS.toNanos(expireSeconds);
+            this.createdMillis = createdMillis;
+        }
+    }
+}
@@ -17,8 +17,6 @@
 
 package org.maxkey.persistence.db;
 
-import java.sql.Types;
-
 import org.maxkey.entity.HistoryLogin;
 import org.maxkey.web.WebContext;
 import org.slf4j.Logger;
@@ -28,50 +26,41 @@ import org.springframework.jdbc.core.JdbcTemplate;
 public class LoginHistoryService {
     private static Logger _logger = LoggerFactory.getLogger(LoginHistoryService.class);
     
-    private static final String HISTORY_LOGIN_INSERT_STATEMENT = "insert into mxk_history_login (id , sessionid , userid , username , displayname , logintype , message , code , provider , sourceip , browser , platform , application , loginurl , sessionstatus ,instid)values( ? , ? , ? , ? , ? , ? , ?, ? , ? , ?, ? , ? , ?, ? , ? , ?)";
-
-    private static final String HISTORY_LOGOUT_UPDATE_STATEMENT = "update mxk_history_login set logouttime = ? ,sessionstatus = 7 where  sessionid = ?";
-
     protected JdbcTemplate jdbcTemplate;
     
+    protected LoginHistoryWriter loginHistoryWriter;
+    
     public LoginHistoryService(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, new LoginHistoryWriter(jdbcTemplate));
+    }
+    
+    public LoginHistoryService(JdbcTemplate jdbcTemplate, LoginHistoryWriter loginHistoryWriter) {
         this.jdbcTemplate = jdbcTemplate;
+        this.loginHistoryWriter = loginHistoryWriter;
     }
         
     public void login(HistoryLogin historyLogin) {
         historyLogin.setId(WebContext.genId());
         historyLogin.setLoginUrl(WebContext.getRequest().getRequestURI());
         _logger.debug(" historyLogin " + historyLogin);
-        jdbcTemplate.update(HISTORY_LOGIN_INSERT_STATEMENT,
-                new Object[] { 
-                        historyLogin.getId(), historyLogin.getSessionId(), historyLogin.getUserId(), historyLogin.getUsername(),
-                        historyLogin.getDisplayName(), historyLogin.getLoginType(), historyLogin.getMessage(), historyLogin.getCode(), 
-                        historyLogin.getProvider(), historyLogin.getSourceIp(), historyLogin.getBrowser(), historyLogin.getPlatform(),
-                        "Browser", historyLogin.getLoginUrl() , historyLogin.getSessionStatus(),historyLogin.getInstId()
-                        },
-                new int[] { 
-                        Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, 
-                        Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
-                        Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR ,Types.INTEGER,
-                        Types.VARCHAR
-                        });
+        loginHistoryWriter.login(historyLogin);
     }
     
     
     
     public void logoff(String lastLogoffTime,String sessionId) {
         _logger.debug(" sessionId {} , lastlogofftime {}" ,sessionId, lastLogoffTime);
-        jdbcTemplate.update(HISTORY_LOGOUT_UPDATE_STATEMENT,
-                new Object[] { lastLogoffTime, sessionId },                           
-                new int[] { Types.VARCHAR, Types.VARCHAR });
+        loginHistoryWriter.logoff(lastLogoffTime, sessionId);
     }
     
     public void logoff(HistoryLogin historyLogin) {
         _logger.debug(" sessionId {} , LogoutTime {}" ,
                     historyLogin.getSessionId(), historyLogin.getLogoutTime()
                 );
-        jdbcTemplate.update(HISTORY_LOGOUT_UPDATE_STATEMENT,
-                new Object[] { historyLogin.getLogoutTime(), historyLogin.getSessionId() },                           
-                new int[] { Types.VARCHAR, Types.VARCHAR });
+        loginHistoryWriter.logoff(historyLogin.getLogoutTime(), historyLogin.getSessionId());
+    }
+
+    public LoginHistoryWriter getLoginHistoryWriter() {
+        return loginHistoryWriter;
     }
 }
@@ -0,0 +1,637 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.maxkey.entity.HistoryLogin;
+import org.maxkey.entity.HistoryLoginApps;
+import org.maxkey.entity.HistoryLogs;
+import org.maxkey.entity.UserInfo;
+import org.maxkey.util.JsonUtils;
+import org.maxkey.web.WebContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * LoginHistoryWriter<br>
+ * write login history , sign on apps history , system operation logs and last login of users,
+ * async events queued in bounded queue and written by JDBC batch
+ * when batchSize reached or flushMillis passed<br>
+ * last login coalesced by user , one update for each user in flush<br>
+ * queue full , caller wait offerTimeoutMillis , then the event spilled to file , dropped and counted without spill<br>
+ * batch failed , events spilled to file in spillDirectory and written again when database is back,
+ * inserts may be written more than once and skipped by key , last login replayed only when newer than the user's,
+ * logoff updated no row while spill pending is spilled after the login of the session<br>
+ * async false , write on request thread for strict audit
+ *
+ */
+public class LoginHistoryWriter {
+    private static Logger _logger = LoggerFactory.getLogger(LoginHistoryWriter.class);
+
+    static final String HISTORY_LOGIN_INSERT_STATEMENT = "insert into mxk_history_login (id , sessionid , userid , username , displayname , logintype , message , code , provider , sourceip , browser , platform , application , loginurl , sessionstatus ,instid , logintime)values( ? , ? , ? , ? , ? , ? , ?, ? , ? , ?, ? , ? , ?, ? , ? , ? , ?)";
+
+    static final String HISTORY_LOGIN_APPS_INSERT_STATEMENT = "insert into mxk_history_login_apps (id , sessionid , appid , appname , userid , username , displayname , instid , logintime)values( ? , ? , ? , ? , ? , ? , ? , ? , ?)";
+
+    static final String HISTORY_LOGS_INSERT_STATEMENT = "insert into mxk_history_logs (id , servicename , message , content , messagetype , operatetype , username , code , createdby , createddate , instid)values( ? , ? , ? , ? , ? , ? , ? , ? , ? , ? , ?)";
+
+    static final String HISTORY_LOGOUT_UPDATE_STATEMENT = "update mxk_history_login set logouttime = ? ,sessionstatus = 7 where  sessionid = ?";
+
+    static final String LAST_LOGIN_UPDATE_STATEMENT = "update mxk_userinfo set lastlogintime = ?  , lastloginip = ? , logincount = coalesce(logincount , 0) + ? , online = "
+            + UserInfo.ONLINE.ONLINE + "  where id = ?";
+
+    //replay of spilled last login , only when newer than the written one , not counted twice
+    static final String LAST_LOGIN_REPLAY_STATEMENT = "update mxk_userinfo set lastlogintime = ?  , lastloginip = ? , logincount = coalesce(logincount , 0) + ? , online = "
+            + UserInfo.ONLINE.ONLINE + "  where id = ? and (lastlogintime is null or lastlogintime < ?)";
+
+    static final int [] HISTORY_LOGIN_TYPES = new int[] {
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR ,Types.INTEGER,
+            Types.VARCHAR, Types.TIMESTAMP
+            };
+
+    static final int [] HISTORY_LOGIN_APPS_TYPES = new int[] {
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP
+            };
+
+    static final int [] HISTORY_LOGS_TYPES = new int[] {
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP,
+            Types.VARCHAR
+            };
+
+    static final int [] HISTORY_LOGOUT_TYPES = new int[] { Types.VARCHAR, Types.VARCHAR };
+
+    static final int [] LAST_LOGIN_TYPES = new int[] { Types.VARCHAR, Types.VARCHAR, Types.INTEGER, Types.VARCHAR };
+
+    static final int [] LAST_LOGIN_REPLAY_TYPES = new int[] { Types.VARCHAR, Types.VARCHAR, Types.INTEGER, Types.VARCHAR, Types.VARCHAR };
+
+    //event types , written in this order , inserts before updates
+    static final int LOGIN         = 0;
+    static final int LOGIN_APPS    = 1;
+    static final int SYSTEM_LOGS   = 2;
+    static final int LOGOFF        = 3;
+    static final int LAST_LOGIN    = 4;
+
+    static final String [] STATEMENTS = new String[] {
+            HISTORY_LOGIN_INSERT_STATEMENT,
+            HISTORY_LOGIN_APPS_INSERT_STATEMENT,
+            HISTORY_LOGS_INSERT_STATEMENT,
+            HISTORY_LOGOUT_UPDATE_STATEMENT,
+            LAST_LOGIN_UPDATE_STATEMENT
+            };
+
+    static final int [][] ARG_TYPES = new int[][] {
+            HISTORY_LOGIN_TYPES,
+            HISTORY_LOGIN_APPS_TYPES,
+            HISTORY_LOGS_TYPES,
+            HISTORY_LOGOUT_TYPES,
+            LAST_LOGIN_TYPES
+            };
+
+    static final String SPILL_FILE_SUFFIX = ".spill";
+
+    public static final int DEFAULT_QUEUE_CAPACITY  = 10000;
+
+    public static final int DEFAULT_BATCH_SIZE      = 500;
+
+    public static final int DEFAULT_FLUSH_MILLIS    = 1000;
+
+    public static final int DEFAULT_OFFER_TIMEOUT_MILLIS = 1000;
+
+    protected JdbcTemplate jdbcTemplate;
+
+    boolean async;
+
+    int queueCapacity;
+
+    int batchSize;
+
+    int flushMillis;
+
+    long offerTimeoutMillis = DEFAULT_OFFER_TIMEOUT_MILLIS;
+
+    BlockingQueue<LoginHistoryEvent> queue;
+
+    //userId -> last login not written
+    ConcurrentHashMap<String, LastLogin> lastLogins = new ConcurrentHashMap<String, LastLogin>();
+
+    //failed batches , null for no spill
+    File spillDirectory;
+
+    volatile boolean spillPending;
+
+    AtomicLong spillSequence = new AtomicLong();
+
+    volatile boolean running;
+
+    Thread writerThread;
+
+    LongAdder droppedCount = new LongAdder();
+
+    LongAdder failedCount = new LongAdder();
+
+    LongAdder writeCount = new LongAdder();
+
+    LongAdder spilledCount = new LongAdder();
+
+    LongAdder replayedCount = new LongAdder();
+
+    LongAdder flushCount = new LongAdder();
+
+    LongAdder flushNanos = new LongAdder();
+
+    /**
+     * write on request thread
+     * @param jdbcTemplate
+     */
+    public LoginHistoryWriter(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, false, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_MILLIS);
+    }
+
+    public LoginHistoryWriter(JdbcTemplate jdbcTemplate, boolean async,
+            int queueCapacity, int batchSize, int flushMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.async = async;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.flushMillis = flushMillis;
+        if(async) {
+            queue = new ArrayBlockingQueue<LoginHistoryEvent>(queueCapacity);
+            running = true;
+            writerThread = new Thread(this::work, "login-history-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+            _logger.debug("login history writer queue capacity {} , batch size {} , flush {} ms",
+                    queueCapacity, batchSize, flushMillis);
+        }
+    }
+
+    public void login(HistoryLogin historyLogin) {
+        if(historyLogin.getId() == null) {
+            historyLogin.setId(WebContext.genId());
+        }
+        write(new LoginHistoryEvent(LOGIN, new Object[] {
+                historyLogin.getId(), historyLogin.getSessionId(), historyLogin.getUserId(), historyLogin.getUsername(),
+                historyLogin.getDisplayName(), historyLogin.getLoginType(), historyLogin.getMessage(), historyLogin.getCode(),
+                historyLogin.getProvider(), historyLogin.getSourceIp(), historyLogin.getBrowser(), historyLogin.getPlatform(),
+                "Browser", historyLogin.getLoginUrl() , historyLogin.getSessionStatus(),historyLogin.getInstId(),
+                new Timestamp(System.currentTimeMillis())
+                }));
+    }
+
+    public void loginApps(HistoryLoginApps historyLoginApps) {
+        if(historyLoginApps.getId() == null) {
+            historyLoginApps.setId(WebContext.genId());
+        }
+        write(new LoginHistoryEvent(LOGIN_APPS, new Object[] {
+                historyLoginApps.getId(), historyLoginApps.getSessionId(),
+                historyLoginApps.getAppId(), historyLoginApps.getAppName(),
+                historyLoginApps.getUserId(), historyLoginApps.getUsername(), historyLoginApps.getDisplayName(),
+                historyLoginApps.getInstId(), new Timestamp(System.currentTimeMillis())
+                }));
+    }
+
+    /**
+     * system operation logs , content rendered to json when queued,
+     * the request may change the object after
+     * @param historyLogs
+     * @param content object of content , null for historyLogs.getContent()
+     */
+    public void systemLogs(HistoryLogs historyLogs , Object content) {
+        if(historyLogs.getId() == null) {
+            historyLogs.setId(WebContext.genId());
+        }
+        write(new LoginHistoryEvent(SYSTEM_LOGS, new Object[] {
+                historyLogs.getId(), historyLogs.getServiceName(), historyLogs.getMessage(),
+                content == null ? historyLogs.getContent() : JsonUtils.object2Json(content), 
+                historyLogs.getMessageType(), historyLogs.getOperateType(),
+                historyLogs.getUsername(), historyLogs.getCode(), historyLogs.getCreatedBy(),
+                new Timestamp(System.currentTimeMillis()), historyLogs.getInstId()
+                }));
+    }
+
+    public void logoff(String lastLogoffTime,String sessionId) {
+        write(new LoginHistoryEvent(LOGOFF, new Object[] { lastLogoffTime, sessionId }));
+    }
+
+    public void updateLastLogin(UserInfo userInfo) {
+        if(async) {
+            lastLogins.compute(userInfo.getId(),
+                    (userId, lastLogin) -> new LastLogin(
+                            userInfo.getLastLoginTime(),
+                            userInfo.getLastLoginIp(),
+                            lastLogin == null ? 1 : lastLogin.count + 1));
+        }else {
+            write(new LoginHistoryEvent(LAST_LOGIN, 
+                    new Object[] { userInfo.getLastLoginTime(), userInfo.getLastLoginIp(), 1, userInfo.getId() }));
+        }
+    }
+
+    void write(LoginHistoryEvent event) {
+        if(!async) {
+            jdbcTemplate.update(STATEMENTS[event.type], event.args, ARG_TYPES[event.type]);
+            writeCount.increment();
+            return;
+        }
+        try {
+            if(queue.offer(event, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(spillDirectory != null) {
+            _logger.warn("login history queue is full , event spilled {}", event.args[0]);
+            spill(Collections.singletonList(event));
+        }else {
+            droppedCount.increment();
+            _logger.warn("login history queue is full , event dropped {}", event.args[0]);
+        }
+    }
+
+    void work() {
+        List<LoginHistoryEvent> events = new ArrayList<LoginHistoryEvent>();
+        long lastFlushTime = System.currentTimeMillis();
+        while(running) {
+            try {
+                LoginHistoryEvent event = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+                if(event != null) {
+                    events.add(event);
+                    queue.drainTo(events, batchSize - events.size());
+                }
+                if(events.size() >= batchSize
+                        || System.currentTimeMillis() - lastFlushTime >= flushMillis) {
+                    replaySpill();
+                    flush(events);
+                    events.clear();
+                    lastFlushTime = System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        queue.drainTo(events);
+        flush(events);
+    }
+
+    /**
+     * write events by JDBC batch , inserts before updates , then last logins
+     * @param events
+     */
+    void flush(List<LoginHistoryEvent> events) {
+        List<LoginHistoryEvent> flushEvents = new ArrayList<LoginHistoryEvent>(events);
+        for(String userId : lastLogins.keySet()) {
+            LastLogin lastLogin = lastLogins.remove(userId);
+            if(lastLogin != null) {
+                flushEvents.add(new LoginHistoryEvent(LAST_LOGIN,
+                        new Object[] { lastLogin.time, lastLogin.ip, lastLogin.count, userId }));
+            }
+        }
+        if(flushEvents.isEmpty()) {
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        for(List<LoginHistoryEvent> typeEvents : groupByType(flushEvents)) {
+            try {
+                int [] rows = batchUpdate(typeEvents);
+                if(typeEvents.get(0).type == LOGOFF && spillPending) {
+                    typeEvents = spillNotUpdated(typeEvents, rows);
+                }
+                writeCount.add(typeEvents.size());
+            }catch(Exception e) {
+                _logger.error("write login history error , " + typeEvents.size() + " rows to spill", e);
+                spill(typeEvents);
+            }
+        }
+
+        flushCount.increment();
+        flushNanos.add(System.nanoTime() - startTime);
+        _logger.trace("flush {} events", flushEvents.size());
+    }
+
+    int [] batchUpdate(List<LoginHistoryEvent> typeEvents) {
+        int type = typeEvents.get(0).type;
+        List<Object[]> batchArgs = new ArrayList<Object[]>(typeEvents.size());
+        for(LoginHistoryEvent event : typeEvents) {
+            batchArgs.add(event.args);
+        }
+        return jdbcTemplate.batchUpdate(STATEMENTS[type], batchArgs, ARG_TYPES[type]);
+    }
+
+    /**
+     * the login of the session may be in a spill file not replayed,
+     * logoff updated no row spilled to a newer file , replayed after the login
+     * @param typeEvents logoff events
+     * @param rows updated rows of each event
+     * @return events written
+     */
+    List<LoginHistoryEvent> spillNotUpdated(List<LoginHistoryEvent> typeEvents , int [] rows) {
+        List<LoginHistoryEvent> updatedEvents = new ArrayList<LoginHistoryEvent>(typeEvents.size());
+        List<LoginHistoryEvent> notUpdatedEvents = new ArrayList<LoginHistoryEvent>();
+        for(int i = 0 ; i < typeEvents.size() ; i++) {
+            //SUCCESS_NO_INFO is negative , count unknown
+            if(rows != null && i < rows.length && rows[i] == 0) {
+                notUpdatedEvents.add(typeEvents.get(i));
+            }else {
+                updatedEvents.add(typeEvents.get(i));
+            }
+        }
+        if(!notUpdatedEvents.isEmpty()) {
+            _logger.debug("logoff of {} sessions not found , spill pending , spilled", notUpdatedEvents.size());
+            spill(notUpdatedEvents);
+        }
+        return updatedEvents;
+    }
+
+    static List<List<LoginHistoryEvent>> groupByType(List<LoginHistoryEvent> events) {
+        List<List<LoginHistoryEvent>> groups = new ArrayList<List<LoginHistoryEvent>>();
+        for(int type = LOGIN ; type <= LAST_LOGIN ; type++) {
+            List<LoginHistoryEvent> typeEvents = new ArrayList<LoginHistoryEvent>();
+            for(LoginHistoryEvent event : events) {
+                if(event.type == type) {
+                    typeEvents.add(event);
+                }
+            }
+            if(!typeEvents.isEmpty()) {
+                groups.add(typeEvents);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * save events to a new spill file , lost when spill directory not set or not writable,
+     * called by writer thread and by callers when the queue is full
+     * @param events
+     */
+    void spill(List<LoginHistoryEvent> events) {
+        if(spillDirectory == null) {
+            failedCount.add(events.size());
+            return;
+        }
+        File spillFile = new File(spillDirectory,
+                String.format("%013d-%06d%s", System.currentTimeMillis(),
+                        spillSequence.incrementAndGet() % 1000000, SPILL_FILE_SUFFIX));
+        try {
+            writeSpillFile(spillFile, events);
+            spilledCount.add(events.size());
+            spillPending = true;
+        }catch(IOException e) {
+            failedCount.add(events.size());
+            _logger.error("spill login history error , " + events.size() + " rows lost", e);
+        }
+    }
+
+    /**
+     * write spill files from oldest , stop when database is still unavailable
+     */
+    void replaySpill() {
+        if(!spillPending) {
+            return;
+        }
+        //files spilled by callers while replaying set it again
+        spillPending = false;
+        File [] spillFiles = listSpillFiles();
+        Arrays.sort(spillFiles);
+        for(File spillFile : spillFiles) {
+            List<LoginHistoryEvent> events;
+            try {
+                events = readSpillFile(spillFile);
+            }catch(IOException | ClassNotFoundException e) {
+                _logger.error("read spill file " + spillFile + " error , skip", e);
+                spillFile.renameTo(new File(spillFile.getPath() + ".error"));
+                continue;
+            }
+            List<LoginHistoryEvent> remains = new ArrayList<LoginHistoryEvent>(events);
+            for(List<LoginHistoryEvent> typeEvents : groupByType(events)) {
+                try {
+                    replay(typeEvents);
+                    remains.removeAll(typeEvents);
+                }catch(Exception e) {
+                    _logger.debug("replay spill file {} error , retry later : {}", spillFile, e.getMessage());
+                    if(remains.size() < events.size()) {
+                        try {
+                            writeSpillFile(spillFile, remains);
+                        }catch(IOException ioe) {
+                            _logger.error("update spill file " + spillFile + " error", ioe);
+                        }
+                    }
+                    spillPending = true;
+                    return;
+                }
+            }
+            spillFile.delete();
+            _logger.info("replay spill file {} , {} rows", spillFile, events.size());
+        }
+    }
+
+    /**
+     * rows of batch may be committed before the failure,
+     * on constraint violation write row by row and skip the rows already written,
+     * last login not added again when the user's last login time is not older
+     */
+    void replay(List<LoginHistoryEvent> typeEvents) {
+        if(typeEvents.get(0).type == LAST_LOGIN) {
+            List<Object[]> batchArgs = new ArrayList<Object[]>(typeEvents.size());
+            for(LoginHistoryEvent event : typeEvents) {
+                Object[] args = Arrays.copyOf(event.args, LAST_LOGIN_REPLAY_TYPES.length);
+                args[LAST_LOGIN_REPLAY_TYPES.length - 1] = event.args[0];
+                batchArgs.add(args);
+            }
+            jdbcTemplate.batchUpdate(LAST_LOGIN_REPLAY_STATEMENT, batchArgs, LAST_LOGIN_REPLAY_TYPES);
+            replayedCount.add(typeEvents.size());
+            return;
+        }
+        try {
+            batchUpdate(typeEvents);
+            replayedCount.add(typeEvents.size());
+        }catch(DataIntegrityViolationException e) {
+            int type = typeEvents.get(0).type;
+            for(LoginHistoryEvent event : typeEvents) {
+                try {
+                    jdbcTemplate.update(STATEMENTS[type], event.args, ARG_TYPES[type]);
+                    replayedCount.increment();
+                }catch(DataIntegrityViolationException rowException) {
+                    _logger.debug("skip spilled row {} : {}", event.args[0], rowException.getMessage());
+                }
+            }
+        }
+    }
+
+    File [] listSpillFiles() {
+        File [] spillFiles = spillDirectory == null ? null :
+            spillDirectory.listFiles((dir, name) -> name.endsWith(SPILL_FILE_SUFFIX));
+        return spillFiles == null ? new File[0] : spillFiles;
+    }
+
+    static void writeSpillFile(File spillFile , List<LoginHistoryEvent> events) throws IOException {
+        File tempFile = new File(spillFile.getPath() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(tempFile))) {
+            out.writeObject(new ArrayList<LoginHistoryEvent>(events));
+        }
+        if(spillFile.exists() && !spillFile.delete() || !tempFile.renameTo(spillFile)) {
+            throw new IOException("rename " + tempFile + " to " + spillFile + " failed");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<LoginHistoryEvent> readSpillFile(File spillFile) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(spillFile))) {
+            return (List<LoginHistoryEvent>) in.readObject();
+        }
+    }
+
+    /**
+     * max wait time of caller when the queue is full , then spilled or dropped
+     * @param offerTimeoutMillis
+     */
+    public void setOfferTimeoutMillis(long offerTimeoutMillis) {
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+
+    /**
+     * directory to save the failed batches , created when not exists
+     * @param spillDirectory null or empty for no spill
+     */
+    public void setSpillDirectory(String spillDirectory) {
+        if(spillDirectory == null || spillDirectory.trim().isEmpty()) {
+            this.spillDirectory = null;
+            return;
+        }
+        File directory = new File(spillDirectory);
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            _logger.error("login history spill directory {} can not be created", spillDirectory);
+            return;
+        }
+        this.spillDirectory = directory;
+        this.spillPending = listSpillFiles().length > 0;
+        _logger.debug("login history spill directory {} , pending {}", directory, spillPending);
+    }
+
+    /**
+     * stop writer thread , events in queue written
+     */
+    public void shutdown() {
+        if(writerThread != null && running) {
+            running = false;
+            try {
+                writerThread.join(flushMillis * 2L + 5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            _logger.debug("login history writer shutdown , {} events not written", queue.size());
+        }
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public int getQueueSize() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getPendingLastLogins() {
+        return lastLogins.size();
+    }
+
+    public int getSpillFiles() {
+        return listSpillFiles().length;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    public long getWriteCount() {
+        return writeCount.sum();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.sum();
+    }
+
+    public long getReplayedCount() {
+        return replayedCount.sum();
+    }
+
+    public long getFlushCount() {
+        return flushCount.sum();
+    }
+
+    public long getFlushNanos() {
+        return flushNanos.sum();
+    }
+
+    static class LoginHistoryEvent implements Serializable {
+        private static final long serialVersionUID = -3506185626893416453L;
+
+        final int type;
+        final Object[] args;
+
+        LoginHistoryEvent(int type, Object[] args) {
+            this.type = type;
+            this.args = args;
+        }
+    }
+
+    static class LastLogin {
+        final String time;
+        final String ip;
+        final int count;
+
+        LastLogin(String time, String ip, int count) {
+            this.time = time;
+            this.ip = ip;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * LoginHistoryWriterMetrics<br>
+ * queue depth,dropped events,spill files and flush latency of LoginHistoryWriter<br>
+ * view on /actuator/metrics/maxkey.login.history.*
+ *
+ */
+public class LoginHistoryWriterMetrics implements MeterBinder {
+
+    LoginHistoryWriter loginHistoryWriter;
+
+    public LoginHistoryWriterMetrics(LoginHistoryWriter loginHistoryWriter) {
+        this.loginHistoryWriter = loginHistoryWriter;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("maxkey.login.history.queue.size", loginHistoryWriter,
+                    LoginHistoryWriter::getQueueSize)
+            .description("events waiting to write")
+            .register(registry);
+
+        Gauge.builder("maxkey.login.history.queue.capacity", loginHistoryWriter,
+                    LoginHistoryWriter::getQueueCapacity)
+            .register(registry);
+
+        Gauge.builder("maxkey.login.history.lastlogin.pending", loginHistoryWriter,
+                    LoginHistoryWriter::getPendingLastLogins)
+            .description("users last login not written")
+            .register(registry);
+
+        Gauge.builder("maxkey.login.history.spill.files", loginHistoryWriter,
+                    LoginHistoryWriter::getSpillFiles)
+            .description("spill files waiting to write")
+            .register(registry);
+
+        FunctionCounter.builder("maxkey.login.history.spilled", loginHistoryWriter,
+                    LoginHistoryWriter::getSpilledCount)
+            .description("rows saved to spill file when write failed")
+            .register(registry);
+
+        FunctionCounter.builder("maxkey.login.history.replayed", loginHistoryWriter,
+                    LoginHistoryWriter::getReplayedCount)
+            .description("rows written from spill file")
+            .register(registry);
+
+        FunctionCounter.builder("maxkey.login.history.dropped", loginHistoryWriter,
+                    LoginHistoryWriter::getDroppedCount)
+            .description("events dropped when queue is full")
+            .register(registry);
+
+        FunctionCounter.builder("maxkey.login.history.failed", loginHistoryWriter,
+                    LoginHistoryWriter::getFailedCount)
+            .description("rows lost , write and spill failed")
+            .register(registry);
+
+        FunctionCounter.builder("maxkey.login.history.written", loginHistoryWriter,
+                    LoginHistoryWriter::getWriteCount)
+            .register(registry);
+
+        FunctionTimer.builder("maxkey.login.history.flush", loginHistoryWriter,
+                    LoginHistoryWriter::getFlushCount,
+                    LoginHistoryWriter::getFlushNanos,
+                    TimeUnit.NANOSECONDS)
+            .description("JDBC batch flush time")
+            .register(registry);
+    }
+}
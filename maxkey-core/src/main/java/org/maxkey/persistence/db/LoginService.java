@@ -21,7 +21,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 
 import org.maxkey.constants.ConstantsStatus;
@@ -46,24 +48,62 @@ public class LoginService {
 
     private static final String BADPASSWORDCOUNT_RESET_UPDATE_STATEMENT = "update mxk_userinfo set badpasswordcount = ? , islocked = ? ,unlocktime = ?  where id = ?";
 
+    private static final String PASSWORD_REHASH_UPDATE_STATEMENT = "update mxk_userinfo set password = ? where id = ? and password = ?";
+
     private static final String LOGIN_USERINFO_UPDATE_STATEMENT = "update mxk_userinfo set lastlogintime = ?  , lastloginip = ? , logincount = ?, online = "
             + UserInfo.ONLINE.ONLINE + "  where id = ?";
 
     private static final String LOGOUT_USERINFO_UPDATE_STATEMENT = "update mxk_userinfo set lastlogofftime = ? , online = "
             + UserInfo.ONLINE.OFFLINE + "  where id = ?";
 
-    private static final String GROUPS_SELECT_STATEMENT = "select distinct g.id,g.name from mxk_userinfo u,mxk_groups g,mxk_group_member gm where u.id = ?  and u.id=gm.memberid and gm.groupid=g.id ";
+    private static final String GROUPS_SELECT_STATEMENT = "select distinct g.id,g.name from mxk_groups g,mxk_group_member gm where gm.memberid = ?  and gm.groupid=g.id ";
 
-    private static final String DEFAULT_USERINFO_SELECT_STATEMENT = "select * from  mxk_userinfo where username = ? ";
+    /**
+     * columns for authentication,no picture and profile
+     */
+    static final String AUTHN_USERINFO_COLUMNS = "id,username,password,decipherable,sharedsecret,sharedcounter,usertype,"
+            + "displayname,authntype,mobile,email,passwordlastsettime,passwordsettype,badpasswordcount,badpasswordtime,"
+            + "unlocktime,islocked,lastlogintime,lastloginip,lastlogofftime,logincount,status,instid";
+    
+    static final String DEFAULT_USERINFO_SELECT_STATEMENT = "select " + AUTHN_USERINFO_COLUMNS 
+            + " from mxk_userinfo where username = ? ";
+    
+    /**
+     * union all , each part use the unique index of username or mobile or email
+     */
+    static final String DEFAULT_USERINFO_SELECT_STATEMENT_USERNAME_MOBILE = DEFAULT_USERINFO_SELECT_STATEMENT
+            + " union all select " + AUTHN_USERINFO_COLUMNS 
+            + " from mxk_userinfo where mobile = ? and username <> ? ";
+    
+    static final String DEFAULT_USERINFO_SELECT_STATEMENT_USERNAME_MOBILE_EMAIL = DEFAULT_USERINFO_SELECT_STATEMENT_USERNAME_MOBILE
+            + " union all select " + AUTHN_USERINFO_COLUMNS 
+            + " from mxk_userinfo where email = ? and username <> ? and (mobile is null or mobile <> ?) ";
     
-    private static final String DEFAULT_USERINFO_SELECT_STATEMENT_USERNAME_MOBILE = "select * from  mxk_userinfo where (username = ? or mobile = ?)";
+    /**
+     * columns of session profile,picture loaded by profile page
+     */
+    static final String PROFILE_USERINFO_COLUMNS = AUTHN_USERINFO_COLUMNS
+            + ",windowsaccount,nickname,namezhspell,namezhshortspell,givenname,middlename,familyname,"
+            + "honorificprefix,honorificsuffix,formattedname,gender,birthdate,married,idtype,idcardno,website,"
+            + "mobileverified,emailverified,passwordquestion,passwordanswer,apploginauthntype,apploginpassword,"
+            + "protectedapps,timezone,locale,preferredlanguage,"
+            + "workemail,workphonenumber,workcountry,workregion,worklocality,workstreetaddress,workaddressformatted,"
+            + "workpostalcode,workfax,homeemail,homephonenumber,homecountry,homeregion,homelocality,homestreetaddress,"
+            + "homeaddressformatted,homepostalcode,homefax,employeenumber,division,costcenter,organization,"
+            + "departmentid,department,jobtitle,joblevel,managerid,manager,assistantid,assistant,entrydate,quitdate,"
+            + "startworkdate,extraattribute,createdby,createddate,modifiedby,modifieddate,gridlist,description,theme";
     
-    private static final String DEFAULT_USERINFO_SELECT_STATEMENT_USERNAME_MOBILE_EMAIL = "select * from  mxk_userinfo where (username = ? or mobile = ? or email = ?) ";
+    static final String PROFILE_USERINFO_SELECT_STATEMENT = "select " + PROFILE_USERINFO_COLUMNS
+            + " from mxk_userinfo where id = ? ";
     
-    private static final String DEFAULT_MYAPPS_SELECT_STATEMENT = "select distinct app.id,app.name from mxk_apps app,mxk_group_privileges gp,mxk_groups g  where app.id=gp.appid and gp.groupid=g.id and g.id in(%s)";
+    private static final String DEFAULT_MYAPPS_SELECT_STATEMENT = "select distinct app.id from mxk_apps app,mxk_group_privileges gp,mxk_groups g  where app.id=gp.appid and gp.groupid=g.id and g.id in(%s)";
     
     protected JdbcTemplate jdbcTemplate;
     
+    protected GroupAppsIndex groupAppsIndex;
+    
+    protected LoginHistoryWriter loginHistoryWriter;
+    
     /**
      * 1 (USERNAME)  2 (USERNAME | MOBILE) 3 (USERNAME | MOBILE | EMAIL)
      */
@@ -98,7 +138,7 @@ public class LoginService {
     public List<UserInfo> findByUsername(String username, String password) {
     	return jdbcTemplate.query(
     			DEFAULT_USERINFO_SELECT_STATEMENT, 
-    			new UserInfoRowMapper(),
+    			AUTHN_USERINFO_ROW_MAPPER,
     			username
     		);
     }
@@ -106,19 +146,43 @@ public class LoginService {
     public List<UserInfo> findByUsernameOrMobile(String username, String password) {
     	return jdbcTemplate.query(
 			 	DEFAULT_USERINFO_SELECT_STATEMENT_USERNAME_MOBILE, 
-    			new UserInfoRowMapper(),
-    			username,username
+			 	AUTHN_USERINFO_ROW_MAPPER,
+    			username,username,username
     		);
     }
     
     public List<UserInfo> findByUsernameOrMobileOrEmail(String username, String password) {
     	return jdbcTemplate.query(
 			 	DEFAULT_USERINFO_SELECT_STATEMENT_USERNAME_MOBILE_EMAIL, 
-    			new UserInfoRowMapper(),
-    			username,username,username
+			 	AUTHN_USERINFO_ROW_MAPPER,
+    			username,username,username,username,username,username
     		);
     }
     
+    /**
+     * full profile of the user authenticated,
+     * find only load the columns for authentication
+     * 
+     * @param userInfo from find
+     * @return UserInfo with all columns , userInfo if not found
+     */
+    public UserInfo loadProfile(UserInfo userInfo) {
+        List<UserInfo> listUserInfo = jdbcTemplate.query(
+                PROFILE_USERINFO_SELECT_STATEMENT, 
+                new UserInfoRowMapper(false),
+                userInfo.getId()
+            );
+        if(listUserInfo.isEmpty()) {
+            return userInfo;
+        }
+        UserInfo profile = listUserInfo.get(0);
+        //changed when authentication
+        profile.setBadPasswordCount(userInfo.getBadPasswordCount());
+        profile.setIsLocked(userInfo.getIsLocked());
+        profile.setPasswordSetType(userInfo.getPasswordSetType());
+        return profile;
+    }
+    
 
     /**
      * 閿佸畾鐢ㄦ埛锛歩slock锛�1 鐢ㄦ埛瑙ｉ攣 2 鐢ㄦ埛閿佸畾
@@ -194,22 +258,61 @@ public class LoginService {
         }
     }
     
-    public ArrayList<GrantedAuthority> queryAuthorizedApps(ArrayList<GrantedAuthority> grantedAuthoritys) {
-        String grantedAuthorityString="'ROLE_ALL_USER'";
+    /**
+     * replace the password hash of outdated encoder after login,
+     * not changed when the password changed since loaded
+     * 
+     * @param userInfo with the loaded password hash
+     * @param encodedPassword new hash of the same password
+     * @return true when updated
+     */
+    public boolean updatePasswordHash(UserInfo userInfo, String encodedPassword) {
+        try {
+            if (userInfo != null && StringUtils.isNotEmpty(userInfo.getId())) {
+                int updated = jdbcTemplate.update(PASSWORD_REHASH_UPDATE_STATEMENT,
+                        new Object[] { encodedPassword, userInfo.getId(), userInfo.getPassword() },
+                        new int[] { Types.VARCHAR, Types.VARCHAR, Types.VARCHAR });
+                if (updated > 0) {
+                    userInfo.setPassword(encodedPassword);
+                    return true;
+                }
+            }
+        } catch (Exception e) {
+            _logger.error("updatePasswordHash Exception",e);
+        }
+        return false;
+    }
+
+    /**
+     * authorized apps of the groups,from GroupAppsIndex when set
+     * 
+     * @param grantedAuthoritys groups of user
+     * @return HashSet<GrantedAuthority> of app id
+     */
+    public HashSet<GrantedAuthority> queryAuthorizedApps(ArrayList<GrantedAuthority> grantedAuthoritys) {
+        HashSet<String> groupIds = new HashSet<String>();
+        groupIds.add("ROLE_ALL_USER");
         for(GrantedAuthority grantedAuthority : grantedAuthoritys) {
-            grantedAuthorityString += ",'"+ grantedAuthority.getAuthority()+"'";
+            groupIds.add(grantedAuthority.getAuthority());
         }
         
-        ArrayList<GrantedAuthority> listAuthorizedApps = (ArrayList<GrantedAuthority>) jdbcTemplate.query(
-                String.format(DEFAULT_MYAPPS_SELECT_STATEMENT, grantedAuthorityString), 
-                new RowMapper<GrantedAuthority>() {
-            public GrantedAuthority mapRow(ResultSet rs, int rowNum) throws SQLException {
-                return new SimpleGrantedAuthority(rs.getString("id"));
+        HashSet<GrantedAuthority> authorizedApps = new HashSet<GrantedAuthority>();
+        if(groupAppsIndex != null) {
+            for(String appId : groupAppsIndex.queryAuthorizedApps(groupIds)) {
+                authorizedApps.add(new SimpleGrantedAuthority(appId));
             }
-        });
+        }else {
+            jdbcTemplate.query(
+                    String.format(DEFAULT_MYAPPS_SELECT_STATEMENT, 
+                            String.join(",", Collections.nCopies(groupIds.size(), "?"))), 
+                    rs -> {
+                        authorizedApps.add(new SimpleGrantedAuthority(rs.getString("id")));
+                    },
+                    groupIds.toArray());
+        }
 
-        _logger.debug("list Authorized Apps  " + listAuthorizedApps);
-        return listAuthorizedApps;
+        _logger.debug("list Authorized Apps  " + authorizedApps);
+        return authorizedApps;
     }
     
     public List<Groups> queryGroups(UserInfo userInfo) {
@@ -250,6 +353,11 @@ public class LoginService {
     
     
     public void updateLastLogin(UserInfo userInfo) {
+        if(loginHistoryWriter != null) {
+            //coalesced by user when async
+            loginHistoryWriter.updateLastLogin(userInfo);
+            return;
+        }
         jdbcTemplate.update(LOGIN_USERINFO_UPDATE_STATEMENT,
                 new Object[] { 
                 				userInfo.getLastLoginTime(), 
@@ -266,7 +374,55 @@ public class LoginService {
                 new int[] { 	Types.VARCHAR, Types.VARCHAR });
     }
     
+    public void setLoginHistoryWriter(LoginHistoryWriter loginHistoryWriter) {
+        this.loginHistoryWriter = loginHistoryWriter;
+    }
+    
+    public void setGroupAppsIndex(GroupAppsIndex groupAppsIndex) {
+        this.groupAppsIndex = groupAppsIndex;
+    }
+    
+    static final RowMapper<UserInfo> AUTHN_USERINFO_ROW_MAPPER = (rs, rowNum) -> {
+        UserInfo userInfo = new UserInfo();
+        userInfo.setId(rs.getString("id"));
+        userInfo.setUsername(rs.getString("username"));
+        userInfo.setPassword(rs.getString("password"));
+        userInfo.setDecipherable(rs.getString("decipherable"));
+        userInfo.setSharedSecret(rs.getString("sharedsecret"));
+        userInfo.setSharedCounter(rs.getString("sharedcounter"));
+        userInfo.setUserType(rs.getString("usertype"));
+        userInfo.setDisplayName(rs.getString("displayname"));
+        userInfo.setAuthnType(rs.getInt("authntype"));
+        userInfo.setMobile(rs.getString("mobile"));
+        userInfo.setEmail(rs.getString("email"));
+        userInfo.setPasswordLastSetTime(rs.getString("passwordlastsettime"));
+        userInfo.setPasswordSetType(rs.getInt("passwordsettype"));
+        userInfo.setBadPasswordCount(rs.getInt("badpasswordcount"));
+        userInfo.setBadPasswordTime(rs.getString("badpasswordtime"));
+        userInfo.setUnLockTime(rs.getString("unlocktime"));
+        userInfo.setIsLocked(rs.getInt("islocked"));
+        userInfo.setLastLoginTime(rs.getString("lastlogintime"));
+        userInfo.setLastLoginIp(rs.getString("lastloginip"));
+        userInfo.setLastLogoffTime(rs.getString("lastlogofftime"));
+        userInfo.setLoginCount(rs.getInt("logincount"));
+        userInfo.setStatus(rs.getInt("status"));
+        userInfo.setInstId(rs.getString("instid"));
+        return userInfo;
+    };
+    
     public class UserInfoRowMapper implements RowMapper<UserInfo> {
+        boolean picture = true;
+        
+        public UserInfoRowMapper() {
+        }
+        
+        /**
+         * @param picture false if picture not selected
+         */
+        public UserInfoRowMapper(boolean picture) {
+            this.picture = picture;
+        }
+        
         @Override
         public UserInfo mapRow(ResultSet rs, int rowNum) throws SQLException {
 
@@ -293,7 +449,9 @@ public class LoginService {
 
             userInfo.setGender(rs.getInt("gender"));
             userInfo.setBirthDate(rs.getString("birthdate"));
-            userInfo.setPicture(rs.getBytes("picture"));
+            if (picture) {
+                userInfo.setPicture(rs.getBytes("picture"));
+            }
             userInfo.setMarried(rs.getInt("married"));
             userInfo.setIdType(rs.getInt("idtype"));
             userInfo.setIdCardNo(rs.getString("idcardno"));
@@ -18,12 +18,13 @@
 package org.maxkey.persistence.db;
 
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.joda.time.DateTime;
 import org.joda.time.Duration;
@@ -37,21 +38,7 @@ import org.maxkey.entity.UserInfo;
 import org.maxkey.util.StringUtils;
 import org.maxkey.web.WebConstants;
 import org.maxkey.web.WebContext;
-import org.passay.CharacterOccurrencesRule;
-import org.passay.CharacterRule;
-import org.passay.DictionaryRule;
-import org.passay.EnglishCharacterData;
-import org.passay.EnglishSequenceData;
-import org.passay.IllegalSequenceRule;
-import org.passay.LengthRule;
-import org.passay.PasswordData;
-import org.passay.PasswordValidator;
-import org.passay.Rule;
 import org.passay.RuleResult;
-import org.passay.UsernameRule;
-import org.passay.WhitespaceRule;
-import org.passay.dictionary.Dictionary;
-import org.passay.dictionary.DictionaryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.MessageSource;
@@ -59,9 +46,8 @@ import org.springframework.core.io.ClassPathResource;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.security.authentication.BadCredentialsException;
-
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 public class PasswordPolicyValidator {
     private static Logger _logger = LoggerFactory.getLogger(PasswordPolicyValidator.class);
@@ -70,23 +56,41 @@ public class PasswordPolicyValidator {
     public static final String topWeakPasswordPropertySource      = 
             "classpath:/top_weak_password.txt";
     
-    //Cache PasswordPolicy in memory ONE_HOUR
-    protected static final Cache<String, PasswordPolicy> passwordPolicyStore = 
-            Caffeine.newBuilder()
-                .expireAfterWrite(60, TimeUnit.MINUTES)
-                .build();
+    //reload PasswordPolicy ONE_HOUR
+    public static final long PASSWORD_POLICY_REFRESH_MILLIS = TimeUnit.MINUTES.toMillis(60);
+    
+    //topWeakPassword loaded once
+    private static volatile WeakPasswordDictionary topWeakPasswordDictionary;
     
-    protected PasswordPolicy passwordPolicy;
+    /**
+     * PasswordPolicy and rules,replaced when reload or policy changed
+     */
+    protected volatile CompiledPasswordPolicy compiledPasswordPolicy;
     
-    ArrayList <Rule> passwordPolicyRuleList;
+    final AtomicBoolean compiling = new AtomicBoolean();
     
     protected JdbcTemplate jdbcTemplate;
     
     MessageSource messageSource;
     
-    public static final String PASSWORD_POLICY_VALIDATE_RESULT = "PASSWORD_POLICY_SESSION_VALIDATE_RESULT_KEY";
+    /**
+     * failed attempts of user and ip,
+     * mxk_userinfo updated only when attempts reach the policy and user locked
+     */
+    AbstractLoginAttemptStore loginAttemptStore = new InMemoryLoginAttemptStore();
     
-    private static final String PASSWORD_POLICY_KEY = "PASSWORD_POLICY_KEY";
+    /**
+     * failed attempts of one ip in ipAttemptsSeconds,0 not limit
+     */
+    int ipAttempts;
+    
+    int ipAttemptsSeconds;
+    
+    public static final String USER_ATTEMPTS_PREFIX = "USER_";
+    
+    public static final String IP_ATTEMPTS_PREFIX = "IP_";
+    
+    public static final String PASSWORD_POLICY_VALIDATE_RESULT = "PASSWORD_POLICY_SESSION_VALIDATE_RESULT_KEY";
     
     private static final String LOCK_USER_UPDATE_STATEMENT = "update mxk_userinfo set islocked = ?  , unlocktime = ? where id = ?";
 
@@ -96,6 +100,8 @@ public class PasswordPolicyValidator {
 
     private static final String BADPASSWORDCOUNT_UPDATE_STATEMENT = "update mxk_userinfo set badpasswordcount = ? , badpasswordtime = ?  where id = ?";
 
+    private static final String BADPASSWORDCOUNT_LOCK_UPDATE_STATEMENT = "update mxk_userinfo set badpasswordcount = ? , badpasswordtime = ? , islocked = ? , unlocktime = ?  where id = ?";
+
     private static final String BADPASSWORDCOUNT_RESET_UPDATE_STATEMENT = "update mxk_userinfo set badpasswordcount = ? , islocked = ? ,unlocktime = ?  where id = ?";
 
     public PasswordPolicyValidator() {
@@ -107,81 +113,86 @@ public class PasswordPolicyValidator {
     }
     
     /**
-     * init PasswordPolicy and load Rules
+     * PasswordPolicy of the compiled policy
      * @return
      */
     public PasswordPolicy getPasswordPolicy() {
-        passwordPolicy = passwordPolicyStore.getIfPresent(PASSWORD_POLICY_KEY);
-       
-        if (passwordPolicy == null) {
-            passwordPolicy = jdbcTemplate.queryForObject(PASSWORD_POLICY_SELECT_STATEMENT,
-                    new PasswordPolicyRowMapper());
-            _logger.debug("query PasswordPolicy : " + passwordPolicy);
-            passwordPolicyStore.put(PASSWORD_POLICY_KEY,passwordPolicy);
-            
-            //RandomPasswordLength =(MaxLength +MinLength)/2
-            passwordPolicy.setRandomPasswordLength(
-                Math.round(
-                        (
-                                passwordPolicy.getMaxLength() + 
-                                passwordPolicy.getMinLength()
-                        )/2
-                   )
-            );
-            
-            passwordPolicyRuleList = new ArrayList<Rule>();
-            passwordPolicyRuleList.add(new WhitespaceRule());
-            passwordPolicyRuleList.add(new LengthRule(passwordPolicy.getMinLength(), passwordPolicy.getMaxLength()));
-            
-            if(passwordPolicy.getUpperCase()>0) {
-                passwordPolicyRuleList.add(new CharacterRule(EnglishCharacterData.UpperCase, passwordPolicy.getUpperCase()));
-            }
-            
-            if(passwordPolicy.getLowerCase()>0) {
-                passwordPolicyRuleList.add(new CharacterRule(EnglishCharacterData.LowerCase, passwordPolicy.getLowerCase()));
-            }
-            
-            if(passwordPolicy.getDigits()>0) {
-                passwordPolicyRuleList.add(new CharacterRule(EnglishCharacterData.Digit, passwordPolicy.getDigits()));
-            }
-            
-            if(passwordPolicy.getSpecialChar()>0) {
-                passwordPolicyRuleList.add(new CharacterRule(EnglishCharacterData.Special, passwordPolicy.getSpecialChar()));
-            }
-            
-            if(passwordPolicy.getUsername()>0) {
-                passwordPolicyRuleList.add(new UsernameRule());
-            }
-            
-            if(passwordPolicy.getOccurances()>0) {
-                passwordPolicyRuleList.add(new CharacterOccurrencesRule(passwordPolicy.getOccurances()));
-            }
-            
-            if(passwordPolicy.getAlphabetical()>0) {
-                passwordPolicyRuleList.add(new IllegalSequenceRule(EnglishSequenceData.Alphabetical, 4, false));
-            }
-            
-            if(passwordPolicy.getNumerical()>0) {
-                passwordPolicyRuleList.add(new IllegalSequenceRule(EnglishSequenceData.Numerical, 4, false));
+        return getCompiledPasswordPolicy().getPasswordPolicy();
+    }
+    
+    /**
+     * first load wait for the policy,
+     * reload after ONE_HOUR by one thread,other threads use the old policy during reload
+     * @return CompiledPasswordPolicy
+     */
+    public CompiledPasswordPolicy getCompiledPasswordPolicy() {
+        CompiledPasswordPolicy currentPasswordPolicy = compiledPasswordPolicy;
+        if (currentPasswordPolicy == null) {
+            synchronized (this) {
+                currentPasswordPolicy = compiledPasswordPolicy;
+                if (currentPasswordPolicy == null) {
+                    currentPasswordPolicy = compile(queryPasswordPolicy());
+                    compiledPasswordPolicy = currentPasswordPolicy;
+                }
             }
-            
-            if(passwordPolicy.getQwerty()>0) {
-                passwordPolicyRuleList.add(new IllegalSequenceRule(EnglishSequenceData.USQwerty, 4, false));
+        } else if (System.currentTimeMillis() - currentPasswordPolicy.getCompileTime() > PASSWORD_POLICY_REFRESH_MILLIS
+                && compiling.compareAndSet(false, true)) {
+            try {
+                currentPasswordPolicy = compile(queryPasswordPolicy());
+                compiledPasswordPolicy = currentPasswordPolicy;
+            } catch (RuntimeException e) {
+                _logger.error("reload PasswordPolicy error", e);
+            } finally {
+                compiling.set(false);
             }
-                        
-            if(passwordPolicy.getDictionary()>0 ) {
-                try {
-                    ClassPathResource dictFile= 
-                            new ClassPathResource(
-                                    ConstantsProperties.classPathResource(topWeakPasswordPropertySource));
-                    Dictionary dictionary =new DictionaryBuilder().addReader(new InputStreamReader(dictFile.getInputStream())).build();
-                    passwordPolicyRuleList.add(new DictionaryRule(dictionary));
-                }catch(Exception e) {
-                    e.printStackTrace();
+        }
+        return currentPasswordPolicy;
+    }
+    
+    /**
+     * PasswordPolicy changed,compile the new policy now
+     */
+    public void refresh() {
+        compiledPasswordPolicy = compile(queryPasswordPolicy());
+    }
+    
+    PasswordPolicy queryPasswordPolicy() {
+        PasswordPolicy passwordPolicy = jdbcTemplate.queryForObject(PASSWORD_POLICY_SELECT_STATEMENT,
+                new PasswordPolicyRowMapper());
+        _logger.debug("query PasswordPolicy : " + passwordPolicy);
+        return passwordPolicy;
+    }
+    
+    CompiledPasswordPolicy compile(PasswordPolicy passwordPolicy) {
+        return new CompiledPasswordPolicy(
+                passwordPolicy,
+                new PasswordPolicyMessageResolver(messageSource),
+                passwordPolicy.getDictionary() > 0 ? getTopWeakPasswordDictionary() : null);
+    }
+    
+    /**
+     * load top_weak_password.txt once,try again next compile when load fail
+     * @return WeakPasswordDictionary
+     */
+    static WeakPasswordDictionary getTopWeakPasswordDictionary() {
+        if (topWeakPasswordDictionary == null) {
+            synchronized (PasswordPolicyValidator.class) {
+                if (topWeakPasswordDictionary == null) {
+                    try {
+                        ClassPathResource dictFile= 
+                                new ClassPathResource(
+                                        ConstantsProperties.classPathResource(topWeakPasswordPropertySource));
+                        topWeakPasswordDictionary = WeakPasswordDictionary.load(
+                                new InputStreamReader(dictFile.getInputStream(), StandardCharsets.UTF_8));
+                        _logger.debug("load top weak password dictionary , {} words" ,
+                                topWeakPasswordDictionary.size());
+                    }catch(Exception e) {
+                        _logger.error("load top weak password dictionary error", e);
+                    }
                 }
             }
         }
-        return passwordPolicy;
+        return topWeakPasswordDictionary;
     }
     
     /**
@@ -200,12 +211,9 @@ public class PasswordPolicyValidator {
            return false;
        }
        
-       getPasswordPolicy();
-
-       PasswordValidator validator = new PasswordValidator(
-               new PasswordPolicyMessageResolver(messageSource),passwordPolicyRuleList);
+       CompiledPasswordPolicy currentPasswordPolicy = getCompiledPasswordPolicy();
        
-       RuleResult result = validator.validate(new PasswordData(username,password));
+       RuleResult result = currentPasswordPolicy.validate(username,password);
        
        if (result.isValid()) {
            _logger.debug("Password is valid");
@@ -213,7 +221,7 @@ public class PasswordPolicyValidator {
        } else {
            _logger.debug("Invalid password:");
            String passwordPolicyMessage = "";
-           for (String msg : validator.getMessages(result)) {
+           for (String msg : currentPasswordPolicy.getMessages(result)) {
                passwordPolicyMessage = passwordPolicyMessage + msg + "<br>";
                _logger.debug("Rule Message {}" , msg);
            }
@@ -230,11 +238,25 @@ public class PasswordPolicyValidator {
     */
    public boolean passwordPolicyValid(UserInfo userInfo) {
        
-       getPasswordPolicy();
+       PasswordPolicy passwordPolicy = getPasswordPolicy();
        
        DateTime currentdateTime = new DateTime();
         /*
-         * check login attempts fail times
+         * check login attempts fail times of ip
+         */
+        String ipAddress = getRequestIpAddress();
+        if (ipAttempts > 0 && ipAddress != null) {
+            int attempts = loginAttemptStore.getAttempts(IP_ATTEMPTS_PREFIX + ipAddress, ipAttemptsSeconds);
+            if (attempts >= ipAttempts) {
+                _logger.debug("login Attempts of ip {} is {}" , ipAddress , attempts);
+                throw new BadCredentialsException(
+                        WebContext.getI18nValue("login.error.attempts.ip",
+                                new Object[]{ipAddress,(ipAttemptsSeconds + 59) / 60}) 
+                        );
+            }
+        }
+        /*
+         * check login attempts fail times,BadPasswordCount persisted when user locked
          */
         if (userInfo.getBadPasswordCount() >= passwordPolicy.getAttempts()) {
             _logger.debug("login Attempts is " + userInfo.getBadPasswordCount());
@@ -258,7 +280,10 @@ public class PasswordPolicyValidator {
                 _logger.debug("resetAttempts ...");
                 resetAttempts(userInfo);
             }else {
-                lockUser(userInfo);
+                //locked when attempts reach the policy,lock the user of old BadPasswordCount
+                if(userInfo.getIsLocked() != ConstantsStatus.LOCK) {
+                    lockUser(userInfo);
+                }
                 throw new BadCredentialsException(
                         WebContext.getI18nValue("login.error.attempts",
                                 new Object[]{userInfo.getBadPasswordCount(),passwordPolicy.getDuration()}) 
@@ -285,7 +310,7 @@ public class PasswordPolicyValidator {
     }
    
    public void applyPasswordPolicy(UserInfo userInfo) {
-       getPasswordPolicy();
+       PasswordPolicy passwordPolicy = getPasswordPolicy();
        DateTime currentdateTime = new DateTime();
        //initial password need change
        if(userInfo.getLoginCount()<=0) {
@@ -361,6 +386,7 @@ public class PasswordPolicyValidator {
                        new Object[] { ConstantsStatus.ACTIVE, new Date(), userInfo.getId() },
                        new int[] { Types.VARCHAR, Types.TIMESTAMP, Types.VARCHAR });
                userInfo.setIsLocked(ConstantsStatus.ACTIVE);
+               resetLoginAttempts(userInfo);
            }
        } catch (Exception e) {
            _logger.error("unlockUser Exception",e);
@@ -379,6 +405,8 @@ public class PasswordPolicyValidator {
                        new Object[] { 0, ConstantsStatus.ACTIVE, new Date(), userInfo.getId() },
                        new int[] { Types.INTEGER, Types.INTEGER, Types.TIMESTAMP, Types.VARCHAR });
                userInfo.setIsLocked(ConstantsStatus.ACTIVE);
+               userInfo.setBadPasswordCount(0);
+               resetLoginAttempts(userInfo);
            }
        } catch (Exception e) {
            _logger.error("resetAttempts Exception",e);
@@ -400,24 +428,114 @@ public class PasswordPolicyValidator {
        }
    }
    
+   /**
+    * BadPasswordCount++ in loginAttemptStore,
+    * persist BadPasswordCount and lock user when attempts reach the policy
+    * 
+    * @param userInfo
+    */
    public void plusBadPasswordCount(UserInfo userInfo) {
        if (userInfo != null && StringUtils.isNotEmpty(userInfo.getId())) {
-           userInfo.setBadPasswordCount(userInfo.getBadPasswordCount() + 1);
-           setBadPasswordCount(userInfo.getId(),userInfo.getBadPasswordCount());
-           
+           PasswordPolicy passwordPolicy = getPasswordPolicy();
+           String ipAddress = getRequestIpAddress();
+           if (ipAttempts > 0 && ipAddress != null) {
+               loginAttemptStore.plusAttempts(IP_ATTEMPTS_PREFIX + ipAddress, ipAttemptsSeconds);
+           }
+           //unlocked by other node,the attempts before unlock are not counted
+           long unlockTime = parseTimeMillis(userInfo.getUnLockTime());
+           if (unlockTime > 0) {
+               loginAttemptStore.resetAttemptsBefore(
+                       USER_ATTEMPTS_PREFIX + userInfo.getId(), getUserAttemptsSeconds(), unlockTime);
+           }
+           int attempts = loginAttemptStore.plusAttempts(
+                   USER_ATTEMPTS_PREFIX + userInfo.getId(), getUserAttemptsSeconds());
+           userInfo.setBadPasswordCount(attempts);
+           if (attempts >= passwordPolicy.getAttempts() 
+                   && userInfo.getIsLocked() != ConstantsStatus.LOCK) {
+               lockAttempts(userInfo);
+           }
        }
    }
    
+   /**
+    * reset attempts after login success,
+    * update mxk_userinfo when BadPasswordCount persisted
+    * 
+    * @param userInfo
+    */
    public void resetBadPasswordCount(UserInfo userInfo) {
        if (userInfo != null && StringUtils.isNotEmpty(userInfo.getId())) {
+           resetLoginAttempts(userInfo);
            if(userInfo.getBadPasswordCount()>0) {
                setBadPasswordCount(userInfo.getId(),0);
            } 
        }
    }
    
+   /**
+    * remove the attempts of user from loginAttemptStore,
+    * called when user unlocked or BadPasswordCount reset
+    * 
+    * @param userInfo
+    */
+   public void resetLoginAttempts(UserInfo userInfo) {
+       if (userInfo != null && StringUtils.isNotEmpty(userInfo.getId())) {
+           loginAttemptStore.resetAttempts(USER_ATTEMPTS_PREFIX + userInfo.getId(), getUserAttemptsSeconds());
+       }
+   }
+   
+   /**
+    * @param time yyyy-MM-dd HH:mm:ss
+    * @return millis , 0 when empty or invalid
+    */
+   static long parseTimeMillis(String time) {
+       if (time == null || time.length() < 19) {
+           return 0;
+       }
+       try {
+           return DateTime.parse(time.substring(0, 19),
+                   DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss")).getMillis();
+       } catch (IllegalArgumentException e) {
+           return 0;
+       }
+   }
+   
+   /**
+    * BadPasswordCount and lock user in one update
+    * 
+    * @param userInfo
+    */
+   void lockAttempts(UserInfo userInfo) {
+       try {
+           Date currentDate = new Date();
+           jdbcTemplate.update(BADPASSWORDCOUNT_LOCK_UPDATE_STATEMENT,
+                   new Object[] { userInfo.getBadPasswordCount(), currentDate, 
+                           ConstantsStatus.LOCK, currentDate, userInfo.getId() },
+                   new int[] { Types.INTEGER, Types.TIMESTAMP, Types.INTEGER, Types.TIMESTAMP, Types.VARCHAR });
+           userInfo.setBadPasswordTime(new DateTime(currentDate).toString("yyyy-MM-dd HH:mm:ss"));
+           userInfo.setIsLocked(ConstantsStatus.LOCK);
+       } catch (Exception e) {
+           _logger.error("lockAttempts Exception",e);
+       }
+   }
+   
+   /**
+    * sliding window of user attempts is the lock duration of policy
+    * @return seconds
+    */
+   int getUserAttemptsSeconds() {
+       return (int) TimeUnit.HOURS.toSeconds(getPasswordPolicy().getDuration());
+   }
+   
+   String getRequestIpAddress() {
+       if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes) {
+           return WebContext.getRequestIpAddress();
+       }
+       return null;
+   }
+   
    public String generateRandomPassword() {
-       getPasswordPolicy();
+       PasswordPolicy passwordPolicy = getPasswordPolicy();
        PasswordGen passwordGen = new PasswordGen(
                passwordPolicy.getRandomPasswordLength()
        );
@@ -430,7 +548,24 @@ public class PasswordPolicyValidator {
    }
    
    public void setPasswordPolicy(PasswordPolicy passwordPolicy) {
-    this.passwordPolicy = passwordPolicy;
+    this.compiledPasswordPolicy = compile(passwordPolicy);
+   }
+
+   public AbstractLoginAttemptStore getLoginAttemptStore() {
+       return loginAttemptStore;
+   }
+
+   public void setLoginAttemptStore(AbstractLoginAttemptStore loginAttemptStore) {
+       this.loginAttemptStore = loginAttemptStore;
+   }
+
+   /**
+    * @param ipAttempts failed attempts of one ip,0 not limit
+    * @param ipAttemptsSeconds sliding window
+    */
+   public void setIpAttempts(int ipAttempts, int ipAttemptsSeconds) {
+       this.ipAttempts = ipAttempts;
+       this.ipAttemptsSeconds = ipAttemptsSeconds;
    }
 
  
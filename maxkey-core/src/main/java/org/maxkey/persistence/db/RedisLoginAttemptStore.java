@@ -0,0 +1,83 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.maxkey.persistence.redis.RedisConnection;
+import org.maxkey.persistence.redis.RedisConnectionFactory;
+
+/**
+ * RedisLoginAttemptStore<br>
+ * attempts shared by cluster nodes,INCR the bucket with EXPIRE in one pipeline.
+ *
+ */
+public class RedisLoginAttemptStore extends AbstractLoginAttemptStore {
+
+    public static final String PREFIX = "REDIS_LOGIN_ATTEMPTS_";
+
+    RedisConnectionFactory connectionFactory;
+
+    public RedisLoginAttemptStore(RedisConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    @Override
+    protected int[] plusAttempts(String currentKey, String previousKey, int expireSeconds) {
+        RedisConnection conn = connectionFactory.getConnection();
+        try {
+            conn.openPipeline();
+            conn.incr(PREFIX + currentKey);
+            conn.expire(PREFIX + currentKey, expireSeconds);
+            conn.get(PREFIX + previousKey);
+            List<Object> results = conn.closePipeline();
+            return new int[] { ((Long) results.get(0)).intValue(), attempts(results.get(2)) };
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Override
+    protected int[] getAttempts(String currentKey, String previousKey) {
+        RedisConnection conn = connectionFactory.getConnection();
+        try {
+            conn.openPipeline();
+            conn.get(PREFIX + currentKey);
+            conn.get(PREFIX + previousKey);
+            List<Object> results = conn.closePipeline();
+            return new int[] { attempts(results.get(0)), attempts(results.get(1)) };
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Override
+    protected void removeAttempts(String currentKey, String previousKey) {
+        RedisConnection conn = connectionFactory.getConnection();
+        try {
+            conn.delete(Arrays.asList(PREFIX + currentKey, PREFIX + previousKey));
+        } finally {
+            conn.close();
+        }
+    }
+
+    static int attempts(Object value) {
+        return value == null ? 0 : Integer.parseInt(value.toString());
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import org.passay.dictionary.Dictionary;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.primitives.UnsignedBytes;
+
+/**
+ * WeakPasswordDictionary<br>
+ * case insensitive words sorted in one UTF-8 byte array with offsets,
+ * a few bytes per word instead of a String object.<br>
+ * bloom filter check before the binary search,most passwords are not weak and return without search.<br>
+ * immutable,search from any thread.
+ *
+ */
+public class WeakPasswordDictionary implements Dictionary {
+
+    static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    final byte[] words;
+
+    /**
+     * word i is words[offsets[i] , offsets[i + 1])
+     */
+    final int[] offsets;
+
+    final BloomFilter<CharSequence> bloomFilter;
+
+    public WeakPasswordDictionary(Collection<String> wordList) {
+        List<byte[]> sortedWords = new ArrayList<byte[]>(wordList.size());
+        for (String word : wordList) {
+            if (word != null && !word.isEmpty()) {
+                sortedWords.add(encode(word));
+            }
+        }
+        sortedWords.sort(UnsignedBytes.lexicographicalComparator());
+        List<byte[]> distinctWords = new ArrayList<byte[]>(sortedWords.size());
+        int length = 0;
+        for (byte[] word : sortedWords) {
+            if (distinctWords.isEmpty() || !Arrays.equals(word, distinctWords.get(distinctWords.size() - 1))) {
+                distinctWords.add(word);
+                length += word.length;
+            }
+        }
+
+        words = new byte[length];
+        offsets = new int[distinctWords.size() + 1];
+        bloomFilter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                Math.max(distinctWords.size(), 1), FALSE_POSITIVE_PROBABILITY);
+        int index = 0;
+        int offset = 0;
+        for (byte[] word : distinctWords) {
+            System.arraycopy(word, 0, words, offset, word.length);
+            offsets[index++] = offset;
+            offset += word.length;
+            bloomFilter.put(new String(word, StandardCharsets.UTF_8));
+        }
+        offsets[index] = offset;
+    }
+
+    /**
+     * one word per line
+     * @param reader
+     * @return WeakPasswordDictionary
+     * @throws IOException
+     */
+    public static WeakPasswordDictionary load(Reader reader) throws IOException {
+        List<String> wordList = new ArrayList<String>();
+        try (BufferedReader bufferedReader = new BufferedReader(reader)) {
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                wordList.add(line.trim());
+            }
+        }
+        return new WeakPasswordDictionary(wordList);
+    }
+
+    @Override
+    public boolean search(String word) {
+        if (word == null || word.isEmpty()) {
+            return false;
+        }
+        String lowerCaseWord = word.toLowerCase(Locale.ROOT);
+        if (!bloomFilter.mightContain(lowerCaseWord)) {
+            return false;
+        }
+        byte[] key = lowerCaseWord.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = offsets.length - 2;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compare = compare(middle, key);
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return bytes of words and offsets
+     */
+    public long getBytes() {
+        return words.length + offsets.length * 4L;
+    }
+
+    int compare(int index, byte[] key) {
+        int start = offsets[index];
+        int length = offsets[index + 1] - start;
+        int minLength = Math.min(length, key.length);
+        for (int i = 0; i < minLength; i++) {
+            int compare = (words[start + i] & 0xff) - (key[i] & 0xff);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return length - key.length;
+    }
+
+    static byte[] encode(String word) {
+        return word.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+    }
+}
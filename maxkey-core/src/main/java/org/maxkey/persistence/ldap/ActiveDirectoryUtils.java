@@ -72,42 +72,54 @@ public class ActiveDirectoryUtils extends LdapUtils {
  	        _logger.info("SECURITY_PRINCIPAL:" + principal);
  	        _logger.info("SECURITY_CREDENTIALS:" + credentials);
  	        // LDAP
- 	        props = new Properties();
- 	        props.setProperty(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
- 	        props.setProperty(Context.URL_PKG_PREFIXES, "com.sun.jndi.url");
- 	        props.setProperty(Context.REFERRAL, referral);
- 	        props.setProperty(Context.SECURITY_AUTHENTICATION, "simple");
+ 	        Properties properties = new Properties();
+ 	        properties.setProperty(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+ 	        properties.setProperty(Context.URL_PKG_PREFIXES, "com.sun.jndi.url");
+ 	        properties.setProperty(Context.REFERRAL, referral);
+ 	        properties.setProperty(Context.SECURITY_AUTHENTICATION, "simple");
  	
- 	        props.setProperty(Context.PROVIDER_URL, providerUrl);
- 	        
- 	        if (domain.indexOf(".") > -1) {
- 	        	activeDirectoryDomain = domain.substring(0, domain.indexOf("."));
- 	        }else {
- 	        	activeDirectoryDomain = domain;
- 	        }
+ 	        properties.setProperty(Context.PROVIDER_URL, providerUrl);
  	        
+ 	        String activeDirectoryPrincipal = getActiveDirectoryPrincipal(principal);
  	        _logger.info("PROVIDER_DOMAIN:" + activeDirectoryDomain + " for " + domain);
- 	        String activeDirectoryPrincipal = activeDirectoryDomain + "\\" + principal;
  	        _logger.debug("Active Directory SECURITY_PRINCIPAL : " + activeDirectoryPrincipal);
- 	        props.setProperty(Context.SECURITY_PRINCIPAL, activeDirectoryPrincipal);
- 	        props.setProperty(Context.SECURITY_CREDENTIALS, credentials);
+ 	        properties.setProperty(Context.SECURITY_PRINCIPAL, activeDirectoryPrincipal);
+ 	        properties.setProperty(Context.SECURITY_CREDENTIALS, credentials);
  	
  	        if (ssl && providerUrl.toLowerCase().startsWith("ldaps")) {
  	        	_logger.info("ldaps security protocol.");
  	            System.setProperty("javax.net.ssl.trustStore", trustStore);
  	            System.setProperty("javax.net.ssl.trustStorePassword", trustStorePassword);
- 	            props.put(Context.SECURITY_PROTOCOL, "ssl");
+ 	            properties.put(Context.SECURITY_PROTOCOL, "ssl");
  	        }
- 	        props.put(Context.REFERRAL, "follow");
+ 	        properties.put(Context.REFERRAL, "follow");
+ 	        initTimeout(properties);
+ 	        props = properties;
      	 }
     }
 
+    /**
+     * @param username
+     * @return DOMAIN\\username for bind
+     */
+    public String getActiveDirectoryPrincipal(String username) {
+        if(activeDirectoryDomain == null) {
+            if (domain.indexOf(".") > -1) {
+                activeDirectoryDomain = domain.substring(0, domain.indexOf("."));
+            }else {
+                activeDirectoryDomain = domain;
+            }
+        }
+        return activeDirectoryDomain + "\\" + username;
+    }
+
     public String getDomain() {
         return domain;
     }
 
     public void setDomain(String domain) {
         this.domain = domain.toUpperCase();
+        this.activeDirectoryDomain = null;
     }
 
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.ldap;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.ldap.LdapContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * LdapContextPool<br>
+ * idle LdapContexts of one server,last released is borrowed first,
+ * contexts idle longer than idleMillis are closed when borrowed.<br>
+ * the pool not create contexts,borrow return null when no idle context.
+ *
+ */
+public class LdapContextPool {
+    private static final Logger _logger = LoggerFactory.getLogger(LdapContextPool.class);
+
+    final LinkedBlockingDeque<IdleContext> idleContexts;
+
+    final int maxIdle;
+
+    final long idleMillis;
+
+    final AtomicLong borrowedCount = new AtomicLong();
+
+    final AtomicLong reusedCount = new AtomicLong();
+
+    /**
+     * @param maxIdle max idle contexts,0 for not pooled
+     * @param idleMillis
+     */
+    public LdapContextPool(int maxIdle, long idleMillis) {
+        this.maxIdle = maxIdle;
+        this.idleMillis = idleMillis;
+        this.idleContexts = new LinkedBlockingDeque<IdleContext>(Math.max(maxIdle, 1));
+    }
+
+    /**
+     * @return idle context or null
+     */
+    public LdapContext borrow() {
+        borrowedCount.incrementAndGet();
+        IdleContext idleContext;
+        while ((idleContext = idleContexts.pollFirst()) != null) {
+            if (System.currentTimeMillis() - idleContext.releaseTime < idleMillis) {
+                reusedCount.incrementAndGet();
+                return idleContext.context;
+            }
+            close(idleContext.context);
+        }
+        return null;
+    }
+
+    /**
+     * context back to pool,closed when the pool is full
+     * @param context
+     */
+    public void release(LdapContext context) {
+        if (context == null) {
+            return;
+        }
+        if (maxIdle <= 0 || !idleContexts.offerFirst(new IdleContext(context))) {
+            close(context);
+        }
+    }
+
+    /**
+     * context broken,not back to pool
+     * @param context
+     */
+    public void invalidate(LdapContext context) {
+        close(context);
+    }
+
+    public void clear() {
+        IdleContext idleContext;
+        while ((idleContext = idleContexts.pollFirst()) != null) {
+            close(idleContext.context);
+        }
+    }
+
+    public int getIdleCount() {
+        return idleContexts.size();
+    }
+
+    public long getBorrowedCount() {
+        return borrowedCount.get();
+    }
+
+    public long getReusedCount() {
+        return reusedCount.get();
+    }
+
+    void close(LdapContext context) {
+        if (context != null) {
+            try {
+                context.close();
+            } catch (Exception e) {
+                _logger.debug("close ldap context error " + e.getMessage());
+            }
+        }
+    }
+
+    static class IdleContext {
+        final LdapContext context;
+
+        final long releaseTime = System.currentTimeMillis();
+
+        IdleContext(LdapContext context) {
+            this.context = context;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.ldap;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * LdapMetrics<br>
+ * connect,search and bind latency and failures of each ldap server,tag server is the provider url<br>
+ * view on /actuator/metrics/maxkey.ldap.*
+ *
+ */
+public class LdapMetrics implements MeterBinder {
+
+    List<LdapStatistics> ldapStatistics;
+
+    public LdapMetrics(List<LdapStatistics> ldapStatistics) {
+        this.ldapStatistics = ldapStatistics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (LdapStatistics statistics : ldapStatistics) {
+            String server = String.valueOf(statistics.getProviderUrl());
+
+            FunctionTimer.builder("maxkey.ldap.connect", statistics,
+                        LdapStatistics::getConnectCount,
+                        LdapStatistics::getConnectNanos,
+                        TimeUnit.NANOSECONDS)
+                .tag("server", server)
+                .description("new connections,pooled connections not counted")
+                .register(registry);
+
+            FunctionTimer.builder("maxkey.ldap.search", statistics,
+                        LdapStatistics::getSearchCount,
+                        LdapStatistics::getSearchNanos,
+                        TimeUnit.NANOSECONDS)
+                .tag("server", server)
+                .register(registry);
+
+            FunctionTimer.builder("maxkey.ldap.bind", statistics,
+                        LdapStatistics::getBindCount,
+                        LdapStatistics::getBindNanos,
+                        TimeUnit.NANOSECONDS)
+                .tag("server", server)
+                .description("password checks,invalid credentials included")
+                .register(registry);
+
+            FunctionCounter.builder("maxkey.ldap.failures", statistics,
+                        LdapStatistics::getFailureCount)
+                .tag("server", server)
+                .description("connect,search or bind failed by server error")
+                .register(registry);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.ldap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LdapStatistics<br>
+ * connect,search and bind count and latency of one ldap server.
+ *
+ */
+public class LdapStatistics {
+
+    final String providerUrl;
+
+    final LongAdder connectCount = new LongAdder();
+
+    final LongAdder connectNanos = new LongAdder();
+
+    final LongAdder searchCount = new LongAdder();
+
+    final LongAdder searchNanos = new LongAdder();
+
+    final LongAdder bindCount = new LongAdder();
+
+    final LongAdder bindNanos = new LongAdder();
+
+    final LongAdder failureCount = new LongAdder();
+
+    public LdapStatistics(String providerUrl) {
+        this.providerUrl = providerUrl;
+    }
+
+    public void recordConnect(long nanos) {
+        connectCount.increment();
+        connectNanos.add(nanos);
+    }
+
+    public void recordSearch(long nanos) {
+        searchCount.increment();
+        searchNanos.add(nanos);
+    }
+
+    public void recordBind(long nanos) {
+        bindCount.increment();
+        bindNanos.add(nanos);
+    }
+
+    public void recordFailure() {
+        failureCount.increment();
+    }
+
+    public String getProviderUrl() {
+        return providerUrl;
+    }
+
+    public long getConnectCount() {
+        return connectCount.sum();
+    }
+
+    public long getSearchCount() {
+        return searchCount.sum();
+    }
+
+    public long getBindCount() {
+        return bindCount.sum();
+    }
+
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    public long getConnectNanos() {
+        return connectNanos.sum();
+    }
+
+    public long getSearchNanos() {
+        return searchNanos.sum();
+    }
+
+    public long getBindNanos() {
+        return bindNanos.sum();
+    }
+
+    public double getConnectMillis() {
+        return averageMillis(connectNanos.sum(), connectCount.sum());
+    }
+
+    public double getSearchMillis() {
+        return averageMillis(searchNanos.sum(), searchCount.sum());
+    }
+
+    public double getBindMillis() {
+        return averageMillis(bindNanos.sum(), bindCount.sum());
+    }
+
+    static double averageMillis(long nanos, long count) {
+        return count == 0 ? 0 : (double) nanos / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "LdapStatistics [providerUrl=%s, connect=%d avg %.2f ms, search=%d avg %.2f ms, bind=%d avg %.2f ms, failure=%d]",
+                providerUrl, getConnectCount(), getConnectMillis(), getSearchCount(), getSearchMillis(),
+                getBindCount(), getBindMillis(), getFailureCount());
+    }
+}
@@ -17,16 +17,25 @@
 
 package org.maxkey.persistence.ldap;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Properties;
 
+import javax.naming.AuthenticationException;
+import javax.naming.CommunicationException;
 import javax.naming.Context;
+import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
 import javax.naming.directory.DirContext;
 import javax.naming.directory.InitialDirContext;
 import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +52,12 @@ public class LdapUtils {
     public static final  String propertyTrustStore = "trustStore";
     public static final  String propertyTrustStorePassword = "trustStorePassword";
 
+    public static final  String CONNECT_TIMEOUT = "com.sun.jndi.ldap.connect.timeout";
+    public static final  String READ_TIMEOUT = "com.sun.jndi.ldap.read.timeout";
+
+    public static final  int DEFAULT_POOL_MAX_IDLE = 8;
+    public static final  long DEFAULT_POOL_IDLE_MILLIS = 5 * 60 * 1000;
+
     protected DirContext ctx;
     protected String baseDN;
     protected String providerUrl;
@@ -53,7 +68,21 @@ public class LdapUtils {
     protected String trustStorePassword;
     protected boolean ssl;
     protected int searchScope;
-    protected Properties props;
+    /**
+     * published after all properties set
+     */
+    protected volatile Properties props;
+    protected int connectTimeout;
+    protected int readTimeout;
+    /**
+     * contexts bind with principal for search
+     */
+    protected LdapContextPool searchPool = new LdapContextPool(DEFAULT_POOL_MAX_IDLE, DEFAULT_POOL_IDLE_MILLIS);
+    /**
+     * contexts rebind with user for password check only
+     */
+    protected LdapContextPool bindPool = new LdapContextPool(DEFAULT_POOL_MAX_IDLE, DEFAULT_POOL_IDLE_MILLIS);
+    protected volatile LdapStatistics statistics;
 
     /**
      * 
@@ -115,22 +144,34 @@ public class LdapUtils {
         	 _logger.debug("PROVIDER_URL:" + providerUrl);
              _logger.debug("SECURITY_PRINCIPAL:" + principal);
              _logger.trace("SECURITY_CREDENTIALS:" + credentials);
-	        props = new Properties();
-	        props.setProperty(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
-	        props.setProperty(Context.URL_PKG_PREFIXES, "com.sun.jndi.url");
-	        props.setProperty(Context.REFERRAL, referral);
-	        props.setProperty(Context.SECURITY_AUTHENTICATION, "simple");
+	        Properties properties = new Properties();
+	        properties.setProperty(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+	        properties.setProperty(Context.URL_PKG_PREFIXES, "com.sun.jndi.url");
+	        properties.setProperty(Context.REFERRAL, referral);
+	        properties.setProperty(Context.SECURITY_AUTHENTICATION, "simple");
 	
-	        props.setProperty(Context.PROVIDER_URL, providerUrl);
-	        props.setProperty(Context.SECURITY_PRINCIPAL, principal);
-	        props.setProperty(Context.SECURITY_CREDENTIALS, credentials);
+	        properties.setProperty(Context.PROVIDER_URL, providerUrl);
+	        properties.setProperty(Context.SECURITY_PRINCIPAL, principal);
+	        properties.setProperty(Context.SECURITY_CREDENTIALS, credentials);
 	
 	        if (ssl && providerUrl.toLowerCase().startsWith("ldaps")) {
 	            System.setProperty("javax.net.ssl.trustStore", trustStore);
 	            System.setProperty("javax.net.ssl.trustStorePassword", trustStorePassword);
-	            props.put(Context.SECURITY_PROTOCOL, "ssl");
-	            props.put(Context.REFERRAL, "follow");
+	            properties.put(Context.SECURITY_PROTOCOL, "ssl");
+	            properties.put(Context.REFERRAL, "follow");
 	        }
+	        initTimeout(properties);
+	        //other threads see props when complete
+	        props = properties;
+        }
+    }
+
+    protected void initTimeout(Properties properties) {
+        if (connectTimeout > 0) {
+            properties.setProperty(CONNECT_TIMEOUT, String.valueOf(connectTimeout));
+        }
+        if (readTimeout > 0) {
+            properties.setProperty(READ_TIMEOUT, String.valueOf(readTimeout));
         }
     }
 
@@ -146,6 +187,224 @@ public class LdapUtils {
         return createDirContext(props);
     }
 
+    /**
+     * new LdapContext,NamingException when connect or bind failed
+     * @param properties
+     * @return LdapContext
+     * @throws NamingException
+     */
+    protected LdapContext createLdapContext(Properties properties) throws NamingException {
+        long startTime = System.nanoTime();
+        try {
+            LdapContext ldapContext = new InitialLdapContext(properties, null);
+            getStatistics().recordConnect(System.nanoTime() - startTime);
+            return ldapContext;
+        } catch (AuthenticationException e) {
+            getStatistics().recordConnect(System.nanoTime() - startTime);
+            throw e;
+        } catch (NamingException e) {
+            getStatistics().recordFailure();
+            throw e;
+        }
+    }
+
+    /**
+     * search baseDN with the principal,the context from searchPool.<br>
+     * pooled context closed by server is dropped and search again with a new context.
+     * @param filter
+     * @param constraints
+     * @return results
+     * @throws NamingException
+     */
+    public List<SearchResult> search(String filter, SearchControls constraints) throws NamingException {
+        initEnvironment();
+        LdapContext ldapContext = searchPool.borrow();
+        boolean pooled = ldapContext != null;
+        while (true) {
+            if (ldapContext == null) {
+                ldapContext = createLdapContext(props);
+            }
+            long startTime = System.nanoTime();
+            try {
+                List<SearchResult> results = new ArrayList<SearchResult>();
+                NamingEnumeration<SearchResult> enumeration = ldapContext.search(baseDN, filter, constraints);
+                try {
+                    while (enumeration.hasMore()) {
+                        results.add(enumeration.next());
+                    }
+                } finally {
+                    enumeration.close();
+                }
+                getStatistics().recordSearch(System.nanoTime() - startTime);
+                searchPool.release(ldapContext);
+                return results;
+            } catch (CommunicationException | ServiceUnavailableException e) {
+                searchPool.invalidate(ldapContext);
+                ldapContext = null;
+                if (!pooled) {
+                    getStatistics().recordFailure();
+                    throw e;
+                }
+                _logger.debug("pooled search context of {} broken , {}", providerUrl, e.getMessage());
+                pooled = false;
+            } catch (NamingException e) {
+                searchPool.invalidate(ldapContext);
+                getStatistics().recordFailure();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * check password with simple bind,the context from bindPool rebind with principal,
+     * the connection reused.<br>
+     * empty password is false,not unauthenticated bind.
+     * @param principal user dn,or domain\\username of Active Directory
+     * @param password
+     * @return true when bind success,false when credentials invalid
+     * @throws NamingException connect failed
+     */
+    public boolean bind(String principal, String password) throws NamingException {
+        if (principal == null || principal.isEmpty() || password == null || password.isEmpty()) {
+            return false;
+        }
+        initEnvironment();
+        LdapContext ldapContext = bindPool.borrow();
+        boolean pooled = ldapContext != null;
+        while (true) {
+            long startTime = System.nanoTime();
+            try {
+                if (ldapContext == null) {
+                    Properties bindProps = new Properties();
+                    bindProps.putAll(props);
+                    bindProps.setProperty(Context.SECURITY_PRINCIPAL, principal);
+                    bindProps.setProperty(Context.SECURITY_CREDENTIALS, password);
+                    ldapContext = createLdapContext(bindProps);
+                } else {
+                    ldapContext.addToEnvironment(Context.SECURITY_PRINCIPAL, principal);
+                    ldapContext.addToEnvironment(Context.SECURITY_CREDENTIALS, password);
+                    ldapContext.reconnect(null);
+                }
+                getStatistics().recordBind(System.nanoTime() - startTime);
+                //not keep user password in the pooled context
+                ldapContext.removeFromEnvironment(Context.SECURITY_CREDENTIALS);
+                bindPool.release(ldapContext);
+                return true;
+            } catch (AuthenticationException e) {
+                getStatistics().recordBind(System.nanoTime() - startTime);
+                //connection is still usable after failed bind
+                if (ldapContext != null) {
+                    ldapContext.removeFromEnvironment(Context.SECURITY_CREDENTIALS);
+                    bindPool.release(ldapContext);
+                }
+                _logger.debug("bind {} at {} fail , {}", principal, providerUrl, e.getMessage());
+                return false;
+            } catch (CommunicationException | ServiceUnavailableException e) {
+                bindPool.invalidate(ldapContext);
+                ldapContext = null;
+                if (!pooled) {
+                    getStatistics().recordFailure();
+                    throw e;
+                }
+                _logger.debug("pooled bind context of {} broken , {}", providerUrl, e.getMessage());
+                pooled = false;
+            } catch (NamingException e) {
+                bindPool.invalidate(ldapContext);
+                getStatistics().recordFailure();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @param maxIdle idle contexts of search and bind pool each,0 for not pooled
+     * @param idleMillis idle contexts closed after millis
+     */
+    public void setPool(int maxIdle, long idleMillis) {
+        closePool();
+        this.searchPool = new LdapContextPool(maxIdle, idleMillis);
+        this.bindPool = new LdapContextPool(maxIdle, idleMillis);
+    }
+
+    public void closePool() {
+        searchPool.clear();
+        bindPool.clear();
+    }
+
+    public LdapContextPool getSearchPool() {
+        return searchPool;
+    }
+
+    public LdapContextPool getBindPool() {
+        return bindPool;
+    }
+
+    public LdapStatistics getStatistics() {
+        LdapStatistics ldapStatistics = statistics;
+        if (ldapStatistics == null) {
+            synchronized (this) {
+                if (statistics == null) {
+                    statistics = new LdapStatistics(providerUrl);
+                }
+                ldapStatistics = statistics;
+            }
+        }
+        return ldapStatistics;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @param connectTimeout millis
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * @param readTimeout millis
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * escape value in search filter,RFC 4515
+     * @param value
+     * @return escaped value
+     */
+    public static String escapeFilterValue(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '\\':
+                    escaped.append("\\5c");
+                    break;
+                case '*':
+                    escaped.append("\\2a");
+                    break;
+                case '(':
+                    escaped.append("\\28");
+                    break;
+                case ')':
+                    escaped.append("\\29");
+                    break;
+                case '\0':
+                    escaped.append("\\00");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
     public boolean authenticate() {
         openConnection();
         if (this.ctx != null) {
@@ -0,0 +1,154 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.redis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.maxkey.util.ObjectTransformer;
+
+/**
+ * BinaryRedisObjectCodec<br>
+ * store object as raw bytes with a version header,replace the HEX String value<br>
+ * header : 'M' 'K' version flags<br>
+ * body : java serialization bytes,deflate when length over compressThreshold<br>
+ * value without header is HEX String written by old version,decode by ObjectTransformer<br>
+ *
+ * @author Crystal.Sea
+ *
+ */
+public class BinaryRedisObjectCodec implements RedisObjectCodec {
+
+    public static final byte MAGIC_M            = 'M';
+
+    public static final byte MAGIC_K            = 'K';
+
+    public static final byte VERSION_1          = 1;
+
+    public static final byte FLAG_DEFLATE       = 0x01;
+
+    public static final int  HEADER_LENGTH      = 4;
+
+    /**
+     * body over 4K will be deflated,0 is never
+     */
+    public static final int  DEFAULT_COMPRESS_THRESHOLD = 4096;
+
+    int compressThreshold = DEFAULT_COMPRESS_THRESHOLD;
+
+    public BinaryRedisObjectCodec() {
+
+    }
+
+    public BinaryRedisObjectCodec(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+    @Override
+    public byte[] encode(Serializable object) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(512);
+        baos.write(MAGIC_M);
+        baos.write(MAGIC_K);
+        baos.write(VERSION_1);
+        baos.write(0);
+        writeObject(baos, object);
+        byte[] value = baos.toByteArray();
+
+        if(compressThreshold > 0 && value.length - HEADER_LENGTH >= compressThreshold) {
+            ByteArrayOutputStream deflated = new ByteArrayOutputStream(value.length / 2);
+            deflated.write(MAGIC_M);
+            deflated.write(MAGIC_K);
+            deflated.write(VERSION_1);
+            deflated.write(FLAG_DEFLATE);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (DeflaterOutputStream dos = new DeflaterOutputStream(deflated, deflater)){
+                dos.write(value, HEADER_LENGTH, value.length - HEADER_LENGTH);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            } finally {
+                deflater.end();
+            }
+            value = deflated.toByteArray();
+        }
+        return value;
+    }
+
+    @Override
+    public <T> T decode(byte[] value) {
+        if(value == null || value.length == 0) {
+            return null;
+        }
+        if(!isVersioned(value)) {
+            //HEX String
+            return ObjectTransformer.deserialize(new String(value, StandardCharsets.US_ASCII));
+        }
+        if(value[2] != VERSION_1) {
+            throw new IllegalArgumentException("Unsupported redis value version " + value[2]);
+        }
+        InputStream in = new ByteArrayInputStream(value, HEADER_LENGTH, value.length - HEADER_LENGTH);
+        if((value[3] & FLAG_DEFLATE) != 0) {
+            in = new InflaterInputStream(in);
+        }
+        return readObject(in);
+    }
+
+    /**
+     * HEX String only contains [0-9a-f],so 'M' 'K' can not be the head of old value
+     * @param value
+     * @return
+     */
+    public static boolean isVersioned(byte[] value) {
+        return value.length >= HEADER_LENGTH && value[0] == MAGIC_M && value[1] == MAGIC_K;
+    }
+
+    void writeObject(ByteArrayOutputStream baos,Serializable object) {
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)){
+            oos.writeObject(object);
+            oos.flush();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T readObject(InputStream in) {
+        try (ObjectInputStream ois = new ObjectInputStream(in)){
+            return (T) ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    public int getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    public void setCompressThreshold(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.redis;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+
+import org.maxkey.crypto.HexUtils;
+import org.maxkey.util.ObjectTransformer;
+
+/**
+ * HexRedisObjectCodec<br>
+ * write value as HEX String like old version,for rolling upgrade with old nodes<br>
+ * decode both HEX String and binary value<br>
+ *
+ * @author Crystal.Sea
+ *
+ */
+public class HexRedisObjectCodec extends BinaryRedisObjectCodec {
+
+    @Override
+    public byte[] encode(Serializable object) {
+        return HexUtils.bytes2HexString(
+                    ObjectTransformer.object2Bytes(object)).getBytes(StandardCharsets.US_ASCII);
+    }
+
+}
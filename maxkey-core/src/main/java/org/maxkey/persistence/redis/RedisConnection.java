@@ -18,19 +18,62 @@
 package org.maxkey.persistence.redis;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
-import org.maxkey.util.ObjectTransformer;
+import org.apache.commons.codec.digest.DigestUtils;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.util.SafeEncoder;
 
+/**
+ * RedisConnection<br>
+ * write commands go to the pipeline when openPipeline,and send to redis in one round trip by closePipeline<br>
+ * GET is queued to the pipeline and its value read from the results of closePipeline,
+ * other read commands are not pipelined and throw IllegalStateException when the pipeline is open<br>
+ * 
+ */
 public class RedisConnection {
 
 	Jedis conn ;
 	RedisConnectionFactory connectionFactory;
 	
 	Pipeline pipeline ;
+	
+	RedisObjectCodec objectCodec = new BinaryRedisObjectCodec();
+	
+	/**
+	 * GET and DEL in one script,redis run script atomic,
+	 * only one client get the value when consume the same key concurrently.
+	 * GETDEL need redis 6.2+
+	 */
+	public static final String GET_DEL_SCRIPT = 
+			"local value = redis.call('GET', KEYS[1]) " +
+			"if value then redis.call('DEL', KEYS[1]) end " +
+			"return value";
+	
+	static final byte[] GET_DEL_SCRIPT_BYTES = SafeEncoder.encode(GET_DEL_SCRIPT);
+	
+	static final byte[] GET_DEL_SCRIPT_SHA1 = SafeEncoder.encode(DigestUtils.sha1Hex(GET_DEL_SCRIPT));
+	
+	/**
+	 * sorted set scored by expire millis expire at the max score,
+	 * PERSIST when the max score is not less than ARGV[1] (never expire).
+	 * the max score only grows,so the TTL is only extended
+	 */
+	public static final String EXPIRE_AT_MAX_SCORE_SCRIPT = 
+			"local top = redis.call('ZREVRANGE', KEYS[1], 0, 0, 'WITHSCORES') " +
+			"if top[2] == nil then return 0 end " +
+			"local score = tonumber(top[2]) " +
+			"if score >= tonumber(ARGV[1]) then return redis.call('PERSIST', KEYS[1]) end " +
+			"return redis.call('PEXPIREAT', KEYS[1], string.format('%.0f', score))";
+	
+	static final byte[] EXPIRE_AT_MAX_SCORE_SCRIPT_BYTES = SafeEncoder.encode(EXPIRE_AT_MAX_SCORE_SCRIPT);
+	
+	static final byte[] EXPIRE_AT_MAX_SCORE_SCRIPT_SHA1 = 
+			SafeEncoder.encode(DigestUtils.sha1Hex(EXPIRE_AT_MAX_SCORE_SCRIPT));
 	 
 	public RedisConnection() {
 		
@@ -39,6 +82,7 @@ public class RedisConnection {
 	public RedisConnection(RedisConnectionFactory connectionFactory) {
 		this.conn=connectionFactory.open();
 		this.connectionFactory=connectionFactory;
+		this.objectCodec = connectionFactory.getObjectCodec();
 	}
 
 	/**
@@ -46,7 +90,12 @@ public class RedisConnection {
 	 * @param value
 	 */
 	public  void set(String key, String value){
-		conn.set(key, value);
+		if(pipeline != null) {
+			pipeline.set(key, value);
+		}else {
+			roundTrip();
+			conn.set(key, value);
+		}
 	}
 	
 
@@ -55,11 +104,16 @@ public class RedisConnection {
 	 * @param value
 	 */
 	public  void setObject(String key, Serializable object){
-		set(key, ObjectTransformer.serialize(object));
+		if(pipeline != null) {
+			pipeline.set(SafeEncoder.encode(key), objectCodec.encode(object));
+		}else {
+			roundTrip();
+			conn.set(SafeEncoder.encode(key), objectCodec.encode(object));
+		}
 	}
 	
 	public  void setexObject(String key,int seconds, Serializable object){
-		setex(key, seconds, ObjectTransformer.serialize(object));
+		setex(SafeEncoder.encode(key), seconds, objectCodec.encode(object));
 	}
 	
 	/**
@@ -68,22 +122,41 @@ public class RedisConnection {
 	 * @param value
 	 */
 	public  void setex(String key,long seconds, String value){
+		setex(SafeEncoder.encode(key), seconds, SafeEncoder.encode(value));
+	}
+	
+	/**
+	 * @param key
+	 * @param seconds
+	 * @param value
+	 */
+	public  void setex(byte[] key,long seconds, byte[] value){
 		if(seconds==0){
-			conn.setex(key, RedisConnectionFactory.DEFAULT_CONFIG.DEFAULT_LIFETIME, value);
-		}else{
+			seconds = RedisConnectionFactory.DEFAULT_CONFIG.DEFAULT_LIFETIME;
+		}
+		if(pipeline != null) {
+			pipeline.setex(key, seconds, value);
+		}else {
+			roundTrip();
 			conn.setex(key, seconds, value);
 		}
 	}
 	
 	
 	/**
+	 * GET is the only read queued to the pipeline
 	 * @param key
-	 * @return String 
+	 * @return String,null in pipeline,the value is in the results of closePipeline
 	 */
 	public  String get(String key){
 		String value = null;
 		if(key != null){
-			value = conn.get(key);
+			if(pipeline != null) {
+				pipeline.get(key);
+			}else {
+				roundTrip();
+				value = conn.get(key);
+			}
 		}
 		return value;
 	}
@@ -93,34 +166,208 @@ public class RedisConnection {
 	 * @return String 
 	 */
 	public  <T> T getObject(String key){
-		String value = null;
 		if(key != null){
-			value = get(key);
+			checkNotPipelined();
+			roundTrip();
+			byte[] value = conn.get(SafeEncoder.encode(key));
 			if(value!=null){
-				return ObjectTransformer.deserialize(value);
+				return objectCodec.decode(value);
 			}
 		}
 		return null;
 	}
 	
-	public void expire(String key,long seconds){
-		conn.expire(key, seconds);
+	/**
+	 * read objects by MGET in one round trip
+	 * @param keys
+	 * @return objects in order of keys,null if key not exists
+	 */
+	public  <T> List<T> getObjects(List<String> keys){
+		List<T> objects = new ArrayList<T>(keys.size());
+		if(keys.isEmpty()) {
+			return objects;
+		}
+		checkNotPipelined();
+		roundTrip();
+		List<byte[]> values = conn.mget(SafeEncoder.encodeMany(keys.toArray(new String[keys.size()])));
+		for(byte[] value : values) {
+			objects.add(value == null ? null : objectCodec.decode(value));
+		}
+		return objects;
 	}
 	
-	public void delete(String key){
-		conn.del(key);
+	/**
+	 * GET and DEL by GET_DEL_SCRIPT,atomic and one round trip,
+	 * use for one-time ticket and code,the object consume exactly once
+	 * @param key
+	 * @return object before delete
+	 */
+	public  <T> T getObjectAndDelete(String key){
+		if(key == null) {
+			return null;
+		}
+		byte[] binaryKey = SafeEncoder.encode(key);
+		byte[] value;
+		checkNotPipelined();
+		roundTrip();
+		try {
+			value = (byte[]) conn.evalsha(GET_DEL_SCRIPT_SHA1, 1, binaryKey);
+		}catch(JedisNoScriptException e) {
+			//script not cached after redis restart or failover,EVAL load it again
+			roundTrip();
+			value = (byte[]) conn.eval(GET_DEL_SCRIPT_BYTES, 1, binaryKey);
+		}
+		return value == null ? null : objectCodec.decode(value);
 	}
 	
-	public  void rPush(String key, Serializable object){
-		conn.rpush(key, ObjectTransformer.serialize(object));
+	/**
+	 * INCR counter of key
+	 * @param key
+	 * @return value after increment,0 in pipeline
+	 */
+	public long incr(String key){
+		if(pipeline != null) {
+			pipeline.incr(key);
+			return 0;
+		}
+		roundTrip();
+		return conn.incr(key);
+	}
+	
+	public boolean exists(String key){
+		checkNotPipelined();
+		roundTrip();
+		return conn.exists(key);
+	}
+	
+	public void expire(String key,long seconds){
+		if(pipeline != null) {
+			pipeline.expire(key, seconds);
+		}else {
+			roundTrip();
+			conn.expire(key, seconds);
+		}
 	}
-	public long  lRem(String key,int count,String value){
-		return conn.lrem(key, count, value);
+	
+	public void delete(String key){
+		if(pipeline != null) {
+			pipeline.del(key);
+		}else {
+			roundTrip();
+			conn.del(key);
+		}
 	}
 	
+	/**
+	 * DEL multi keys in one round trip
+	 * @param keys
+	 */
+	public void delete(List<String> keys){
+		if(keys.isEmpty()) {
+			return;
+		}
+		String[] keyArray = keys.toArray(new String[keys.size()]);
+		if(pipeline != null) {
+			pipeline.del(keyArray);
+		}else {
+			roundTrip();
+			conn.del(keyArray);
+		}
+	}
 	
-	public List<String>  lRange(String key,int start,int end){
-		return conn.lrange(key, start, end);
+	/**
+	 * ZADD member with score to sorted set
+	 * @param key
+	 * @param score
+	 * @param member
+	 */
+	public void zAdd(String key,double score,String member){
+		if(pipeline != null) {
+			pipeline.zadd(key, score, member);
+		}else {
+			roundTrip();
+			conn.zadd(key, score, member);
+		}
+	}
+
+	public void zRem(String key,String member){
+		if(pipeline != null) {
+			pipeline.zrem(key, member);
+		}else {
+			roundTrip();
+			conn.zrem(key, member);
+		}
+	}
+
+	/**
+	 * ZREMRANGEBYSCORE remove members with score between min and max
+	 * @param key
+	 * @param min
+	 * @param max
+	 */
+	public void zRemRangeByScore(String key,double min,double max){
+		if(pipeline != null) {
+			pipeline.zremrangeByScore(key, min, max);
+		}else {
+			roundTrip();
+			conn.zremrangeByScore(key, min, max);
+		}
+	}
+
+	/**
+	 * sorted set scored by expire millis expire with the max score member,
+	 * by EXPIRE_AT_MAX_SCORE_SCRIPT,EVAL in pipeline
+	 * @param key
+	 * @param neverExpireScore score of member never expire,the key PERSIST
+	 */
+	public void zExpireAtMaxScore(String key,double neverExpireScore){
+		byte[] binaryKey = SafeEncoder.encode(key);
+		byte[] binaryScore = SafeEncoder.encode(String.valueOf(neverExpireScore));
+		if(pipeline != null) {
+			//NOSCRIPT of EVALSHA only in the results of pipeline
+			pipeline.eval(EXPIRE_AT_MAX_SCORE_SCRIPT_BYTES, 1, binaryKey, binaryScore);
+		}else {
+			roundTrip();
+			try {
+				conn.evalsha(EXPIRE_AT_MAX_SCORE_SCRIPT_SHA1, 1, binaryKey, binaryScore);
+			}catch(JedisNoScriptException e) {
+				roundTrip();
+				conn.eval(EXPIRE_AT_MAX_SCORE_SCRIPT_BYTES, 1, binaryKey, binaryScore);
+			}
+		}
+	}
+
+	/**
+	 * ZRANGEBYSCORE members with score between min and max
+	 * @param key
+	 * @param min
+	 * @param max
+	 * @return members order by score
+	 */
+	public List<String> zRangeByScore(String key,double min,double max){
+		checkNotPipelined();
+		roundTrip();
+		return new ArrayList<String>(conn.zrangeByScore(key, min, max));
+	}
+
+	public long zCard(String key){
+		checkNotPipelined();
+		roundTrip();
+		return conn.zcard(key);
+	}
+
+	/**
+	 * PUBLISH message to channel
+	 * @param channel
+	 * @param message
+	 */
+	public void publish(String channel,String message){
+		if(pipeline != null) {
+			pipeline.publish(channel, message);
+		}else {
+			roundTrip();
+			conn.publish(channel, message);
+		}
 	}
 	
 	public void openPipeline(){
@@ -128,8 +375,27 @@ public class RedisConnection {
 	}
 	
 	public List<Object> closePipeline(){
-		return pipeline.syncAndReturnAll();
+		roundTrip();
+		List<Object> results = pipeline.syncAndReturnAll();
+		this.pipeline = null;
+		return results;
 	}
+	
+	/**
+	 * reads need the reply now,the pipeline reply only come at closePipeline
+	 */
+	void checkNotPipelined() {
+		if(pipeline != null) {
+			throw new IllegalStateException("read command in pipeline , closePipeline before read");
+		}
+	}
+	
+	void roundTrip() {
+		if(connectionFactory != null) {
+			connectionFactory.roundTrip();
+		}
+	}
+	
 	/**
      * 释放jedis资源
      * @param jedis
@@ -147,5 +413,13 @@ public class RedisConnection {
 	public void setConn(Jedis conn) {
 		this.conn = conn;
 	}
+
+	public RedisObjectCodec getObjectCodec() {
+		return objectCodec;
+	}
+
+	public void setObjectCodec(RedisObjectCodec objectCodec) {
+		this.objectCodec = objectCodec;
+	}
 	
 }
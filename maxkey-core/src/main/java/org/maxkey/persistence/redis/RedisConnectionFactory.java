@@ -17,11 +17,17 @@
 
 package org.maxkey.persistence.redis;
 
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 
 public class RedisConnectionFactory {
+    private static final Logger _logger = LoggerFactory.getLogger(RedisConnectionFactory.class);
 
     public static class DEFAULT_CONFIG {
         /**
@@ -66,18 +72,35 @@ public class RedisConnectionFactory {
 
     JedisPoolConfig poolConfig;
 
-    private JedisPool jedisPool = null;
+    private volatile JedisPool jedisPool = null;
+    
+    private RedisObjectCodec objectCodec = new BinaryRedisObjectCodec();
 
     private String hostName;
     private int port;
     private String password;
     private int timeOut;
+    
+    /**
+     * borrow connection count and wait time from pool
+     */
+    private final LongAdder borrowCount = new LongAdder();
+    
+    private final LongAdder borrowWaitNanos = new LongAdder();
+    
+    /**
+     * command or pipeline send to redis
+     */
+    private final LongAdder roundTrips = new LongAdder();
 
     public RedisConnectionFactory() {
 
     }
 
-    public void initConnectionFactory() {
+    /**
+     * init JedisPool at startup,getConnection will not lock after init
+     */
+    public synchronized void initConnectionFactory() {
         if (jedisPool == null) {
             try {
                 if (this.hostName == null || hostName.equals("")) {
@@ -94,21 +117,31 @@ public class RedisConnectionFactory {
                     this.password = null;
                 }
                 jedisPool = new JedisPool(poolConfig, hostName, port, timeOut, password);
-
+                _logger.debug("JedisPool init {}:{}", hostName, port);
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
     }
 
-    public synchronized RedisConnection getConnection() {
-        initConnectionFactory();
+    public RedisConnection getConnection() {
+        if (jedisPool == null) {
+            initConnectionFactory();
+        }
         RedisConnection redisConnection = new RedisConnection(this);
         return redisConnection;
     }
 
     public Jedis open() {
-        return jedisPool.getResource();
+        long startTime = System.nanoTime();
+        Jedis jedis = jedisPool.getResource();
+        borrowWaitNanos.add(System.nanoTime() - startTime);
+        borrowCount.increment();
+        return jedis;
+    }
+    
+    void roundTrip() {
+        roundTrips.increment();
     }
 
     public void close(Jedis conn) {
@@ -156,6 +189,30 @@ public class RedisConnectionFactory {
     public JedisPoolConfig getPoolConfig() {
         return poolConfig;
     }
+
+    public RedisObjectCodec getObjectCodec() {
+        return objectCodec;
+    }
+
+    public void setObjectCodec(RedisObjectCodec objectCodec) {
+        this.objectCodec = objectCodec;
+    }
+
+    public JedisPool getJedisPool() {
+        return jedisPool;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    public long getBorrowWaitNanos() {
+        return borrowWaitNanos.sum();
+    }
+
+    public long getRoundTrips() {
+        return roundTrips.sum();
+    }
     
     
 
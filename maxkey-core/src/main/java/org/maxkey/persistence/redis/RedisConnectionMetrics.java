@@ -0,0 +1,80 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.redis;
+
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * RedisConnectionMetrics<br>
+ * connection borrow wait time,pool usage and round trips of RedisConnectionFactory<br>
+ * view on /actuator/metrics/maxkey.redis.*
+ *
+ */
+public class RedisConnectionMetrics implements MeterBinder {
+
+    RedisConnectionFactory connectionFactory;
+
+    public RedisConnectionMetrics(RedisConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionTimer.builder("maxkey.redis.connection.borrow", connectionFactory,
+                    RedisConnectionFactory::getBorrowCount,
+                    RedisConnectionFactory::getBorrowWaitNanos,
+                    TimeUnit.NANOSECONDS)
+            .description("wait time to borrow connection from pool")
+            .register(registry);
+
+        FunctionCounter.builder("maxkey.redis.roundtrips", connectionFactory,
+                    RedisConnectionFactory::getRoundTrips)
+            .description("commands and pipelines send to redis")
+            .register(registry);
+
+        Gauge.builder("maxkey.redis.connection.borrow.max", connectionFactory,
+                    factory -> pool(factory) == null ? 0 : pool(factory).getMaxBorrowWaitTimeMillis())
+            .description("max wait time to borrow connection from pool")
+            .baseUnit("milliseconds")
+            .register(registry);
+
+        Gauge.builder("maxkey.redis.connection.active", connectionFactory,
+                    factory -> pool(factory) == null ? 0 : pool(factory).getNumActive())
+            .register(registry);
+
+        Gauge.builder("maxkey.redis.connection.idle", connectionFactory,
+                    factory -> pool(factory) == null ? 0 : pool(factory).getNumIdle())
+            .register(registry);
+
+        Gauge.builder("maxkey.redis.connection.waiters", connectionFactory,
+                    factory -> pool(factory) == null ? 0 : pool(factory).getNumWaiters())
+            .description("threads waiting for connection")
+            .register(registry);
+    }
+
+    static JedisPool pool(RedisConnectionFactory connectionFactory) {
+        return connectionFactory.getJedisPool();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.redis;
+
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * RedisMessageSubscriber<br>
+ * SUBSCRIBE channel on a dedicated connection in daemon thread,not borrow from pool.<br>
+ * reconnect when the connection broken,messages published during reconnect are lost,
+ * onResubscribe called after reconnect,the local cache should be cleared.<br>
+ *
+ */
+public class RedisMessageSubscriber {
+    private static final Logger _logger = LoggerFactory.getLogger(RedisMessageSubscriber.class);
+
+    static final long RECONNECT_INTERVAL_MILLIS = 1000;
+
+    RedisConnectionFactory connectionFactory;
+
+    String channel;
+
+    Consumer<String> onMessage;
+
+    Runnable onResubscribe;
+
+    volatile boolean running;
+
+    volatile JedisPubSub pubSub;
+
+    Thread subscribeThread;
+
+    public RedisMessageSubscriber(RedisConnectionFactory connectionFactory,
+            String channel, Consumer<String> onMessage, Runnable onResubscribe) {
+        this.connectionFactory = connectionFactory;
+        this.channel = channel;
+        this.onMessage = onMessage;
+        this.onResubscribe = onResubscribe;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        //make sure host,port and password are initialized
+        connectionFactory.initConnectionFactory();
+        running = true;
+        subscribeThread = new Thread(this::subscribe, "redis-subscriber-" + channel);
+        subscribeThread.setDaemon(true);
+        subscribeThread.start();
+    }
+
+    void subscribe() {
+        boolean resubscribe = false;
+        while (running) {
+            try (Jedis jedis = new Jedis(
+                    connectionFactory.getHostName(),
+                    connectionFactory.getPort(),
+                    connectionFactory.getTimeOut())) {
+                if (connectionFactory.getPassword() != null) {
+                    jedis.auth(connectionFactory.getPassword());
+                }
+                final boolean notifyResubscribe = resubscribe;
+                pubSub = new JedisPubSub() {
+                    @Override
+                    public void onSubscribe(String channel, int subscribedChannels) {
+                        _logger.debug("subscribe channel {}", channel);
+                        if (notifyResubscribe && onResubscribe != null) {
+                            onResubscribe.run();
+                        }
+                    }
+
+                    @Override
+                    public void onMessage(String channel, String message) {
+                        try {
+                            onMessage.accept(message);
+                        } catch (RuntimeException e) {
+                            _logger.error("message " + message + " of channel " + channel + " process error", e);
+                        }
+                    }
+                };
+                jedis.subscribe(pubSub, channel);
+            } catch (Exception e) {
+                if (running) {
+                    _logger.warn("subscribe channel {} error {} , reconnect later", channel, e.getMessage());
+                }
+            }
+            resubscribe = true;
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public boolean isSubscribed() {
+        return pubSub != null && pubSub.isSubscribed();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (isSubscribed()) {
+            try {
+                pubSub.unsubscribe();
+            } catch (Exception e) {
+                _logger.debug("unsubscribe error {}", e.getMessage());
+            }
+        }
+        if (subscribeThread != null) {
+            subscribeThread.interrupt();
+        }
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+}
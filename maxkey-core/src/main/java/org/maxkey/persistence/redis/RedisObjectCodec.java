@@ -0,0 +1,45 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.redis;
+
+import java.io.Serializable;
+
+/**
+ * RedisObjectCodec<br>
+ * encode object to redis value bytes,and decode redis value bytes to object<br>
+ *
+ * @author Crystal.Sea
+ *
+ */
+public interface RedisObjectCodec {
+
+    /**
+     * encode Serializable Object to redis value
+     * @param object
+     * @return byte[]
+     */
+    public byte[] encode(Serializable object);
+
+    /**
+     * decode redis value to Object
+     * @param value
+     * @return Object
+     */
+    public <T> T decode(byte[] value);
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+public class GroupAppsIndexTest {
+
+    @Test
+    public void testQueryAuthorizedApps() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        mockGroupApps(jdbcTemplate, new String[][] {
+            { "ROLE_ALL_USER", "app-1" },
+            { "group-1", "app-1" },
+            { "group-1", "app-2" },
+            { "group-2", "app-3" },
+        });
+        GroupAppsIndex groupAppsIndex = new GroupAppsIndex(jdbcTemplate);
+
+        assertEquals(new HashSet<String>(Arrays.asList("app-1", "app-2")),
+                groupAppsIndex.queryAuthorizedApps(Arrays.asList("ROLE_ALL_USER", "group-1", "group-9")));
+        assertEquals(new HashSet<String>(Arrays.asList("app-3")),
+                groupAppsIndex.queryAuthorizedApps(Arrays.asList("group-2")));
+        assertTrue(groupAppsIndex.queryAuthorizedApps(Arrays.asList("group-9")).isEmpty());
+        //loaded once
+        verify(jdbcTemplate, times(1)).query(
+                eq(GroupAppsIndex.GROUP_APPS_SELECT_STATEMENT), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        mockGroupApps(jdbcTemplate, new String[][] { { "group-1", "app-1" } });
+        GroupAppsIndex groupAppsIndex = new GroupAppsIndex(jdbcTemplate);
+        assertEquals(new HashSet<String>(Arrays.asList("app-1")),
+                groupAppsIndex.queryAuthorizedApps(Arrays.asList("group-1")));
+
+        mockGroupApps(jdbcTemplate, new String[][] { { "group-1", "app-1" }, { "group-1", "app-2" } });
+        groupAppsIndex.invalidate();
+        assertEquals(new HashSet<String>(Arrays.asList("app-1", "app-2")),
+                groupAppsIndex.queryAuthorizedApps(Arrays.asList("group-1")));
+
+        //message of other node
+        mockGroupApps(jdbcTemplate, new String[][] { { "group-1", "app-2" } });
+        groupAppsIndex.onInvalidate(groupAppsIndex.nodeId);
+        assertEquals(new HashSet<String>(Arrays.asList("app-1", "app-2")),
+                groupAppsIndex.queryAuthorizedApps(Arrays.asList("group-1")));
+        groupAppsIndex.onInvalidate("node-2");
+        assertEquals(new HashSet<String>(Arrays.asList("app-2")),
+                groupAppsIndex.queryAuthorizedApps(Arrays.asList("group-1")));
+    }
+
+    @Test
+    public void testRefreshErrorUseOldIndex() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        mockGroupApps(jdbcTemplate, new String[][] { { "group-1", "app-1" } });
+        GroupAppsIndex groupAppsIndex = new GroupAppsIndex(jdbcTemplate, 0, null);
+        groupAppsIndex.queryAuthorizedApps(Arrays.asList("group-1"));
+
+        Thread.sleep(5);
+        doThrow(new DataAccessResourceFailureException("database down")).when(jdbcTemplate)
+            .query(anyString(), any(RowCallbackHandler.class));
+        assertEquals(new HashSet<String>(Arrays.asList("app-1")),
+                groupAppsIndex.queryAuthorizedApps(Arrays.asList("group-1")));
+    }
+
+    @Test
+    public void testLoginServiceAuthorizedApps() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        mockGroupApps(jdbcTemplate, new String[][] { { "ROLE_ALL_USER", "app-1" }, { "group-1", "app-2" } });
+        LoginService loginService = new LoginService(jdbcTemplate);
+        loginService.setGroupAppsIndex(new GroupAppsIndex(jdbcTemplate));
+
+        ArrayList<GrantedAuthority> grantedAuthoritys = new ArrayList<GrantedAuthority>();
+        grantedAuthoritys.add(new SimpleGrantedAuthority("ROLE_USER"));
+        grantedAuthoritys.add(new SimpleGrantedAuthority("group-1"));
+        HashSet<GrantedAuthority> authorizedApps = loginService.queryAuthorizedApps(grantedAuthoritys);
+        assertEquals(2, authorizedApps.size());
+        assertTrue(authorizedApps.contains(new SimpleGrantedAuthority("app-1")));
+        assertTrue(authorizedApps.contains(new SimpleGrantedAuthority("app-2")));
+    }
+
+    @Test
+    public void testLoginServiceWithoutIndex() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        LoginService loginService = new LoginService(jdbcTemplate);
+
+        ArrayList<GrantedAuthority> grantedAuthoritys = new ArrayList<GrantedAuthority>();
+        grantedAuthoritys.add(new SimpleGrantedAuthority("group-1"));
+        grantedAuthoritys.add(new SimpleGrantedAuthority("group-2' or '1'='1"));
+        loginService.queryAuthorizedApps(grantedAuthoritys);
+
+        //group ids are parameters
+        verify(jdbcTemplate).query(
+                eq("select distinct app.id from mxk_apps app,mxk_group_privileges gp,mxk_groups g  "
+                        + "where app.id=gp.appid and gp.groupid=g.id and g.id in(?,?,?)"),
+                any(RowCallbackHandler.class),
+                any(), any(), any());
+        verify(jdbcTemplate, never()).query(
+                eq(GroupAppsIndex.GROUP_APPS_SELECT_STATEMENT), any(RowCallbackHandler.class));
+    }
+
+    void mockGroupApps(JdbcTemplate jdbcTemplate, String[][] groupApps) throws Exception {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = (RowCallbackHandler) invocation.getArguments()[1];
+            for (String[] groupApp : groupApps) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("groupid")).thenReturn(groupApp[0]);
+                when(rs.getString("appid")).thenReturn(groupApp[1]);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(eq(GroupAppsIndex.GROUP_APPS_SELECT_STATEMENT), any(RowCallbackHandler.class));
+    }
+}
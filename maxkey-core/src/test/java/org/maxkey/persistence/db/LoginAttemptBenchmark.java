@@ -0,0 +1,161 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.maxkey.constants.ConstantsStatus;
+import org.maxkey.entity.PasswordPolicy;
+import org.maxkey.entity.UserInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.security.authentication.BadCredentialsException;
+
+/**
+ * failed logins , mxk_userinfo updates of PasswordPolicyValidator.<br>
+ * run main,10000 failed logins per second for 10 seconds are simulated before benchmark,
+ * password spraying over 100000 users and brute force of 10 users,
+ * the update count print.before the attempts store every failed login is one update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoginAttemptBenchmark {
+
+    static final int USERS = 100000;
+
+    static final int TARGET_USERS = 10;
+
+    AtomicLong updates = new AtomicLong();
+
+    AtomicInteger sequence = new AtomicInteger();
+
+    UserInfo[] users;
+
+    PasswordPolicyValidator passwordPolicyValidator;
+
+    @Setup
+    public void setup() {
+        passwordPolicyValidator = new PasswordPolicyValidator(createJdbcTemplate(), null);
+        users = new UserInfo[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = new UserInfo();
+            users[i].setId("user-" + i);
+            users[i].setUsername("user-" + i);
+            users[i].setIsLocked(ConstantsStatus.ACTIVE);
+            users[i].setStatus(ConstantsStatus.ACTIVE);
+        }
+    }
+
+    /**
+     * one failed login,every 100th is brute force of target users
+     * @return true when password checked,false refused by lock
+     */
+    @Benchmark
+    public boolean failedLogin() {
+        int login = sequence.getAndIncrement() & Integer.MAX_VALUE;
+        UserInfo userInfo = login % 100 == 0 ? users[login / 100 % TARGET_USERS] : users[login % USERS];
+        try {
+            passwordPolicyValidator.passwordPolicyValid(userInfo);
+        } catch (BadCredentialsException e) {
+            return false;
+        }
+        passwordPolicyValidator.plusBadPasswordCount(userInfo);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    JdbcTemplate createJdbcTemplate() {
+        PasswordPolicy passwordPolicy = new PasswordPolicy();
+        passwordPolicy.setMinLength(6);
+        passwordPolicy.setMaxLength(20);
+        passwordPolicy.setAttempts(5);
+        passwordPolicy.setDuration(1);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class))).thenReturn(passwordPolicy);
+        doAnswer(invocation -> {
+            return (int) updates.incrementAndGet();
+        }).when(jdbcTemplate).update(anyString(), any(Object[].class), any(int[].class));
+        return jdbcTemplate;
+    }
+
+    /**
+     * failed logins at rate per second
+     * @return logins
+     */
+    long simulate(int loginsPerSecond, int seconds) throws InterruptedException {
+        long logins = 0;
+        long startTime = System.nanoTime();
+        for (int second = 0; second < seconds; second++) {
+            for (int millis = 0; millis < 1000; millis++) {
+                for (int i = 0; i < loginsPerSecond / 1000; i++) {
+                    failedLogin();
+                    logins++;
+                }
+                long waitNanos = startTime + TimeUnit.MILLISECONDS.toNanos(second * 1000L + millis + 1)
+                        - System.nanoTime();
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+            }
+        }
+        return logins;
+    }
+
+    public static void main(String[] args) throws RunnerException, InterruptedException {
+        LoginAttemptBenchmark benchmark = new LoginAttemptBenchmark();
+        benchmark.setup();
+        long startTime = System.currentTimeMillis();
+        long logins = benchmark.simulate(10000, 10);
+        long costMillis = System.currentTimeMillis() - startTime;
+        System.out.println("failed logins : " + logins + " in " + costMillis + " ms");
+        System.out.println("mxk_userinfo updates before attempts store : " + logins);
+        System.out.println("mxk_userinfo updates with attempts store : " + benchmark.updates.get()
+                + " (" + TARGET_USERS + " users locked)");
+
+        Options opt = new OptionsBuilder()
+                .include(LoginAttemptBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
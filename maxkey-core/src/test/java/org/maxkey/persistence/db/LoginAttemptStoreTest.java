@@ -0,0 +1,115 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.maxkey.persistence.redis.EmbeddedRedisServer;
+import org.maxkey.persistence.redis.RedisConnectionFactory;
+
+public class LoginAttemptStoreTest {
+
+    @Test
+    public void testSlidingWindow() {
+        long[] currentTime = { 10000L };
+        InMemoryLoginAttemptStore loginAttemptStore = new InMemoryLoginAttemptStore() {
+            @Override
+            long currentTimeMillis() {
+                return currentTime[0];
+            }
+        };
+        assertEquals(1, loginAttemptStore.plusAttempts("USER_1", 60));
+        assertEquals(2, loginAttemptStore.plusAttempts("USER_1", 60));
+        assertEquals(3, loginAttemptStore.plusAttempts("USER_1", 60));
+        assertEquals(0, loginAttemptStore.getAttempts("USER_2", 60));
+
+        //10 seconds of next window,3 * 50 / 60 of previous window
+        currentTime[0] = 70000L;
+        assertEquals(2, loginAttemptStore.getAttempts("USER_1", 60));
+        assertEquals(3, loginAttemptStore.plusAttempts("USER_1", 60));
+
+        //two windows passed
+        currentTime[0] = 190000L;
+        assertEquals(0, loginAttemptStore.getAttempts("USER_1", 60));
+
+        loginAttemptStore.plusAttempts("USER_1", 60);
+        loginAttemptStore.resetAttempts("USER_1", 60);
+        assertEquals(0, loginAttemptStore.getAttempts("USER_1", 60));
+        //no window,not count
+        assertEquals(0, loginAttemptStore.plusAttempts("USER_1", 0));
+    }
+
+    @Test
+    public void testResetAttemptsBeforeUnlock() {
+        long[] currentTime = { 10000L };
+        InMemoryLoginAttemptStore loginAttemptStore = new InMemoryLoginAttemptStore() {
+            @Override
+            long currentTimeMillis() {
+                return currentTime[0];
+            }
+        };
+        loginAttemptStore.plusAttempts("USER_1", 60);
+        loginAttemptStore.plusAttempts("USER_1", 60);
+        //unlocked by other node before the bucket,keep it
+        loginAttemptStore.resetAttemptsBefore("USER_1", 60, 5000L);
+        assertEquals(2, loginAttemptStore.getAttempts("USER_1", 60));
+
+        //unlocked by other node after the bucket
+        currentTime[0] = 20000L;
+        loginAttemptStore.resetAttemptsBefore("USER_1", 60, 15000L);
+        assertEquals(0, loginAttemptStore.getAttempts("USER_1", 60));
+        assertEquals(1, loginAttemptStore.plusAttempts("USER_1", 60));
+        loginAttemptStore.resetAttemptsBefore("USER_1", 60, 15000L);
+        assertEquals(1, loginAttemptStore.getAttempts("USER_1", 60));
+    }
+
+    @Test
+    public void testRedisLoginAttemptStore() throws Exception {
+        EmbeddedRedisServer redisServer = new EmbeddedRedisServer().start();
+        RedisConnectionFactory connectionFactory = redisServer.createConnectionFactory();
+        try {
+            long[] currentTime = { 3600000L * 100 + 600000L };
+            RedisLoginAttemptStore loginAttemptStore = new RedisLoginAttemptStore(connectionFactory) {
+                @Override
+                long currentTimeMillis() {
+                    return currentTime[0];
+                }
+            };
+            for (int i = 1; i <= 5; i++) {
+                assertEquals(i, loginAttemptStore.plusAttempts("IP_10.0.0.1", 3600));
+            }
+            String bucketKey = RedisLoginAttemptStore.PREFIX
+                    + AbstractLoginAttemptStore.bucketKey("IP_10.0.0.1", 3600, 100);
+            assertEquals(7200, redisServer.ttl(bucketKey));
+            assertEquals(5, loginAttemptStore.getAttempts("IP_10.0.0.1", 3600));
+
+            //half of next window
+            currentTime[0] = 3600000L * 101 + 1800000L;
+            assertEquals(2, loginAttemptStore.getAttempts("IP_10.0.0.1", 3600));
+            assertEquals(3, loginAttemptStore.plusAttempts("IP_10.0.0.1", 3600));
+
+            loginAttemptStore.resetAttempts("IP_10.0.0.1", 3600);
+            assertEquals(0, loginAttemptStore.getAttempts("IP_10.0.0.1", 3600));
+            assertEquals(0, redisServer.size());
+        } finally {
+            connectionFactory.getJedisPool().close();
+            redisServer.close();
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.maxkey.entity.HistoryLogin;
+import org.maxkey.entity.HistoryLoginApps;
+import org.maxkey.entity.HistoryLogs;
+import org.maxkey.entity.UserInfo;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class LoginHistoryWriterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFlushBatch() throws InterruptedException {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        LoginHistoryWriter writer = createStoppedWriter(jdbcTemplate);
+        for (int i = 0; i < 10; i++) {
+            writer.login(createHistoryLogin("session-" + i));
+            writer.loginApps(createHistoryLoginApps("session-" + i));
+        }
+        writer.logoff("2021-01-01 00:00:00", "session-0");
+        for (int i = 0; i < 5; i++) {
+            writer.updateLastLogin(createUserInfo("user-1", "10.0.0." + i));
+        }
+        writer.updateLastLogin(createUserInfo("user-2", "10.0.1.1"));
+        assertEquals(2, writer.getPendingLastLogins());
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class), any(int[].class));
+
+        List<LoginHistoryWriter.LoginHistoryEvent> events = new ArrayList<LoginHistoryWriter.LoginHistoryEvent>();
+        writer.queue.drainTo(events);
+        writer.flush(events);
+
+        InOrder inOrder = inOrder(jdbcTemplate);
+        ArgumentCaptor<List> loginCaptor = ArgumentCaptor.forClass(List.class);
+        inOrder.verify(jdbcTemplate).batchUpdate(eq(LoginHistoryWriter.HISTORY_LOGIN_INSERT_STATEMENT),
+                loginCaptor.capture(), eq(LoginHistoryWriter.HISTORY_LOGIN_TYPES));
+        ArgumentCaptor<List> appsCaptor = ArgumentCaptor.forClass(List.class);
+        inOrder.verify(jdbcTemplate).batchUpdate(eq(LoginHistoryWriter.HISTORY_LOGIN_APPS_INSERT_STATEMENT),
+                appsCaptor.capture(), eq(LoginHistoryWriter.HISTORY_LOGIN_APPS_TYPES));
+        ArgumentCaptor<List> logoffCaptor = ArgumentCaptor.forClass(List.class);
+        inOrder.verify(jdbcTemplate).batchUpdate(eq(LoginHistoryWriter.HISTORY_LOGOUT_UPDATE_STATEMENT),
+                logoffCaptor.capture(), eq(LoginHistoryWriter.HISTORY_LOGOUT_TYPES));
+        ArgumentCaptor<List> lastLoginCaptor = ArgumentCaptor.forClass(List.class);
+        inOrder.verify(jdbcTemplate).batchUpdate(eq(LoginHistoryWriter.LAST_LOGIN_UPDATE_STATEMENT),
+                lastLoginCaptor.capture(), eq(LoginHistoryWriter.LAST_LOGIN_TYPES));
+
+        assertEquals(10, loginCaptor.getValue().size());
+        assertEquals(10, appsCaptor.getValue().size());
+        assertEquals(1, logoffCaptor.getValue().size());
+
+        //5 logins of user-1 coalesced to one update
+        List<Object[]> lastLogins = lastLoginCaptor.getValue();
+        assertEquals(2, lastLogins.size());
+        for (Object[] args : lastLogins) {
+            if ("user-1".equals(args[3])) {
+                assertEquals("10.0.0.4", args[1]);
+                assertEquals(5, args[2]);
+            } else {
+                assertEquals(1, args[2]);
+            }
+        }
+        assertEquals(0, writer.getPendingLastLogins());
+        assertEquals(23, writer.getWriteCount());
+        assertEquals(1, writer.getFlushCount());
+    }
+
+    @Test
+    public void testSpillWhenQueueFull() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        LoginHistoryWriter writer = new LoginHistoryWriter(jdbcTemplate, true, 5, 100, 3600000);
+        //stop the writer thread , queue not drained
+        writer.running = false;
+        writer.writerThread.interrupt();
+        writer.writerThread.join();
+        writer.setOfferTimeoutMillis(10);
+        writer.setSpillDirectory(temporaryFolder.newFolder("spill").getPath());
+        for (int i = 0; i < 8; i++) {
+            writer.login(createHistoryLogin("session-" + i));
+        }
+        assertEquals(5, writer.getQueueSize());
+        assertEquals(0, writer.getDroppedCount());
+        assertEquals(3, writer.getSpilledCount());
+        assertEquals(3, writer.getSpillFiles());
+
+        //without spill directory
+        writer.setSpillDirectory(null);
+        writer.login(createHistoryLogin("session-8"));
+        assertEquals(1, writer.getDroppedCount());
+    }
+
+    @Test
+    public void testWriteOnShutdown() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        LoginHistoryWriter writer = new LoginHistoryWriter(jdbcTemplate, true, 100, 100, 100);
+        for (int i = 0; i < 3; i++) {
+            writer.login(createHistoryLogin("session-" + i));
+        }
+        writer.shutdown();
+        assertEquals(0, writer.getQueueSize());
+        assertEquals(3, writer.getWriteCount());
+    }
+
+    @Test
+    public void testSync() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        LoginHistoryWriter writer = new LoginHistoryWriter(jdbcTemplate);
+        writer.login(createHistoryLogin("session-1"));
+        writer.updateLastLogin(createUserInfo("user-1", "10.0.0.1"));
+
+        verify(jdbcTemplate).update(eq(LoginHistoryWriter.HISTORY_LOGIN_INSERT_STATEMENT),
+                any(Object[].class), eq(LoginHistoryWriter.HISTORY_LOGIN_TYPES));
+        verify(jdbcTemplate).update(eq(LoginHistoryWriter.LAST_LOGIN_UPDATE_STATEMENT),
+                any(Object[].class), eq(LoginHistoryWriter.LAST_LOGIN_TYPES));
+        verify(jdbcTemplate, times(0)).batchUpdate(anyString(), any(List.class), any(int[].class));
+        assertEquals(0, writer.getPendingLastLogins());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSystemLogsRenderedOnQueue() throws InterruptedException {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        LoginHistoryWriter writer = createStoppedWriter(jdbcTemplate);
+        Map<String, String> content = new HashMap<String, String>();
+        content.put("username", "maxkey");
+        writer.systemLogs(new HistoryLogs("users", "200", "add", null, "SUCCESS", "ADD", "user-1", "maxkey", ""),
+                content);
+        //changed by request after queued
+        content.put("username", "changed");
+
+        List<LoginHistoryWriter.LoginHistoryEvent> events = new ArrayList<LoginHistoryWriter.LoginHistoryEvent>();
+        writer.queue.drainTo(events);
+        writer.flush(events);
+
+        ArgumentCaptor<List> logsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(LoginHistoryWriter.HISTORY_LOGS_INSERT_STATEMENT),
+                logsCaptor.capture(), eq(LoginHistoryWriter.HISTORY_LOGS_TYPES));
+        Object[] args = (Object[]) logsCaptor.getValue().get(0);
+        assertEquals("{\"username\":\"maxkey\"}", args[3]);
+        assertEquals("users", args[1]);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testSpillAndReplay() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        LoginHistoryWriter writer = createStoppedWriter(jdbcTemplate);
+        File spillDirectory = temporaryFolder.newFolder("spill");
+        writer.setSpillDirectory(spillDirectory.getPath());
+
+        //database unavailable
+        doThrow(new DataAccessResourceFailureException("connection refused"))
+            .when(jdbcTemplate).batchUpdate(anyString(), anyListOf(Object[].class), any(int[].class));
+        for (int i = 0; i < 3; i++) {
+            writer.login(createHistoryLogin("session-" + i));
+        }
+        writer.systemLogs(new HistoryLogs("users", "200", "add", null, "SUCCESS", "ADD", "user-1", "maxkey", ""),
+                Collections.singletonMap("username", "maxkey"));
+        List<LoginHistoryWriter.LoginHistoryEvent> events = new ArrayList<LoginHistoryWriter.LoginHistoryEvent>();
+        writer.queue.drainTo(events);
+        writer.flush(events);
+
+        assertEquals(2, writer.getSpillFiles());
+        assertEquals(4, writer.getSpilledCount());
+        assertEquals(0, writer.getFailedCount());
+        writer.replaySpill();
+        assertEquals(2, writer.getSpillFiles());
+
+        //database is back , rows of the first batch committed before failure
+        reset(jdbcTemplate);
+        doThrow(new DuplicateKeyException("duplicate"))
+            .when(jdbcTemplate).batchUpdate(eq(LoginHistoryWriter.HISTORY_LOGIN_INSERT_STATEMENT),
+                    anyListOf(Object[].class), any(int[].class));
+        doThrow(new DuplicateKeyException("duplicate"))
+            .when(jdbcTemplate).update(eq(LoginHistoryWriter.HISTORY_LOGIN_INSERT_STATEMENT),
+                    any(Object[].class), any(int[].class));
+        writer.replaySpill();
+
+        assertEquals(0, writer.getSpillFiles());
+        assertFalse(writer.spillPending);
+        verify(jdbcTemplate, times(3)).update(eq(LoginHistoryWriter.HISTORY_LOGIN_INSERT_STATEMENT),
+                any(Object[].class), eq(LoginHistoryWriter.HISTORY_LOGIN_TYPES));
+        ArgumentCaptor<List> logsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(LoginHistoryWriter.HISTORY_LOGS_INSERT_STATEMENT),
+                logsCaptor.capture(), eq(LoginHistoryWriter.HISTORY_LOGS_TYPES));
+        assertEquals("{\"username\":\"maxkey\"}", ((Object[]) logsCaptor.getValue().get(0))[3]);
+        assertEquals(1, writer.getReplayedCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testLogoffSpilledAfterSpilledLogin() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        LoginHistoryWriter writer = createStoppedWriter(jdbcTemplate);
+        writer.setSpillDirectory(temporaryFolder.newFolder("spill").getPath());
+        doThrow(new DataAccessResourceFailureException("connection refused"))
+            .when(jdbcTemplate).batchUpdate(anyString(), anyListOf(Object[].class), any(int[].class));
+        writer.login(createHistoryLogin("session-1"));
+        List<LoginHistoryWriter.LoginHistoryEvent> events = new ArrayList<LoginHistoryWriter.LoginHistoryEvent>();
+        writer.queue.drainTo(events);
+        writer.flush(events);
+        assertEquals(1, writer.getSpillFiles());
+
+        //database is back , replay still failed , logoff of the spilled login updates no row
+        reset(jdbcTemplate);
+        when(jdbcTemplate.batchUpdate(eq(LoginHistoryWriter.HISTORY_LOGOUT_UPDATE_STATEMENT),
+                anyListOf(Object[].class), any(int[].class))).thenReturn(new int[] { 0, 1 });
+        writer.logoff("2021-01-01 00:00:00", "session-1");
+        writer.logoff("2021-01-01 00:00:00", "session-2");
+        events.clear();
+        writer.queue.drainTo(events);
+        writer.flush(events);
+        assertEquals(2, writer.getSpillFiles());
+        assertEquals(1, writer.getWriteCount());
+
+        //login replayed before logoff
+        reset(jdbcTemplate);
+        writer.replaySpill();
+        assertEquals(0, writer.getSpillFiles());
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).batchUpdate(eq(LoginHistoryWriter.HISTORY_LOGIN_INSERT_STATEMENT),
+                anyListOf(Object[].class), any(int[].class));
+        ArgumentCaptor<List> logoffCaptor = ArgumentCaptor.forClass(List.class);
+        inOrder.verify(jdbcTemplate).batchUpdate(eq(LoginHistoryWriter.HISTORY_LOGOUT_UPDATE_STATEMENT),
+                logoffCaptor.capture(), any(int[].class));
+        assertEquals(1, logoffCaptor.getValue().size());
+        assertEquals("session-1", ((Object[]) logoffCaptor.getValue().get(0))[1]);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testReplayLastLoginOnlyWhenNewer() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        LoginHistoryWriter writer = createStoppedWriter(jdbcTemplate);
+        writer.setSpillDirectory(temporaryFolder.newFolder("spill").getPath());
+        doThrow(new DataAccessResourceFailureException("connection refused"))
+            .when(jdbcTemplate).batchUpdate(anyString(), anyListOf(Object[].class), any(int[].class));
+        writer.updateLastLogin(createUserInfo("user-1", "10.0.0.1"));
+        writer.updateLastLogin(createUserInfo("user-1", "10.0.0.2"));
+        writer.flush(new ArrayList<LoginHistoryWriter.LoginHistoryEvent>());
+        assertEquals(1, writer.getSpillFiles());
+
+        reset(jdbcTemplate);
+        writer.replaySpill();
+        assertEquals(0, writer.getSpillFiles());
+        verify(jdbcTemplate, never()).batchUpdate(eq(LoginHistoryWriter.LAST_LOGIN_UPDATE_STATEMENT),
+                anyListOf(Object[].class), any(int[].class));
+        ArgumentCaptor<List> lastLoginCaptor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(LoginHistoryWriter.LAST_LOGIN_REPLAY_STATEMENT),
+                lastLoginCaptor.capture(), eq(LoginHistoryWriter.LAST_LOGIN_REPLAY_TYPES));
+        //count added only when lastlogintime older than the login
+        Object[] args = (Object[]) lastLoginCaptor.getValue().get(0);
+        assertEquals(2, args[2]);
+        assertEquals("user-1", args[3]);
+        assertEquals("2021-01-01 00:00:00", args[4]);
+    }
+
+    LoginHistoryWriter createStoppedWriter(JdbcTemplate jdbcTemplate) throws InterruptedException {
+        LoginHistoryWriter writer = new LoginHistoryWriter(jdbcTemplate, true, 100, 100, 3600000);
+        //stop the writer thread , flush called by test
+        writer.running = false;
+        writer.writerThread.interrupt();
+        writer.writerThread.join();
+        return writer;
+    }
+
+    HistoryLogin createHistoryLogin(String sessionId) {
+        HistoryLogin historyLogin = new HistoryLogin();
+        historyLogin.setSessionId(sessionId);
+        historyLogin.setUserId("user-1");
+        historyLogin.setUsername("maxkey");
+        historyLogin.setInstId("1");
+        historyLogin.setSessionStatus(1);
+        return historyLogin;
+    }
+
+    HistoryLoginApps createHistoryLoginApps(String sessionId) {
+        HistoryLoginApps historyLoginApps = new HistoryLoginApps();
+        historyLoginApps.setSessionId(sessionId);
+        historyLoginApps.setAppId("app-1");
+        historyLoginApps.setUserId("user-1");
+        historyLoginApps.setInstId("1");
+        return historyLoginApps;
+    }
+
+    UserInfo createUserInfo(String userId, String ip) {
+        UserInfo userInfo = new UserInfo();
+        userInfo.setId(userId);
+        userInfo.setLastLoginIp(ip);
+        userInfo.setLastLoginTime("2021-01-01 00:00:00");
+        return userInfo;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+import org.maxkey.entity.UserInfo;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+public class LoginServiceTest {
+
+    @After
+    public void tearDown() {
+        LoginService.LOGIN_ATTRIBUTE_TYPE = 2;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFindAuthnColumns() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        UserInfo userInfo = new UserInfo();
+        userInfo.setId("user-1");
+        when(jdbcTemplate.query(eq(LoginService.DEFAULT_USERINFO_SELECT_STATEMENT_USERNAME_MOBILE),
+                any(RowMapper.class), eq("maxkey"), eq("maxkey"), eq("maxkey")))
+            .thenReturn(Arrays.asList(userInfo));
+        LoginService loginService = new LoginService(jdbcTemplate);
+
+        assertSame(userInfo, loginService.find("maxkey", ""));
+        assertFalse(LoginService.DEFAULT_USERINFO_SELECT_STATEMENT_USERNAME_MOBILE.contains("*"));
+        assertFalse(LoginService.AUTHN_USERINFO_COLUMNS.contains("picture"));
+        assertFalse(LoginService.PROFILE_USERINFO_SELECT_STATEMENT.contains("picture"));
+
+        LoginService.LOGIN_ATTRIBUTE_TYPE = 3;
+        assertNull(loginService.find("maxkey", ""));
+        verify(jdbcTemplate).query(eq(LoginService.DEFAULT_USERINFO_SELECT_STATEMENT_USERNAME_MOBILE_EMAIL),
+                any(RowMapper.class), eq("maxkey"), eq("maxkey"), eq("maxkey"),
+                eq("maxkey"), eq("maxkey"), eq("maxkey"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testLoadProfile() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        UserInfo profile = new UserInfo();
+        profile.setId("user-1");
+        profile.setDepartment("Research and Development");
+        profile.setBadPasswordCount(3);
+        when(jdbcTemplate.query(eq(LoginService.PROFILE_USERINFO_SELECT_STATEMENT),
+                any(RowMapper.class), eq("user-1")))
+            .thenReturn(Arrays.asList(profile), new ArrayList<UserInfo>());
+        LoginService loginService = new LoginService(jdbcTemplate);
+
+        UserInfo userInfo = new UserInfo();
+        userInfo.setId("user-1");
+        userInfo.setBadPasswordCount(0);
+        UserInfo loadProfile = loginService.loadProfile(userInfo);
+        assertSame(profile, loadProfile);
+        assertEquals("Research and Development", loadProfile.getDepartment());
+        //reset when authentication
+        assertEquals(0, loadProfile.getBadPasswordCount());
+
+        //deleted
+        assertSame(userInfo, loginService.loadProfile(userInfo));
+    }
+}
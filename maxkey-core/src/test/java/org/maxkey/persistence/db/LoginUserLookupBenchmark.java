@@ -0,0 +1,212 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.maxkey.entity.UserInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * LoginService.find , select * with picture vs the columns for authentication.
+ * bytes of the columns mapped from the row are counted as bytes transferred,
+ * run main,the bytes per login print before benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoginUserLookupBenchmark {
+
+    static final String SELECT_ALL_STATEMENT = "select * from  mxk_userinfo where (username = ? or mobile = ?)";
+
+    static final int PICTURE_SIZE = 32 * 1024;
+
+    AtomicLong bytes = new AtomicLong();
+
+    Map<String, Object> row;
+
+    LoginService loginService;
+
+    @Setup
+    public void setup() {
+        row = createRow();
+        loginService = new LoginService(createJdbcTemplate());
+    }
+
+    /**
+     * the old find , select * mapped by UserInfoRowMapper
+     */
+    @Benchmark
+    public UserInfo findSelectAll() {
+        List<UserInfo> listUserInfo = loginService.jdbcTemplate.query(
+                SELECT_ALL_STATEMENT, loginService.new UserInfoRowMapper(), "maxkey", "maxkey");
+        return listUserInfo.get(0);
+    }
+
+    @Benchmark
+    public UserInfo findAuthnColumns() {
+        return loginService.find("maxkey", "");
+    }
+
+    @SuppressWarnings("unchecked")
+    JdbcTemplate createJdbcTemplate() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            RowMapper<UserInfo> rowMapper = (RowMapper<UserInfo>) invocation.getArguments()[1];
+            List<UserInfo> listUserInfo = new ArrayList<UserInfo>();
+            listUserInfo.add(rowMapper.mapRow(createResultSet(), 0));
+            return listUserInfo;
+        }).when(jdbcTemplate).query(anyString(), any(RowMapper.class), anyVararg());
+        return jdbcTemplate;
+    }
+
+    /**
+     * ResultSet of the row , count bytes of the column read
+     */
+    ResultSet createResultSet() {
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class },
+                (proxy, method, args) -> {
+                    Object value = row.get(args[0]);
+                    switch (method.getName()) {
+                        case "getString":
+                            if (value != null) {
+                                bytes.addAndGet(value.toString().getBytes(StandardCharsets.UTF_8).length);
+                            }
+                            return value == null ? null : value.toString();
+                        case "getInt":
+                            bytes.addAndGet(4);
+                            return value == null ? 0 : Integer.parseInt(value.toString());
+                        case "getBytes":
+                            if (value != null) {
+                                bytes.addAndGet(((byte[]) value).length);
+                            }
+                            return value;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    static Map<String, Object> createRow() {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("id", "8584804d-b5ac-45d2-9f91-4dd8e7a090a7");
+        row.put("username", "maxkey");
+        row.put("password", "{bcrypt}$2a$10$sWSrhdWLpF2PC7b7L4dfT.2iYFqrH0SBYnQLzc8P1cQJPOUvGRHhS");
+        row.put("decipherable", "{aes}0a6f1c3e5b7d9f1e2c4a6b8d0f2e4c6a8b0d2f4e6c8a0b2d4f6e8c0a2b4d6f8e");
+        row.put("usertype", "EMPLOYEE");
+        row.put("displayname", "MaxKey Admin");
+        row.put("nickname", "MaxKey");
+        row.put("namezhspell", "maxkey");
+        row.put("givenname", "Max");
+        row.put("familyname", "Key");
+        row.put("formattedname", "Max Key");
+        row.put("gender", "1");
+        row.put("birthdate", "1990-01-01");
+        row.put("picture", new byte[PICTURE_SIZE]);
+        row.put("idcardno", "110101199001011234");
+        row.put("mobile", "13800000000");
+        row.put("email", "maxkey@maxkey.top");
+        row.put("passwordlastsettime", "2022-01-01 08:00:00");
+        row.put("lastlogintime", "2022-01-01 08:30:00");
+        row.put("lastloginip", "192.168.1.100");
+        row.put("lastlogofftime", "2022-01-01 18:30:00");
+        row.put("logincount", "120");
+        row.put("timezone", "Asia/Shanghai");
+        row.put("locale", "zh_CN");
+        row.put("preferredlanguage", "zh_CN");
+        row.put("workemail", "maxkey@maxkey.top");
+        row.put("workphonenumber", "010-88888888");
+        row.put("workcountry", "CN");
+        row.put("workregion", "Beijing");
+        row.put("worklocality", "Beijing");
+        row.put("workstreetaddress", "Haidian District , Zhongguancun Street 1");
+        row.put("workpostalcode", "100000");
+        row.put("employeenumber", "20220101");
+        row.put("organization", "MaxKey");
+        row.put("departmentid", "8584804d-b5ac-45d2-9f91-4dd8e7a090a8");
+        row.put("department", "Research and Development");
+        row.put("jobtitle", "Administrator");
+        row.put("entrydate", "2020-01-01");
+        row.put("extraattribute", "{\"costcenter\":\"rd\",\"building\":\"A1\"}");
+        row.put("createdby", "admin");
+        row.put("createddate", "2020-01-01 00:00:00");
+        row.put("modifiedby", "admin");
+        row.put("modifieddate", "2022-01-01 00:00:00");
+        row.put("status", "1");
+        row.put("description", "MaxKey administrator");
+        row.put("theme", "default");
+        row.put("instid", "1");
+        return row;
+    }
+
+    long bytesPerLogin(Runnable login) {
+        bytes.set(0);
+        login.run();
+        return bytes.get();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        LoginUserLookupBenchmark benchmark = new LoginUserLookupBenchmark();
+        benchmark.setup();
+        System.out.println("select * bytes per login : "
+                + benchmark.bytesPerLogin(benchmark::findSelectAll));
+        System.out.println("authentication columns bytes per login : "
+                + benchmark.bytesPerLogin(benchmark::findAuthnColumns));
+        System.out.println("authentication columns and profile bytes per successful login : "
+                + benchmark.bytesPerLogin(() -> benchmark.loginService.loadProfile(benchmark.findAuthnColumns())));
+
+        Options opt = new OptionsBuilder()
+                .include(LoginUserLookupBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.maxkey.entity.PasswordPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.passay.PasswordData;
+import org.passay.PasswordValidator;
+import org.passay.PropertiesMessageResolver;
+import org.passay.RuleResult;
+import org.passay.dictionary.ArrayWordList;
+import org.passay.dictionary.WordListDictionary;
+import org.passay.dictionary.sort.ArraysSort;
+
+/**
+ * password validation with a 1M words weak password dictionary,
+ * CompiledPasswordPolicy with WeakPasswordDictionary vs
+ * PasswordValidator built per validation with the passay word list dictionary.<br>
+ * run main,the dictionary build time and heap used print before benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class PasswordPolicyBenchmark {
+
+    static final int WORDS = 1000000;
+
+    static final String[] PASSWORDS = {
+            "x7#Lq9!mZ2", "Maxkey@2022", "N0t-In-Dict", "weak123456Ab!", "Summer#2021x" };
+
+    CompiledPasswordPolicy compiledPasswordPolicy;
+
+    CompiledPasswordPolicy wordListPasswordPolicy;
+
+    @Setup
+    public void setup() {
+        List<String> words = createWords();
+        compiledPasswordPolicy = new CompiledPasswordPolicy(
+                createPasswordPolicy(), new PropertiesMessageResolver(), new WeakPasswordDictionary(words));
+        wordListPasswordPolicy = new CompiledPasswordPolicy(
+                createPasswordPolicy(), new PropertiesMessageResolver(), createWordListDictionary(words));
+    }
+
+    @Benchmark
+    public RuleResult validateCompiled() {
+        return compiledPasswordPolicy.validate("maxkey", nextPassword());
+    }
+
+    /**
+     * the validator before,PasswordValidator built for each validation
+     */
+    @Benchmark
+    public RuleResult validateWordList() {
+        PasswordValidator validator = new PasswordValidator(
+                new PropertiesMessageResolver(), new ArrayList<>(wordListPasswordPolicy.getRules()));
+        return validator.validate(new PasswordData("maxkey", nextPassword()));
+    }
+
+    static String nextPassword() {
+        return PASSWORDS[ThreadLocalRandom.current().nextInt(PASSWORDS.length)];
+    }
+
+    static List<String> createWords() {
+        List<String> words = new ArrayList<String>(WORDS);
+        for (int i = 0; i < WORDS; i++) {
+            words.add((i % 2 == 0 ? "weak" : "Pass") + Integer.toString(i * 31, 36));
+        }
+        return words;
+    }
+
+    static WordListDictionary createWordListDictionary(List<String> words) {
+        return new WordListDictionary(
+                new ArrayWordList(words.toArray(new String[words.size()]), false, new ArraysSort()));
+    }
+
+    static PasswordPolicy createPasswordPolicy() {
+        PasswordPolicy passwordPolicy = new PasswordPolicy();
+        passwordPolicy.setMinLength(8);
+        passwordPolicy.setMaxLength(20);
+        passwordPolicy.setLowerCase(1);
+        passwordPolicy.setUpperCase(1);
+        passwordPolicy.setDigits(1);
+        passwordPolicy.setSpecialChar(1);
+        passwordPolicy.setAlphabetical(1);
+        passwordPolicy.setNumerical(1);
+        passwordPolicy.setQwerty(1);
+        passwordPolicy.setDictionary(1);
+        return passwordPolicy;
+    }
+
+    static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        List<String> words = createWords();
+        //dictionaries not collected before heap measured
+        List<Object> dictionaries = new ArrayList<Object>();
+        dictionaries.add(words);
+        long baseMemory = usedMemory();
+        long startTime = System.currentTimeMillis();
+        WeakPasswordDictionary weakPasswordDictionary = new WeakPasswordDictionary(words);
+        dictionaries.add(weakPasswordDictionary);
+        long buildMillis = System.currentTimeMillis() - startTime;
+        long dictionaryMemory = usedMemory() - baseMemory;
+        System.out.println("WeakPasswordDictionary " + weakPasswordDictionary.size() + " words , build "
+                + buildMillis + " ms , heap " + dictionaryMemory / 1024 + " KB");
+
+        baseMemory = usedMemory();
+        startTime = System.currentTimeMillis();
+        //the words copied as the word list read from file
+        List<String> readWords = new ArrayList<String>(words.size());
+        for (String word : words) {
+            readWords.add(new String(word.toCharArray()));
+        }
+        WordListDictionary wordListDictionary = createWordListDictionary(readWords);
+        dictionaries.add(wordListDictionary);
+        readWords = null;
+        buildMillis = System.currentTimeMillis() - startTime;
+        dictionaryMemory = usedMemory() - baseMemory;
+        System.out.println("WordListDictionary " + wordListDictionary.size() + " words , build "
+                + buildMillis + " ms , heap " + dictionaryMemory / 1024 + " KB");
+        System.out.println(dictionaries.size() + " objects measured");
+
+        Options opt = new OptionsBuilder()
+                .include(PasswordPolicyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
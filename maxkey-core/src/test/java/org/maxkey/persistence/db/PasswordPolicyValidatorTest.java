@@ -0,0 +1,209 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.maxkey.constants.ConstantsStatus;
+import org.maxkey.entity.PasswordPolicy;
+import org.maxkey.entity.UserInfo;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * failed attempts counted in store,mxk_userinfo updated only when user locked
+ */
+public class PasswordPolicyValidatorTest {
+
+    JdbcTemplate jdbcTemplate;
+
+    PasswordPolicyValidator passwordPolicyValidator;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class))).thenReturn(createPasswordPolicy());
+        passwordPolicyValidator = new PasswordPolicyValidator(jdbcTemplate, new StaticMessageSource());
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void testLockWhenAttemptsReached() {
+        for (int i = 1; i < 5; i++) {
+            UserInfo userInfo = createUserInfo("user-1");
+            passwordPolicyValidator.plusBadPasswordCount(userInfo);
+            assertEquals(i, userInfo.getBadPasswordCount());
+        }
+        verifyUpdates(0);
+
+        UserInfo userInfo = createUserInfo("user-1");
+        passwordPolicyValidator.plusBadPasswordCount(userInfo);
+        assertEquals(5, userInfo.getBadPasswordCount());
+        assertEquals(ConstantsStatus.LOCK, userInfo.getIsLocked());
+        verifyUpdates(1);
+
+        //the locked user loaded from database
+        UserInfo lockedUserInfo = createUserInfo("user-1");
+        lockedUserInfo.setBadPasswordCount(5);
+        lockedUserInfo.setBadPasswordTime(new DateTime().toString("yyyy-MM-dd HH:mm:ss"));
+        lockedUserInfo.setIsLocked(ConstantsStatus.LOCK);
+        try {
+            passwordPolicyValidator.passwordPolicyValid(lockedUserInfo);
+            fail();
+        } catch (BadCredentialsException e) {
+            //locked
+        }
+        verifyUpdates(1);
+    }
+
+    @Test
+    public void testResetBadPasswordCount() {
+        passwordPolicyValidator.plusBadPasswordCount(createUserInfo("user-2"));
+        passwordPolicyValidator.plusBadPasswordCount(createUserInfo("user-2"));
+
+        //login success,badPasswordCount of database is 0
+        passwordPolicyValidator.resetBadPasswordCount(createUserInfo("user-2"));
+        assertEquals(0, passwordPolicyValidator.getLoginAttemptStore().getAttempts(
+                PasswordPolicyValidator.USER_ATTEMPTS_PREFIX + "user-2", 3600));
+        verifyUpdates(0);
+    }
+
+    @Test
+    public void testUnlockResetAttempts() {
+        for (int i = 0; i < 4; i++) {
+            passwordPolicyValidator.plusBadPasswordCount(createUserInfo("user-3"));
+        }
+        //unlocked by administrator
+        passwordPolicyValidator.resetLoginAttempts(createUserInfo("user-3"));
+        UserInfo userInfo = createUserInfo("user-3");
+        passwordPolicyValidator.plusBadPasswordCount(userInfo);
+        assertEquals(1, userInfo.getBadPasswordCount());
+
+        //unlocked by other node,only the unlock time persisted
+        userInfo = createUserInfo("user-3");
+        userInfo.setUnLockTime(new DateTime().plusSeconds(1).toString("yyyy-MM-dd HH:mm:ss"));
+        passwordPolicyValidator.plusBadPasswordCount(userInfo);
+        assertEquals(1, userInfo.getBadPasswordCount());
+        verifyUpdates(0);
+    }
+
+    @Test
+    public void testIpAttempts() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.1");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        passwordPolicyValidator.setIpAttempts(3, 600);
+
+        //spraying one password to many users
+        for (int i = 0; i < 3; i++) {
+            UserInfo userInfo = createUserInfo("user-" + i);
+            passwordPolicyValidator.passwordPolicyValid(userInfo);
+            passwordPolicyValidator.plusBadPasswordCount(userInfo);
+        }
+        try {
+            passwordPolicyValidator.passwordPolicyValid(createUserInfo("user-9"));
+            fail();
+        } catch (BadCredentialsException e) {
+            //too many failed logins from ip
+        }
+        verifyUpdates(0);
+
+        request.setRemoteAddr("10.0.0.2");
+        passwordPolicyValidator.passwordPolicyValid(createUserInfo("user-9"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCompiledPasswordPolicy() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        PasswordPolicy passwordPolicy = createPasswordPolicy();
+        passwordPolicy.setDictionary(1);
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class))).thenReturn(passwordPolicy);
+
+        CompiledPasswordPolicy compiledPasswordPolicy = passwordPolicyValidator.getCompiledPasswordPolicy();
+        for (int i = 0; i < 100; i++) {
+            UserInfo userInfo = createUserInfo("user-1");
+            userInfo.setPassword(i % 2 == 0 ? "Password" : "x7#Lq9!mZ2");
+            assertEquals(i % 2 != 0, passwordPolicyValidator.validator(userInfo));
+        }
+        //compiled once
+        assertSame(compiledPasswordPolicy, passwordPolicyValidator.getCompiledPasswordPolicy());
+        verify(jdbcTemplate, times(1)).queryForObject(anyString(), any(RowMapper.class));
+        assertSame(PasswordPolicyValidator.getTopWeakPasswordDictionary(),
+                PasswordPolicyValidator.getTopWeakPasswordDictionary());
+
+        //policy changed
+        PasswordPolicy changedPasswordPolicy = createPasswordPolicy();
+        changedPasswordPolicy.setMinLength(12);
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class))).thenReturn(changedPasswordPolicy);
+        passwordPolicyValidator.refresh();
+        assertNotSame(compiledPasswordPolicy, passwordPolicyValidator.getCompiledPasswordPolicy());
+        UserInfo userInfo = createUserInfo("user-1");
+        userInfo.setPassword("x7#Lq9!mZ2");
+        assertFalse(passwordPolicyValidator.validator(userInfo));
+        assertEquals(16, passwordPolicyValidator.getPasswordPolicy().getRandomPasswordLength());
+    }
+
+    void verifyUpdates(int times) {
+        verify(jdbcTemplate, times == 0 ? never() : times(times))
+            .update(anyString(), any(Object[].class), any(int[].class));
+    }
+
+    static UserInfo createUserInfo(String id) {
+        UserInfo userInfo = new UserInfo();
+        userInfo.setId(id);
+        userInfo.setUsername(id);
+        userInfo.setIsLocked(ConstantsStatus.ACTIVE);
+        userInfo.setStatus(ConstantsStatus.ACTIVE);
+        return userInfo;
+    }
+
+    static PasswordPolicy createPasswordPolicy() {
+        PasswordPolicy passwordPolicy = new PasswordPolicy();
+        passwordPolicy.setMinLength(6);
+        passwordPolicy.setMaxLength(20);
+        passwordPolicy.setAttempts(5);
+        passwordPolicy.setDuration(1);
+        return passwordPolicy;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class WeakPasswordDictionaryTest {
+
+    @Test
+    public void testSearch() throws Exception {
+        WeakPasswordDictionary dictionary = WeakPasswordDictionary.load(
+                new StringReader("123456\npassword\nQwerty\n\npassword\nmima密码\n"));
+        assertEquals(4, dictionary.size());
+        assertTrue(dictionary.search("123456"));
+        assertTrue(dictionary.search("PassWord"));
+        assertTrue(dictionary.search("qwerty"));
+        assertTrue(dictionary.search("mima密码"));
+        assertFalse(dictionary.search("passwor"));
+        assertFalse(dictionary.search("password1"));
+        assertFalse(dictionary.search(""));
+        assertFalse(dictionary.search(null));
+    }
+
+    @Test
+    public void testSortedWords() {
+        List<String> words = new ArrayList<String>();
+        for (int i = 0; i < 10000; i++) {
+            words.add("weak" + Integer.toHexString(i * 7919));
+        }
+        WeakPasswordDictionary dictionary = new WeakPasswordDictionary(words);
+        for (String word : words) {
+            assertTrue(word, dictionary.search(word));
+        }
+        int found = 0;
+        for (int i = 0; i < 10000; i++) {
+            found += dictionary.search("strong" + i) ? 1 : 0;
+        }
+        assertEquals(0, found);
+        assertFalse(new WeakPasswordDictionary(Arrays.asList("a", "é")).search("b"));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.ldap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LdapUtilsTest {
+
+    EmbeddedLdapServer ldapServer;
+
+    LdapUtils ldapUtils;
+
+    @Before
+    public void setUp() throws Exception {
+        ldapServer = new EmbeddedLdapServer().start();
+        ldapServer.addEntry("dc=maxkey,dc=top", "dc=maxkey");
+        ldapServer.addEntry("cn=Manager,dc=maxkey,dc=top", "cn=Manager", "userPassword=secret");
+        ldapServer.addEntry("uid=shimingxy,ou=people,dc=maxkey,dc=top",
+                "uid=shimingxy", "mail=shimingxy@maxkey.top", "userPassword=maxkey@2022");
+        ldapServer.addEntry("uid=admin,ou=people,dc=maxkey,dc=top", "uid=admin", "userPassword=admin@2022");
+        ldapUtils = new LdapUtils(ldapServer.getProviderUrl(), "cn=Manager,dc=maxkey,dc=top", "secret",
+                "dc=maxkey,dc=top");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ldapUtils.closePool();
+        ldapServer.close();
+    }
+
+    @Test
+    public void testSearchPooled() throws Exception {
+        SearchControls constraints = new SearchControls();
+        constraints.setSearchScope(ldapUtils.getSearchScope());
+        for (int i = 0; i < 10; i++) {
+            List<SearchResult> results = ldapUtils.search("(uid=shimingxy)", constraints);
+            assertEquals(1, results.size());
+            assertEquals("uid=shimingxy,ou=people,dc=maxkey,dc=top", results.get(0).getNameInNamespace());
+        }
+        assertEquals(2, ldapUtils.search("(|(uid=shimingxy)(uid=admin))", constraints).size());
+        assertEquals(0, ldapUtils.search("(uid=" + LdapUtils.escapeFilterValue("*") + ")", constraints).size());
+        //one connection for all searches
+        assertEquals(1, ldapServer.getConnectionCount());
+        assertEquals(12, ldapUtils.getStatistics().getSearchCount());
+        assertEquals(1, ldapUtils.getSearchPool().getIdleCount());
+    }
+
+    @Test
+    public void testBindPooled() throws Exception {
+        assertTrue(ldapUtils.bind("uid=shimingxy,ou=people,dc=maxkey,dc=top", "maxkey@2022"));
+        assertFalse(ldapUtils.bind("uid=shimingxy,ou=people,dc=maxkey,dc=top", "maxkey@2021"));
+        assertTrue(ldapUtils.bind("uid=admin,ou=people,dc=maxkey,dc=top", "admin@2022"));
+        assertFalse(ldapUtils.bind("uid=nobody,ou=people,dc=maxkey,dc=top", "nobody"));
+        //unauthenticated bind not sent
+        assertFalse(ldapUtils.bind("uid=admin,ou=people,dc=maxkey,dc=top", ""));
+        assertEquals(1, ldapServer.getConnectionCount());
+        assertEquals(4, ldapServer.getBindCount());
+        assertEquals(4, ldapUtils.getStatistics().getBindCount());
+        assertEquals(3, ldapUtils.getBindPool().getReusedCount());
+    }
+
+    @Test
+    public void testPooledConnectionClosed() throws Exception {
+        SearchControls constraints = new SearchControls();
+        constraints.setSearchScope(ldapUtils.getSearchScope());
+        assertEquals(1, ldapUtils.search("(uid=admin)", constraints).size());
+        assertTrue(ldapUtils.bind("uid=admin,ou=people,dc=maxkey,dc=top", "admin@2022"));
+        ldapServer.closeConnections();
+        Thread.sleep(100);
+        assertEquals(1, ldapUtils.search("(uid=admin)", constraints).size());
+        assertTrue(ldapUtils.bind("uid=admin,ou=people,dc=maxkey,dc=top", "admin@2022"));
+        assertEquals(4, ldapServer.getConnectionCount());
+    }
+
+    @Test
+    public void testEscapeFilterValue() {
+        assertEquals("shimingxy", LdapUtils.escapeFilterValue("shimingxy"));
+        assertEquals("\\2a\\29\\28uid=\\2a\\29\\5c", LdapUtils.escapeFilterValue("*)(uid=*)\\"));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.redis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import org.junit.Test;
+import org.maxkey.util.ObjectTransformer;
+
+public class BinaryRedisObjectCodecTest {
+
+    HashMap<String, Object> createObject(int size) {
+        HashMap<String, Object> object = new HashMap<String, Object>();
+        object.put("username", "maxkey");
+        object.put("department", "我的部门");
+        for(int i = 0 ; i < size ; i++) {
+            object.put("key" + i, "value" + i);
+        }
+        return object;
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        BinaryRedisObjectCodec codec = new BinaryRedisObjectCodec();
+        HashMap<String, Object> object = createObject(10);
+        byte[] value = codec.encode(object);
+        assertTrue(BinaryRedisObjectCodec.isVersioned(value));
+        assertEquals(0, value[3]);
+        HashMap<String, Object> decoded = codec.decode(value);
+        assertEquals(object, decoded);
+    }
+
+    @Test
+    public void testDeflate() {
+        BinaryRedisObjectCodec codec = new BinaryRedisObjectCodec(1024);
+        HashMap<String, Object> object = createObject(1000);
+        byte[] value = codec.encode(object);
+        assertEquals(BinaryRedisObjectCodec.FLAG_DEFLATE, value[3]);
+        assertTrue(value.length < ObjectTransformer.object2Bytes(object).length);
+        HashMap<String, Object> decoded = codec.decode(value);
+        assertEquals(object, decoded);
+    }
+
+    @Test
+    public void testDecodeHexValue() {
+        HashMap<String, Object> object = createObject(10);
+        byte[] hexValue = ObjectTransformer.serialize(object).getBytes(StandardCharsets.US_ASCII);
+        HashMap<String, Object> decoded = new BinaryRedisObjectCodec().decode(hexValue);
+        assertEquals(object, decoded);
+
+        byte[] value = new HexRedisObjectCodec().encode(object);
+        assertEquals(new String(hexValue, StandardCharsets.US_ASCII), new String(value, StandardCharsets.US_ASCII));
+    }
+}
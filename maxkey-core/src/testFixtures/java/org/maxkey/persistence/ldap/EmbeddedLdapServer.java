@@ -0,0 +1,452 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.ldap;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * EmbeddedLdapServer<br>
+ * in-process LDAP v3 server for tests,BER encoded bind,search and unbind of the JNDI ldap provider.<br>
+ * simple bind with the userPassword of the entry,
+ * search of base object or subtree with and,or,not,equality and present filters.<br>
+ * connections,binds and searches counted,delayMillis to simulate a slow server.
+ *
+ */
+public class EmbeddedLdapServer implements Closeable {
+
+    static final int BIND_REQUEST = 0x60;
+    static final int BIND_RESPONSE = 0x61;
+    static final int UNBIND_REQUEST = 0x42;
+    static final int SEARCH_REQUEST = 0x63;
+    static final int SEARCH_RESULT_ENTRY = 0x64;
+    static final int SEARCH_RESULT_DONE = 0x65;
+    static final int ABANDON_REQUEST = 0x50;
+
+    public static final int SUCCESS = 0;
+    public static final int NO_SUCH_OBJECT = 32;
+    public static final int INVALID_CREDENTIALS = 49;
+    public static final int UNWILLING_TO_PERFORM = 53;
+
+    ServerSocket serverSocket;
+
+    final List<Socket> clients = new CopyOnWriteArrayList<Socket>();
+
+    /**
+     * normalized dn to entry
+     */
+    final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    final AtomicLong connectionCount = new AtomicLong();
+
+    final AtomicLong bindCount = new AtomicLong();
+
+    final AtomicLong searchCount = new AtomicLong();
+
+    volatile long delayMillis;
+
+    public EmbeddedLdapServer start() throws IOException {
+        serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    clients.add(socket);
+                    connectionCount.incrementAndGet();
+                    Thread client = new Thread(() -> serve(socket), "embedded-ldap-client");
+                    client.setDaemon(true);
+                    client.start();
+                } catch (IOException e) {
+                    //closed
+                }
+            }
+        }, "embedded-ldap-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public String getProviderUrl() {
+        return "ldap://127.0.0.1:" + getPort();
+    }
+
+    /**
+     * add entry,attribute userPassword for bind
+     * @param dn
+     * @param attributes name and values,name=value1,value2 ...
+     */
+    public EmbeddedLdapServer addEntry(String dn, String... attributes) {
+        Entry entry = new Entry(dn);
+        for (String attribute : attributes) {
+            int index = attribute.indexOf('=');
+            entry.attributes.computeIfAbsent(attribute.substring(0, index), name -> new ArrayList<String>())
+                    .add(attribute.substring(index + 1));
+        }
+        entries.put(normalize(dn), entry);
+        return this;
+    }
+
+    public void removeEntry(String dn) {
+        entries.remove(normalize(dn));
+    }
+
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    public long getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public long getBindCount() {
+        return bindCount.get();
+    }
+
+    public long getSearchCount() {
+        return searchCount.get();
+    }
+
+    /**
+     * close client connections like idle timeout of server
+     */
+    public void closeConnections() throws IOException {
+        for (Socket socket : clients) {
+            socket.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : clients) {
+            socket.close();
+        }
+    }
+
+    void serve(Socket socket) {
+        try (InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream out = socket.getOutputStream()) {
+            while (true) {
+                Element message = Element.read(in);
+                if (message == null) {
+                    return;
+                }
+                List<Element> elements = message.children();
+                int messageId = (int) elements.get(0).intValue();
+                Element request = elements.get(1);
+                if (request.tag == UNBIND_REQUEST) {
+                    return;
+                }
+                if (request.tag == ABANDON_REQUEST) {
+                    continue;
+                }
+                delay();
+                ByteArrayOutputStream response = new ByteArrayOutputStream();
+                if (request.tag == BIND_REQUEST) {
+                    response.write(message(messageId, bind(request.children())));
+                } else if (request.tag == SEARCH_REQUEST) {
+                    search(messageId, request.children(), response);
+                } else {
+                    response.write(message(messageId,
+                            result(request.tag + 1, UNWILLING_TO_PERFORM, "not supported")));
+                }
+                out.write(response.toByteArray());
+                out.flush();
+            }
+        } catch (IOException e) {
+            //closed
+        } finally {
+            clients.remove(socket);
+        }
+    }
+
+    void delay() {
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    byte[] bind(List<Element> request) {
+        bindCount.incrementAndGet();
+        String dn = request.get(1).stringValue();
+        String password = request.get(2).stringValue();
+        if (dn.isEmpty() || password.isEmpty()) {
+            //anonymous or unauthenticated bind
+            return result(BIND_RESPONSE, SUCCESS, "");
+        }
+        Entry entry = entries.get(normalize(dn));
+        if (entry != null && entry.values("userPassword").contains(password)) {
+            return result(BIND_RESPONSE, SUCCESS, "");
+        }
+        return result(BIND_RESPONSE, INVALID_CREDENTIALS, "invalid credentials");
+    }
+
+    void search(int messageId, List<Element> request, ByteArrayOutputStream response) throws IOException {
+        searchCount.incrementAndGet();
+        String base = normalize(request.get(0).stringValue());
+        int scope = (int) request.get(1).intValue();
+        Element filter = request.get(6);
+        if (!base.isEmpty() && !entries.containsKey(base)) {
+            response.write(message(messageId, result(SEARCH_RESULT_DONE, NO_SUCH_OBJECT, "")));
+            return;
+        }
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            String dn = entry.getKey();
+            boolean inScope = scope == 0 ? dn.equals(base)
+                    : base.isEmpty() || dn.equals(base) || dn.endsWith("," + base);
+            if (inScope && matches(filter, entry.getValue())) {
+                response.write(message(messageId, entry.getValue().encode()));
+            }
+        }
+        response.write(message(messageId, result(SEARCH_RESULT_DONE, SUCCESS, "")));
+    }
+
+    boolean matches(Element filter, Entry entry) {
+        switch (filter.tag) {
+            case 0xa0:
+                for (Element child : filter.children()) {
+                    if (!matches(child, entry)) {
+                        return false;
+                    }
+                }
+                return true;
+            case 0xa1:
+                for (Element child : filter.children()) {
+                    if (matches(child, entry)) {
+                        return true;
+                    }
+                }
+                return false;
+            case 0xa2:
+                return !matches(filter.children().get(0), entry);
+            case 0xa3:
+                List<Element> assertion = filter.children();
+                String value = assertion.get(1).stringValue();
+                for (String attributeValue : entry.values(assertion.get(0).stringValue())) {
+                    if (attributeValue.equalsIgnoreCase(value)) {
+                        return true;
+                    }
+                }
+                return false;
+            case 0x87:
+                return !entry.values(filter.stringValue()).isEmpty();
+            default:
+                return false;
+        }
+    }
+
+    static String normalize(String dn) {
+        return dn.replaceAll("\\s*,\\s*", ",").trim().toLowerCase(Locale.ROOT);
+    }
+
+    static byte[] message(int messageId, byte[] protocolOp) {
+        return encode(0x30, concat(encodeInteger(0x02, messageId), protocolOp));
+    }
+
+    static byte[] result(int tag, int resultCode, String message) {
+        return encode(tag, concat(
+                encodeInteger(0x0a, resultCode), encodeString(0x04, ""), encodeString(0x04, message)));
+    }
+
+    static byte[] encodeString(int tag, String value) {
+        return encode(tag, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static byte[] encodeInteger(int tag, int value) {
+        if (value < 0x80) {
+            return encode(tag, new byte[] { (byte) value });
+        }
+        return encode(tag, new byte[] { (byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8), (byte) value });
+    }
+
+    static byte[] encode(int tag, byte[] value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(value.length + 6);
+        out.write(tag);
+        int length = value.length;
+        if (length < 0x80) {
+            out.write(length);
+        } else if (length < 0x100) {
+            out.write(0x81);
+            out.write(length);
+        } else if (length < 0x10000) {
+            out.write(0x82);
+            out.write(length >> 8);
+            out.write(length);
+        } else {
+            out.write(0x84);
+            out.write(length >> 24);
+            out.write(length >> 16);
+            out.write(length >> 8);
+            out.write(length);
+        }
+        out.write(value, 0, length);
+        return out.toByteArray();
+    }
+
+    static byte[] concat(byte[]... values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] value : values) {
+            out.write(value, 0, value.length);
+        }
+        return out.toByteArray();
+    }
+
+    static class Entry {
+        final String dn;
+
+        final Map<String, List<String>> attributes = new LinkedHashMap<String, List<String>>();
+
+        Entry(String dn) {
+            this.dn = dn;
+        }
+
+        List<String> values(String name) {
+            for (Map.Entry<String, List<String>> attribute : attributes.entrySet()) {
+                if (attribute.getKey().equalsIgnoreCase(name)) {
+                    return attribute.getValue();
+                }
+            }
+            return Collections.emptyList();
+        }
+
+        byte[] encode() {
+            ByteArrayOutputStream encodedAttributes = new ByteArrayOutputStream();
+            for (Map.Entry<String, List<String>> attribute : attributes.entrySet()) {
+                if (attribute.getKey().equalsIgnoreCase("userPassword")) {
+                    continue;
+                }
+                ByteArrayOutputStream values = new ByteArrayOutputStream();
+                for (String value : attribute.getValue()) {
+                    byte[] encodedValue = encodeString(0x04, value);
+                    values.write(encodedValue, 0, encodedValue.length);
+                }
+                byte[] encodedAttribute = EmbeddedLdapServer.encode(0x30,
+                        concat(encodeString(0x04, attribute.getKey()), EmbeddedLdapServer.encode(0x31, values.toByteArray())));
+                encodedAttributes.write(encodedAttribute, 0, encodedAttribute.length);
+            }
+            return EmbeddedLdapServer.encode(SEARCH_RESULT_ENTRY,
+                    concat(encodeString(0x04, dn), EmbeddedLdapServer.encode(0x30, encodedAttributes.toByteArray())));
+        }
+    }
+
+    /**
+     * BER tag,length and value
+     */
+    static class Element {
+        final int tag;
+
+        final byte[] value;
+
+        Element(int tag, byte[] value) {
+            this.tag = tag;
+            this.value = value;
+        }
+
+        /**
+         * @return element or null at end of stream
+         */
+        static Element read(InputStream in) throws IOException {
+            int tag = in.read();
+            if (tag < 0) {
+                return null;
+            }
+            int length = in.read();
+            if (length < 0) {
+                throw new EOFException();
+            }
+            if (length > 0x80) {
+                int bytes = length & 0x7f;
+                length = 0;
+                for (int i = 0; i < bytes; i++) {
+                    length = (length << 8) | readByte(in);
+                }
+            }
+            byte[] value = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int read = in.read(value, offset, length - offset);
+                if (read < 0) {
+                    throw new EOFException();
+                }
+                offset += read;
+            }
+            return new Element(tag, value);
+        }
+
+        static int readByte(InputStream in) throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            return b;
+        }
+
+        List<Element> children() {
+            List<Element> children = new ArrayList<Element>();
+            InputStream in = new ByteArrayInputStream(value);
+            try {
+                Element child;
+                while ((child = read(in)) != null) {
+                    children.add(child);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("malformed element " + Integer.toHexString(tag), e);
+            }
+            return children;
+        }
+
+        long intValue() {
+            long intValue = value.length > 0 && value[0] < 0 ? -1 : 0;
+            for (byte b : value) {
+                intValue = (intValue << 8) | (b & 0xff);
+            }
+            return intValue;
+        }
+
+        String stringValue() {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+}
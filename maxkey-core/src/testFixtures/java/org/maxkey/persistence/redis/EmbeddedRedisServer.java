@@ -0,0 +1,661 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.redis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * EmbeddedRedisServer<br>
+ * in-process RESP server for tests,commands run one by one like redis.<br>
+ * support string,sorted set and pub/sub commands,the lua scripts of RedisConnection are implemented in java.<br>
+ *
+ */
+public class EmbeddedRedisServer implements Closeable {
+
+    ServerSocket serverSocket;
+
+    final List<Socket> clients = new CopyOnWriteArrayList<Socket>();
+
+    final HashMap<String, byte[]> store = new HashMap<String, byte[]>();
+
+    final HashMap<String, Long> expires = new HashMap<String, Long>();
+
+    /**
+     * sorted sets,member to score
+     */
+    final HashMap<String, HashMap<String, Double>> zsets = new HashMap<String, HashMap<String, Double>>();
+
+    final HashMap<String, BiFunction<List<String>, List<byte[]>, Object>> scripts =
+            new HashMap<String, BiFunction<List<String>, List<byte[]>, Object>>();
+
+    final HashMap<String, List<OutputStream>> subscribers = new HashMap<String, List<OutputStream>>();
+
+    final AtomicLong commandCount = new AtomicLong();
+
+    public EmbeddedRedisServer() {
+        registerScript(RedisConnection.GET_DEL_SCRIPT, (keys, args) -> {
+            byte[] value = get(keys.get(0));
+            del(keys.get(0));
+            return value;
+        });
+        registerScript(RedisConnection.EXPIRE_AT_MAX_SCORE_SCRIPT, (keys, args) -> {
+            HashMap<String, Double> zset = zsets.get(keys.get(0));
+            if (zset == null || zset.isEmpty()) {
+                return 0L;
+            }
+            double score = Collections.max(zset.values());
+            if (score >= Double.parseDouble(string(args.get(0)))) {
+                return expires.remove(keys.get(0)) == null ? 0L : 1L;
+            }
+            expires.put(keys.get(0), (long) score);
+            return 1L;
+        });
+    }
+
+    public EmbeddedRedisServer start() throws IOException {
+        serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    clients.add(socket);
+                    Thread client = new Thread(() -> serve(socket), "embedded-redis-client");
+                    client.setDaemon(true);
+                    client.start();
+                } catch (IOException e) {
+                    //closed
+                }
+            }
+        }, "embedded-redis-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * RedisConnectionFactory connect to this server
+     * @return RedisConnectionFactory
+     */
+    public RedisConnectionFactory createConnectionFactory() {
+        RedisConnectionFactory connectionFactory = new RedisConnectionFactory();
+        connectionFactory.setHostName("127.0.0.1");
+        connectionFactory.setPort(getPort());
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(128);
+        poolConfig.setMaxIdle(128);
+        connectionFactory.setPoolConfig(poolConfig);
+        connectionFactory.initConnectionFactory();
+        return connectionFactory;
+    }
+
+    public void registerScript(String script, BiFunction<List<String>, List<byte[]>, Object> function) {
+        scripts.put(DigestUtils.sha1Hex(script), function);
+    }
+
+    public long getCommandCount() {
+        return commandCount.get();
+    }
+
+    public synchronized int size() {
+        expireAll();
+        return store.size() + zsets.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : clients) {
+            socket.close();
+        }
+    }
+
+    void serve(Socket socket) {
+        OutputStream out = null;
+        try (InputStream in = new BufferedInputStream(socket.getInputStream())) {
+            out = new BufferedOutputStream(socket.getOutputStream());
+            while (true) {
+                List<byte[]> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                if (string(command.get(0)).equalsIgnoreCase("PUBLISH")) {
+                    //write to subscribers without lock of server
+                    commandCount.incrementAndGet();
+                    long received = publish(string(command.get(1)), command.get(2));
+                    synchronized (out) {
+                        writeReply(out, received);
+                        out.flush();
+                    }
+                    continue;
+                }
+                //subscribe reply write before any message
+                synchronized (out) {
+                    Object reply;
+                    try {
+                        reply = execute(command, out);
+                    } catch (RuntimeException e) {
+                        reply = new Error(e.getMessage());
+                    }
+                    if (reply instanceof Replies) {
+                        for (Object item : ((Replies) reply).replies) {
+                            writeReply(out, item);
+                        }
+                    } else {
+                        writeReply(out, reply);
+                    }
+                    //flush when client is waiting
+                    if (in.available() == 0) {
+                        out.flush();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            //client closed
+        } finally {
+            clients.remove(socket);
+            synchronized (this) {
+                for (List<OutputStream> outs : subscribers.values()) {
+                    outs.remove(out);
+                }
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //closed
+            }
+        }
+    }
+
+    synchronized Object execute(List<byte[]> command, OutputStream out) {
+        commandCount.incrementAndGet();
+        expireAll();
+        String name = string(command.get(0)).toUpperCase();
+        switch (name) {
+            case "PING":
+                return new Status("PONG");
+            case "AUTH":
+            case "SELECT":
+            case "CLIENT":
+                return new Status("OK");
+            case "QUIT":
+                return new Status("OK");
+            case "FLUSHDB":
+            case "FLUSHALL":
+                store.clear();
+                zsets.clear();
+                expires.clear();
+                return new Status("OK");
+            case "DBSIZE":
+                return (long) (store.size() + zsets.size());
+            case "GET":
+                return get(string(command.get(1)));
+            case "GETDEL":
+                byte[] value = get(string(command.get(1)));
+                del(string(command.get(1)));
+                return value;
+            case "SET":
+                return set(command);
+            case "SETEX":
+                store.put(string(command.get(1)), command.get(3));
+                expire(string(command.get(1)), Long.parseLong(string(command.get(2))));
+                return new Status("OK");
+            case "INCR":
+                byte[] counter = get(string(command.get(1)));
+                long increment = (counter == null ? 0L : Long.parseLong(string(counter))) + 1;
+                //keep ttl like redis
+                store.put(string(command.get(1)), Long.toString(increment).getBytes(StandardCharsets.UTF_8));
+                return increment;
+            case "MGET":
+                List<Object> values = new ArrayList<Object>();
+                for (int i = 1; i < command.size(); i++) {
+                    values.add(get(string(command.get(i))));
+                }
+                return values;
+            case "DEL":
+                long deleted = 0;
+                for (int i = 1; i < command.size(); i++) {
+                    deleted += del(string(command.get(i)));
+                }
+                return deleted;
+            case "EXISTS":
+                long exists = 0;
+                for (int i = 1; i < command.size(); i++) {
+                    exists += containsKey(string(command.get(i))) ? 1 : 0;
+                }
+                return exists;
+            case "EXPIRE":
+                if (!containsKey(string(command.get(1)))) {
+                    return 0L;
+                }
+                expire(string(command.get(1)), Long.parseLong(string(command.get(2))));
+                return 1L;
+            case "TTL":
+                return ttl(string(command.get(1)));
+            case "ZADD":
+                HashMap<String, Double> zset = zsets.computeIfAbsent(
+                        string(command.get(1)), k -> new HashMap<String, Double>());
+                long added = 0;
+                for (int i = 2; i + 1 < command.size(); i += 2) {
+                    added += zset.put(string(command.get(i + 1)), score(command.get(i))) == null ? 1 : 0;
+                }
+                return added;
+            case "ZREM":
+                long removed = 0;
+                HashMap<String, Double> remZset = zsets.get(string(command.get(1)));
+                for (int i = 2; remZset != null && i < command.size(); i++) {
+                    removed += remZset.remove(string(command.get(i))) == null ? 0 : 1;
+                }
+                removeIfEmpty(string(command.get(1)));
+                return removed;
+            case "ZCARD":
+                HashMap<String, Double> cardZset = zsets.get(string(command.get(1)));
+                return cardZset == null ? 0L : (long) cardZset.size();
+            case "ZRANGEBYSCORE":
+                List<Object> members = new ArrayList<Object>();
+                for (String member : rangeByScore(command)) {
+                    members.add(member);
+                }
+                return members;
+            case "ZREMRANGEBYSCORE":
+                List<String> expiredMembers = rangeByScore(command);
+                HashMap<String, Double> rangeZset = zsets.get(string(command.get(1)));
+                for (String member : expiredMembers) {
+                    rangeZset.remove(member);
+                }
+                removeIfEmpty(string(command.get(1)));
+                return (long) expiredMembers.size();
+            case "SUBSCRIBE":
+                List<Object> subscribed = new ArrayList<Object>();
+                for (int i = 1; i < command.size(); i++) {
+                    String channel = string(command.get(i));
+                    subscribers.computeIfAbsent(channel, k -> new ArrayList<OutputStream>()).add(out);
+                    subscribed.add(pubSubReply("subscribe", channel, channels(out)));
+                }
+                return new Replies(subscribed);
+            case "UNSUBSCRIBE":
+                List<Object> unsubscribed = new ArrayList<Object>();
+                List<String> channels = new ArrayList<String>();
+                for (int i = 1; i < command.size(); i++) {
+                    channels.add(string(command.get(i)));
+                }
+                if (channels.isEmpty()) {
+                    for (Map.Entry<String, List<OutputStream>> entry : subscribers.entrySet()) {
+                        if (entry.getValue().contains(out)) {
+                            channels.add(entry.getKey());
+                        }
+                    }
+                }
+                for (String channel : channels) {
+                    List<OutputStream> outs = subscribers.get(channel);
+                    if (outs != null) {
+                        outs.remove(out);
+                    }
+                    unsubscribed.add(pubSubReply("unsubscribe", channel, channels(out)));
+                }
+                return new Replies(unsubscribed);
+            case "SCRIPT":
+                return script(command);
+            case "EVAL":
+                return eval(DigestUtils.sha1Hex(command.get(1)), command);
+            case "EVALSHA":
+                return eval(string(command.get(1)), command);
+            default:
+                return new Error("ERR unknown command '" + name + "'");
+        }
+    }
+
+    /**
+     * PUBLISH message to subscribers
+     * @param channel
+     * @param message
+     * @return count of subscribers received
+     */
+    public long publish(String channel, byte[] message) {
+        List<OutputStream> outs;
+        synchronized (this) {
+            if (!subscribers.containsKey(channel)) {
+                return 0L;
+            }
+            outs = new ArrayList<OutputStream>(subscribers.get(channel));
+        }
+        List<Object> reply = new ArrayList<Object>();
+        reply.add("message");
+        reply.add(channel);
+        reply.add(message);
+        long received = 0;
+        for (OutputStream subscriber : outs) {
+            synchronized (subscriber) {
+                try {
+                    writeReply(subscriber, reply);
+                    subscriber.flush();
+                    received++;
+                } catch (IOException e) {
+                    //subscriber closed
+                }
+            }
+        }
+        return received;
+    }
+
+    long channels(OutputStream out) {
+        long channels = 0;
+        for (List<OutputStream> outs : subscribers.values()) {
+            channels += outs.contains(out) ? 1 : 0;
+        }
+        return channels;
+    }
+
+    static List<Object> pubSubReply(String kind, String channel, long count) {
+        List<Object> reply = new ArrayList<Object>();
+        reply.add(kind);
+        reply.add(channel);
+        reply.add(count);
+        return reply;
+    }
+
+    Object set(List<byte[]> command) {
+        String key = string(command.get(1));
+        boolean nx = false;
+        boolean xx = false;
+        long seconds = -1;
+        for (int i = 3; i < command.size(); i++) {
+            String option = string(command.get(i)).toUpperCase();
+            if (option.equals("NX")) {
+                nx = true;
+            } else if (option.equals("XX")) {
+                xx = true;
+            } else if (option.equals("EX")) {
+                seconds = Long.parseLong(string(command.get(++i)));
+            } else if (option.equals("PX")) {
+                seconds = Long.parseLong(string(command.get(++i))) / 1000;
+            }
+        }
+        if ((nx && store.containsKey(key)) || (xx && !store.containsKey(key))) {
+            return null;
+        }
+        store.put(key, command.get(2));
+        expires.remove(key);
+        if (seconds > 0) {
+            expire(key, seconds);
+        }
+        return new Status("OK");
+    }
+
+    /**
+     * members of ZRANGEBYSCORE key min max,order by score
+     */
+    List<String> rangeByScore(List<byte[]> command) {
+        HashMap<String, Double> zset = zsets.get(string(command.get(1)));
+        List<String> members = new ArrayList<String>();
+        if (zset == null) {
+            return members;
+        }
+        String min = string(command.get(2));
+        String max = string(command.get(3));
+        List<Map.Entry<String, Double>> entries = new ArrayList<Map.Entry<String, Double>>(zset.entrySet());
+        entries.sort(Map.Entry.comparingByValue());
+        for (Map.Entry<String, Double> entry : entries) {
+            double score = entry.getValue();
+            if ((min.startsWith("(") ? score > score(min.substring(1)) : score >= score(min))
+                    && (max.startsWith("(") ? score < score(max.substring(1)) : score <= score(max))) {
+                members.add(entry.getKey());
+            }
+        }
+        return members;
+    }
+
+    static double score(byte[] score) {
+        return score(string(score));
+    }
+
+    static double score(String score) {
+        if (score.equalsIgnoreCase("-inf")) {
+            return Double.NEGATIVE_INFINITY;
+        } else if (score.equalsIgnoreCase("+inf") || score.equalsIgnoreCase("inf")) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Double.parseDouble(score);
+    }
+
+    void removeIfEmpty(String key) {
+        HashMap<String, Double> zset = zsets.get(key);
+        if (zset != null && zset.isEmpty()) {
+            del(key);
+        }
+    }
+
+    boolean containsKey(String key) {
+        return store.containsKey(key) || zsets.containsKey(key);
+    }
+
+    /**
+     * members count of sorted set
+     * @param key
+     * @return 0 if key not exists
+     */
+    public synchronized int zcard(String key) {
+        expireAll();
+        HashMap<String, Double> zset = zsets.get(key);
+        return zset == null ? 0 : zset.size();
+    }
+
+    Object script(List<byte[]> command) {
+        String subCommand = string(command.get(1)).toUpperCase();
+        if (subCommand.equals("LOAD")) {
+            String sha1 = DigestUtils.sha1Hex(command.get(2));
+            if (!scripts.containsKey(sha1)) {
+                return new Error("ERR script not supported by embedded redis");
+            }
+            return sha1.getBytes(StandardCharsets.US_ASCII);
+        } else if (subCommand.equals("EXISTS")) {
+            List<Object> exists = new ArrayList<Object>();
+            for (int i = 2; i < command.size(); i++) {
+                exists.add(scripts.containsKey(string(command.get(i))) ? 1L : 0L);
+            }
+            return exists;
+        }
+        return new Status("OK");
+    }
+
+    Object eval(String sha1, List<byte[]> command) {
+        BiFunction<List<String>, List<byte[]>, Object> function = scripts.get(sha1);
+        if (function == null) {
+            return new Error("NOSCRIPT No matching script. Please use EVAL.");
+        }
+        int numKeys = Integer.parseInt(string(command.get(2)));
+        List<String> keys = new ArrayList<String>();
+        List<byte[]> args = new ArrayList<byte[]>();
+        for (int i = 3; i < command.size(); i++) {
+            if (i < 3 + numKeys) {
+                keys.add(string(command.get(i)));
+            } else {
+                args.add(command.get(i));
+            }
+        }
+        return function.apply(keys, args);
+    }
+
+    public synchronized byte[] get(String key) {
+        expireAll();
+        return store.get(key);
+    }
+
+    public synchronized long del(String key) {
+        expires.remove(key);
+        return store.remove(key) == null && zsets.remove(key) == null ? 0 : 1;
+    }
+
+    public synchronized void expire(String key, long seconds) {
+        expires.put(key, System.currentTimeMillis() + seconds * 1000);
+    }
+
+    public synchronized long ttl(String key) {
+        if (!containsKey(key)) {
+            return -2;
+        }
+        Long expireAt = expires.get(key);
+        if (expireAt == null) {
+            return -1;
+        }
+        return (expireAt - System.currentTimeMillis() + 999) / 1000;
+    }
+
+    void expireAll() {
+        if (expires.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<String> expired = new ArrayList<String>();
+        for (Map.Entry<String, Long> entry : expires.entrySet()) {
+            if (entry.getValue() <= now) {
+                expired.add(entry.getKey());
+            }
+        }
+        for (String key : expired) {
+            del(key);
+        }
+    }
+
+    static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static List<byte[]> readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            throw new IOException("Unsupported request type " + (char) type);
+        }
+        int count = Integer.parseInt(readLine(in));
+        List<byte[]> command = new ArrayList<byte[]>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Bulk string expected");
+            }
+            int length = Integer.parseInt(readLine(in));
+            byte[] arg = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = in.read(arg, read, length - read);
+                if (n == -1) {
+                    throw new IOException("Unexpected end of stream");
+                }
+                read += n;
+            }
+            in.read();
+            in.read();
+            command.add(arg);
+        }
+        return command;
+    }
+
+    static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            line.write(b);
+        }
+        in.read();
+        return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    static void writeReply(OutputStream out, Object reply) throws IOException {
+        if (reply == null) {
+            out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof Status) {
+            out.write(("+" + ((Status) reply).message + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof Error) {
+            out.write(("-" + ((Error) reply).message + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof Long) {
+            out.write((":" + reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof byte[]) {
+            byte[] bytes = (byte[]) reply;
+            out.write(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(bytes);
+            out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof String) {
+            writeReply(out, ((String) reply).getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof List) {
+            List<?> list = (List<?>) reply;
+            out.write(("*" + list.size() + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (Object item : list) {
+                writeReply(out, item);
+            }
+        } else {
+            throw new IOException("Unsupported reply " + reply.getClass());
+        }
+    }
+
+    /**
+     * replies write one by one,for SUBSCRIBE multi channels
+     */
+    public static class Replies {
+        final List<Object> replies;
+
+        public Replies(List<Object> replies) {
+            this.replies = replies;
+        }
+    }
+
+    public static class Status {
+        final String message;
+
+        public Status(String message) {
+            this.message = message;
+        }
+    }
+
+    public static class Error {
+        final String message;
+
+        public Error(String message) {
+            this.message = message;
+        }
+    }
+}
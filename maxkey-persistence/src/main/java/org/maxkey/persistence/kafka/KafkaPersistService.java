@@ -17,7 +17,20 @@
 
 package org.maxkey.persistence.kafka;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
 
 import org.maxkey.configuration.ApplicationConfig;
 import org.maxkey.util.DateUtils;
@@ -25,19 +38,87 @@ import org.maxkey.util.JsonUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
+/**
+ * KafkaPersistService<br>
+ * messages put into bounded queue,fixed provisioning workers send to kafka async,
+ * kafka producer batch the messages by linger.ms.<br>
+ * the caller wait offer-timeout when the queue is full,then the message dropped.<br>
+ * failed message put back to the queue by the retry scheduler after backoff,
+ * kafka producer callback never send.<br>
+ * shutdown send the queue and the pending retries and flush the producer
+ * within one shutdown timeout.<br>
+ *
+ */
 @Component
 public class KafkaPersistService {
     
     private static final Logger _logger = LoggerFactory.getLogger(KafkaPersistService.class);
     
+    /**
+     * max messages take from queue once by worker
+     */
+    static final int DRAIN_MAX_MESSAGES = 500;
+    
     @Autowired
     protected ApplicationConfig applicationConfig;
     
     @Autowired
     protected KafkaTemplate<String, String> kafkaTemplate;
+    
+    @Value("${maxkey.server.kafka.provisioning.queue-capacity:10000}")
+    protected int queueCapacity = 10000;
+    
+    @Value("${maxkey.server.kafka.provisioning.workers:2}")
+    protected int workers = 2;
+    
+    @Value("${maxkey.server.kafka.provisioning.retries:3}")
+    protected int retries = 3;
+    
+    /**
+     * max wait time of caller when the queue is full,request threads not blocked long
+     */
+    @Value("${maxkey.server.kafka.provisioning.offer-timeout:1000}")
+    protected long offerTimeoutMillis = 1000;
+    
+    /**
+     * max wait time of shutdown to send the messages in queue and the pending retries
+     */
+    @Value("${maxkey.server.kafka.provisioning.shutdown-timeout:30000}")
+    protected long shutdownTimeoutMillis = 30000;
+    
+    protected long retryBackoffMillis = 1000;
+    
+    volatile BlockingQueue<KafkaProvisioningMessage> queue;
+    
+    List<Thread> workerThreads = new ArrayList<Thread>();
+    
+    ScheduledExecutorService retryScheduler;
+    
+    /**
+     * messages waiting for retry backoff,or for shutdown when stopping
+     */
+    final Set<KafkaProvisioningMessage> pendingRetries = ConcurrentHashMap.newKeySet();
+    
+    volatile boolean running;
+    
+    /**
+     * shutdown deadline,retry without backoff while stopping
+     */
+    volatile long stopDeadline = Long.MAX_VALUE;
+    
+    final LongAdder sendCount = new LongAdder();
+    
+    final LongAdder sendNanos = new LongAdder();
+    
+    final LongAdder retryCount = new LongAdder();
+    
+    final LongAdder failedCount = new LongAdder();
+    
+    final LongAdder droppedCount = new LongAdder();
 
     public void setApplicationConfig(ApplicationConfig applicationConfig) {
         this.applicationConfig = applicationConfig;
@@ -70,45 +151,226 @@ public class KafkaPersistService {
             //content Object to json message content
             message.setContent(JsonUtils.gson2Json(content));
             String msg = JsonUtils.gson2Json(message);
-            _logger.info("send  message = {}", msg);
-            //通过线程发送Kafka消息
-            KafkaProvisioningThread thread = 
-                    new  KafkaProvisioningThread(kafkaTemplate,topic,msg);
-            
-            thread.start();
+            _logger.debug("send  message = {}", msg);
+            //放入队列,由发送线程发送Kafka消息
+            enqueue(new KafkaProvisioningMessage(topic, msg));
         }
     }
     
+    /**
+     * send msg of every content to kafka,contents loaded by batch query.
+     * one message for each content as consumers read one identity per message,
+     * records are batched by the producer (batch.size , linger.ms)
+     * @param topic kafka TOPIC
+     * @param contents msg Objects
+     * @param actionType CREATE UPDATE DELETE
+     */
+    public void sendAll(String topic,List<?> contents,String actionType) {
+        if(applicationConfig.isKafkaSupport()) {
+            for(Object content : contents) {
+                send(topic, content, actionType);
+            }
+        }
+    }
+
+    void enqueue(KafkaProvisioningMessage message) {
+        if(queue == null) {
+            start();
+        }
+        try {
+            if(!queue.offer(message, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                droppedCount.increment();
+                _logger.error("provisioning queue is full , message dropped {}", message.msg);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedCount.increment();
+            _logger.error("interrupted , message dropped {}", message.msg);
+        }
+    }
     
+    /**
+     * start workers on first message
+     */
+    public synchronized void start() {
+        if(queue != null) {
+            return;
+        }
+        running = true;
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kafka-provisioning-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        BlockingQueue<KafkaProvisioningMessage> workQueue = 
+                new ArrayBlockingQueue<KafkaProvisioningMessage>(queueCapacity);
+        for(int i = 0 ; i < workers ; i++) {
+            Thread worker = new Thread(() -> work(workQueue), "kafka-provisioning-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workerThreads.add(worker);
+        }
+        queue = workQueue;
+        _logger.debug("kafka provisioning workers {} , queue capacity {}", workers, queueCapacity);
+    }
+    
+    void work(BlockingQueue<KafkaProvisioningMessage> workQueue) {
+        List<KafkaProvisioningMessage> messages = new ArrayList<KafkaProvisioningMessage>();
+        while(running || !workQueue.isEmpty()) {
+            try {
+                KafkaProvisioningMessage message = workQueue.poll(1, TimeUnit.SECONDS);
+                if(message == null) {
+                    continue;
+                }
+                messages.add(message);
+                workQueue.drainTo(messages, DRAIN_MAX_MESSAGES - 1);
+                for(KafkaProvisioningMessage drained : messages) {
+                    dispatch(drained);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                messages.clear();
+            }
+        }
+    }
+    
+    void dispatch(KafkaProvisioningMessage message) {
+        try {
+            kafkaTemplate.send(message.topic, message.msg).addCallback(
+                    result -> {
+                        sendCount.increment();
+                        sendNanos.add(System.nanoTime() - message.enqueueNanos);
+                    },
+                    ex -> retry(message, ex));
+        }catch(Exception e) {
+            retry(message, e);
+        }
+    }
     
     /**
-     * KafkaProvisioningThread for send message
-     *
+     * called by worker or kafka producer callback,never send here,
+     * the message is put back to the queue by the retry scheduler,
+     * or sent by shutdown when stopping
      */
-    class KafkaProvisioningThread extends Thread{
+    void retry(KafkaProvisioningMessage message, Throwable ex) {
+        if(message.attempts++ < retries && System.currentTimeMillis() < stopDeadline) {
+            retryCount.increment();
+            _logger.warn("send message to {} error {} , retry {}", message.topic, ex.getMessage(), message.attempts);
+            pendingRetries.add(message);
+            if(running) {
+                scheduleRetry(message, retryBackoffMillis * message.attempts);
+            }
+        }else {
+            failedCount.increment();
+            _logger.error("send message to " + message.topic + " failed " + message.msg, ex);
+        }
+    }
+    
+    void scheduleRetry(KafkaProvisioningMessage message, long delayMillis) {
+        try {
+            retryScheduler.schedule(() -> {
+                if(pendingRetries.remove(message) && !queue.offer(message)) {
+                    //queue is full,wait again
+                    pendingRetries.add(message);
+                    scheduleRetry(message, retryBackoffMillis);
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }catch(RejectedExecutionException e) {
+            //shutdown started,pending retry sent by shutdown
+        }
+    }
+    
+    /**
+     * stop workers after the queue is sent,then send the pending retries and
+     * the messages failed while stopping,all within shutdownTimeoutMillis
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if(queue == null || !running) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+        stopDeadline = deadline;
+        running = false;
+        //retries waiting for backoff are sent below without backoff
+        retryScheduler.shutdownNow();
+        try {
+            for(Thread worker : workerThreads) {
+                long remaining = deadline - System.currentTimeMillis();
+                if(remaining > 0) {
+                    worker.join(remaining);
+                }
+            }
+            //workers stopped,flush the producer,the failed sends are added to pendingRetries by the callback
+            List<KafkaProvisioningMessage> messages = new ArrayList<KafkaProvisioningMessage>();
+            do {
+                queue.drainTo(messages);
+                for(KafkaProvisioningMessage message : pendingRetries) {
+                    if(pendingRetries.remove(message)) {
+                        messages.add(message);
+                    }
+                }
+                for(KafkaProvisioningMessage message : messages) {
+                    dispatch(message);
+                }
+                messages.clear();
+                kafkaTemplate.flush();
+            } while((!queue.isEmpty() || !pendingRetries.isEmpty()) 
+                    && System.currentTimeMillis() < deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        _logger.debug("kafka provisioning shutdown , {} messages not send", 
+                queue.size() + pendingRetries.size());
+    }
+    
+    public int getQueueSize() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getSendCount() {
+        return sendCount.sum();
+    }
 
-        KafkaTemplate<String, String> kafkaTemplate;
+    public long getSendNanos() {
+        return sendNanos.sum();
+    }
+
+    public long getRetryCount() {
+        return retryCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * KafkaProvisioningMessage in queue
+     *
+     */
+    static class KafkaProvisioningMessage {
         
         String topic ;
         
         String msg;
         
-        public KafkaProvisioningThread(
-                                KafkaTemplate<String, String> kafkaTemplate, 
-                                String topic, 
-                                String msg) {
-            
-            this.kafkaTemplate = kafkaTemplate;
+        int attempts;
+        
+        long enqueueNanos = System.nanoTime();
+        
+        public KafkaProvisioningMessage(String topic, String msg) {
             this.topic = topic;
             this.msg = msg;
-            
-        }
-
-        @Override
-        public void run() {
-            
-            kafkaTemplate.send(topic, msg);
-            
         }
 
     }
@@ -0,0 +1,82 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.kafka;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * KafkaProvisioningMetrics<br>
+ * queue depth,send latency,retries,failures and drops of KafkaPersistService<br>
+ * view on /actuator/metrics/maxkey.kafka.provisioning.*
+ *
+ */
+@Component
+public class KafkaProvisioningMetrics implements MeterBinder {
+
+    @Autowired
+    KafkaPersistService kafkaPersistService;
+
+    public KafkaProvisioningMetrics() {
+    }
+
+    public KafkaProvisioningMetrics(KafkaPersistService kafkaPersistService) {
+        this.kafkaPersistService = kafkaPersistService;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("maxkey.kafka.provisioning.queue", kafkaPersistService,
+                    KafkaPersistService::getQueueSize)
+            .description("messages wait in queue")
+            .register(registry);
+
+        Gauge.builder("maxkey.kafka.provisioning.queue.capacity", kafkaPersistService,
+                    KafkaPersistService::getQueueCapacity)
+            .register(registry);
+
+        FunctionTimer.builder("maxkey.kafka.provisioning.send", kafkaPersistService,
+                    KafkaPersistService::getSendCount,
+                    KafkaPersistService::getSendNanos,
+                    TimeUnit.NANOSECONDS)
+            .description("time from enqueue to kafka acknowledged")
+            .register(registry);
+
+        FunctionCounter.builder("maxkey.kafka.provisioning.retries", kafkaPersistService,
+                    KafkaPersistService::getRetryCount)
+            .register(registry);
+
+        FunctionCounter.builder("maxkey.kafka.provisioning.failures", kafkaPersistService,
+                    KafkaPersistService::getFailedCount)
+            .description("messages failed after retries exhausted")
+            .register(registry);
+
+        FunctionCounter.builder("maxkey.kafka.provisioning.dropped", kafkaPersistService,
+                    KafkaPersistService::getDroppedCount)
+            .description("messages dropped when queue is full after offer-timeout")
+            .register(registry);
+    }
+}
@@ -22,8 +22,10 @@ package org.maxkey.persistence.mapper;
 
 import java.util.List;
 
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 import org.apache.mybatis.jpa.persistence.IJpaBaseMapper;
 import org.maxkey.entity.Accounts;
 import org.maxkey.entity.AccountsStrategy;
@@ -44,4 +46,25 @@ public  interface AccountsMapper extends IJpaBaseMapper<Accounts> {
     
     @Select("select * from mxk_accounts where appid=#{appId} and	relatedusername=#{relatedUsername}")
     public List<Accounts> queryByAppIdAndAccount(@Param ("appId") String appId,@Param ("relatedUsername") String relatedUsername);
+    
+    @Select("select relatedusername from mxk_accounts where appid=#{appId}")
+    public List<String> queryRelatedUsernameByAppId(@Param ("appId") String appId);
+    
+    //multi rows insert , one statement for batch
+    @Insert({"<script>",
+            "insert into mxk_accounts(id,userid,username,displayname,appid,appname,relatedusername,relatedpassword,",
+            "createtype,strategyid,status,instid) values ",
+            "<foreach item='item' collection='list' separator=','>",
+            "(#{item.id},#{item.userId},#{item.username},#{item.displayName},#{item.appId},#{item.appName},",
+            "#{item.relatedUsername},#{item.relatedPassword},#{item.createType},#{item.strategyId},#{item.status},#{item.instId})",
+            "</foreach>",
+            "</script>"})
+    public int insertBatch(List<Accounts> listAccounts);
+    
+    //multi rows update , one statement for batch
+    @Update({"<script>",
+            "update mxk_accounts set status=#{status} where id in ",
+            "<foreach item='id' collection='ids' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    public int updateStatusBatch(@Param ("status") int status,@Param ("ids") List<String> ids);
 }
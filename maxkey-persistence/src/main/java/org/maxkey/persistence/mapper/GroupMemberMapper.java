@@ -22,6 +22,10 @@ package org.maxkey.persistence.mapper;
 
 import java.util.List;
 
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 import org.apache.mybatis.jpa.persistence.IJpaBaseMapper;
 import org.maxkey.entity.GroupMember;
 import org.maxkey.entity.Groups;
@@ -43,6 +47,26 @@ public  interface GroupMemberMapper extends IJpaBaseMapper<GroupMember> {
 	
 	public int deleteDynamicGroupMember(Groups dynamicGroup);
 	
+	//users match the filters of dynamic group
+	public List<String> queryDynamicGroupMemberTargets(Groups dynamicGroup);
+	
+	@Select("select memberid from mxk_group_member where groupid = #{groupId} and type = 'USER-DYNAMIC'")
+	public List<String> queryDynamicGroupMemberIds(@Param("groupId") String groupId);
+	
+	@Insert({"<script>",
+			"insert into mxk_group_member(id,groupid,memberid,type,instid) values ",
+			"<foreach item='item' collection='list' separator=','>",
+			"(#{item.id},#{item.groupId},#{item.memberId},#{item.type},#{item.instId})",
+			"</foreach>",
+			"</script>"})
+	public int insertDynamicGroupMembers(List<GroupMember> groupMembers);
+	
+	@Delete({"<script>",
+			"delete from mxk_group_member where groupid = #{groupId} and type = 'USER-DYNAMIC' and memberid in ",
+			"<foreach item='item' collection='memberIds' open='(' separator=',' close=')'>#{item}</foreach>",
+			"</script>"})
+	public int deleteDynamicGroupMembers(@Param("groupId") String groupId,@Param("memberIds") List<String> memberIds);
+	
 	public int deleteByGroupId(String groupId);
 	
 	public List<UserInfo> queryMemberByGroupId(String groupId);
@@ -0,0 +1,72 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.mapper;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.mybatis.jpa.persistence.IJpaBaseMapper;
+import org.maxkey.entity.HistoryArchive;
+
+/**
+ * table names are the history tables in HistoryArchiveService and archive tables of them,
+ * never from request
+ *
+ */
+public interface HistoryArchiveMapper extends IJpaBaseMapper<HistoryArchive> {
+
+	/**
+	 * the oldest rows , id and archivetime
+	 */
+	public List<Map<String, Object>> queryArchiveRows(
+			@Param("tableName") String tableName,
+			@Param("timeColumn") String timeColumn,
+			@Param("before") Object before,
+			@Param("limit") int limit);
+
+	public void createArchiveTable(
+			@Param("tableName") String tableName,
+			@Param("archiveTable") String archiveTable);
+
+	/**
+	 * copy rows to archive table , rows already archived skipped
+	 */
+	public int archiveRows(
+			@Param("tableName") String tableName,
+			@Param("archiveTable") String archiveTable,
+			@Param("ids") List<String> ids);
+
+	@Delete({"<script>",
+		"delete from ${tableName} where id in ",
+		"<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+		"</script>"})
+	public int deleteRows(@Param("tableName") String tableName, @Param("ids") List<String> ids);
+
+	@Select("select archivetable from mxk_history_archive where tablename = #{tableName} "
+			+ " and archivemonth >= #{fromMonth} and archivemonth <= #{toMonth} order by archivemonth")
+	public List<String> queryArchiveTables(
+			@Param("tableName") String tableName,
+			@Param("fromMonth") String fromMonth,
+			@Param("toMonth") String toMonth);
+
+	@Select("select archivetable from mxk_history_archive")
+	public List<String> queryAllArchiveTables();
+}
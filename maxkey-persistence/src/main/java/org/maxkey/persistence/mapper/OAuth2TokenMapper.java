@@ -0,0 +1,87 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.mapper;
+
+import java.util.Date;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.maxkey.entity.apps.oauth2.provider.OAuth2StoredToken;
+
+/**
+ * access and refresh tokens of JdbcTokenStore,
+ * upsert and chunked delete of expired rows are dialect specific in mapper xml
+ *
+ */
+public interface OAuth2TokenMapper {
+
+	/**
+	 * insert or replace the access token with the same tokenId
+	 */
+	public int storeAccessToken(OAuth2StoredToken accessToken);
+
+	@Select("select token , authentication from mxk_oauth_access_token where tokenid = #{tokenId}")
+	public OAuth2StoredToken queryAccessToken(@Param("tokenId") String tokenId);
+
+	@Select("select tokenid , token , authentication from mxk_oauth_access_token "
+			+ " where authenticationid = #{authenticationId}")
+	public List<OAuth2StoredToken> queryAccessTokensByAuthenticationId(
+			@Param("authenticationId") String authenticationId);
+
+	@Select("select token from mxk_oauth_access_token where clientid = #{clientId} "
+			+ " and (expiration is null or expiration > #{now})")
+	public List<byte[]> queryAccessTokensByClientId(
+			@Param("clientId") String clientId,
+			@Param("now") Date now);
+
+	@Select("select token from mxk_oauth_access_token where clientid = #{clientId} and username = #{userName} "
+			+ " and (expiration is null or expiration > #{now})")
+	public List<byte[]> queryAccessTokensByClientIdAndUserName(
+			@Param("clientId") String clientId,
+			@Param("userName") String userName,
+			@Param("now") Date now);
+
+	@Select("select tokenid from mxk_oauth_access_token where refreshtoken = #{refreshToken}")
+	public List<String> queryAccessTokenIdsByRefreshToken(@Param("refreshToken") String refreshToken);
+
+	@Delete("delete from mxk_oauth_access_token where tokenid = #{tokenId}")
+	public int deleteAccessToken(@Param("tokenId") String tokenId);
+
+	/**
+	 * insert or replace the refresh token with the same tokenId
+	 */
+	public int storeRefreshToken(OAuth2StoredToken refreshToken);
+
+	@Select("select token , authentication from mxk_oauth_refresh_token where tokenid = #{tokenId}")
+	public OAuth2StoredToken queryRefreshToken(@Param("tokenId") String tokenId);
+
+	@Delete("delete from mxk_oauth_refresh_token where tokenid = #{tokenId}")
+	public int deleteRefreshToken(@Param("tokenId") String tokenId);
+
+	/**
+	 * delete at most limit access tokens expired before
+	 */
+	public int deleteExpiredAccessTokens(@Param("before") Date before, @Param("limit") int limit);
+
+	/**
+	 * delete at most limit refresh tokens expired before
+	 */
+	public int deleteExpiredRefreshTokens(@Param("before") Date before, @Param("limit") int limit);
+}
@@ -18,6 +18,8 @@
 package org.maxkey.persistence.mapper;
 import java.util.List;
 
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 import org.apache.mybatis.jpa.persistence.IJpaBaseMapper;
 import org.maxkey.entity.Organizations;
 import org.maxkey.entity.OrganizationsCast;
@@ -28,4 +30,11 @@ public interface OrganizationsCastMapper extends IJpaBaseMapper<OrganizationsCas
 	
 	
 	public long updateCast(OrganizationsCast organizationsCast);
+	
+	@Select({"<script>",
+			"select * from mxk_organizations_cast where provider = #{provider} and orgid in ",
+			"<foreach item='item' collection='orgIds' open='(' separator=',' close=')'>#{item}</foreach>",
+			"</script>"})
+	public List<OrganizationsCast> queryByProviderAndOrgIds(
+			@Param("provider") String provider,@Param("orgIds") List<String> orgIds);
 }
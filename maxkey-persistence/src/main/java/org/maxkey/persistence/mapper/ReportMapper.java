@@ -20,10 +20,16 @@
  */
 package org.maxkey.persistence.mapper;
 
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 import org.apache.mybatis.jpa.persistence.IJpaBaseMapper;
 import org.apache.mybatis.jpa.persistence.JpaBaseEntity;
 
@@ -47,5 +53,39 @@ public  interface ReportMapper extends IJpaBaseMapper<JpaBaseEntity> {
 	
 	public List<Map<String,Object>> analysisApp(HashMap<String,Object> reportParameter );
 	
+	//rollup of login history
+	@Select("select watermark from mxk_report_watermark where id = #{id}")
+	public Date queryRollupWatermark(@Param("id") String id);
+	
+	@Insert("insert into mxk_report_watermark (id , watermark) values (#{id} , #{watermark})")
+	public int insertRollupWatermark(@Param("id") String id , @Param("watermark") Date watermark);
+	
+	@Update("update mxk_report_watermark set watermark = #{watermark} where id = #{id}")
+	public int updateRollupWatermark(@Param("id") String id , @Param("watermark") Date watermark);
+	
+	@Select("select min(logintime) from mxk_history_login")
+	public Date queryMinLoginTime();
+	
+	@Select("select min(logintime) from mxk_history_login_apps")
+	public Date queryMinLoginAppsTime();
+	
+	/**
+	 * delete hours from the hour of fromDate and fromHour
+	 */
+	@Delete("delete from mxk_report_login_hour where reportdate > #{fromDate} or (reportdate = #{fromDate} and reporthour >= #{fromHour})")
+	public int deleteLoginHourRollup(@Param("fromDate") java.sql.Date fromDate , @Param("fromHour") int fromHour);
+	
+	/**
+	 * count mxk_history_login of logintime in [from , to) by instid , day , hour and browser
+	 */
+	public int rollupLoginHour(@Param("from") Date from , @Param("to") Date to);
+	
+	@Delete("delete from mxk_report_login_apps where reportdate >= #{fromDate}")
+	public int deleteLoginAppsRollup(@Param("fromDate") java.sql.Date fromDate);
+	
+	/**
+	 * count mxk_history_login_apps of logintime in [from , to) by instid , day and app
+	 */
+	public int rollupLoginApps(@Param("from") Date from , @Param("to") Date to);
 	
 }
@@ -47,6 +47,13 @@ public interface UserInfoMapper  extends IJpaBaseMapper<UserInfo>{
 	
 	public List<UserInfoAdjoint> findAdjointsByUserId(String userId);
 	
+	//batch load for provisioning
+	public List<UserInfo> findByIds(List<String> ids);
+	
+	public List<Organizations> findDeptsByIds(List<String> ids);
+	
+	public List<UserInfoAdjoint> findAdjointsByUserIds(List<String> userIds);
+	
 	public void updateLocked(UserInfo userInfo);
 
 	public void updateLockout(UserInfo userInfo);
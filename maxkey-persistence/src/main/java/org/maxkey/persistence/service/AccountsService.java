@@ -17,9 +17,19 @@
 
 package org.maxkey.persistence.service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 
 import org.apache.mybatis.jpa.persistence.JpaBaseService;
+import org.apache.mybatis.jpa.persistence.MapperMetadata;
 import org.maxkey.constants.ConstantsStatus;
 import org.maxkey.crypto.password.PasswordReciprocal;
 import org.maxkey.entity.Accounts;
@@ -34,6 +44,8 @@ import org.maxkey.util.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import com.google.common.collect.Lists;
+
 import net.sourceforge.pinyin4j.PinyinHelper;
 import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
 import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
@@ -71,19 +83,7 @@ public class AccountsService  extends JpaBaseService<Accounts>{
 	
 	 public boolean insert(Accounts account) {
 	     if (super.insert(account)) {
-	            if(kafkaPersistService.getApplicationConfig().isKafkaSupport()) {
-	                UserInfo loadUserInfo = userInfoService.findUserRelated(account.getUserId());
-	                account.setUserInfo(loadUserInfo);
-	                OrganizationsCast cast = new OrganizationsCast();
-                    cast.setProvider(account.getAppId());
-                    cast.setOrgId(loadUserInfo.getDepartmentId());
-                    account.setOrgCast(organizationsCastService.query(cast));
-	                kafkaPersistService.send(
-	                        KafkaIdentityTopic.ACCOUNT_TOPIC, 
-	                        account,
-	                        KafkaIdentityAction.CREATE_ACTION);
-	            }
-	            
+	            provisioning(Collections.singletonList(account), KafkaIdentityAction.CREATE_ACTION);
 	            return true;
 	        }
 	     return false;
@@ -91,24 +91,86 @@ public class AccountsService  extends JpaBaseService<Accounts>{
 	 
    public boolean update(Accounts account) {
          if (super.update(account)) {
-                if(kafkaPersistService.getApplicationConfig().isKafkaSupport()) {
-                    UserInfo loadUserInfo = userInfoService.findUserRelated(account.getUserId());
-                    account.setUserInfo(loadUserInfo);
-                    OrganizationsCast cast = new OrganizationsCast();
-                    cast.setProvider(account.getAppId());
-                    cast.setOrgId(loadUserInfo.getDepartmentId());
-                    account.setOrgCast(organizationsCastService.query(cast));
-                    kafkaPersistService.send(
-                            KafkaIdentityTopic.ACCOUNT_TOPIC, 
-                            account,
-                            KafkaIdentityAction.UPDATE_ACTION);
-                }
-                
+                provisioning(Collections.singletonList(account), KafkaIdentityAction.UPDATE_ACTION);
                 return true;
             }
          return false;
      }
    
+   /**
+    * update status of accounts , one statement for every BATCH_SIZE accounts,
+    * provisioning with batch query
+    * @param listAccounts
+    * @param status
+    * @return
+    */
+   public boolean updateStatus(List<Accounts> listAccounts,int status) {
+       if(listAccounts.isEmpty()) {
+           return false;
+       }
+       int updated = 0;
+       for(List<Accounts> batchAccounts : Lists.partition(listAccounts, UserInfoService.BATCH_SIZE)) {
+           List<String> ids = new ArrayList<String>(batchAccounts.size());
+           for(Accounts account : batchAccounts) {
+               account.setStatus(status);
+               ids.add(account.getId());
+           }
+           updated += getMapper().updateStatusBatch(status, ids);
+       }
+       provisioning(listAccounts, KafkaIdentityAction.UPDATE_ACTION);
+       return updated > 0;
+   }
+   
+   /**
+    * load UserInfo and OrganizationsCast of accounts by batch query,then send to kafka
+    * @param listAccounts
+    * @param actionType
+    */
+   public void provisioning(List<Accounts> listAccounts,String actionType) {
+       if(listAccounts.isEmpty() || !kafkaPersistService.getApplicationConfig().isKafkaSupport()) {
+           return;
+       }
+       for(List<Accounts> batchAccounts : Lists.partition(listAccounts, UserInfoService.BATCH_SIZE)) {
+           List<String> userIds = new ArrayList<String>(batchAccounts.size());
+           for(Accounts account : batchAccounts) {
+               userIds.add(account.getUserId());
+           }
+           Map<String, UserInfo> loadUserInfos = userInfoService.findUserRelated(userIds);
+           
+           //appId -> departmentIds
+           Map<String, Set<String>> appOrgIds = new HashMap<String, Set<String>>();
+           for(Accounts account : batchAccounts) {
+               UserInfo loadUserInfo = loadUserInfos.get(account.getUserId());
+               account.setUserInfo(loadUserInfo);
+               if(loadUserInfo != null && StringUtils.isNotBlank(loadUserInfo.getDepartmentId())) {
+                   appOrgIds.computeIfAbsent(account.getAppId(), appId -> new LinkedHashSet<String>())
+                       .add(loadUserInfo.getDepartmentId());
+               }
+           }
+           
+           //appId + orgId -> casts
+           Map<String, List<OrganizationsCast>> orgCasts = new HashMap<String, List<OrganizationsCast>>();
+           for(Map.Entry<String, Set<String>> entry : appOrgIds.entrySet()) {
+               for(OrganizationsCast cast : organizationsCastService.getMapper().queryByProviderAndOrgIds(
+                       entry.getKey(), new ArrayList<String>(entry.getValue()))) {
+                   orgCasts.computeIfAbsent(cast.getProvider() + "/" + cast.getOrgId(),
+                           key -> new ArrayList<OrganizationsCast>()).add(cast);
+               }
+           }
+           
+           for(Accounts account : batchAccounts) {
+               if(account.getUserInfo() != null) {
+                   List<OrganizationsCast> listOrgCast = orgCasts.get(
+                           account.getAppId() + "/" + account.getUserInfo().getDepartmentId());
+                   if(listOrgCast != null) {
+                       account.setOrgCast(listOrgCast);
+                   }
+               }
+           }
+           kafkaPersistService.sendAll(KafkaIdentityTopic.ACCOUNT_TOPIC, batchAccounts, actionType);
+       }
+   }
+   
    public boolean remove(String id) {
        Accounts account = this.get(id);
        if (super.remove(id)) {
@@ -132,25 +194,52 @@ public class AccountsService  extends JpaBaseService<Accounts>{
            strategy.setOrgIdsList("'"+strategy.getOrgIdsList().replace(",", "','")+"'");
        }
        List<UserInfo>  userList = queryUserNotInStrategy(strategy);
+       //accounts of the app , resolve collisions in memory,
+       //lower case as the database collation compare names case-insensitive
+       Set<String> relatedUsernames = new HashSet<String>();
+       for(String relatedUsername : getMapper().queryRelatedUsernameByAppId(strategy.getAppId())) {
+           if(relatedUsername != null) {
+               relatedUsernames.add(relatedUsername.toLowerCase(Locale.ROOT));
+           }
+       }
+       List<Accounts> batchAccounts = new ArrayList<Accounts>();
        for(UserInfo user : userList) {
            Accounts account = new Accounts();
+           account.setId(MapperMetadata.identifierGeneratorFactory.generate("snowflakeid"));
            account.setAppId(strategy.getAppId());
            account.setAppName(strategy.getAppName());
            
            account.setUserId(user.getId());
            account.setUsername(user.getUsername());
            account.setDisplayName(user.getDisplayName());
-           account.setRelatedUsername(generateAccount(user,strategy));
+           account.setRelatedUsername(generateAccount(user,strategy,
+                   relatedUsername -> relatedUsernames.contains(relatedUsername.toLowerCase(Locale.ROOT))));
            account.setRelatedPassword(PasswordReciprocal.getInstance().encode(userInfoService.randomPassword()));
+           relatedUsernames.add(account.getRelatedUsername().toLowerCase(Locale.ROOT));
            
            account.setCreateType("automatic");
            account.setStatus(ConstantsStatus.ACTIVE);
            account.setStrategyId(strategy.getId());
+           account.setInstId(strategy.getInstId());
            
-           insert(account);
+           batchAccounts.add(account);
+           if(batchAccounts.size() >= UserInfoService.BATCH_SIZE) {
+               insertBatchAccounts(batchAccounts);
+               batchAccounts = new ArrayList<Accounts>();
+           }
        }
+       insertBatchAccounts(batchAccounts);
        deleteByStrategy(strategy);
    }
+   
+   //one insert statement for batch , then provisioning
+   private void insertBatchAccounts(List<Accounts> batchAccounts) {
+       if(!batchAccounts.isEmpty()) {
+           getMapper().insertBatch(batchAccounts);
+           provisioning(batchAccounts, KafkaIdentityAction.CREATE_ACTION);
+       }
+   }
+   
    public void refreshAllByStrategy() {
 	   AccountsStrategy queryStrategy = new AccountsStrategy();
 	   queryStrategy.setCreateType("automatic");
@@ -179,31 +268,43 @@ public class AccountsService  extends JpaBaseService<Accounts>{
    
    
    public String generateAccount(UserInfo  userInfo,AccountsStrategy accountsStrategy) {
-   	String shortAccount = generateAccount(userInfo,accountsStrategy,true);
-   	String account = generateAccount(userInfo,accountsStrategy,false);
+       return generateAccount(userInfo, accountsStrategy, 
+               relatedUsername -> !getMapper().queryByAppIdAndAccount(
+                       accountsStrategy.getAppId(), relatedUsername).isEmpty());
+   }
+   
+   /**
+    * generate account
+    * @param userInfo
+    * @param accountsStrategy
+    * @param exists account exists in the app
+    * @return
+    */
+   public String generateAccount(UserInfo  userInfo,AccountsStrategy accountsStrategy,Predicate<String> exists) {
+   	String suffixes = StringUtils.isNotBlank(accountsStrategy.getSuffixes()) ? accountsStrategy.getSuffixes() : "";
+   	String [] accounts = generateAccounts(userInfo,accountsStrategy);
+   	String shortAccount = accounts[0];
+   	String account = accounts[1];
    	String accountResult = shortAccount;
-   	List<Accounts> AccountsList =getMapper().queryByAppIdAndAccount(accountsStrategy.getAppId(),shortAccount +accountsStrategy.getSuffixes());
-   	if(!AccountsList.isEmpty()) {
+   	boolean accountExists = exists.test(shortAccount + suffixes);
+   	if(accountExists) {
    		if(accountsStrategy.getMapping().equalsIgnoreCase("email")) {
    			accountResult = account;
-   			AccountsList =getMapper().queryByAppIdAndAccount(accountsStrategy.getAppId(),account + accountsStrategy.getSuffixes());
+   			accountExists = exists.test(account + suffixes);
    		}
-   		if(!AccountsList.isEmpty()) {
+   		if(accountExists) {
 	    		for(int i =1 ;i < 100 ;i++) {
 	    			accountResult = account + i;
-	    			AccountsList =getMapper().queryByAppIdAndAccount(accountsStrategy.getAppId(),accountResult + accountsStrategy.getSuffixes());
-	    			if(AccountsList.isEmpty())break;
+	    			if(!exists.test(accountResult + suffixes))break;
 	    		}
    		}
    	}
-   	if(StringUtils.isNotBlank(accountsStrategy.getSuffixes())){
-   		accountResult = accountResult + accountsStrategy.getSuffixes();
-   	}
-       return accountResult;
+       return accountResult + suffixes;
    }
    
    
-	private String generateAccount(UserInfo  userInfo,AccountsStrategy strategy,boolean isShort) {
+	//short and full account
+	private String [] generateAccounts(UserInfo  userInfo,AccountsStrategy strategy) {
 		String account = "";
     	if(strategy.getMapping().equalsIgnoreCase("username")) {
     		account = userInfo.getUsername();
@@ -211,11 +312,7 @@ public class AccountsService  extends JpaBaseService<Accounts>{
     		account = userInfo.getMobile();
     	}else if(strategy.getMapping().equalsIgnoreCase("email")) {
     		try {
-	    		if(isShort) {
-	    			account = getPinYinShortName(userInfo.getDisplayName());
-	    		}else {
-	    			account = getPinYinName(userInfo.getDisplayName());
-	    		}
+    			return getPinYinNames(userInfo.getDisplayName());
     		}catch(Exception e) {
     			e.printStackTrace();
     		}
@@ -229,14 +326,37 @@ public class AccountsService  extends JpaBaseService<Accounts>{
     		account = userInfo.getUsername();
     	}
     	
-        return account;
+        return new String[] {account , account};
 	}
 	
-	public static String getPinYinName(String name) throws BadHanyuPinyinOutputFormatCombination {
-        HanyuPinyinOutputFormat pinyinFormat = new        HanyuPinyinOutputFormat();
+	/**
+	 * short and full pinyin name , convert every char once
+	 * @param name
+	 * @return [short name , full name]
+	 * @throws BadHanyuPinyinOutputFormatCombination
+	 */
+	public static String [] getPinYinNames(String name) throws BadHanyuPinyinOutputFormatCombination {
+		StringBuilder shortName = new StringBuilder();
+		StringBuilder fullName = new StringBuilder();
+		for(char c : name.toCharArray()) {
+			String pinyinName = getPinYinName(String.valueOf(c));
+			if(pinyinName.length() > 0) {
+				shortName.append(fullName.length() == 0 ? pinyinName : pinyinName.substring(0, 1));
+				fullName.append(pinyinName);
+			}
+		}
+		return new String[] {shortName.toString() , fullName.toString()};
+	}
+	
+	static final HanyuPinyinOutputFormat pinyinFormat = new        HanyuPinyinOutputFormat();
+	
+	static {
         pinyinFormat.setCaseType(HanyuPinyinCaseType.LOWERCASE);
         pinyinFormat.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
         pinyinFormat.setVCharType(HanyuPinyinVCharType.WITH_V);
+	}
+	
+	public static String getPinYinName(String name) throws BadHanyuPinyinOutputFormatCombination {
         return PinyinHelper.toHanYuPinyinString(name, pinyinFormat, "",false);
     }
 	
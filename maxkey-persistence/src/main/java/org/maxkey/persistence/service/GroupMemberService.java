@@ -17,18 +17,33 @@
 
 package org.maxkey.persistence.service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.mybatis.jpa.persistence.JpaBaseService;
+import org.apache.mybatis.jpa.persistence.MapperMetadata;
 import org.maxkey.entity.GroupMember;
 import org.maxkey.entity.Groups;
 import org.maxkey.entity.UserInfo;
+import org.maxkey.persistence.kafka.KafkaIdentityAction;
+import org.maxkey.persistence.kafka.KafkaIdentityTopic;
+import org.maxkey.persistence.kafka.KafkaPersistService;
 import org.maxkey.persistence.mapper.GroupMemberMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import com.google.common.collect.Lists;
+
 @Repository
 public class GroupMemberService  extends JpaBaseService<GroupMember>{
 	
+	public static final String DYNAMIC_MEMBER_TYPE = "USER-DYNAMIC";
+	
+	@Autowired
+	KafkaPersistService kafkaPersistService;
+	
 	public GroupMemberService() {
 		super(GroupMemberMapper.class);
 	}
@@ -49,6 +64,62 @@ public class GroupMemberService  extends JpaBaseService<GroupMember>{
 	    return getMapper().deleteDynamicGroupMember(dynamicGroup);
 	}
 	
+	public List<String> queryDynamicGroupMemberTargets(Groups dynamicGroup) {
+	    return getMapper().queryDynamicGroupMemberTargets(dynamicGroup);
+	}
+	
+	/**
+	 * insert and delete the difference between current members and target members of dynamic group,
+	 * members not changed are not rewritten
+	 * @param dynamicGroup
+	 * @param targetMemberIds users match the filters of dynamic group
+	 * @return count of inserted and deleted members
+	 */
+	public int syncDynamicGroupMember(Groups dynamicGroup,Set<String> targetMemberIds) {
+	    Set<String> memberIds = new HashSet<String>(getMapper().queryDynamicGroupMemberIds(dynamicGroup.getId()));
+	    
+	    List<GroupMember> insertMembers = new ArrayList<GroupMember>();
+	    for(String memberId : targetMemberIds) {
+	        if(!memberIds.contains(memberId)) {
+	            GroupMember groupMember = new GroupMember(
+	                    dynamicGroup.getId(), dynamicGroup.getName(),
+	                    memberId, null, DYNAMIC_MEMBER_TYPE, dynamicGroup.getInstId());
+	            groupMember.setId(MapperMetadata.identifierGeneratorFactory.generate("snowflakeid"));
+	            insertMembers.add(groupMember);
+	        }
+	    }
+	    
+	    List<String> deleteMemberIds = new ArrayList<String>();
+	    List<GroupMember> deleteMembers = new ArrayList<GroupMember>();
+	    for(String memberId : memberIds) {
+	        if(!targetMemberIds.contains(memberId)) {
+	            deleteMemberIds.add(memberId);
+	            deleteMembers.add(new GroupMember(
+	                    dynamicGroup.getId(), dynamicGroup.getName(),
+	                    memberId, null, DYNAMIC_MEMBER_TYPE, dynamicGroup.getInstId()));
+	        }
+	    }
+	    
+	    for(List<GroupMember> batchMembers : Lists.partition(insertMembers, UserInfoService.BATCH_SIZE)) {
+	        getMapper().insertDynamicGroupMembers(batchMembers);
+	    }
+	    for(List<String> batchMemberIds : Lists.partition(deleteMemberIds, UserInfoService.BATCH_SIZE)) {
+	        getMapper().deleteDynamicGroupMembers(dynamicGroup.getId(), batchMemberIds);
+	    }
+	    
+	    if(kafkaPersistService.getApplicationConfig().isKafkaSupport()) {
+	        kafkaPersistService.sendAll(
+	                KafkaIdentityTopic.GROUP_MEMBER_TOPIC, 
+	                insertMembers, 
+	                KafkaIdentityAction.CREATE_ACTION);
+	        kafkaPersistService.sendAll(
+	                KafkaIdentityTopic.GROUP_MEMBER_TOPIC, 
+	                deleteMembers, 
+	                KafkaIdentityAction.DELETE_ACTION);
+	    }
+	    return insertMembers.size() + deleteMembers.size();
+	}
+	
 	public int deleteByGroupId(String groupId) {
         return getMapper().deleteByGroupId(groupId);
     }
@@ -17,18 +17,64 @@
 
 package org.maxkey.persistence.service;
 
+import java.util.List;
+
 import org.apache.mybatis.jpa.persistence.JpaBaseService;
 import org.maxkey.entity.GroupPrivileges;
+import org.maxkey.persistence.db.GroupAppsIndex;
 import org.maxkey.persistence.mapper.GroupPrivilegesMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class GroupPrivilegesService  extends JpaBaseService<GroupPrivileges>{
 	
+	//invalidate when group privileges changed
+	@Autowired(required = false)
+	GroupAppsIndex groupAppsIndex;
+	
 	public GroupPrivilegesService() {
 		super(GroupPrivilegesMapper.class);
 	}
 	
+	@Override
+	public boolean insert(GroupPrivileges groupPrivileges) {
+		boolean result = super.insert(groupPrivileges);
+		invalidateGroupApps();
+		return result;
+	}
+	
+	//invalidate once for all rows
+	@Override
+	public boolean insertBatch(List<GroupPrivileges> listGroupPrivileges) {
+		boolean result = super.insertBatch(listGroupPrivileges);
+		invalidateGroupApps();
+		return result;
+	}
+	
+	@Override
+	public boolean deleteBatch(String ids) {
+		boolean result = super.deleteBatch(ids);
+		invalidateGroupApps();
+		return result;
+	}
+	
+	@Override
+	public boolean remove(String id) {
+		boolean result = super.remove(id);
+		invalidateGroupApps();
+		return result;
+	}
+	
+	void invalidateGroupApps() {
+		if(groupAppsIndex != null) {
+			groupAppsIndex.invalidate();
+		}
+	}
+	
+	public void setGroupAppsIndex(GroupAppsIndex groupAppsIndex) {
+		this.groupAppsIndex = groupAppsIndex;
+	}
 
 	
 	/* (non-Javadoc)
@@ -20,7 +20,15 @@ package org.maxkey.persistence.service;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.mybatis.jpa.persistence.JpaBaseService;
 import org.maxkey.constants.ConstantsStatus;
@@ -31,6 +39,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -48,6 +57,9 @@ public class GroupsService  extends JpaBaseService<Groups> implements Serializab
     @Qualifier("groupMemberService")
     GroupMemberService groupMemberService;
     
+    @Value("${maxkey.job.dynamicgroups.threads:4}")
+    int dynamicGroupsThreads = 4;
+    
 	public GroupsService() {
 		super(GroupsMapper.class);
 	}
@@ -110,26 +122,51 @@ public class GroupsService  extends JpaBaseService<Groups> implements Serializab
     	    
     	    dynamicGroup.setFilters(filters);
     	    
-    	    if(isDynamicTimeSupport) {
-    	        if(isBetweenEffectiveTime) {
-    	            groupMemberService.deleteDynamicGroupMember(dynamicGroup);
-                    groupMemberService.addDynamicGroupMember(dynamicGroup);
-    	        }else {
-    	            groupMemberService.deleteDynamicGroupMember(dynamicGroup);
-    	        }
-    	    }else{
-                groupMemberService.deleteDynamicGroupMember(dynamicGroup);
-                groupMemberService.addDynamicGroupMember(dynamicGroup);
-            }
+    	    Set<String> targetMemberIds = new HashSet<String>();
+    	    if(!isDynamicTimeSupport || isBetweenEffectiveTime) {
+    	        targetMemberIds.addAll(groupMemberService.queryDynamicGroupMemberTargets(dynamicGroup));
+    	    }
+    	    int changes = groupMemberService.syncDynamicGroupMember(dynamicGroup, targetMemberIds);
+    	    _logger.debug("group {} members {} , changes {}", dynamicGroup.getId(), targetMemberIds.size(), changes);
 	    }
     }
 	
+	/**
+	 * refresh dynamic groups in parallel , threads bounded by dynamicGroupsThreads
+	 */
 	public void refreshAllDynamicGroups(){
 	    List<Groups>  groupsList = queryDynamicGroups(null);
-        for(Groups group : groupsList) {
-            _logger.debug("group " + group);
-            refreshDynamicGroups(group);
-        }
+	    if(groupsList.isEmpty()) {
+	        return;
+	    }
+	    AtomicInteger threadNumber = new AtomicInteger();
+	    ExecutorService executor = Executors.newFixedThreadPool(
+	            Math.max(1, Math.min(dynamicGroupsThreads, groupsList.size())),
+	            runnable -> new Thread(runnable, "dynamic-groups-" + threadNumber.getAndIncrement()));
+	    try {
+	        List<Future<?>> futures = new ArrayList<Future<?>>();
+            for(Groups group : groupsList) {
+                futures.add(executor.submit(() -> {
+                    long startTime = System.currentTimeMillis();
+                    _logger.debug("group " + group);
+                    refreshDynamicGroups(group);
+                    _logger.info("refresh dynamic group {} ({}) in {} ms",
+                            group.getName(), group.getId(), System.currentTimeMillis() - startTime);
+                }));
+            }
+            for(int i = 0 ; i < futures.size() ; i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    _logger.error("refresh dynamic group " + groupsList.get(i).getId() + " error", e.getCause());
+                }
+            }
+	    } catch (InterruptedException e) {
+	        Thread.currentThread().interrupt();
+	        _logger.error("refresh dynamic groups interrupted");
+	    } finally {
+	        executor.shutdownNow();
+	    }
 	}
 
     public GroupMemberService getGroupMemberService() {
@@ -139,6 +176,10 @@ public class GroupsService  extends JpaBaseService<Groups> implements Serializab
     public void setGroupMemberService(GroupMemberService groupMemberService) {
         this.groupMemberService = groupMemberService;
     }
+
+    public void setDynamicGroupsThreads(int dynamicGroupsThreads) {
+        this.dynamicGroupsThreads = dynamicGroupsThreads;
+    }
 	
 
 	
@@ -0,0 +1,226 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.mybatis.jpa.persistence.JpaBaseService;
+import org.maxkey.entity.HistoryArchive;
+import org.maxkey.persistence.mapper.HistoryArchiveMapper;
+import org.maxkey.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+/**
+ * history retention<br>
+ * rows older than retention days moved to month archive tables tableName_yyyyMM 
+ * in chunks , each chunk copied and deleted by id , no long locks on the history tables<br>
+ * archive tables registered in mxk_history_archive , queried only when the date range needs
+ *
+ */
+@Repository
+public class HistoryArchiveService  extends JpaBaseService<HistoryArchive>{
+	final static Logger _logger = LoggerFactory.getLogger(HistoryArchiveService.class);
+	
+	public static final String HISTORY_LOGIN 		= "mxk_history_login";
+	
+	public static final String HISTORY_LOGIN_APPS 	= "mxk_history_login_apps";
+	
+	public static final String HISTORY_LOGS 		= "mxk_history_logs";
+	
+	public static final String HISTORY_SYNCHRONIZER = "mxk_history_synchronizer";
+	
+	public static final String HISTORY_CONNECTOR 	= "mxk_history_connector";
+	
+	static final DateTimeFormatter MONTH_FORMATTER 	= DateTimeFormatter.ofPattern("yyyyMM");
+	
+	static final DateTimeFormatter TIME_FORMATTER 	= DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+	
+	//history tables and time column
+	static final ArchiveTable [] ARCHIVE_TABLES = new ArchiveTable[] {
+			new ArchiveTable(HISTORY_LOGIN			, "logintime"	, false),
+			new ArchiveTable(HISTORY_LOGIN_APPS		, "logintime"	, false),
+			new ArchiveTable(HISTORY_LOGS			, "createddate"	, false),
+			new ArchiveTable(HISTORY_SYNCHRONIZER	, "synctime"	, false),
+			//synctime is varchar
+			new ArchiveTable(HISTORY_CONNECTOR		, "synctime"	, true)
+	};
+	
+	//0 for keep all
+	@Value("${maxkey.history.retention.days:180}")
+	int retentionDays = 180;
+	
+	@Value("${maxkey.history.archive.chunk-size:1000}")
+	int chunkSize = 1000;
+	
+	//false , delete without archive
+	@Value("${maxkey.history.archive.enabled:true}")
+	boolean archiveEnabled = true;
+	
+	//archive tables created
+	Set<String> archiveTables = ConcurrentHashMap.newKeySet();
+	
+	public HistoryArchiveService() {
+		super(HistoryArchiveMapper.class);
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.connsec.db.service.BaseService#getMapper()
+	 */
+	@Override
+	public HistoryArchiveMapper getMapper() {
+		return (HistoryArchiveMapper)super.getMapper();
+	}
+	
+	public int archive() {
+		return archive(LocalDate.now());
+	}
+	
+	/**
+	 * archive the history before today - retention days
+	 * @param today
+	 * @return rows archived
+	 */
+	public int archive(LocalDate today) {
+		if(retentionDays <= 0) {
+			return 0;
+		}
+		LocalDate horizon = today.minusDays(retentionDays);
+		int rows = 0;
+		for(ArchiveTable table : ARCHIVE_TABLES) {
+			long startTime = System.currentTimeMillis();
+			int tableRows = archive(table , horizon);
+			_logger.debug("archive {} before {} , {} rows , cost {} ms" ,
+					table.tableName , horizon , tableRows , System.currentTimeMillis() - startTime);
+			rows += tableRows;
+		}
+		return rows;
+	}
+	
+	int archive(ArchiveTable table , LocalDate horizon) {
+		Object before = table.stringTime ? 
+				horizon.atStartOfDay().format(TIME_FORMATTER) : Timestamp.valueOf(horizon.atStartOfDay());
+		int rows = 0;
+		while(true) {
+			List<Map<String, Object>> archiveRows = 
+					getMapper().queryArchiveRows(table.tableName, table.timeColumn, before, chunkSize);
+			if(archiveRows.isEmpty()) {
+				break;
+			}
+			
+			//ids by month
+			TreeMap<String , List<String>> monthIds = new TreeMap<String , List<String>>();
+			for(Map<String, Object> row : archiveRows) {
+				monthIds.computeIfAbsent(archiveMonth(row.get("archivetime")), month -> new ArrayList<String>())
+					.add(row.get("id").toString());
+			}
+			for(Map.Entry<String , List<String>> entry : monthIds.entrySet()) {
+				if(archiveEnabled) {
+					String archiveTable = createArchiveTable(table.tableName, entry.getKey());
+					getMapper().archiveRows(table.tableName, archiveTable, entry.getValue());
+				}
+				getMapper().deleteRows(table.tableName, entry.getValue());
+			}
+			rows += archiveRows.size();
+			if(archiveRows.size() < chunkSize) {
+				break;
+			}
+		}
+		return rows;
+	}
+	
+	String createArchiveTable(String tableName , String archiveMonth) {
+		String archiveTable = tableName + "_" + archiveMonth;
+		if(!archiveTables.contains(archiveTable)) {
+			if(archiveTables.isEmpty()) {
+				archiveTables.addAll(getMapper().queryAllArchiveTables());
+			}
+			if(!archiveTables.contains(archiveTable)) {
+				_logger.info("create archive table {}" , archiveTable);
+				getMapper().createArchiveTable(tableName, archiveTable);
+				insert(new HistoryArchive(tableName , archiveMonth , archiveTable));
+				archiveTables.add(archiveTable);
+			}
+		}
+		return archiveTable;
+	}
+	
+	/**
+	 * archive tables of the months from startDate to endDate
+	 * @param tableName
+	 * @param startDate yyyy-MM-dd HH:mm:ss , null for hot table only
+	 * @param endDate yyyy-MM-dd HH:mm:ss , null for now
+	 * @return archive tables or null
+	 */
+	public List<String> queryArchiveTables(String tableName , String startDate , String endDate) {
+		if(StringUtils.isBlank(startDate) || startDate.length() < 7) {
+			return null;
+		}
+		String fromMonth = startDate.substring(0, 7).replace("-", "");
+		String toMonth = StringUtils.isBlank(endDate) || endDate.length() < 7 ? 
+				LocalDate.now().format(MONTH_FORMATTER) : endDate.substring(0, 7).replace("-", "");
+		List<String> tables = getMapper().queryArchiveTables(tableName, fromMonth, toMonth);
+		return tables == null || tables.isEmpty() ? null : tables;
+	}
+	
+	static String archiveMonth(Object archiveTime) {
+		if(archiveTime instanceof Date) {
+			return new Timestamp(((Date) archiveTime).getTime()).toLocalDateTime().format(MONTH_FORMATTER);
+		}else if(archiveTime instanceof LocalDateTime) {
+			return ((LocalDateTime) archiveTime).format(MONTH_FORMATTER);
+		}
+		//yyyy-MM-dd HH:mm:ss
+		return archiveTime.toString().substring(0, 7).replace("-", "");
+	}
+	
+	public void setRetentionDays(int retentionDays) {
+		this.retentionDays = retentionDays;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	public void setArchiveEnabled(boolean archiveEnabled) {
+		this.archiveEnabled = archiveEnabled;
+	}
+
+	static class ArchiveTable {
+		final String tableName;
+		final String timeColumn;
+		final boolean stringTime;
+		
+		ArchiveTable(String tableName, String timeColumn, boolean stringTime) {
+			this.tableName = tableName;
+			this.timeColumn = timeColumn;
+			this.stringTime = stringTime;
+		}
+	}
+}
@@ -18,12 +18,17 @@
 package org.maxkey.persistence.service;
 
 import org.apache.mybatis.jpa.persistence.JpaBaseService;
+import org.apache.mybatis.jpa.persistence.JpaPageResults;
 import org.maxkey.entity.HistoryConnector;
 import org.maxkey.persistence.mapper.HistoryConnectorMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class HistoryConnectorService  extends JpaBaseService<HistoryConnector>{
+	
+	@Autowired
+	HistoryArchiveService historyArchiveService;
 
 	public HistoryConnectorService() {
 		super(HistoryConnectorMapper.class);
@@ -36,4 +41,17 @@ public class HistoryConnectorService  extends JpaBaseService<HistoryConnector>{
 	public HistoryConnectorMapper getMapper() {
 		return (HistoryConnectorMapper)super.getMapper();
 	}
+	
+	/**
+	 * query the archive tables too , when startDate is in the archived months
+	 */
+	@Override
+	public JpaPageResults<HistoryConnector> queryPageResults(HistoryConnector historyConnector) {
+		historyConnector.setArchiveTables(
+				historyArchiveService.queryArchiveTables(
+						HistoryArchiveService.HISTORY_CONNECTOR, 
+						historyConnector.getStartDate(), 
+						historyConnector.getEndDate()));
+		return super.queryPageResults(historyConnector);
+	}
 }
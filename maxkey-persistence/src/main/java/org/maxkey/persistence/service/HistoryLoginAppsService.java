@@ -18,12 +18,21 @@
 package org.maxkey.persistence.service;
 
 import org.apache.mybatis.jpa.persistence.JpaBaseService;
+import org.apache.mybatis.jpa.persistence.JpaPageResults;
 import org.maxkey.entity.HistoryLoginApps;
+import org.maxkey.persistence.db.LoginHistoryWriter;
 import org.maxkey.persistence.mapper.HistoryLoginAppsMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class HistoryLoginAppsService  extends JpaBaseService<HistoryLoginApps>{
+	
+	@Autowired
+	HistoryArchiveService historyArchiveService;
+	
+	@Autowired(required = false)
+	LoginHistoryWriter loginHistoryWriter;
 
 	public HistoryLoginAppsService() {
 		super(HistoryLoginAppsMapper.class);
@@ -38,7 +47,25 @@ public class HistoryLoginAppsService  extends JpaBaseService<HistoryLoginApps>{
 		return (HistoryLoginAppsMapper)super.getMapper();
 	}
 	
+	/**
+	 * query the archive tables too , when startDate is in the archived months
+	 */
+	@Override
+	public JpaPageResults<HistoryLoginApps> queryPageResults(HistoryLoginApps historyLoginApps) {
+		historyLoginApps.setArchiveTables(
+				historyArchiveService.queryArchiveTables(
+						HistoryArchiveService.HISTORY_LOGIN_APPS, 
+						historyLoginApps.getStartDate(), 
+						historyLoginApps.getEndDate()));
+		return super.queryPageResults(historyLoginApps);
+	}
+	
 	public boolean  insert(HistoryLoginApps loginAppsHistory){
+		if(loginHistoryWriter != null) {
+			//batch write in background when async
+			loginHistoryWriter.loginApps(loginAppsHistory);
+			return true;
+		}
 		return getMapper().insert(loginAppsHistory)> 0;
 	}
 }
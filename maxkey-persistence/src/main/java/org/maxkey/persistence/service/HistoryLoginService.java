@@ -21,10 +21,14 @@ import org.apache.mybatis.jpa.persistence.JpaBaseService;
 import org.apache.mybatis.jpa.persistence.JpaPageResults;
 import org.maxkey.entity.HistoryLogin;
 import org.maxkey.persistence.mapper.HistoryLoginMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class HistoryLoginService  extends JpaBaseService<HistoryLogin>{
+	
+	@Autowired
+	HistoryArchiveService historyArchiveService;
 
 	public HistoryLoginService() {
 		super(HistoryLoginMapper.class);
@@ -38,6 +42,19 @@ public class HistoryLoginService  extends JpaBaseService<HistoryLogin>{
 		return (HistoryLoginMapper)super.getMapper();
 	}
 	
+	/**
+	 * query the archive tables too , when startDate is in the archived months
+	 */
+	@Override
+	public JpaPageResults<HistoryLogin> queryPageResults(HistoryLogin historyLogin) {
+		historyLogin.setArchiveTables(
+				historyArchiveService.queryArchiveTables(
+						HistoryArchiveService.HISTORY_LOGIN, 
+						historyLogin.getStartDate(), 
+						historyLogin.getEndDate()));
+		return super.queryPageResults(historyLogin);
+	}
+	
 	public JpaPageResults<HistoryLogin> queryOnlineSession(HistoryLogin historyLogin) {
 	    return this.queryPageResults("queryOnlineSession",historyLogin);
 	}
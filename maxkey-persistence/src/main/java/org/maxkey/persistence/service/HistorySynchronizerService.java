@@ -18,12 +18,17 @@
 package org.maxkey.persistence.service;
 
 import org.apache.mybatis.jpa.persistence.JpaBaseService;
+import org.apache.mybatis.jpa.persistence.JpaPageResults;
 import org.maxkey.entity.HistorySynchronizer;
 import org.maxkey.persistence.mapper.HistorySynchronizerMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class HistorySynchronizerService  extends JpaBaseService<HistorySynchronizer>{
+	
+	@Autowired
+	HistoryArchiveService historyArchiveService;
 
 	public HistorySynchronizerService() {
 		super(HistorySynchronizerMapper.class);
@@ -36,4 +41,17 @@ public class HistorySynchronizerService  extends JpaBaseService<HistorySynchroni
 	public HistorySynchronizerMapper getMapper() {
 		return (HistorySynchronizerMapper)super.getMapper();
 	}
+	
+	/**
+	 * query the archive tables too , when startDate is in the archived months
+	 */
+	@Override
+	public JpaPageResults<HistorySynchronizer> queryPageResults(HistorySynchronizer historySynchronizer) {
+		historySynchronizer.setArchiveTables(
+				historyArchiveService.queryArchiveTables(
+						HistoryArchiveService.HISTORY_SYNCHRONIZER, 
+						historySynchronizer.getStartDate(), 
+						historySynchronizer.getEndDate()));
+		return super.queryPageResults(historySynchronizer);
+	}
 }
@@ -18,12 +18,22 @@
 package org.maxkey.persistence.service;
 
 import org.apache.mybatis.jpa.persistence.JpaBaseService;
+import org.apache.mybatis.jpa.persistence.JpaPageResults;
 import org.maxkey.entity.HistoryLogs;
+import org.maxkey.persistence.db.LoginHistoryWriter;
 import org.maxkey.persistence.mapper.HistorySystemLogsMapper;
+import org.maxkey.util.JsonUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public class HistorySystemLogsService  extends JpaBaseService<HistoryLogs>{
+	
+	@Autowired
+	HistoryArchiveService historyArchiveService;
+	
+	@Autowired(required = false)
+	LoginHistoryWriter loginHistoryWriter;
 
 	public HistorySystemLogsService() {
 		super(HistorySystemLogsMapper.class);
@@ -37,4 +47,39 @@ public class HistorySystemLogsService  extends JpaBaseService<HistoryLogs>{
 	public HistorySystemLogsMapper getMapper() {
 		return (HistorySystemLogsMapper)super.getMapper();
 	}
+	
+	/**
+	 * query the archive tables too , when startDate is in the archived months
+	 */
+	@Override
+	public JpaPageResults<HistoryLogs> queryPageResults(HistoryLogs historyLogs) {
+		historyLogs.setArchiveTables(
+				historyArchiveService.queryArchiveTables(
+						HistoryArchiveService.HISTORY_LOGS, 
+						historyLogs.getStartDate(), 
+						historyLogs.getEndDate()));
+		return super.queryPageResults(historyLogs);
+	}
+	
+	@Override
+	public boolean insert(HistoryLogs historyLogs) {
+		return insert(historyLogs, null);
+	}
+	
+	/**
+	 * insert logs , content object rendered to json when queued by the writer
+	 * @param historyLogs
+	 * @param content object of content , null for historyLogs.getContent()
+	 * @return
+	 */
+	public boolean insert(HistoryLogs historyLogs , Object content) {
+		if(loginHistoryWriter != null) {
+			loginHistoryWriter.systemLogs(historyLogs, content);
+			return true;
+		}
+		if(content != null) {
+			historyLogs.setContent(JsonUtils.object2Json(content));
+		}
+		return super.insert(historyLogs);
+	}
 }
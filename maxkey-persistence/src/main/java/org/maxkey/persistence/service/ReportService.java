@@ -17,17 +17,41 @@
 
 package org.maxkey.persistence.service;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import org.apache.mybatis.jpa.persistence.JpaBaseEntity;
 import org.apache.mybatis.jpa.persistence.JpaBaseService;
 import org.maxkey.persistence.mapper.ReportMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+/**
+ * dashboard reports read from rollup tables mxk_report_login_hour and mxk_report_login_apps,
+ * rollup by job from the history since the watermark.
+ *
+ */
 @Repository
 public class ReportService  extends JpaBaseService<JpaBaseEntity>{
+	final static Logger _logger = LoggerFactory.getLogger(ReportService.class);
+	
+	public static final String LOGIN_WATERMARK 		= "history_login";
+	
+	public static final String LOGIN_APPS_WATERMARK = "history_login_apps";
+	
+	//history rows written later than lag seconds are not counted
+	@Value("${maxkey.job.report.lag-seconds:60}")
+	int rollupLagSeconds = 60;
 
 	public Integer analysisDay(HashMap<String,Object> reportParameter) {
 		return getMapper().analysisDay(reportParameter);
@@ -64,6 +88,74 @@ public class ReportService  extends JpaBaseService<JpaBaseEntity>{
 	
 	
 	
+	/**
+	 * rollup the history from the watermark to now - lag seconds,
+	 * hours and days of the watermark are recomputed , rollup again is harmless
+	 */
+	public void rollup() {
+		rollup(new Date());
+	}
+	
+	public void rollup(Date now) {
+		Date to = new Date(now.getTime() - rollupLagSeconds * 1000L);
+		
+		rollup(LOGIN_WATERMARK, to, ChronoUnit.HOURS,
+				() -> getMapper().queryMinLoginTime(),
+				fromTime -> getMapper().deleteLoginHourRollup(
+						java.sql.Date.valueOf(fromTime.toLocalDate()), fromTime.getHour()),
+				(from , chunkTo) -> getMapper().rollupLoginHour(from, chunkTo));
+		
+		rollup(LOGIN_APPS_WATERMARK, to, ChronoUnit.DAYS,
+				() -> getMapper().queryMinLoginAppsTime(),
+				fromTime -> getMapper().deleteLoginAppsRollup(
+						java.sql.Date.valueOf(fromTime.toLocalDate())),
+				(from , chunkTo) -> getMapper().rollupLoginApps(from, chunkTo));
+	}
+	
+	/**
+	 * delete the rollup from the unit of watermark,
+	 * and rollup again day by day , watermark saved after each day
+	 */
+	void rollup(String watermarkId , Date to , ChronoUnit unit ,
+			Supplier<Date> minLoginTime ,
+			Consumer<LocalDateTime> deleteRollup ,
+			BiFunction<Date , Date , Integer> rollupHistory) {
+		long startTime = System.currentTimeMillis();
+		Date watermark = getMapper().queryRollupWatermark(watermarkId);
+		Date from = watermark == null ? minLoginTime.get() : watermark;
+		if(from == null) {
+			_logger.debug("rollup {} , no history" , watermarkId);
+			return;
+		}
+		
+		LocalDateTime fromTime = new Timestamp(from.getTime()).toLocalDateTime().truncatedTo(unit);
+		LocalDateTime toTime = new Timestamp(to.getTime()).toLocalDateTime();
+		if(!fromTime.isBefore(toTime)) {
+			return;
+		}
+		
+		deleteRollup.accept(fromTime);
+		int rows = 0;
+		boolean watermarkExists = watermark != null;
+		while(fromTime.isBefore(toTime)) {
+			LocalDateTime chunkTime = fromTime.plusDays(1).isBefore(toTime) ? fromTime.plusDays(1) : toTime;
+			rows += rollupHistory.apply(Timestamp.valueOf(fromTime), Timestamp.valueOf(chunkTime));
+			if(watermarkExists) {
+				getMapper().updateRollupWatermark(watermarkId, Timestamp.valueOf(chunkTime));
+			}else {
+				getMapper().insertRollupWatermark(watermarkId, Timestamp.valueOf(chunkTime));
+				watermarkExists = true;
+			}
+			fromTime = chunkTime;
+		}
+		_logger.debug("rollup {} to {} , {} rows , cost {} ms" ,
+				watermarkId , toTime , rows , System.currentTimeMillis() - startTime);
+	}
+	
+	public void setRollupLagSeconds(int rollupLagSeconds) {
+		this.rollupLagSeconds = rollupLagSeconds;
+	}
+	
 	public ReportService() {
 		super(ReportMapper.class);
 		
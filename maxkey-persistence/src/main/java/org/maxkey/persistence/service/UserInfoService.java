@@ -18,12 +18,22 @@
 package org.maxkey.persistence.service;
 
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.apache.mybatis.jpa.persistence.JpaBaseService;
 import org.maxkey.constants.ConstantsStatus;
 import org.maxkey.crypto.password.PasswordReciprocal;
 import org.maxkey.entity.Accounts;
 import org.maxkey.entity.ChangePassword;
+import org.maxkey.entity.Organizations;
 import org.maxkey.entity.UserInfo;
+import org.maxkey.entity.UserInfoAdjoint;
 import org.maxkey.persistence.db.PasswordPolicyValidator;
 import org.maxkey.persistence.kafka.KafkaIdentityAction;
 import org.maxkey.persistence.kafka.KafkaIdentityTopic;
@@ -34,11 +44,14 @@ import org.maxkey.util.StringUtils;
 import org.maxkey.web.WebContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Repository;
 
+import com.google.common.collect.Lists;
+
 
 /**
  * @author Crystal.Sea
@@ -48,6 +61,11 @@ import org.springframework.stereotype.Repository;
 public class UserInfoService extends JpaBaseService<UserInfo> {
 	final static Logger _logger = LoggerFactory.getLogger(UserInfoService.class);
 	
+	/**
+	 * ids of one batch query
+	 */
+	public static final int BATCH_SIZE = 500;
+	
 	@Autowired
 	private PasswordEncoder passwordEncoder;
 	
@@ -90,6 +108,27 @@ public class UserInfoService extends JpaBaseService<UserInfo> {
 
         return false;
     }
+    
+    /**
+     * insert users , provisioning with batch query
+     */
+    @Override
+    public boolean insertBatch(List<UserInfo> listUserInfo) {
+        if (super.insertBatch(listUserInfo)) {
+            if(kafkaPersistService.getApplicationConfig().isKafkaSupport()) {
+                List<String> userIds = new ArrayList<String>(listUserInfo.size());
+                for(UserInfo userInfo : listUserInfo) {
+                    userIds.add(userInfo.getId());
+                }
+                kafkaPersistService.sendAll(
+                        KafkaIdentityTopic.USERINFO_TOPIC, 
+                        new ArrayList<UserInfo>(findUserRelated(userIds).values()),
+                        KafkaIdentityAction.CREATE_ACTION);
+            }
+            return true;
+        }
+        return false;
+    }
 	
     public boolean update(UserInfo userInfo) {
         userInfo = passwordEncoder(userInfo);
@@ -135,10 +174,8 @@ public class UserInfoService extends JpaBaseService<UserInfo> {
             }
             Accounts queryAcount =new Accounts();
             queryAcount.setUserId(userInfo.getId());
-            for (Accounts acount : accountsService.query(queryAcount)) {
-                acount.setStatus(ConstantsStatus.INACTIVE);
-                accountsService.update(acount);
-            }
+            List<Accounts> listAccounts = accountsService.query(queryAcount);
+            accountsService.updateStatus(listAccounts, ConstantsStatus.INACTIVE);
         }
     }
 
@@ -149,6 +186,70 @@ public class UserInfoService extends JpaBaseService<UserInfo> {
 	    return loadUserInfo;
 	}
 	
+	/**
+	 * load users with depts and adjoints,
+	 * 3 queries for every BATCH_SIZE users instead of 3 queries for each user
+	 * @param userIds
+	 * @return userId and UserInfo , order by userIds
+	 */
+	public Map<String, UserInfo> findUserRelated(List<String> userIds) {
+	    Map<String, UserInfo> loadUserInfos = new LinkedHashMap<String, UserInfo>();
+	    List<String> distinctUserIds = new ArrayList<String>(new LinkedHashSet<String>(userIds));
+	    for(List<String> batchUserIds : Lists.partition(distinctUserIds, BATCH_SIZE)) {
+	        Map<String, UserInfo> batchUserInfos = new HashMap<String, UserInfo>();
+	        Set<String> deptIds = new LinkedHashSet<String>();
+	        for(UserInfo userInfo : getMapper().findByIds(batchUserIds)) {
+	            userInfo.setAdjoints(new ArrayList<UserInfoAdjoint>());
+	            batchUserInfos.put(userInfo.getId(), userInfo);
+	            if(StringUtils.isNotBlank(userInfo.getDepartmentId())) {
+	                deptIds.add(userInfo.getDepartmentId());
+	            }
+	        }
+	        
+	        for(UserInfoAdjoint adjoint : getMapper().findAdjointsByUserIds(batchUserIds)) {
+	            UserInfo userInfo = batchUserInfos.get(adjoint.getUserId());
+	            if(userInfo != null) {
+	                userInfo.getAdjoints().add(adjoint);
+	                if(StringUtils.isNotBlank(adjoint.getDepartmentId())) {
+	                    deptIds.add(adjoint.getDepartmentId());
+	                }
+	            }
+	        }
+	        
+	        Map<String, Organizations> depts = new HashMap<String, Organizations>();
+	        if(!deptIds.isEmpty()) {
+	            for(Organizations dept : getMapper().findDeptsByIds(new ArrayList<String>(deptIds))) {
+	                depts.put(dept.getId(), dept);
+	            }
+	        }
+	        
+	        for(String userId : batchUserIds) {
+	            UserInfo userInfo = batchUserInfos.get(userId);
+	            if(userInfo == null) {
+	                continue;
+	            }
+	            List<Organizations> userDepts = new ArrayList<Organizations>();
+	            addDept(userDepts, depts.get(userInfo.getDepartmentId()), 1);
+	            for(UserInfoAdjoint adjoint : userInfo.getAdjoints()) {
+	                addDept(userDepts, depts.get(adjoint.getDepartmentId()), 0);
+	            }
+	            userInfo.setDepts(userDepts);
+	            loadUserInfos.put(userId, userInfo);
+	        }
+	    }
+	    return loadUserInfos;
+	}
+	
+	//depts shared by users , copy for isPrimary
+	private void addDept(List<Organizations> userDepts,Organizations dept,int isPrimary) {
+	    if(dept != null) {
+	        Organizations userDept = new Organizations();
+	        BeanUtils.copyProperties(dept, userDept);
+	        userDept.setIsPrimary(isPrimary);
+	        userDepts.add(userDept);
+	    }
+	}
+	
 	public boolean updateGridList(String gridList) {
 	    try {
     	    if (gridList != null && !gridList.equals("")) {
@@ -340,6 +441,8 @@ public class UserInfoService extends JpaBaseService<UserInfo> {
 				userInfo.setIsLocked(ConstantsStatus.START);
 				userInfo.setBadPasswordCount(0);
 				getMapper().updateLockout(userInfo);
+				//attempts of login counted in loginAttemptStore
+				passwordPolicyValidator.resetLoginAttempts(userInfo);
 			}
 		} catch(Exception e) {
 			e.printStackTrace();
@@ -0,0 +1,150 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.kafka;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.maxkey.configuration.ApplicationConfig;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * shutdown send the pending retries within the shutdown timeout
+ */
+public class KafkaPersistServiceTest {
+
+    @SuppressWarnings("unchecked")
+    KafkaPersistService createKafkaPersistService(int failures) {
+        AtomicInteger sends = new AtomicInteger();
+        KafkaTemplate<String, String> kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), anyString())).thenAnswer(invocation -> {
+            SettableListenableFuture<SendResult<String, String>> sendResult =
+                    new SettableListenableFuture<SendResult<String, String>>();
+            if (sends.incrementAndGet() <= failures) {
+                sendResult.setException(new IllegalStateException("broker not available"));
+            } else {
+                sendResult.set(null);
+            }
+            return sendResult;
+        });
+        ApplicationConfig applicationConfig = new ApplicationConfig();
+        applicationConfig.setKafkaSupport(true);
+        KafkaPersistService kafkaPersistService = new KafkaPersistService();
+        kafkaPersistService.setApplicationConfig(applicationConfig);
+        kafkaPersistService.setKafkaTemplate(kafkaTemplate);
+        //retry not due before shutdown
+        kafkaPersistService.retryBackoffMillis = 60000;
+        kafkaPersistService.shutdownTimeoutMillis = 5000;
+        return kafkaPersistService;
+    }
+
+    @Test
+    public void testShutdownSendPendingRetries() throws Exception {
+        KafkaPersistService kafkaPersistService = createKafkaPersistService(1);
+        kafkaPersistService.send("MXK_IDENTITY_USERINFO_TOPIC", "user-1", "CREATE_ACTION");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (kafkaPersistService.getRetryCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, kafkaPersistService.getSendCount());
+
+        long start = System.currentTimeMillis();
+        kafkaPersistService.shutdown();
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals(1, kafkaPersistService.getSendCount());
+        assertEquals(0, kafkaPersistService.getFailedCount());
+        verify(kafkaPersistService.kafkaTemplate, times(2)).send(anyString(), anyString());
+    }
+
+    @Test
+    public void testShutdownRetryWithoutBackoff() throws Exception {
+        //fail the first send and the retry scheduled,the last retry send by shutdown
+        KafkaPersistService kafkaPersistService = createKafkaPersistService(2);
+        kafkaPersistService.send("MXK_IDENTITY_USERINFO_TOPIC", "user-1", "CREATE_ACTION");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (kafkaPersistService.getRetryCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        kafkaPersistService.shutdown();
+        assertEquals(1, kafkaPersistService.getSendCount());
+        assertEquals(2, kafkaPersistService.getRetryCount());
+        assertEquals(0, kafkaPersistService.getQueueSize());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRetryNotSentByProducerCallback() throws Exception {
+        AtomicInteger sends = new AtomicInteger();
+        List<String> sendThreads = new CopyOnWriteArrayList<String>();
+        KafkaTemplate<String, String> kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), anyString())).thenAnswer(invocation -> {
+            sendThreads.add(Thread.currentThread().getName());
+            SettableListenableFuture<SendResult<String, String>> sendResult =
+                    new SettableListenableFuture<SendResult<String, String>>();
+            boolean fail = sends.incrementAndGet() == 1;
+            //completed by the producer network thread
+            new Thread(() -> {
+                if (fail) {
+                    sendResult.setException(new IllegalStateException("broker not available"));
+                } else {
+                    sendResult.set(null);
+                }
+            }, "kafka-producer-network-thread").start();
+            return sendResult;
+        });
+        KafkaPersistService kafkaPersistService = createKafkaPersistService(0);
+        kafkaPersistService.setKafkaTemplate(kafkaTemplate);
+        kafkaPersistService.retryBackoffMillis = 10;
+        kafkaPersistService.send("MXK_IDENTITY_USERINFO_TOPIC", "user-1", "CREATE_ACTION");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (kafkaPersistService.getSendCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, kafkaPersistService.getSendCount());
+        assertEquals(2, sendThreads.size());
+        assertFalse(sendThreads.contains("kafka-producer-network-thread"));
+        kafkaPersistService.shutdown();
+    }
+
+    @Test
+    public void testDroppedWhenQueueFull() throws Exception {
+        KafkaPersistService kafkaPersistService = createKafkaPersistService(0);
+        kafkaPersistService.workers = 0;
+        kafkaPersistService.queueCapacity = 1;
+        kafkaPersistService.offerTimeoutMillis = 10;
+        kafkaPersistService.send("MXK_IDENTITY_USERINFO_TOPIC", "user-1", "CREATE_ACTION");
+        kafkaPersistService.send("MXK_IDENTITY_USERINFO_TOPIC", "user-2", "CREATE_ACTION");
+        assertEquals(1, kafkaPersistService.getDroppedCount());
+        assertEquals(0, kafkaPersistService.getFailedCount());
+        kafkaPersistService.shutdown();
+        assertEquals(1, kafkaPersistService.getSendCount());
+    }
+}
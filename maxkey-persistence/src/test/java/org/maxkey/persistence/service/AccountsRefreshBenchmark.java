@@ -0,0 +1,205 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.maxkey.configuration.ApplicationConfig;
+import org.maxkey.crypto.password.PasswordReciprocal;
+import org.maxkey.entity.Accounts;
+import org.maxkey.entity.AccountsStrategy;
+import org.maxkey.entity.UserInfo;
+import org.maxkey.persistence.kafka.KafkaPersistService;
+import org.maxkey.persistence.mapper.AccountsMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * AccountsService.refreshByStrategy over 100k users,
+ * lookup and insert account one by one vs preload names and batch insert.
+ * database round trip simulated by roundTripMicros,run main.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class AccountsRefreshBenchmark {
+
+    static final int USERS = 100000;
+
+    static final int EXISTS_ACCOUNTS = 10000;
+
+    @Param({"100"})
+    long roundTripMicros;
+
+    AccountsStrategy strategy;
+
+    List<UserInfo> userList;
+
+    Set<String> relatedUsernames;
+
+    AtomicLong roundTrips = new AtomicLong();
+
+    AccountsService accountsService;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        strategy = new AccountsStrategy();
+        strategy.setId("strategy-1");
+        strategy.setAppId("app-1");
+        strategy.setAppName("Application 1");
+        strategy.setInstId("1");
+        strategy.setMapping("username");
+
+        //10% users with the same username
+        userList = new ArrayList<UserInfo>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            UserInfo userInfo = new UserInfo();
+            userInfo.setId("user-" + i);
+            userInfo.setUsername("user" + (i % (USERS - USERS / 10)));
+            userInfo.setDisplayName("User " + i);
+            userList.add(userInfo);
+        }
+        relatedUsernames = new HashSet<String>();
+        for (int i = 0; i < EXISTS_ACCOUNTS; i++) {
+            relatedUsernames.add("user" + (i * 7));
+        }
+        roundTrips.set(0);
+
+        ApplicationConfig applicationConfig = new ApplicationConfig();
+        applicationConfig.setKafkaSupport(false);
+        KafkaPersistService kafkaPersistService = new KafkaPersistService();
+        kafkaPersistService.setApplicationConfig(applicationConfig);
+
+        UserInfoService userInfoService = mock(UserInfoService.class);
+        when(userInfoService.randomPassword()).thenReturn("Pa$$w0rd");
+
+        accountsService = new AccountsService();
+        accountsService.setMapper(createAccountsMapper());
+        accountsService.kafkaPersistService = kafkaPersistService;
+        accountsService.userInfoService = userInfoService;
+    }
+
+    /**
+     * the old refreshByStrategy , query names and insert for each user
+     */
+    @Benchmark
+    public long refreshOneByOne() {
+        for (UserInfo user : accountsService.queryUserNotInStrategy(strategy)) {
+            Accounts account = new Accounts();
+            account.setAppId(strategy.getAppId());
+            account.setUserId(user.getId());
+            account.setUsername(user.getUsername());
+            account.setRelatedUsername(accountsService.generateAccount(user, strategy));
+            account.setRelatedPassword(
+                    PasswordReciprocal.getInstance().encode(accountsService.userInfoService.randomPassword()));
+            accountsService.getMapper().insert(account);
+        }
+        accountsService.deleteByStrategy(strategy);
+        return roundTrips.get();
+    }
+
+    @Benchmark
+    public long refreshBatch() {
+        accountsService.refreshByStrategy(strategy);
+        return roundTrips.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    AccountsMapper createAccountsMapper() {
+        return (AccountsMapper) Proxy.newProxyInstance(
+                AccountsMapper.class.getClassLoader(),
+                new Class<?>[] { AccountsMapper.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "queryUserNotInStrategy":
+                            return userList;
+                        case "queryRelatedUsernameByAppId":
+                            roundTrip();
+                            return new ArrayList<String>(relatedUsernames);
+                        case "queryByAppIdAndAccount":
+                            roundTrip();
+                            List<Accounts> accounts = new ArrayList<Accounts>();
+                            if (relatedUsernames.contains(args[1])) {
+                                accounts.add(new Accounts());
+                            }
+                            return accounts;
+                        case "insert":
+                            roundTrip();
+                            relatedUsernames.add(((Accounts) args[0]).getRelatedUsername());
+                            return 1;
+                        case "insertBatch":
+                            roundTrip();
+                            for (Accounts account : (List<Accounts>) args[0]) {
+                                relatedUsernames.add(account.getRelatedUsername());
+                            }
+                            return ((List<Accounts>) args[0]).size();
+                        case "deleteByStrategy":
+                            roundTrip();
+                            return 0L;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    void roundTrip() {
+        roundTrips.incrementAndGet();
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        AccountsRefreshBenchmark benchmark = new AccountsRefreshBenchmark();
+        benchmark.roundTripMicros = 0;
+        benchmark.setup();
+        System.out.println("one by one round trips : " + benchmark.refreshOneByOne());
+        benchmark.setup();
+        System.out.println("batch round trips : " + benchmark.refreshBatch());
+
+        Options opt = new OptionsBuilder()
+                .include(AccountsRefreshBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
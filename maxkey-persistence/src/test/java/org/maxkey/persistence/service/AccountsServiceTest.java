@@ -0,0 +1,152 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.maxkey.configuration.ApplicationConfig;
+import org.maxkey.entity.Accounts;
+import org.maxkey.entity.AccountsStrategy;
+import org.maxkey.entity.UserInfo;
+import org.maxkey.persistence.kafka.KafkaPersistService;
+import org.maxkey.persistence.mapper.AccountsMapper;
+import org.mockito.ArgumentCaptor;
+
+public class AccountsServiceTest {
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRefreshByStrategy() {
+        int users = UserInfoService.BATCH_SIZE + 10;
+        AccountsStrategy strategy = new AccountsStrategy();
+        strategy.setId("strategy-1");
+        strategy.setAppId("app-1");
+        strategy.setInstId("1");
+        strategy.setMapping("username");
+        strategy.setSuffixes("@maxkey.top");
+
+        List<UserInfo> userList = new ArrayList<UserInfo>();
+        for (int i = 0; i < users; i++) {
+            UserInfo userInfo = new UserInfo();
+            userInfo.setId("user-" + i);
+            //user-0 , user-1 and user-2 with the same username,user-4 differ from user-3 only in case
+            userInfo.setUsername(i < 3 ? "maxkey" : (i == 4 ? "USER3" : "user" + i));
+            userList.add(userInfo);
+        }
+
+        AccountsMapper accountsMapper = mock(AccountsMapper.class);
+        when(accountsMapper.queryUserNotInStrategy(strategy)).thenReturn(userList);
+        when(accountsMapper.queryRelatedUsernameByAppId("app-1")).thenReturn(
+                Arrays.asList("maxkey@maxkey.top", "MaxKey2@MaxKey.top"));
+        when(accountsMapper.insertBatch(any(List.class))).thenReturn(1);
+
+        AccountsService accountsService = createAccountsService(accountsMapper);
+        accountsService.refreshByStrategy(strategy);
+
+        ArgumentCaptor<List> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(accountsMapper, times(2)).insertBatch(batchCaptor.capture());
+        verify(accountsMapper, never()).queryByAppIdAndAccount(anyString(), anyString());
+        verify(accountsMapper, never()).insert(any(Accounts.class));
+        verify(accountsMapper).deleteByStrategy(strategy);
+
+        List<Accounts> accounts = new ArrayList<Accounts>();
+        for (List<Accounts> batchAccounts : batchCaptor.getAllValues()) {
+            accounts.addAll(batchAccounts);
+        }
+        assertEquals(UserInfoService.BATCH_SIZE, batchCaptor.getAllValues().get(0).size());
+        assertEquals(users, accounts.size());
+        assertEquals("maxkey1@maxkey.top", accounts.get(0).getRelatedUsername());
+        assertEquals("maxkey3@maxkey.top", accounts.get(1).getRelatedUsername());
+        assertEquals("maxkey4@maxkey.top", accounts.get(2).getRelatedUsername());
+        assertEquals("user3@maxkey.top", accounts.get(3).getRelatedUsername());
+        assertEquals("USER31@maxkey.top", accounts.get(4).getRelatedUsername());
+
+        Set<String> ids = new HashSet<String>();
+        for (Accounts account : accounts) {
+            ids.add(account.getId());
+            assertEquals("1", account.getInstId());
+        }
+        assertEquals(users, ids.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testUpdateStatus() {
+        List<Accounts> listAccounts = new ArrayList<Accounts>();
+        for (int i = 0; i < UserInfoService.BATCH_SIZE + 1; i++) {
+            Accounts account = new Accounts();
+            account.setId("account-" + i);
+            account.setStatus(1);
+            listAccounts.add(account);
+        }
+        AccountsMapper accountsMapper = mock(AccountsMapper.class);
+        when(accountsMapper.updateStatusBatch(anyInt(), any(List.class))).thenReturn(1);
+
+        AccountsService accountsService = createAccountsService(accountsMapper);
+        assertTrue(accountsService.updateStatus(listAccounts, 2));
+
+        ArgumentCaptor<List> idsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(accountsMapper, times(2)).updateStatusBatch(eq(2), idsCaptor.capture());
+        verify(accountsMapper, never()).update(any(Accounts.class));
+        assertEquals(UserInfoService.BATCH_SIZE, idsCaptor.getAllValues().get(0).size());
+        assertEquals(Arrays.asList("account-" + UserInfoService.BATCH_SIZE), idsCaptor.getAllValues().get(1));
+        assertEquals(2, listAccounts.get(0).getStatus());
+    }
+
+    @Test
+    public void testGetPinYinNames() throws Exception {
+        assertArrayEquals(new String[] { "zhangsf", "zhangsanfeng" },
+                AccountsService.getPinYinNames("张三丰"));
+        assertEquals("zhangsanfeng", AccountsService.getPinYinName("张三丰"));
+        assertEquals("zhangsf", AccountsService.getPinYinShortName("张三丰"));
+    }
+
+    AccountsService createAccountsService(AccountsMapper accountsMapper) {
+        ApplicationConfig applicationConfig = new ApplicationConfig();
+        applicationConfig.setKafkaSupport(false);
+        KafkaPersistService kafkaPersistService = new KafkaPersistService();
+        kafkaPersistService.setApplicationConfig(applicationConfig);
+
+        UserInfoService userInfoService = mock(UserInfoService.class);
+        when(userInfoService.randomPassword()).thenReturn("Pa$$w0rd");
+
+        AccountsService accountsService = new AccountsService();
+        accountsService.setMapper(accountsMapper);
+        accountsService.kafkaPersistService = kafkaPersistService;
+        accountsService.userInfoService = userInfoService;
+        return accountsService;
+    }
+}
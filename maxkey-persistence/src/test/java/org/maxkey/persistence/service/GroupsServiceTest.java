@@ -0,0 +1,145 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+import org.maxkey.configuration.ApplicationConfig;
+import org.maxkey.entity.GroupMember;
+import org.maxkey.entity.Groups;
+import org.maxkey.persistence.kafka.KafkaPersistService;
+import org.maxkey.persistence.mapper.GroupMemberMapper;
+import org.maxkey.persistence.mapper.GroupsMapper;
+import org.mockito.ArgumentCaptor;
+
+public class GroupsServiceTest {
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRefreshDynamicGroups() {
+        GroupMemberMapper groupMemberMapper = mock(GroupMemberMapper.class);
+        when(groupMemberMapper.queryDynamicGroupMemberIds("group-1")).thenReturn(
+                Arrays.asList("user-a", "user-b", "user-c"));
+        when(groupMemberMapper.queryDynamicGroupMemberTargets(any(Groups.class))).thenReturn(
+                Arrays.asList("user-b", "user-c", "user-d"));
+
+        GroupsService groupsService = createGroupsService(mock(GroupsMapper.class), groupMemberMapper);
+        groupsService.refreshDynamicGroups(createDynamicGroup("group-1"));
+
+        ArgumentCaptor<List> insertCaptor = ArgumentCaptor.forClass(List.class);
+        verify(groupMemberMapper).insertDynamicGroupMembers(insertCaptor.capture());
+        List<GroupMember> insertMembers = insertCaptor.getValue();
+        assertEquals(1, insertMembers.size());
+        assertEquals("user-d", insertMembers.get(0).getMemberId());
+        assertEquals("group-1", insertMembers.get(0).getGroupId());
+        assertEquals("1", insertMembers.get(0).getInstId());
+        assertEquals(GroupMemberService.DYNAMIC_MEMBER_TYPE, insertMembers.get(0).getType());
+        verify(groupMemberMapper).deleteDynamicGroupMembers("group-1", Arrays.asList("user-a"));
+        verify(groupMemberMapper, never()).deleteDynamicGroupMember(any(Groups.class));
+        verify(groupMemberMapper, never()).addDynamicGroupMember(any(Groups.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRefreshUnchanged() {
+        GroupMemberMapper groupMemberMapper = mock(GroupMemberMapper.class);
+        when(groupMemberMapper.queryDynamicGroupMemberIds("group-1")).thenReturn(
+                Arrays.asList("user-a", "user-b"));
+        when(groupMemberMapper.queryDynamicGroupMemberTargets(any(Groups.class))).thenReturn(
+                Arrays.asList("user-b", "user-a"));
+
+        GroupsService groupsService = createGroupsService(mock(GroupsMapper.class), groupMemberMapper);
+        groupsService.refreshDynamicGroups(createDynamicGroup("group-1"));
+
+        verify(groupMemberMapper, never()).insertDynamicGroupMembers(any(List.class));
+        verify(groupMemberMapper, never()).deleteDynamicGroupMembers(anyString(), any(List.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRefreshAllInParallel() {
+        List<Groups> groupsList = new ArrayList<Groups>();
+        for (int i = 0; i < 20; i++) {
+            groupsList.add(createDynamicGroup("group-" + i));
+        }
+        GroupsMapper groupsMapper = mock(GroupsMapper.class);
+        when(groupsMapper.queryDynamicGroups(null)).thenReturn(groupsList);
+
+        Set<String> threadNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        GroupMemberMapper groupMemberMapper = mock(GroupMemberMapper.class);
+        when(groupMemberMapper.queryDynamicGroupMemberIds(anyString())).thenReturn(new ArrayList<String>());
+        when(groupMemberMapper.queryDynamicGroupMemberTargets(any(Groups.class))).thenAnswer(invocation -> {
+            threadNames.add(Thread.currentThread().getName());
+            Thread.sleep(20);
+            return Arrays.asList("user-a");
+        });
+
+        GroupsService groupsService = createGroupsService(groupsMapper, groupMemberMapper);
+        groupsService.setDynamicGroupsThreads(3);
+        groupsService.refreshAllDynamicGroups();
+
+        for (Groups group : groupsList) {
+            verify(groupMemberMapper).queryDynamicGroupMemberIds(group.getId());
+        }
+        verify(groupMemberMapper, times(groupsList.size())).insertDynamicGroupMembers(any(List.class));
+        assertTrue("threads " + threadNames, threadNames.size() <= 3);
+        assertTrue("threads " + threadNames, threadNames.size() > 1);
+    }
+
+    Groups createDynamicGroup(String id) {
+        Groups group = new Groups();
+        group.setId(id);
+        group.setName("Group " + id);
+        group.setInstId("1");
+        group.setDynamic("1");
+        group.setFilters("u.gender = 1");
+        return group;
+    }
+
+    GroupsService createGroupsService(GroupsMapper groupsMapper, GroupMemberMapper groupMemberMapper) {
+        ApplicationConfig applicationConfig = new ApplicationConfig();
+        applicationConfig.setKafkaSupport(false);
+        KafkaPersistService kafkaPersistService = new KafkaPersistService();
+        kafkaPersistService.setApplicationConfig(applicationConfig);
+
+        GroupMemberService groupMemberService = new GroupMemberService();
+        groupMemberService.setMapper(groupMemberMapper);
+        groupMemberService.kafkaPersistService = kafkaPersistService;
+
+        GroupsService groupsService = new GroupsService();
+        groupsService.setMapper(groupsMapper);
+        groupsService.setGroupMemberService(groupMemberService);
+        return groupsService;
+    }
+}
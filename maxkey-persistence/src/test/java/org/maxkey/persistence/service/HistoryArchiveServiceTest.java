@@ -0,0 +1,157 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.maxkey.entity.HistoryArchive;
+import org.maxkey.persistence.mapper.HistoryArchiveMapper;
+import org.mockito.ArgumentCaptor;
+
+public class HistoryArchiveServiceTest {
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testArchive() {
+        HistoryArchiveMapper historyArchiveMapper = mockMapper();
+        //two full chunks and the last one , rows of 202101 and 202102
+        when(historyArchiveMapper.queryArchiveRows(
+                eq(HistoryArchiveService.HISTORY_LOGIN), eq("logintime"), any(), eq(2)))
+            .thenReturn(
+                Arrays.asList(row("1", "2021-01-30 10:00:00"), row("2", "2021-01-31 10:00:00")),
+                Arrays.asList(row("3", "2021-01-31 23:00:00"), row("4", "2021-02-01 00:00:00")),
+                Arrays.asList(row("5", "2021-02-02 00:00:00")));
+
+        HistoryArchiveService historyArchiveService = createHistoryArchiveService(historyArchiveMapper);
+        historyArchiveService.setChunkSize(2);
+        assertEquals(5, historyArchiveService.archive(LocalDate.of(2021, 9, 1)));
+
+        verify(historyArchiveMapper, times(3)).queryArchiveRows(
+                eq(HistoryArchiveService.HISTORY_LOGIN), eq("logintime"),
+                eq(Timestamp.valueOf("2021-03-05 00:00:00")), eq(2));
+        verify(historyArchiveMapper).archiveRows(
+                HistoryArchiveService.HISTORY_LOGIN, "mxk_history_login_202101", Arrays.asList("1", "2"));
+        verify(historyArchiveMapper).archiveRows(
+                HistoryArchiveService.HISTORY_LOGIN, "mxk_history_login_202101", Arrays.asList("3"));
+        verify(historyArchiveMapper).archiveRows(
+                HistoryArchiveService.HISTORY_LOGIN, "mxk_history_login_202102", Arrays.asList("4"));
+        verify(historyArchiveMapper).archiveRows(
+                HistoryArchiveService.HISTORY_LOGIN, "mxk_history_login_202102", Arrays.asList("5"));
+        verify(historyArchiveMapper).deleteRows(HistoryArchiveService.HISTORY_LOGIN, Arrays.asList("1", "2"));
+        verify(historyArchiveMapper).deleteRows(HistoryArchiveService.HISTORY_LOGIN, Arrays.asList("3"));
+        verify(historyArchiveMapper).deleteRows(HistoryArchiveService.HISTORY_LOGIN, Arrays.asList("4"));
+        verify(historyArchiveMapper).deleteRows(HistoryArchiveService.HISTORY_LOGIN, Arrays.asList("5"));
+
+        //202101 registered already , only 202102 created
+        verify(historyArchiveMapper, never()).createArchiveTable(anyString(), eq("mxk_history_login_202101"));
+        verify(historyArchiveMapper, times(1)).createArchiveTable(
+                HistoryArchiveService.HISTORY_LOGIN, "mxk_history_login_202102");
+        ArgumentCaptor<HistoryArchive> archiveCaptor = ArgumentCaptor.forClass(HistoryArchive.class);
+        verify(historyArchiveMapper, times(1)).insert(archiveCaptor.capture());
+        assertEquals("202102", archiveCaptor.getValue().getArchiveMonth());
+        assertEquals("mxk_history_login_202102", archiveCaptor.getValue().getArchiveTable());
+        verify(historyArchiveMapper, times(1)).queryAllArchiveTables();
+
+        //connector synctime is varchar
+        verify(historyArchiveMapper).queryArchiveRows(
+                eq(HistoryArchiveService.HISTORY_CONNECTOR), eq("synctime"), eq("2021-03-05 00:00:00"), eq(2));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testDeleteWithoutArchive() {
+        HistoryArchiveMapper historyArchiveMapper = mockMapper();
+        when(historyArchiveMapper.queryArchiveRows(
+                eq(HistoryArchiveService.HISTORY_LOGS), eq("createddate"), any(), anyInt()))
+            .thenReturn(Arrays.asList(row("1", "2021-01-30 10:00:00")));
+
+        HistoryArchiveService historyArchiveService = createHistoryArchiveService(historyArchiveMapper);
+        historyArchiveService.setArchiveEnabled(false);
+        assertEquals(1, historyArchiveService.archive(LocalDate.of(2021, 9, 1)));
+
+        verify(historyArchiveMapper).deleteRows(HistoryArchiveService.HISTORY_LOGS, Arrays.asList("1"));
+        verify(historyArchiveMapper, never()).archiveRows(anyString(), anyString(), any(List.class));
+        verify(historyArchiveMapper, never()).createArchiveTable(anyString(), anyString());
+    }
+
+    @Test
+    public void testKeepAll() {
+        HistoryArchiveMapper historyArchiveMapper = mockMapper();
+        HistoryArchiveService historyArchiveService = createHistoryArchiveService(historyArchiveMapper);
+        historyArchiveService.setRetentionDays(0);
+        assertEquals(0, historyArchiveService.archive(LocalDate.of(2021, 9, 1)));
+        verify(historyArchiveMapper, never()).queryArchiveRows(anyString(), anyString(), any(), anyInt());
+    }
+
+    @Test
+    public void testQueryArchiveTables() {
+        HistoryArchiveMapper historyArchiveMapper = mockMapper();
+        when(historyArchiveMapper.queryArchiveTables(HistoryArchiveService.HISTORY_LOGIN, "202101", "202103"))
+            .thenReturn(Arrays.asList("mxk_history_login_202101", "mxk_history_login_202102"));
+        HistoryArchiveService historyArchiveService = createHistoryArchiveService(historyArchiveMapper);
+
+        assertNull(historyArchiveService.queryArchiveTables(HistoryArchiveService.HISTORY_LOGIN, null, null));
+        assertNull(historyArchiveService.queryArchiveTables(HistoryArchiveService.HISTORY_LOGIN, "", null));
+        assertNull(historyArchiveService.queryArchiveTables(
+                HistoryArchiveService.HISTORY_LOGIN, "2021-04-01 00:00:00", "2021-05-01 00:00:00"));
+        assertEquals(Arrays.asList("mxk_history_login_202101", "mxk_history_login_202102"),
+                historyArchiveService.queryArchiveTables(
+                        HistoryArchiveService.HISTORY_LOGIN, "2021-01-15 00:00:00", "2021-03-01 00:00:00"));
+    }
+
+    Map<String, Object> row(String id, String archiveTime) {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("id", id);
+        row.put("archivetime", Timestamp.valueOf(archiveTime));
+        return row;
+    }
+
+    HistoryArchiveMapper mockMapper() {
+        HistoryArchiveMapper historyArchiveMapper = mock(HistoryArchiveMapper.class);
+        when(historyArchiveMapper.queryArchiveRows(anyString(), anyString(), any(), anyInt()))
+            .thenReturn(new ArrayList<Map<String, Object>>());
+        when(historyArchiveMapper.queryAllArchiveTables())
+            .thenReturn(new ArrayList<String>(Arrays.asList("mxk_history_login_202101")));
+        return historyArchiveMapper;
+    }
+
+    HistoryArchiveService createHistoryArchiveService(HistoryArchiveMapper historyArchiveMapper) {
+        HistoryArchiveService historyArchiveService = new HistoryArchiveService();
+        historyArchiveService.setMapper(historyArchiveMapper);
+        return historyArchiveService;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.maxkey.persistence.mapper.ReportMapper;
+import org.mockito.ArgumentCaptor;
+
+public class ReportServiceTest {
+
+    @Test
+    public void testFirstRollup() {
+        ReportMapper reportMapper = mock(ReportMapper.class);
+        when(reportMapper.queryMinLoginTime()).thenReturn(Timestamp.valueOf("2021-06-01 08:30:15"));
+        when(reportMapper.queryMinLoginAppsTime()).thenReturn(Timestamp.valueOf("2021-06-01 09:10:00"));
+
+        ReportService reportService = createReportService(reportMapper);
+        reportService.rollup(Timestamp.valueOf("2021-06-03 10:21:00"));
+
+        //from the hour of first login , day by day to now - lag
+        verify(reportMapper).deleteLoginHourRollup(java.sql.Date.valueOf("2021-06-01"), 8);
+        ArgumentCaptor<Date> fromCaptor = ArgumentCaptor.forClass(Date.class);
+        ArgumentCaptor<Date> toCaptor = ArgumentCaptor.forClass(Date.class);
+        verify(reportMapper, times(3)).rollupLoginHour(fromCaptor.capture(), toCaptor.capture());
+        List<Date> froms = fromCaptor.getAllValues();
+        List<Date> tos = toCaptor.getAllValues();
+        assertEquals(Timestamp.valueOf("2021-06-01 08:00:00"), froms.get(0));
+        assertEquals(Timestamp.valueOf("2021-06-02 08:00:00"), tos.get(0));
+        assertEquals(Timestamp.valueOf("2021-06-02 08:00:00"), froms.get(1));
+        assertEquals(Timestamp.valueOf("2021-06-03 08:00:00"), froms.get(2));
+        assertEquals(Timestamp.valueOf("2021-06-03 10:20:00"), tos.get(2));
+        verify(reportMapper).insertRollupWatermark(ReportService.LOGIN_WATERMARK,
+                Timestamp.valueOf("2021-06-02 08:00:00"));
+        verify(reportMapper).updateRollupWatermark(ReportService.LOGIN_WATERMARK,
+                Timestamp.valueOf("2021-06-03 10:20:00"));
+
+        //apps from the day of first sign on
+        verify(reportMapper).deleteLoginAppsRollup(java.sql.Date.valueOf("2021-06-01"));
+        verify(reportMapper, times(3)).rollupLoginApps(any(Date.class), any(Date.class));
+        verify(reportMapper).rollupLoginApps(Timestamp.valueOf("2021-06-01 00:00:00"),
+                Timestamp.valueOf("2021-06-02 00:00:00"));
+    }
+
+    @Test
+    public void testIncrementalRollup() {
+        ReportMapper reportMapper = mock(ReportMapper.class);
+        when(reportMapper.queryRollupWatermark(ReportService.LOGIN_WATERMARK))
+            .thenReturn(Timestamp.valueOf("2021-06-03 10:15:00"));
+        when(reportMapper.queryRollupWatermark(ReportService.LOGIN_APPS_WATERMARK))
+            .thenReturn(Timestamp.valueOf("2021-06-03 10:15:00"));
+
+        ReportService reportService = createReportService(reportMapper);
+        reportService.rollup(Timestamp.valueOf("2021-06-03 10:21:00"));
+
+        //only the hour and day of watermark recomputed
+        verify(reportMapper, never()).queryMinLoginTime();
+        verify(reportMapper).deleteLoginHourRollup(java.sql.Date.valueOf("2021-06-03"), 10);
+        verify(reportMapper).rollupLoginHour(Timestamp.valueOf("2021-06-03 10:00:00"),
+                Timestamp.valueOf("2021-06-03 10:20:00"));
+        verify(reportMapper).deleteLoginAppsRollup(java.sql.Date.valueOf("2021-06-03"));
+        verify(reportMapper).rollupLoginApps(Timestamp.valueOf("2021-06-03 00:00:00"),
+                Timestamp.valueOf("2021-06-03 10:20:00"));
+        verify(reportMapper).updateRollupWatermark(ReportService.LOGIN_WATERMARK,
+                Timestamp.valueOf("2021-06-03 10:20:00"));
+        verify(reportMapper, never()).insertRollupWatermark(anyString(), any(Date.class));
+    }
+
+    @Test
+    public void testNoHistory() {
+        ReportMapper reportMapper = mock(ReportMapper.class);
+
+        ReportService reportService = createReportService(reportMapper);
+        reportService.rollup(Timestamp.valueOf("2021-06-03 10:21:00"));
+
+        verify(reportMapper, never()).deleteLoginHourRollup(any(java.sql.Date.class), anyInt());
+        verify(reportMapper, never()).rollupLoginHour(any(Date.class), any(Date.class));
+        verify(reportMapper, never()).insertRollupWatermark(anyString(), any(Date.class));
+    }
+
+    ReportService createReportService(ReportMapper reportMapper) {
+        ReportService reportService = new ReportService();
+        reportService.setMapper(reportMapper);
+        reportService.setRollupLagSeconds(60);
+        return reportService;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.persistence.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.maxkey.configuration.ApplicationConfig;
+import org.maxkey.entity.Organizations;
+import org.maxkey.entity.UserInfo;
+import org.maxkey.entity.UserInfoAdjoint;
+import org.maxkey.persistence.kafka.KafkaPersistService;
+import org.maxkey.persistence.mapper.UserInfoMapper;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * provisioning 50k users by the workers of KafkaPersistService,not thread per user
+ * and batch users related loading
+ */
+public class UserInfoServiceProvisioningTest {
+
+    static final int USERS = 50000;
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testInsertThreadCount() throws Exception {
+        UserInfoMapper userInfoMapper = mock(UserInfoMapper.class);
+        when(userInfoMapper.insert(any(UserInfo.class))).thenReturn(1);
+        when(userInfoMapper.get(eq(UserInfo.class), anyString())).thenAnswer(
+                invocation -> createUserInfo((String) invocation.getArguments()[1]));
+        when(userInfoMapper.findDeptsByUserId(anyString())).thenReturn(new ArrayList<Organizations>());
+        when(userInfoMapper.findAdjointsByUserId(anyString())).thenReturn(new ArrayList<UserInfoAdjoint>());
+
+        KafkaTemplate<String, String> kafkaTemplate = mock(KafkaTemplate.class);
+        SettableListenableFuture<SendResult<String, String>> sendResult =
+                new SettableListenableFuture<SendResult<String, String>>();
+        sendResult.set(null);
+        when(kafkaTemplate.send(anyString(), anyString())).thenReturn(sendResult);
+
+        ApplicationConfig applicationConfig = new ApplicationConfig();
+        applicationConfig.setKafkaSupport(true);
+        KafkaPersistService kafkaPersistService = new KafkaPersistService();
+        kafkaPersistService.setApplicationConfig(applicationConfig);
+        kafkaPersistService.setKafkaTemplate(kafkaTemplate);
+
+        UserInfoService userInfoService = new UserInfoService();
+        userInfoService.setMapper(userInfoMapper);
+        userInfoService.kafkaPersistService = kafkaPersistService;
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        int threadCount = threadMXBean.getThreadCount();
+        threadMXBean.resetPeakThreadCount();
+
+        for (int i = 0; i < USERS; i++) {
+            assertTrue(userInfoService.insert(createUserInfo("user-" + i)));
+        }
+        long deadline = System.currentTimeMillis() + 60000;
+        while (kafkaPersistService.getSendCount() < USERS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        kafkaPersistService.shutdown();
+
+        assertEquals(USERS, kafkaPersistService.getSendCount());
+        assertEquals(0, kafkaPersistService.getFailedCount());
+        //2 workers and the retry scheduler
+        assertTrue("peak threads " + threadMXBean.getPeakThreadCount(),
+                threadMXBean.getPeakThreadCount() <= threadCount + 3);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testInsertBatchQueries() throws Exception {
+        int users = UserInfoService.BATCH_SIZE * 2 + 1;
+        UserInfoMapper userInfoMapper = mock(UserInfoMapper.class);
+        when(userInfoMapper.insert(any(UserInfo.class))).thenReturn(1);
+        when(userInfoMapper.findByIds(any(List.class))).thenAnswer(invocation -> {
+            List<UserInfo> userInfos = new ArrayList<UserInfo>();
+            for (String id : (List<String>) invocation.getArguments()[0]) {
+                UserInfo userInfo = createUserInfo(id);
+                userInfo.setDepartmentId("dept-1");
+                userInfos.add(userInfo);
+            }
+            return userInfos;
+        });
+        when(userInfoMapper.findAdjointsByUserIds(any(List.class))).thenAnswer(invocation -> {
+            List<UserInfoAdjoint> adjoints = new ArrayList<UserInfoAdjoint>();
+            UserInfoAdjoint adjoint = new UserInfoAdjoint();
+            adjoint.setUserId(((List<String>) invocation.getArguments()[0]).get(0));
+            adjoint.setDepartmentId("dept-2");
+            adjoints.add(adjoint);
+            return adjoints;
+        });
+        when(userInfoMapper.findDeptsByIds(any(List.class))).thenAnswer(invocation -> {
+            List<Organizations> depts = new ArrayList<Organizations>();
+            for (String id : (List<String>) invocation.getArguments()[0]) {
+                Organizations dept = new Organizations();
+                dept.setId(id);
+                depts.add(dept);
+            }
+            return depts;
+        });
+
+        KafkaTemplate<String, String> kafkaTemplate = mock(KafkaTemplate.class);
+        SettableListenableFuture<SendResult<String, String>> sendResult =
+                new SettableListenableFuture<SendResult<String, String>>();
+        sendResult.set(null);
+        when(kafkaTemplate.send(anyString(), anyString())).thenReturn(sendResult);
+
+        ApplicationConfig applicationConfig = new ApplicationConfig();
+        applicationConfig.setKafkaSupport(true);
+        KafkaPersistService kafkaPersistService = new KafkaPersistService();
+        kafkaPersistService.setApplicationConfig(applicationConfig);
+        kafkaPersistService.setKafkaTemplate(kafkaTemplate);
+
+        UserInfoService userInfoService = new UserInfoService();
+        userInfoService.setMapper(userInfoMapper);
+        userInfoService.kafkaPersistService = kafkaPersistService;
+
+        List<UserInfo> userInfoList = new ArrayList<UserInfo>();
+        for (int i = 0; i < users; i++) {
+            userInfoList.add(createUserInfo("user-" + i));
+        }
+        assertTrue(userInfoService.insertBatch(userInfoList));
+
+        long deadline = System.currentTimeMillis() + 30000;
+        while (kafkaPersistService.getSendCount() < users && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        kafkaPersistService.shutdown();
+        assertEquals(users, kafkaPersistService.getSendCount());
+
+        //3 queries for every BATCH_SIZE users
+        verify(userInfoMapper, times(3)).findByIds(any(List.class));
+        verify(userInfoMapper, times(3)).findAdjointsByUserIds(any(List.class));
+        verify(userInfoMapper, times(3)).findDeptsByIds(any(List.class));
+        verify(userInfoMapper, never()).get(eq(UserInfo.class), anyString());
+        verify(userInfoMapper, never()).findDeptsByUserId(anyString());
+
+        Map<String, UserInfo> loadUserInfos = userInfoService.findUserRelated(
+                Arrays.asList("user-0", "user-1", "user-0"));
+        assertEquals(2, loadUserInfos.size());
+        UserInfo userInfo = loadUserInfos.get("user-0");
+        assertEquals(2, userInfo.getDepts().size());
+        assertEquals("dept-1", userInfo.getDepts().get(0).getId());
+        assertEquals(1, userInfo.getDepts().get(0).getIsPrimary());
+        assertEquals("dept-2", userInfo.getDepts().get(1).getId());
+        assertEquals(0, userInfo.getDepts().get(1).getIsPrimary());
+        assertEquals(1, loadUserInfos.get("user-1").getDepts().size());
+    }
+
+    static UserInfo createUserInfo(String id) {
+        UserInfo userInfo = new UserInfo();
+        userInfo.setId(id);
+        userInfo.setUsername(id);
+        userInfo.setDisplayName("User " + id);
+        userInfo.setStatus(1);
+        return userInfo;
+    }
+}
@@ -41,8 +41,7 @@ public class InMemoryProxyGrantingTicketServices extends RandomServiceTicketServ
 
 	@Override
 	public Ticket remove(String ticketId) {
-		Ticket ticket=casTicketStore.getIfPresent(ticketId);	
-		casTicketStore.invalidate(ticketId);
+		Ticket ticket = casTicketStore.asMap().remove(ticketId);
 		return ticket;
 	}
 
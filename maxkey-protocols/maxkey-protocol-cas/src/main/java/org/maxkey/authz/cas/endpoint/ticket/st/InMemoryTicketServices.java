@@ -41,8 +41,7 @@ public class InMemoryTicketServices extends RandomServiceTicketServices {
 
 	@Override
 	public Ticket remove(String ticketId) {
-		Ticket ticket=casTicketStore.getIfPresent(ticketId);	
-		casTicketStore.invalidate(ticketId);
+		Ticket ticket = casTicketStore.asMap().remove(ticketId);
 		return ticket;
 	}
 
@@ -40,8 +40,7 @@ public class InMemoryTicketGrantingTicketServices extends RandomServiceTicketSer
 
 	@Override
 	public Ticket remove(String ticketId) {
-		Ticket ticket=casTicketGrantingTicketStore.getIfPresent(ticketId);	
-		casTicketGrantingTicketStore.invalidate(ticketId);
+		Ticket ticket = casTicketGrantingTicketStore.asMap().remove(ticketId);
 		return ticket;
 	}
 
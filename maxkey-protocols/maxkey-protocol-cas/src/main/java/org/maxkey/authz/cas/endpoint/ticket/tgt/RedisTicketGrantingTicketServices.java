@@ -59,8 +59,7 @@ public class RedisTicketGrantingTicketServices extends RandomServiceTicketServic
 	@Override
 	public Ticket remove(String ticketId) {
 		RedisConnection conn=connectionFactory.getConnection();
-		Ticket ticket = conn.getObject(PREFIX+ticketId);
-		conn.delete(PREFIX+ticketId);
+		Ticket ticket = conn.getObjectAndDelete(PREFIX+ticketId);
 		conn.close();
 		return ticket;
 	}
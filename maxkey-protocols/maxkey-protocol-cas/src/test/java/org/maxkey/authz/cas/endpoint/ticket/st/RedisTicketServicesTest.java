@@ -0,0 +1,118 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.cas.endpoint.ticket.st;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.maxkey.authz.cas.endpoint.ticket.ServiceTicketImpl;
+import org.maxkey.authz.cas.endpoint.ticket.Ticket;
+import org.maxkey.persistence.redis.EmbeddedRedisServer;
+import org.maxkey.persistence.redis.RedisConnectionFactory;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+/**
+ * ServiceTicket validate concurrently,the ticket consume exactly once
+ */
+public class RedisTicketServicesTest {
+
+    static final int THREADS = 32;
+
+    static final int ROUNDS = 50;
+
+    EmbeddedRedisServer redisServer;
+
+    RedisConnectionFactory connectionFactory;
+
+    RedisTicketServices ticketServices;
+
+    @Before
+    public void setUp() throws Exception {
+        redisServer = new EmbeddedRedisServer().start();
+        connectionFactory = redisServer.createConnectionFactory();
+        ticketServices = new RedisTicketServices(connectionFactory);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connectionFactory.getJedisPool().close();
+        redisServer.close();
+    }
+
+    @Test
+    public void testConsumeTicketExactlyOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                String ticketId = ticketServices.createTicket(new ServiceTicketImpl(
+                        new UsernamePasswordAuthenticationToken("maxkey", "maxkey")));
+                CountDownLatch start = new CountDownLatch(1);
+                AtomicInteger consumed = new AtomicInteger();
+                List<Future<?>> futures = new ArrayList<Future<?>>();
+                for (int i = 0; i < THREADS; i++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            Ticket ticket = ticketServices.consumeTicket(ticketId);
+                            assertNotNull(ticket.getAuthentication());
+                            consumed.incrementAndGet();
+                        } catch (Exception e) {
+                            //Invalid ticket,consumed by other thread
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+                assertEquals("ticket " + ticketId, 1, consumed.get());
+            }
+            assertEquals(0, redisServer.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConsumeTicketOneRoundTrip() throws Exception {
+        String ticketId = ticketServices.createTicket(new ServiceTicketImpl(
+                new UsernamePasswordAuthenticationToken("maxkey", "maxkey")));
+        //first consume load the script by EVAL
+        assertNotNull(ticketServices.consumeTicket(ticketId));
+        assertEquals(0, redisServer.size());
+
+        ticketId = ticketServices.createTicket(new ServiceTicketImpl(
+                new UsernamePasswordAuthenticationToken("maxkey", "maxkey")));
+        long roundTrips = connectionFactory.getRoundTrips();
+        assertNotNull(ticketServices.consumeTicket(ticketId));
+        assertEquals(roundTrips + 1, connectionFactory.getRoundTrips());
+    }
+}
@@ -13,6 +13,7 @@
 package org.maxkey.authz.oauth2.provider;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 
 import org.maxkey.authn.AbstractAuthenticationProvider;
 import org.maxkey.authn.SigninPrincipal;
@@ -47,6 +48,9 @@ public class OAuth2UserDetailsService implements UserDetailsService {
 		UserInfo userInfo;
 		try {
 		    userInfo = loginService.find(username, "");
+		    if(userInfo != null) {
+		        userInfo = loginService.loadProfile(userInfo);
+		    }
 		} catch (NoSuchClientException e) {
 			throw new UsernameNotFoundException(e.getMessage(), e);
 		}
@@ -69,7 +73,7 @@ public class OAuth2UserDetailsService implements UserDetailsService {
         }
         _logger.debug("Granted Authority " + grantedAuthoritys);
         
-        signinPrincipal.setGrantedAuthorityApps(grantedAuthoritys);
+        signinPrincipal.setGrantedAuthorityApps(new HashSet<GrantedAuthority>(grantedAuthoritys));
         
 		return signinPrincipal;
 	}
@@ -0,0 +1,171 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.maxkey.entity.apps.oauth2.provider.ClientDetails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * ClientDetailsCache<br>
+ * ClientDetails of clients in memory,unknown client ids are held in a short negative cache,
+ * so a flood of random client ids at token endpoint not query the database each time.<br>
+ * version increase when invalidate,ClientDetails loaded before invalidate is not cached.<br>
+ * invalidate PUBLISH to other nodes when invalidation channel set,
+ * without channel changes of other nodes seen after cache seconds,DEFAULT_LOCAL_CACHE_SECONDS by default.
+ *
+ */
+public class ClientDetailsCache {
+    private static final Logger _logger = LoggerFactory.getLogger(ClientDetailsCache.class);
+
+    public static final int DEFAULT_CACHE_SECONDS = 1800;
+
+    public static final int DEFAULT_CACHE_SIZE = 200000;
+
+    //max cache seconds without invalidation channel
+    public static final int DEFAULT_LOCAL_CACHE_SECONDS = 30;
+
+    public static final int DEFAULT_NEGATIVE_SECONDS = 60;
+
+    public static final int DEFAULT_NEGATIVE_SIZE = 100000;
+
+    final Cache<String, ClientDetails> clientDetailsCache;
+
+    /**
+     * unknown client ids,0 seconds for not cached
+     */
+    final Cache<String, Boolean> negativeCache;
+
+    volatile long version;
+
+    ClientDetailsInvalidationChannel invalidationChannel;
+
+    public ClientDetailsCache() {
+        this(DEFAULT_LOCAL_CACHE_SECONDS, DEFAULT_CACHE_SIZE, DEFAULT_NEGATIVE_SECONDS, DEFAULT_NEGATIVE_SIZE, null);
+    }
+
+    /**
+     * @param cacheSeconds seconds of ClientDetails in cache
+     * @param cacheSize maximum ClientDetails in cache
+     * @param negativeSeconds seconds of unknown client id in cache,0 for not cached
+     * @param negativeSize maximum unknown client ids in cache
+     * @param invalidationChannel null for single node
+     */
+    public ClientDetailsCache(int cacheSeconds, int cacheSize,
+            int negativeSeconds, int negativeSize, ClientDetailsInvalidationChannel invalidationChannel) {
+        this.clientDetailsCache = Caffeine.newBuilder()
+                .expireAfterWrite(cacheSeconds, TimeUnit.SECONDS)
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
+        this.negativeCache = Caffeine.newBuilder()
+                .expireAfterWrite(negativeSeconds, TimeUnit.SECONDS)
+                .maximumSize(negativeSeconds > 0 ? negativeSize : 0)
+                .recordStats()
+                .build();
+        this.invalidationChannel = invalidationChannel;
+        if (invalidationChannel != null) {
+            invalidationChannel.subscribe(this::invalidateLocal, this::invalidateAll);
+        }
+    }
+
+    /**
+     * @param clientId
+     * @param loader load from database,null when client not exists
+     * @return ClientDetails or null
+     */
+    public ClientDetails get(String clientId, Function<String, ClientDetails> loader) {
+        ClientDetails details = clientDetailsCache.getIfPresent(clientId);
+        if (details != null) {
+            return details;
+        }
+        if (negativeCache.getIfPresent(clientId) != null) {
+            _logger.trace("unknown client {} in negative cache", clientId);
+            return null;
+        }
+        long loadVersion = version;
+        details = loader.apply(clientId);
+        synchronized (this) {
+            if (version == loadVersion) {
+                if (details != null) {
+                    clientDetailsCache.put(clientId, details);
+                } else {
+                    negativeCache.put(clientId, Boolean.TRUE);
+                }
+            }
+        }
+        return details;
+    }
+
+    /**
+     * client added,updated or removed,evict on this node and PUBLISH to other nodes
+     * @param clientId
+     */
+    public void invalidate(String clientId) {
+        invalidateLocal(clientId);
+        if (invalidationChannel != null) {
+            invalidationChannel.publish(clientId);
+        }
+    }
+
+    void invalidateLocal(String clientId) {
+        synchronized (this) {
+            version++;
+            clientDetailsCache.invalidate(clientId);
+            negativeCache.invalidate(clientId);
+        }
+    }
+
+    /**
+     * invalidate messages may be lost when resubscribe,evict all
+     */
+    public void invalidateAll() {
+        synchronized (this) {
+            version++;
+            clientDetailsCache.invalidateAll();
+            negativeCache.invalidateAll();
+        }
+    }
+
+    public Cache<String, ClientDetails> getClientDetailsCache() {
+        return clientDetailsCache;
+    }
+
+    public Cache<String, Boolean> getNegativeCache() {
+        return negativeCache;
+    }
+
+    public ClientDetailsInvalidationChannel getInvalidationChannel() {
+        return invalidationChannel;
+    }
+
+    /**
+     * stop subscribe when bean destroy
+     */
+    public void shutdown() {
+        if (invalidationChannel != null) {
+            invalidationChannel.shutdown();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.client;
+
+import java.util.function.Consumer;
+
+/**
+ * ClientDetailsInvalidationChannel<br>
+ * tell the other nodes a client changed,the cached ClientDetails of the client is evicted.
+ *
+ */
+public interface ClientDetailsInvalidationChannel {
+
+    /**
+     * client added,updated or removed on this node
+     * @param clientId
+     */
+    public void publish(String clientId);
+
+    /**
+     * @param onInvalidate clientId changed on other node
+     * @param onResubscribe messages may be lost,all cached clients should be evicted
+     */
+    public void subscribe(Consumer<String> onInvalidate, Runnable onResubscribe);
+
+    public void shutdown();
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.client;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * InMemoryClientDetailsInvalidationChannel<br>
+ * channel of the nodes in one JVM,for tests and single node.<br>
+ * publish deliver to all subscribers in the caller thread,the publisher included.
+ *
+ */
+public class InMemoryClientDetailsInvalidationChannel implements ClientDetailsInvalidationChannel {
+
+    final CopyOnWriteArrayList<Consumer<String>> subscribers = new CopyOnWriteArrayList<Consumer<String>>();
+
+    @Override
+    public void publish(String clientId) {
+        for (Consumer<String> subscriber : subscribers) {
+            subscriber.accept(clientId);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<String> onInvalidate, Runnable onResubscribe) {
+        subscribers.add(onInvalidate);
+    }
+
+    @Override
+    public void shutdown() {
+        subscribers.clear();
+    }
+}
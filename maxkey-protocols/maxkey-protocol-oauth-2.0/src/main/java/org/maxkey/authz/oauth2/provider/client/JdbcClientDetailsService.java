@@ -23,7 +23,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
@@ -48,21 +47,15 @@ import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.StringUtils;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-
 /**
  * Basic, JDBC implementation of the client details service.
+ * ClientDetails cached in ClientDetailsCache,evicted when client added,updated or removed.
  */
 public class JdbcClientDetailsService implements ClientDetailsService, ClientRegistrationService{
 
     private static final Log logger = LogFactory.getLog(JdbcClientDetailsService.class);
     
-    protected final static  Cache<String, ClientDetails> clientDetailsCache = 
-            Caffeine.newBuilder()
-                .expireAfterWrite(30, TimeUnit.MINUTES)
-                .maximumSize(200000)
-                .build();
+    private ClientDetailsCache clientDetailsCache = new ClientDetailsCache();
 
     private JsonMapper mapper = createJsonMapper();
 
@@ -114,8 +107,12 @@ public class JdbcClientDetailsService implements ClientDetailsService, ClientReg
     private JdbcListFactory listFactory;
 
     public JdbcClientDetailsService(DataSource dataSource) {
-        Assert.notNull(dataSource, "DataSource required");
-        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this(new JdbcTemplate(dataSource));
+    }
+
+    public JdbcClientDetailsService(JdbcTemplate jdbcTemplate) {
+        Assert.notNull(jdbcTemplate.getDataSource(), "DataSource required");
+        this.jdbcTemplate = jdbcTemplate;
         this.listFactory = new DefaultJdbcListFactory(new NamedParameterJdbcTemplate(jdbcTemplate));
     }
 
@@ -126,38 +123,63 @@ public class JdbcClientDetailsService implements ClientDetailsService, ClientReg
         this.passwordEncoder = passwordEncoder;
     }
 
+    /**
+     * @param clientDetailsCache the client details cache to set
+     */
+    public void setClientDetailsCache(ClientDetailsCache clientDetailsCache) {
+        this.clientDetailsCache = clientDetailsCache;
+    }
+
+    public ClientDetailsCache getClientDetailsCache() {
+        return clientDetailsCache;
+    }
+
     public ClientDetails loadClientByClientId(String clientId) {
-        // cache in memory
-        ClientDetails details = clientDetailsCache.getIfPresent(clientId);
-        if(details == null) {
-            try {
-                details = jdbcTemplate.queryForObject(selectClientDetailsSql, new ClientDetailsRowMapper(), clientId);
-                clientDetailsCache.put(clientId, details);
-            } catch (EmptyResultDataAccessException e) {
-                throw new NoSuchClientException("No client with requested id: " + clientId);
-            }
+        // cache in memory , unknown client id in negative cache
+        ClientDetails details = clientDetailsCache.get(clientId, this::selectClientDetails);
+        if (details == null) {
+            throw new NoSuchClientException("No client with requested id: " + clientId);
         }
         return details;
     }
 
+    ClientDetails selectClientDetails(String clientId) {
+        try {
+            return jdbcTemplate.queryForObject(selectClientDetailsSql, rowMapper, clientId);
+        } catch (EmptyResultDataAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * evict the client on this node and other nodes
+     * @param clientId
+     */
+    public void invalidate(String clientId) {
+        clientDetailsCache.invalidate(clientId);
+    }
+
     public void addClientDetails(ClientDetails clientDetails) throws ClientAlreadyExistsException {
         try {
             jdbcTemplate.update(insertClientDetailsSql, getFields(clientDetails));
         } catch (DuplicateKeyException e) {
             throw new ClientAlreadyExistsException("Client already exists: " + clientDetails.getClientId(), e);
         }
+        // client id may be in negative cache
+        invalidate(clientDetails.getClientId());
     }
 
     public void updateClientDetails(ClientDetails clientDetails) throws NoSuchClientException {
         int count = jdbcTemplate.update(updateClientDetailsSql, getFieldsForUpdate(clientDetails));
+        invalidate(clientDetails.getClientId());
         if (count != 1) {
             throw new NoSuchClientException("No client found with id = " + clientDetails.getClientId());
         }
-        clientDetailsCache.invalidate(clientDetails.getClientId());
     }
 
     public void updateClientSecret(String clientId, String secret) throws NoSuchClientException {
         int count = jdbcTemplate.update(updateClientSecretSql, passwordEncoder.encode(secret), clientId);
+        invalidate(clientId);
         if (count != 1) {
             throw new NoSuchClientException("No client found with id = " + clientId);
         }
@@ -165,6 +187,7 @@ public class JdbcClientDetailsService implements ClientDetailsService, ClientReg
 
     public void removeClientDetails(String clientId) throws NoSuchClientException {
         int count = jdbcTemplate.update(deleteClientDetailsSql, clientId);
+        invalidate(clientId);
         if (count != 1) {
             throw new NoSuchClientException("No client found with id = " + clientId);
         }
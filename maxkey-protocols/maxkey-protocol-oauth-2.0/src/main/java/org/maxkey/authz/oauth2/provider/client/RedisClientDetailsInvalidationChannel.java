@@ -0,0 +1,92 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.client;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.maxkey.persistence.redis.RedisConnection;
+import org.maxkey.persistence.redis.RedisConnectionFactory;
+import org.maxkey.persistence.redis.RedisMessageSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * RedisClientDetailsInvalidationChannel<br>
+ * PUBLISH nodeId:clientId to the other nodes,message from this node is ignored.
+ *
+ */
+public class RedisClientDetailsInvalidationChannel implements ClientDetailsInvalidationChannel {
+    private static final Logger _logger = LoggerFactory.getLogger(RedisClientDetailsInvalidationChannel.class);
+
+    public static final String INVALIDATE_CHANNEL = "MXK_OAUTH_CLIENT_DETAILS_INVALIDATE";
+
+    final String nodeId = UUID.randomUUID().toString();
+
+    RedisConnectionFactory connectionFactory;
+
+    RedisMessageSubscriber invalidateSubscriber;
+
+    public RedisClientDetailsInvalidationChannel(RedisConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    @Override
+    public void publish(String clientId) {
+        try {
+            RedisConnection conn = connectionFactory.getConnection();
+            conn.publish(INVALIDATE_CHANNEL, nodeId + ":" + clientId);
+            conn.close();
+        } catch (Exception e) {
+            //other nodes evict after the cache expired
+            _logger.error("publish invalidate of client " + clientId + " error", e);
+        }
+    }
+
+    @Override
+    public synchronized void subscribe(Consumer<String> onInvalidate, Runnable onResubscribe) {
+        if (invalidateSubscriber != null) {
+            invalidateSubscriber.stop();
+        }
+        invalidateSubscriber = new RedisMessageSubscriber(connectionFactory, INVALIDATE_CHANNEL,
+                message -> onMessage(message, onInvalidate), onResubscribe);
+        invalidateSubscriber.start();
+    }
+
+    void onMessage(String message, Consumer<String> onInvalidate) {
+        int split = message.indexOf(':');
+        if (split > 0 && !message.startsWith(nodeId + ":")) {
+            _logger.trace("invalidate client {}", message.substring(split + 1));
+            onInvalidate.accept(message.substring(split + 1));
+        }
+    }
+
+    public RedisMessageSubscriber getInvalidateSubscriber() {
+        return invalidateSubscriber;
+    }
+
+    /**
+     * stop subscribe when bean destroy
+     */
+    @Override
+    public synchronized void shutdown() {
+        if (invalidateSubscriber != null) {
+            invalidateSubscriber.stop();
+        }
+    }
+}
@@ -41,8 +41,7 @@ public class InMemoryAuthorizationCodeServices extends RandomValueAuthorizationC
 
 	@Override
 	public OAuth2Authentication remove(String code) {
-		OAuth2Authentication auth = authorizationCodeStore.getIfPresent(code);
-		authorizationCodeStore.invalidate(code);
+		OAuth2Authentication auth = authorizationCodeStore.asMap().remove(code);
 		return auth;
 	}
 
@@ -56,8 +56,8 @@ public class RedisAuthorizationCodeServices extends RandomValueAuthorizationCode
 	@Override
 	public OAuth2Authentication remove(String code) {
 		RedisConnection  conn=connectionFactory.getConnection();
-		OAuth2Authentication auth = conn.getObject(PREFIX+code);
-		conn.delete(PREFIX+code);
+		OAuth2Authentication auth = conn.getObjectAndDelete(PREFIX+code);
+		conn.close();
 		return auth;
 	}
 
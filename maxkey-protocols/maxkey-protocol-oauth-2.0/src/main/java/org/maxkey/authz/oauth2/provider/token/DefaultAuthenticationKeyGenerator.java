@@ -12,14 +12,12 @@
  */
 package org.maxkey.authz.oauth2.provider.token;
 
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Set;
 
-import org.maxkey.authz.oauth2.common.util.OAuth2Utils;
 import org.maxkey.authz.oauth2.provider.OAuth2Authentication;
 import org.maxkey.authz.oauth2.provider.OAuth2Request;
 
@@ -27,42 +25,72 @@ import org.maxkey.authz.oauth2.provider.OAuth2Request;
  * Basic key generator taking into account the client id, scope, reource ids and username (principal name) if they
  * exist.
  * 
+ * <p>The key is the MD5 hex of a canonical encoding of the values, each value is a field tag, the length and the UTF-8
+ * bytes, scopes are sorted so the key does not depend on the scope order of the request. The digest is reused per
+ * thread.</p>
+ * 
  * @author Dave Syer
  * 
  */
 public class DefaultAuthenticationKeyGenerator implements AuthenticationKeyGenerator {
 
-	private static final String CLIENT_ID = "client_id";
+	private static final byte CLIENT_ID = 1;
 
-	private static final String SCOPE = "scope";
+	private static final byte SCOPE = 2;
 
-	private static final String USERNAME = "username";
+	private static final byte USERNAME = 3;
 
-	public String extractKey(OAuth2Authentication authentication) {
-		Map<String, String> values = new LinkedHashMap<String, String>();
-		OAuth2Request authorizationRequest = authentication.getOAuth2Request();
-		if (!authentication.isClientOnly()) {
-			values.put(USERNAME, authentication.getName());
-		}
-		values.put(CLIENT_ID, authorizationRequest.getClientId());
-		if (authorizationRequest.getScope() != null) {
-			values.put(SCOPE, OAuth2Utils.formatParameterList(authorizationRequest.getScope()));
-		}
-		MessageDigest digest;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
 		try {
-			digest = MessageDigest.getInstance("MD5");
+			return MessageDigest.getInstance("MD5");
 		}
 		catch (NoSuchAlgorithmException e) {
 			throw new IllegalStateException("MD5 algorithm not available.  Fatal (should be in the JDK).");
 		}
+	});
 
-		try {
-			byte[] bytes = digest.digest(values.toString().getBytes("UTF-8"));
-			return String.format("%032x", new BigInteger(1, bytes));
+	public String extractKey(OAuth2Authentication authentication) {
+		OAuth2Request authorizationRequest = authentication.getOAuth2Request();
+		MessageDigest digest = DIGEST.get();
+		digest.reset();
+		if (!authentication.isClientOnly()) {
+			update(digest, USERNAME, authentication.getName());
+		}
+		update(digest, CLIENT_ID, authorizationRequest.getClientId());
+		Set<String> scope = authorizationRequest.getScope();
+		if (scope != null) {
+			String[] scopes = scope.toArray(new String[scope.size()]);
+			if (scopes.length > 1) {
+				Arrays.sort(scopes);
+			}
+			for (String value : scopes) {
+				update(digest, SCOPE, value);
+			}
+		}
+		return toHex(digest.digest());
+	}
+
+	private static void update(MessageDigest digest, byte field, String value) {
+		digest.update(field);
+		if (value == null) {
+			digest.update(new byte[] { -1, -1, -1, -1 });
+			return;
 		}
-		catch (UnsupportedEncodingException e) {
-			throw new IllegalStateException("UTF-8 encoding not available.  Fatal (should be in the JDK).");
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		int length = bytes.length;
+		digest.update(new byte[] { (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length });
+		digest.update(bytes);
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX_DIGITS[(bytes[i] >>> 4) & 0x0f];
+			chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
 		}
+		return new String(chars);
 	}
 
 }
@@ -20,31 +20,37 @@ package org.maxkey.authz.oauth2.provider.token.store;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.DelayQueue;
-import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.maxkey.authz.oauth2.common.ExpiringOAuth2RefreshToken;
 import org.maxkey.authz.oauth2.common.OAuth2AccessToken;
 import org.maxkey.authz.oauth2.common.OAuth2RefreshToken;
 import org.maxkey.authz.oauth2.provider.OAuth2Authentication;
 import org.maxkey.authz.oauth2.provider.token.AuthenticationKeyGenerator;
 import org.maxkey.authz.oauth2.provider.token.DefaultAuthenticationKeyGenerator;
 import org.maxkey.authz.oauth2.provider.token.TokenStore;
-import org.springframework.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Implementation of token services that stores tokens in memory.
  * 
+ * <p>Access and refresh tokens are indexed by expiration, expired tokens are removed by {@link #purgeExpiredTokens()}
+ * every {@link #startPurge(int)} seconds in a daemon thread. With a maximum size the tokens expiring first are evicted
+ * when the store is full, tokens without expiration are evicted last.</p>
+ * 
  * @author Ryan Heaton
  * @author Luke Taylor
  * @author Dave Syer
  */
 public class InMemoryTokenStore implements TokenStore {
-
-	private static final int DEFAULT_FLUSH_INTERVAL = 1000;
+	private static final Logger _logger = LoggerFactory.getLogger(InMemoryTokenStore.class);
 
 	private final ConcurrentHashMap<String, OAuth2AccessToken> accessTokenStore = new ConcurrentHashMap<String, OAuth2AccessToken>();
 
@@ -64,32 +70,29 @@ public class InMemoryTokenStore implements TokenStore {
 
 	private final ConcurrentHashMap<String, String> refreshTokenToAccessTokenStore = new ConcurrentHashMap<String, String>();
 
-	private final DelayQueue<TokenExpiry> expiryQueue = new DelayQueue<TokenExpiry>();
+	private final ExpiryIndex accessTokenExpiry = new ExpiryIndex();
+
+	private final ExpiryIndex refreshTokenExpiry = new ExpiryIndex();
 
-	private final ConcurrentHashMap<String, TokenExpiry> expiryMap = new ConcurrentHashMap<String, TokenExpiry>();
+	private final AtomicLong expiredTokenCount = new AtomicLong();
 
-	private int flushInterval = DEFAULT_FLUSH_INTERVAL;
+	private final AtomicLong evictedTokenCount = new AtomicLong();
+
+	private final int maximumSize;
 
 	private AuthenticationKeyGenerator authenticationKeyGenerator = new DefaultAuthenticationKeyGenerator();
 
-	private AtomicInteger flushCounter = new AtomicInteger(0);
+	private ScheduledExecutorService purgeScheduler;
 
-	/**
-	 * The number of tokens to store before flushing expired tokens. Defaults to 1000.
-	 * 
-	 * @param flushInterval the interval to set
-	 */
-	public void setFlushInterval(int flushInterval) {
-		this.flushInterval = flushInterval;
+	public InMemoryTokenStore() {
+		this(0);
 	}
 
 	/**
-	 * The interval (count of token inserts) between flushing expired tokens.
-	 * 
-	 * @return the flushInterval the flush interval
+	 * @param maximumSize maximum access tokens and maximum refresh tokens,0 not limited
 	 */
-	public int getFlushInterval() {
-		return flushInterval;
+	public InMemoryTokenStore(int maximumSize) {
+		this.maximumSize = maximumSize;
 	}
 
 	/**
@@ -98,43 +101,64 @@ public class InMemoryTokenStore implements TokenStore {
 	public void clear() {
 		accessTokenStore.clear();
 		authenticationToAccessTokenStore.clear();
+		userNameToAccessTokenStore.clear();
 		clientIdToAccessTokenStore.clear();
 		refreshTokenStore.clear();
 		accessTokenToRefreshTokenStore.clear();
 		authenticationStore.clear();
 		refreshTokenAuthenticationStore.clear();
 		refreshTokenToAccessTokenStore.clear();
-		expiryQueue.clear();
+		accessTokenExpiry.clear();
+		refreshTokenExpiry.clear();
 	}
 
 	public void setAuthenticationKeyGenerator(AuthenticationKeyGenerator authenticationKeyGenerator) {
 		this.authenticationKeyGenerator = authenticationKeyGenerator;
 	}
 
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
 	public int getAccessTokenCount() {
-		Assert.state(accessTokenStore.isEmpty() || accessTokenStore.size() >= accessTokenToRefreshTokenStore.size(),
-				"Too many refresh tokens");
-		Assert.state(accessTokenStore.size() == authenticationToAccessTokenStore.size(),
-				"Inconsistent token store state");
-		Assert.state(accessTokenStore.size() <= authenticationStore.size(), "Inconsistent authentication store state");
 		return accessTokenStore.size();
 	}
 
 	public int getRefreshTokenCount() {
-		Assert.state(refreshTokenStore.size() == refreshTokenToAccessTokenStore.size(),
-				"Inconsistent refresh token store state");
-		return accessTokenStore.size();
+		return refreshTokenStore.size();
 	}
 
 	public int getExpiryTokenCount() {
-		return expiryQueue.size();
+		return accessTokenExpiry.size() + refreshTokenExpiry.size();
+	}
+
+	/**
+	 * @return tokens removed by purge since started
+	 */
+	public long getExpiredTokenCount() {
+		return expiredTokenCount.get();
+	}
+
+	/**
+	 * @return tokens evicted by the maximum size since started
+	 */
+	public long getEvictedTokenCount() {
+		return evictedTokenCount.get();
 	}
 
 	public OAuth2AccessToken getAccessToken(OAuth2Authentication authentication) {
 		String key = authenticationKeyGenerator.extractKey(authentication);
 		OAuth2AccessToken accessToken = authenticationToAccessTokenStore.get(key);
-		if (accessToken != null
-				&& !key.equals(authenticationKeyGenerator.extractKey(readAuthentication(accessToken.getValue())))) {
+		if (accessToken == null) {
+			return null;
+		}
+		OAuth2Authentication storedAuthentication = readAuthentication(accessToken.getValue());
+		if (storedAuthentication == null) {
+			// removed by purge or eviction at the same time
+			authenticationToAccessTokenStore.remove(key, accessToken);
+			return null;
+		}
+		if (!key.equals(authenticationKeyGenerator.extractKey(storedAuthentication))) {
 			// Keep the stores consistent (maybe the same user is represented by this authentication but the details
 			// have changed)
 			storeAccessToken(accessToken, authentication);
@@ -159,9 +183,15 @@ public class InMemoryTokenStore implements TokenStore {
 	}
 
 	public void storeAccessToken(OAuth2AccessToken token, OAuth2Authentication authentication) {
-		if (this.flushCounter.incrementAndGet() >= this.flushInterval) {
-			flush();
-			this.flushCounter.set(0);
+		if (maximumSize > 0 && !accessTokenStore.containsKey(token.getValue())) {
+			while (accessTokenStore.size() >= maximumSize) {
+				String evicted = accessTokenExpiry.pollFirst();
+				if (evicted == null) {
+					break;
+				}
+				removeAccessToken(evicted);
+				evictedTokenCount.incrementAndGet();
+			}
 		}
 		this.accessTokenStore.put(token.getValue(), token);
 		this.authenticationStore.put(token.getValue(), authentication);
@@ -170,12 +200,7 @@ public class InMemoryTokenStore implements TokenStore {
 			addToCollection(this.userNameToAccessTokenStore, getApprovalKey(authentication), token);
 		}
 		addToCollection(this.clientIdToAccessTokenStore, authentication.getOAuth2Request().getClientId(), token);
-		if (token.getExpiration() != null) {
-			TokenExpiry expiry = new TokenExpiry(token.getValue(), token.getExpiration());
-			// Remove existing expiry for this token if present
-			expiryQueue.remove(expiryMap.put(token.getValue(), expiry));
-			this.expiryQueue.put(expiry);
-		}
+		accessTokenExpiry.put(token.getValue(), token.getExpiration());
 		if (token.getRefreshToken() != null && token.getRefreshToken().getValue() != null) {
 			this.refreshTokenToAccessTokenStore.put(token.getRefreshToken().getValue(), token.getValue());
 			this.accessTokenToRefreshTokenStore.put(token.getValue(), token.getRefreshToken().getValue());
@@ -194,14 +219,22 @@ public class InMemoryTokenStore implements TokenStore {
 
 	private void addToCollection(ConcurrentHashMap<String, Collection<OAuth2AccessToken>> store, String key,
 			OAuth2AccessToken token) {
-		if (!store.containsKey(key)) {
-			synchronized (store) {
-				if (!store.containsKey(key)) {
-					store.put(key, new HashSet<OAuth2AccessToken>());
-				}
+		store.compute(key, (k, tokens) -> {
+			if (tokens == null) {
+				tokens = ConcurrentHashMap.newKeySet();
 			}
-		}
-		store.get(key).add(token);
+			tokens.add(token);
+			return tokens;
+		});
+	}
+
+	private void removeFromCollection(ConcurrentHashMap<String, Collection<OAuth2AccessToken>> store, String key,
+			OAuth2AccessToken token) {
+		// drop empty collections,or every user ever seen keeps an entry
+		store.computeIfPresent(key, (k, tokens) -> {
+			tokens.remove(token);
+			return tokens.isEmpty() ? null : tokens;
+		});
 	}
 
 	public void removeAccessToken(OAuth2AccessToken accessToken) {
@@ -215,27 +248,34 @@ public class InMemoryTokenStore implements TokenStore {
 	public void removeAccessToken(String tokenValue) {
 		OAuth2AccessToken removed = this.accessTokenStore.remove(tokenValue);
 		this.accessTokenToRefreshTokenStore.remove(tokenValue);
+		accessTokenExpiry.remove(tokenValue);
 		// Don't remove the refresh token - it's up to the caller to do that
 		OAuth2Authentication authentication = this.authenticationStore.remove(tokenValue);
-		if (authentication != null) {
-			this.authenticationToAccessTokenStore.remove(authenticationKeyGenerator.extractKey(authentication));
-			Collection<OAuth2AccessToken> tokens;
-			tokens = this.userNameToAccessTokenStore.get(authentication.getName());
-			if (tokens != null) {
-				tokens.remove(removed);
+		if (authentication != null && removed != null) {
+			// the key may already point to a newer token of the same authentication
+			this.authenticationToAccessTokenStore.remove(authenticationKeyGenerator.extractKey(authentication), removed);
+			if (!authentication.isClientOnly()) {
+				removeFromCollection(this.userNameToAccessTokenStore, getApprovalKey(authentication), removed);
 			}
-			String clientId = authentication.getOAuth2Request().getClientId();
-			tokens = this.clientIdToAccessTokenStore.get(clientId);
-			if (tokens != null) {
-				tokens.remove(removed);
-			}
-			this.authenticationToAccessTokenStore.remove(authenticationKeyGenerator.extractKey(authentication));
+			removeFromCollection(this.clientIdToAccessTokenStore, authentication.getOAuth2Request().getClientId(), removed);
 		}
 	}
 
 	public void storeRefreshToken(OAuth2RefreshToken refreshToken, OAuth2Authentication authentication) {
+		if (maximumSize > 0 && !refreshTokenStore.containsKey(refreshToken.getValue())) {
+			while (refreshTokenStore.size() >= maximumSize) {
+				String evicted = refreshTokenExpiry.pollFirst();
+				if (evicted == null) {
+					break;
+				}
+				removeRefreshToken(evicted);
+				evictedTokenCount.incrementAndGet();
+			}
+		}
 		this.refreshTokenStore.put(refreshToken.getValue(), refreshToken);
 		this.refreshTokenAuthenticationStore.put(refreshToken.getValue(), authentication);
+		refreshTokenExpiry.put(refreshToken.getValue(), refreshToken instanceof ExpiringOAuth2RefreshToken
+				? ((ExpiringOAuth2RefreshToken) refreshToken).getExpiration() : null);
 	}
 
 	public OAuth2RefreshToken readRefreshToken(String tokenValue) {
@@ -250,6 +290,7 @@ public class InMemoryTokenStore implements TokenStore {
 		this.refreshTokenStore.remove(tokenValue);
 		this.refreshTokenAuthenticationStore.remove(tokenValue);
 		this.refreshTokenToAccessTokenStore.remove(tokenValue);
+		refreshTokenExpiry.remove(tokenValue);
 	}
 
 	public void removeAccessTokenUsingRefreshToken(OAuth2RefreshToken refreshToken) {
@@ -275,41 +316,145 @@ public class InMemoryTokenStore implements TokenStore {
 				.<OAuth2AccessToken> emptySet();
 	}
 
-	private void flush() {
-		TokenExpiry expiry = expiryQueue.poll();
-		while (expiry != null) {
-			removeAccessToken(expiry.getValue());
-			expiry = expiryQueue.poll();
+	/**
+	 * remove expired access tokens and refresh tokens
+	 * @return count of removed tokens
+	 */
+	public int purgeExpiredTokens() {
+		long now = System.currentTimeMillis();
+		int purged = 0;
+		String tokenValue;
+		while ((tokenValue = accessTokenExpiry.pollExpired(now)) != null) {
+			expiredTokenCount.incrementAndGet();
+			removeAccessToken(tokenValue);
+			purged++;
+		}
+		while ((tokenValue = refreshTokenExpiry.pollExpired(now)) != null) {
+			expiredTokenCount.incrementAndGet();
+			removeRefreshToken(tokenValue);
+			purged++;
 		}
+		_logger.debug("purge {} expired tokens , access tokens {} , refresh tokens {}",
+				purged, accessTokenStore.size(), refreshTokenStore.size());
+		return purged;
 	}
 
-	private static class TokenExpiry implements Delayed {
+	/**
+	 * purge expired tokens every periodSeconds in daemon thread
+	 * @param periodSeconds
+	 */
+	public synchronized void startPurge(int periodSeconds) {
+		if (purgeScheduler != null || periodSeconds <= 0) {
+			return;
+		}
+		purgeScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "oauth-token-purge");
+			thread.setDaemon(true);
+			return thread;
+		});
+		purgeScheduler.scheduleWithFixedDelay(() -> {
+			try {
+				purgeExpiredTokens();
+			} catch (RuntimeException e) {
+				_logger.error("purge expired tokens error", e);
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
 
-		private final long expiry;
+	/**
+	 * stop purge when bean destroy
+	 */
+	public synchronized void shutdown() {
+		if (purgeScheduler != null) {
+			purgeScheduler.shutdown();
+			purgeScheduler = null;
+		}
+	}
 
-		private final String value;
+	/**
+	 * token values ordered by expiration,tokens without expiration last.
+	 * re-store of a token with the same expiration does not touch the index.
+	 */
+	private static class ExpiryIndex {
 
-		public TokenExpiry(String value, Date date) {
-			this.value = value;
-			this.expiry = date.getTime();
+		private long sequence;
+
+		private final HashMap<String, TokenExpiry> expiryMap = new HashMap<String, TokenExpiry>();
+
+		private final TreeSet<TokenExpiry> expirySet = new TreeSet<TokenExpiry>();
+
+		synchronized void put(String value, Date expiration) {
+			long expiry = expiration == null ? Long.MAX_VALUE : expiration.getTime();
+			TokenExpiry existing = expiryMap.get(value);
+			if (existing != null) {
+				if (existing.expiry == expiry) {
+					return;
+				}
+				expirySet.remove(existing);
+			}
+			TokenExpiry tokenExpiry = new TokenExpiry(value, expiry, ++sequence);
+			expiryMap.put(value, tokenExpiry);
+			expirySet.add(tokenExpiry);
 		}
 
-		public int compareTo(Delayed other) {
-			if (this == other) {
-				return 0;
+		synchronized void remove(String value) {
+			TokenExpiry existing = expiryMap.remove(value);
+			if (existing != null) {
+				expirySet.remove(existing);
 			}
-			long diff = getDelay(TimeUnit.MILLISECONDS) - other.getDelay(TimeUnit.MILLISECONDS);
-			return (diff == 0 ? 0 : ((diff < 0) ? -1 : 1));
 		}
 
-		public long getDelay(TimeUnit unit) {
-			return expiry - System.currentTimeMillis();
+		/**
+		 * @return the value expiring first
+		 */
+		synchronized String pollFirst() {
+			TokenExpiry first = expirySet.pollFirst();
+			if (first == null) {
+				return null;
+			}
+			expiryMap.remove(first.value);
+			return first.value;
+		}
+
+		/**
+		 * @return a value expired before now
+		 */
+		synchronized String pollExpired(long now) {
+			if (expirySet.isEmpty() || expirySet.first().expiry >= now) {
+				return null;
+			}
+			return pollFirst();
+		}
+
+		synchronized int size() {
+			return expiryMap.size();
+		}
+
+		synchronized void clear() {
+			expiryMap.clear();
+			expirySet.clear();
+		}
+	}
+
+	private static class TokenExpiry implements Comparable<TokenExpiry> {
+
+		private final long expiry;
+
+		private final long sequence;
+
+		private final String value;
+
+		public TokenExpiry(String value, long expiry, long sequence) {
+			this.value = value;
+			this.expiry = expiry;
+			this.sequence = sequence;
 		}
 
-		public String getValue() {
-			return value;
+		public int compareTo(TokenExpiry other) {
+			int result = Long.compare(expiry, other.expiry);
+			return result != 0 ? result : Long.compare(sequence, other.sequence);
 		}
 
 	}
 
-}
+}
\ No newline at end of file
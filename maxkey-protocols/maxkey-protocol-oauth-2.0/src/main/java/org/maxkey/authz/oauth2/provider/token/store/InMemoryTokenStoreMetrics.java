@@ -0,0 +1,70 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.token.store;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * InMemoryTokenStoreMetrics<br>
+ * tokens in memory,expiry queue,expired and evicted tokens of InMemoryTokenStore<br>
+ * view on /actuator/metrics/maxkey.oauth.tokenstore.*
+ *
+ */
+public class InMemoryTokenStoreMetrics implements MeterBinder {
+
+    InMemoryTokenStore inMemoryTokenStore;
+
+    public InMemoryTokenStoreMetrics(InMemoryTokenStore inMemoryTokenStore) {
+        this.inMemoryTokenStore = inMemoryTokenStore;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("maxkey.oauth.tokenstore.access.size", inMemoryTokenStore,
+                    InMemoryTokenStore::getAccessTokenCount)
+            .description("access tokens in memory")
+            .register(registry);
+
+        Gauge.builder("maxkey.oauth.tokenstore.refresh.size", inMemoryTokenStore,
+                    InMemoryTokenStore::getRefreshTokenCount)
+            .description("refresh tokens in memory")
+            .register(registry);
+
+        Gauge.builder("maxkey.oauth.tokenstore.expiry.size", inMemoryTokenStore,
+                    InMemoryTokenStore::getExpiryTokenCount)
+            .description("tokens waiting in expiry queue for purge")
+            .register(registry);
+
+        Gauge.builder("maxkey.oauth.tokenstore.maximum.size", inMemoryTokenStore,
+                    InMemoryTokenStore::getMaximumSize)
+            .register(registry);
+
+        FunctionCounter.builder("maxkey.oauth.tokenstore.expired", inMemoryTokenStore,
+                    InMemoryTokenStore::getExpiredTokenCount)
+            .description("tokens removed by purge")
+            .register(registry);
+
+        FunctionCounter.builder("maxkey.oauth.tokenstore.evicted", inMemoryTokenStore,
+                    InMemoryTokenStore::getEvictedTokenCount)
+            .description("tokens evicted by the maximum size")
+            .register(registry);
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.token.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.maxkey.authz.oauth2.common.ExpiringOAuth2RefreshToken;
+import org.maxkey.authz.oauth2.common.OAuth2AccessToken;
+import org.maxkey.authz.oauth2.common.OAuth2RefreshToken;
+import org.maxkey.authz.oauth2.provider.OAuth2Authentication;
+import org.maxkey.authz.oauth2.provider.token.AuthenticationKeyGenerator;
+import org.maxkey.authz.oauth2.provider.token.DefaultAuthenticationKeyGenerator;
+import org.maxkey.authz.oauth2.provider.token.TokenStore;
+import org.maxkey.entity.apps.oauth2.provider.OAuth2StoredToken;
+import org.maxkey.persistence.mapper.OAuth2TokenMapper;
+import org.maxkey.util.ObjectTransformer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * tokens in mxk_oauth_access_token and mxk_oauth_refresh_token,
+ * rows keyed by md5 of the token value.<br>
+ * access token and authentication read through a small cache,
+ * token removed on other node may be read from the cache until cacheSeconds.<br>
+ * expired rows deleted in chunks by the purge.
+ *
+ */
+public class JdbcTokenStore implements TokenStore {
+	static final Logger _logger = LoggerFactory.getLogger(JdbcTokenStore.class);
+
+	public static final int DEFAULT_CACHE_SECONDS = 30;
+
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+
+	public static final int DEFAULT_PURGE_CHUNK_SIZE = 1000;
+
+	private final OAuth2TokenMapper tokenMapper;
+
+	private AuthenticationKeyGenerator authenticationKeyGenerator = new DefaultAuthenticationKeyGenerator();
+
+	/**
+	 * tokenId to access token and authentication
+	 */
+	private final Cache<String, CachedAccessToken> accessTokenCache;
+
+	private int purgeChunkSize = DEFAULT_PURGE_CHUNK_SIZE;
+
+	private ScheduledExecutorService purgeScheduler;
+
+	public JdbcTokenStore(OAuth2TokenMapper tokenMapper) {
+		this(tokenMapper, DEFAULT_CACHE_SECONDS, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param tokenMapper
+	 * @param cacheSeconds 0 not cache
+	 * @param cacheSize
+	 */
+	public JdbcTokenStore(OAuth2TokenMapper tokenMapper, int cacheSeconds, int cacheSize) {
+		this.tokenMapper = tokenMapper;
+		this.accessTokenCache = Caffeine.newBuilder()
+				.expireAfterWrite(cacheSeconds, TimeUnit.SECONDS)
+				.maximumSize(cacheSeconds > 0 ? cacheSize : 0)
+				.build();
+	}
+
+	public void setAuthenticationKeyGenerator(AuthenticationKeyGenerator authenticationKeyGenerator) {
+		this.authenticationKeyGenerator = authenticationKeyGenerator;
+	}
+
+	@Override
+	public OAuth2AccessToken getAccessToken(OAuth2Authentication authentication) {
+		String key = authenticationKeyGenerator.extractKey(authentication);
+		OAuth2AccessToken accessToken = null;
+		for (OAuth2StoredToken storedToken : tokenMapper.queryAccessTokensByAuthenticationId(key)) {
+			CachedAccessToken cachedToken = deserialize(storedToken);
+			if (cachedToken == null) {
+				continue;
+			}
+			accessToken = cachedToken.accessToken;
+			if (!key.equals(authenticationKeyGenerator.extractKey(cachedToken.authentication))) {
+				// Keep the stores consistent (maybe the same user is
+				// represented by this authentication but the details have
+				// changed)
+				removeAccessToken(accessToken.getValue());
+				storeAccessToken(accessToken, authentication);
+			}
+			break;
+		}
+		return accessToken;
+	}
+
+	@Override
+	public void storeAccessToken(OAuth2AccessToken token, OAuth2Authentication authentication) {
+		OAuth2StoredToken storedToken = new OAuth2StoredToken();
+		storedToken.setTokenId(extractTokenKey(token.getValue()));
+		storedToken.setToken(ObjectTransformer.object2Bytes(token));
+		storedToken.setAuthenticationId(authenticationKeyGenerator.extractKey(authentication));
+		storedToken.setUserName(authentication.isClientOnly() ? null : authentication.getName());
+		storedToken.setClientId(authentication.getOAuth2Request().getClientId());
+		storedToken.setAuthentication(ObjectTransformer.object2Bytes(authentication));
+		if (token.getRefreshToken() != null) {
+			storedToken.setRefreshToken(extractTokenKey(token.getRefreshToken().getValue()));
+		}
+		storedToken.setExpiration(token.getExpiration());
+		tokenMapper.storeAccessToken(storedToken);
+		// validated soon after issued
+		accessTokenCache.put(storedToken.getTokenId(), new CachedAccessToken(token, authentication));
+	}
+
+	@Override
+	public OAuth2AccessToken readAccessToken(String tokenValue) {
+		CachedAccessToken cachedToken = readCachedAccessToken(tokenValue);
+		return cachedToken == null ? null : cachedToken.accessToken;
+	}
+
+	@Override
+	public OAuth2Authentication readAuthentication(OAuth2AccessToken token) {
+		return readAuthentication(token.getValue());
+	}
+
+	@Override
+	public OAuth2Authentication readAuthentication(String token) {
+		CachedAccessToken cachedToken = readCachedAccessToken(token);
+		return cachedToken == null ? null : cachedToken.authentication;
+	}
+
+	@Override
+	public void removeAccessToken(OAuth2AccessToken token) {
+		removeAccessToken(token.getValue());
+	}
+
+	public void removeAccessToken(String tokenValue) {
+		removeAccessTokenById(extractTokenKey(tokenValue));
+	}
+
+	@Override
+	public void storeRefreshToken(OAuth2RefreshToken refreshToken, OAuth2Authentication authentication) {
+		OAuth2StoredToken storedToken = new OAuth2StoredToken();
+		storedToken.setTokenId(extractTokenKey(refreshToken.getValue()));
+		storedToken.setToken(ObjectTransformer.object2Bytes(refreshToken));
+		storedToken.setAuthentication(ObjectTransformer.object2Bytes(authentication));
+		if (refreshToken instanceof ExpiringOAuth2RefreshToken) {
+			storedToken.setExpiration(((ExpiringOAuth2RefreshToken) refreshToken).getExpiration());
+		}
+		tokenMapper.storeRefreshToken(storedToken);
+	}
+
+	@Override
+	public OAuth2RefreshToken readRefreshToken(String tokenValue) {
+		OAuth2StoredToken storedToken = tokenMapper.queryRefreshToken(extractTokenKey(tokenValue));
+		if (storedToken == null) {
+			return null;
+		}
+		try {
+			return ObjectTransformer.bytes2Object(storedToken.getToken());
+		} catch (IllegalArgumentException e) {
+			_logger.warn("Failed to deserialize refresh token for " + tokenValue, e);
+			removeRefreshToken(tokenValue);
+			return null;
+		}
+	}
+
+	@Override
+	public OAuth2Authentication readAuthenticationForRefreshToken(OAuth2RefreshToken token) {
+		return readAuthenticationForRefreshToken(token.getValue());
+	}
+
+	public OAuth2Authentication readAuthenticationForRefreshToken(String tokenValue) {
+		OAuth2StoredToken storedToken = tokenMapper.queryRefreshToken(extractTokenKey(tokenValue));
+		if (storedToken == null) {
+			return null;
+		}
+		try {
+			return ObjectTransformer.bytes2Object(storedToken.getAuthentication());
+		} catch (IllegalArgumentException e) {
+			_logger.warn("Failed to deserialize authentication for " + tokenValue, e);
+			removeRefreshToken(tokenValue);
+			return null;
+		}
+	}
+
+	@Override
+	public void removeRefreshToken(OAuth2RefreshToken token) {
+		removeRefreshToken(token.getValue());
+	}
+
+	public void removeRefreshToken(String tokenValue) {
+		tokenMapper.deleteRefreshToken(extractTokenKey(tokenValue));
+	}
+
+	@Override
+	public void removeAccessTokenUsingRefreshToken(OAuth2RefreshToken refreshToken) {
+		for (String tokenId : tokenMapper.queryAccessTokenIdsByRefreshToken(extractTokenKey(refreshToken.getValue()))) {
+			removeAccessTokenById(tokenId);
+		}
+	}
+
+	@Override
+	public Collection<OAuth2AccessToken> findTokensByClientIdAndUserName(String clientId, String userName) {
+		return deserializeAccessTokens(
+				tokenMapper.queryAccessTokensByClientIdAndUserName(clientId, userName, new Date()));
+	}
+
+	@Override
+	public Collection<OAuth2AccessToken> findTokensByClientId(String clientId) {
+		return deserializeAccessTokens(tokenMapper.queryAccessTokensByClientId(clientId, new Date()));
+	}
+
+	/**
+	 * delete expired access and refresh tokens,chunk by chunk until no more expired
+	 * @return count of tokens deleted
+	 */
+	public int purgeExpiredTokens() {
+		Date now = new Date();
+		int purged = 0;
+		int deleted;
+		do {
+			deleted = tokenMapper.deleteExpiredAccessTokens(now, purgeChunkSize);
+			purged += deleted;
+		} while (deleted >= purgeChunkSize);
+		do {
+			deleted = tokenMapper.deleteExpiredRefreshTokens(now, purgeChunkSize);
+			purged += deleted;
+		} while (deleted >= purgeChunkSize);
+		_logger.debug("purge {} expired tokens", purged);
+		return purged;
+	}
+
+	/**
+	 * purge expired tokens every periodSeconds in daemon thread
+	 * @param periodSeconds
+	 */
+	public synchronized void startPurge(int periodSeconds) {
+		if (purgeScheduler != null || periodSeconds <= 0) {
+			return;
+		}
+		purgeScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "oauth-token-purge");
+			thread.setDaemon(true);
+			return thread;
+		});
+		purgeScheduler.scheduleWithFixedDelay(() -> {
+			try {
+				purgeExpiredTokens();
+			} catch (RuntimeException e) {
+				_logger.error("purge expired tokens error", e);
+			}
+		}, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * stop purge when bean destroy
+	 */
+	public synchronized void shutdown() {
+		if (purgeScheduler != null) {
+			purgeScheduler.shutdown();
+			purgeScheduler = null;
+		}
+	}
+
+	public void setPurgeChunkSize(int purgeChunkSize) {
+		this.purgeChunkSize = purgeChunkSize;
+	}
+
+	public int getPurgeChunkSize() {
+		return purgeChunkSize;
+	}
+
+	private CachedAccessToken readCachedAccessToken(String tokenValue) {
+		//loader return null when token not exists,not cached
+		return accessTokenCache.get(extractTokenKey(tokenValue), tokenId -> {
+			OAuth2StoredToken storedToken = tokenMapper.queryAccessToken(tokenId);
+			if (storedToken == null) {
+				_logger.trace("Failed to find access token for token {}", tokenValue);
+				return null;
+			}
+			CachedAccessToken cachedToken = deserialize(storedToken);
+			if (cachedToken == null) {
+				tokenMapper.deleteAccessToken(tokenId);
+			}
+			return cachedToken;
+		});
+	}
+
+	private void removeAccessTokenById(String tokenId) {
+		tokenMapper.deleteAccessToken(tokenId);
+		accessTokenCache.invalidate(tokenId);
+	}
+
+	private CachedAccessToken deserialize(OAuth2StoredToken storedToken) {
+		try {
+			return new CachedAccessToken(
+					ObjectTransformer.bytes2Object(storedToken.getToken()),
+					ObjectTransformer.bytes2Object(storedToken.getAuthentication()));
+		} catch (IllegalArgumentException e) {
+			_logger.warn("Failed to deserialize access token " + storedToken.getTokenId(), e);
+			return null;
+		}
+	}
+
+	private Collection<OAuth2AccessToken> deserializeAccessTokens(List<byte[]> tokens) {
+		List<OAuth2AccessToken> accessTokens = new ArrayList<OAuth2AccessToken>(tokens.size());
+		for (byte[] token : tokens) {
+			try {
+				accessTokens.add(ObjectTransformer.<OAuth2AccessToken>bytes2Object(token));
+			} catch (IllegalArgumentException e) {
+				_logger.warn("Failed to deserialize access token", e);
+			}
+		}
+		return Collections.<OAuth2AccessToken> unmodifiableCollection(accessTokens);
+	}
+
+	static String extractTokenKey(String value) {
+		return value == null ? null : DigestUtils.md5Hex(value);
+	}
+
+	static class CachedAccessToken {
+		final OAuth2AccessToken accessToken;
+
+		final OAuth2Authentication authentication;
+
+		CachedAccessToken(OAuth2AccessToken accessToken, OAuth2Authentication authentication) {
+			this.accessToken = accessToken;
+			this.authentication = authentication;
+		}
+	}
+}
@@ -31,7 +31,6 @@ import org.maxkey.authz.oauth2.provider.token.DefaultAuthenticationKeyGenerator;
 import org.maxkey.authz.oauth2.provider.token.TokenStore;
 import org.maxkey.persistence.redis.RedisConnection;
 import org.maxkey.persistence.redis.RedisConnectionFactory;
-import org.maxkey.util.ObjectTransformer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +38,9 @@ import java.util.Date;
 
 /**
  * @author efenderbosch
+ * 
+ * tokens of client and user indexed in sorted sets scored by expiration,
+ * expired tokens trimmed from the index on write.
  */
 public class RedisTokenStore implements TokenStore {
 	static final Logger _logger = LoggerFactory.getLogger(RedisTokenStore.class);
@@ -52,8 +54,14 @@ public class RedisTokenStore implements TokenStore {
 	private static final String ACCESS_TO_REFRESH      = PREFIX + "ACCESS_TO_REFRESH_";
 	private static final String REFRESH                = PREFIX + "REFRESH_";
 	private static final String REFRESH_TO_ACCESS      = PREFIX + "REFRESH_TO_ACCESS_";
-	private static final String CLIENT_ID_TO_ACCESS    = PREFIX + "CLIENT_ID_TO_ACCESS_";
-	private static final String UNAME_TO_ACCESS        = PREFIX + "UNAME_TO_ACCESS_";
+	//sorted sets by expiration,not the LIST keys of earlier versions,those left to expire
+	private static final String CLIENT_ID_TO_ACCESS    = PREFIX + "CLIENT_ID_TO_ACCESS_Z_";
+	private static final String UNAME_TO_ACCESS        = PREFIX + "UNAME_TO_ACCESS_Z_";
+	
+	/**
+	 * index score of token without expiration
+	 */
+	static final double NEVER_EXPIRE_SCORE             = Double.MAX_VALUE;
 
 	private final RedisConnectionFactory connectionFactory;
 	private AuthenticationKeyGenerator authenticationKeyGenerator = new DefaultAuthenticationKeyGenerator();
@@ -137,6 +145,8 @@ public class RedisTokenStore implements TokenStore {
 		_logger.trace("approvalKey " + approvalKey);
 		_logger.trace("clientId " + clientId);
 
+		long now = System.currentTimeMillis();
+		double score = token.getExpiration() == null ? NEVER_EXPIRE_SCORE : token.getExpiration().getTime();
 		RedisConnection conn = getConnection();
 		try {
 			conn.openPipeline();
@@ -144,16 +154,22 @@ public class RedisTokenStore implements TokenStore {
 			conn.setObject(authKey, authentication);
 			conn.setObject(authToAccessKey, token);
 			if (!authentication.isClientOnly()) {
-				conn.rPush(approvalKey, token);
+				conn.zAdd(approvalKey, score, token.getValue());
+				conn.zRemRangeByScore(approvalKey, 0, now);
 			}
-			conn.rPush(clientId, token);
+			conn.zAdd(clientId, score, token.getValue());
+			conn.zRemRangeByScore(clientId, 0, now);
 			if (token.getExpiration() != null) {
 				int seconds = token.getExpiresIn();
 				conn.expire(accessKey, seconds);
 				conn.expire(authKey, seconds);
 				conn.expire(authToAccessKey, seconds);
-				conn.expire(clientId, seconds);
-				conn.expire(approvalKey, seconds);
+			}
+			// index of idle client and user expire with the last expiring token,
+			// never expire when the index has a token never expire
+			conn.zExpireAtMaxScore(clientId, NEVER_EXPIRE_SCORE);
+			if (!authentication.isClientOnly()) {
+				conn.zExpireAtMaxScore(approvalKey, NEVER_EXPIRE_SCORE);
 			}
 			OAuth2RefreshToken refreshToken = token.getRefreshToken();
 			if (refreshToken != null && refreshToken.getValue() != null) {
@@ -215,28 +231,20 @@ public class RedisTokenStore implements TokenStore {
 		String accessToRefreshKey = (ACCESS_TO_REFRESH + tokenValue);
 		RedisConnection conn = getConnection();
 		try {
+			// authentication GET and DEL atomic,indexes are cleaned by one remover
+			OAuth2Authentication authentication = conn.getObjectAndDelete(authKey);
 			conn.openPipeline();
 			conn.delete(accessKey);
-			conn.delete(accessToRefreshKey);
 			// Don't remove the refresh token - it's up to the caller to do that
-			conn.delete(authKey);
-			List<Object> results = conn.closePipeline();
-			String access = (String) results.get(0);
-			String auth = (String) results.get(1);
-
-			OAuth2Authentication authentication = ObjectTransformer.deserialize(auth);
+			conn.delete(accessToRefreshKey);
 			if (authentication != null) {
-				String key = authenticationKeyGenerator.extractKey(authentication);
-				String authToAccessKey = (AUTH_TO_ACCESS + key);
-				String unameKey = (UNAME_TO_ACCESS + getApprovalKey(authentication));
-				String clientId = (CLIENT_ID_TO_ACCESS + authentication.getOAuth2Request().getClientId());
-				conn.openPipeline();
-				conn.delete(authToAccessKey);
-				conn.lRem(unameKey, 1, access);
-				conn.lRem(clientId, 1, access);
-				conn.delete(ACCESS + key);
-				conn.closePipeline();
+				conn.delete(AUTH_TO_ACCESS + authenticationKeyGenerator.extractKey(authentication));
+				if (!authentication.isClientOnly()) {
+					conn.zRem(UNAME_TO_ACCESS + getApprovalKey(authentication), tokenValue);
+				}
+				conn.zRem(CLIENT_ID_TO_ACCESS + authentication.getOAuth2Request().getClientId(), tokenValue);
 			}
+			conn.closePipeline();
 		} finally {
 			conn.close();
 		}
@@ -323,8 +331,7 @@ public class RedisTokenStore implements TokenStore {
 		if (results == null) {
 			return;
 		}
-		String  bytes = (String) results.get(0);
-		String accessToken = ObjectTransformer.deserialize(bytes);
+		String accessToken = (String) results.get(0);
 		if (accessToken != null) {
 			removeAccessToken(accessToken);
 		}
@@ -334,45 +341,43 @@ public class RedisTokenStore implements TokenStore {
 	public Collection<OAuth2AccessToken> findTokensByClientIdAndUserName(String clientId, String userName) {
 		String approvalKey = (UNAME_TO_ACCESS + getApprovalKey(clientId, userName));
 		_logger.trace("approvalKey " + approvalKey);
-		List<String> stringList = null;
-		RedisConnection conn = getConnection();
-		try {
-			stringList = conn.lRange(approvalKey, 0, -1);
-		} finally {
-			conn.close();
-		}
-		if (stringList == null || stringList.size() == 0) {
-			return Collections.<OAuth2AccessToken> emptySet();
-		}
-		List<OAuth2AccessToken> accessTokens = new ArrayList<OAuth2AccessToken>(stringList.size());
-		for (String str : stringList) {
-			//accessToken may expired
-			OAuth2AccessToken accessToken = conn.getObject(str);
-			accessTokens.add(accessToken);
-		}
-		return Collections.<OAuth2AccessToken> unmodifiableCollection(accessTokens);
+		return findTokensByIndex(approvalKey);
 	}
 
 	@Override
 	public Collection<OAuth2AccessToken> findTokensByClientId(String clientId) {
 		String key = (CLIENT_ID_TO_ACCESS + clientId);
 		_logger.trace("TokensByClientId  " + key);
-		List<String> stringList = null;
+		return findTokensByIndex(key);
+	}
+
+	/**
+	 * unexpired token values from index,then tokens by one MGET on the same connection
+	 * @param indexKey
+	 * @return tokens not removed
+	 */
+	private Collection<OAuth2AccessToken> findTokensByIndex(String indexKey) {
 		RedisConnection conn = getConnection();
 		try {
-			stringList = conn.lRange(key, 0, -1);
+			List<String> tokenValues = conn.zRangeByScore(indexKey, System.currentTimeMillis(), NEVER_EXPIRE_SCORE);
+			if (tokenValues.isEmpty()) {
+				return Collections.<OAuth2AccessToken> emptySet();
+			}
+			List<String> accessKeys = new ArrayList<String>(tokenValues.size());
+			for (String tokenValue : tokenValues) {
+				accessKeys.add(ACCESS + tokenValue);
+			}
+			List<OAuth2AccessToken> accessTokens = new ArrayList<OAuth2AccessToken>(tokenValues.size());
+			for (OAuth2AccessToken accessToken : conn.<OAuth2AccessToken>getObjects(accessKeys)) {
+				//accessToken may removed
+				if (accessToken != null) {
+					accessTokens.add(accessToken);
+				}
+			}
+			return Collections.<OAuth2AccessToken> unmodifiableCollection(accessTokens);
 		} finally {
 			conn.close();
 		}
-		if (stringList == null || stringList.size() == 0) {
-			return Collections.<OAuth2AccessToken> emptySet();
-		}
-		List<OAuth2AccessToken> accessTokens = new ArrayList<OAuth2AccessToken>(stringList.size());
-		for (String str : stringList) {
-			OAuth2AccessToken accessToken = conn.getObject(str);
-			accessTokens.add(accessToken);
-		}
-		return Collections.<OAuth2AccessToken> unmodifiableCollection(accessTokens);
 	}
 
 }
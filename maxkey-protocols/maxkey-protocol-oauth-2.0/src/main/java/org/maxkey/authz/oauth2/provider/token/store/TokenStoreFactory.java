@@ -19,29 +19,69 @@ package org.maxkey.authz.oauth2.provider.token.store;
 
 import org.maxkey.authz.oauth2.provider.token.TokenStore;
 import org.maxkey.constants.ConstantsPersistence;
+import org.maxkey.persistence.mapper.OAuth2TokenMapper;
 import org.maxkey.persistence.redis.RedisConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.jdbc.core.JdbcTemplate;
 
+/**
+ * TokenStoreFactory<br>
+ * token store selected by maxkey.oauth.tokenstore.type,
+ * independent of maxkey.server.persistence,empty type same as the persistence.
+ *
+ */
 public class TokenStoreFactory {
 	private static final  Logger _logger = LoggerFactory.getLogger(TokenStoreFactory.class);
 	
+	public static final String TYPE_INMEMORY 	= "inmemory";
+	
+	public static final String TYPE_JDBC 		= "jdbc";
+	
+	public static final String TYPE_REDIS 		= "redis";
+	
 	 public TokenStore getTokenStore(
 	            int persistence,
-	            JdbcTemplate jdbcTemplate,
+	            OAuth2TokenMapper tokenMapper,
+	            RedisConnectionFactory redisConnFactory) {
+	        return getTokenStore(getTokenStoreType(null, persistence), tokenMapper, redisConnFactory);
+	    }
+	 
+	 public TokenStore getTokenStore(
+	            String tokenStoreType,
+	            OAuth2TokenMapper tokenMapper,
 	            RedisConnectionFactory redisConnFactory) {
 	        TokenStore tokenStore = null;
-	        if (persistence == ConstantsPersistence.INMEMORY) {
+	        if (tokenStoreType.equals(TYPE_INMEMORY)) {
 	            tokenStore = new InMemoryTokenStore();
 	            _logger.debug("InMemoryTokenStore");
-	        } else if (persistence == ConstantsPersistence.JDBC) {
-	            //tokenStore = new JdbcTokenStore(jdbcTemplate);
-	            _logger.debug("JdbcTokenStore not support "); 
-	        } else if (persistence == ConstantsPersistence.REDIS) {
+	        } else if (tokenStoreType.equals(TYPE_JDBC)) {
+	            tokenStore = new JdbcTokenStore(tokenMapper);
+	            _logger.debug("JdbcTokenStore");
+	        } else if (tokenStoreType.equals(TYPE_REDIS)) {
 	            tokenStore = new RedisTokenStore(redisConnFactory);
 	            _logger.debug("RedisTokenStore");
 	        }
 	        return tokenStore;
 	    }
+	 
+	 /**
+	  * @param tokenStoreType inmemory , jdbc or redis , empty same as persistence
+	  * @param persistence maxkey.server.persistence
+	  * @return tokenStoreType
+	  */
+	 public static String getTokenStoreType(String tokenStoreType, int persistence) {
+		 if (tokenStoreType != null && !tokenStoreType.trim().isEmpty()) {
+			 String type = tokenStoreType.trim().toLowerCase();
+			 if (!type.equals(TYPE_INMEMORY) && !type.equals(TYPE_JDBC) && !type.equals(TYPE_REDIS)) {
+				 throw new IllegalArgumentException("oauth token store type " + tokenStoreType + " not supported");
+			 }
+			 return type;
+		 }
+		 if (persistence == ConstantsPersistence.JDBC) {
+			 return TYPE_JDBC;
+		 } else if (persistence == ConstantsPersistence.REDIS) {
+			 return TYPE_REDIS;
+		 }
+		 return TYPE_INMEMORY;
+	 }
 }
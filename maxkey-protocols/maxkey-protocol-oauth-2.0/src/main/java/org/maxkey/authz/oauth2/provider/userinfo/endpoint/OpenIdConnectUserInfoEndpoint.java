@@ -32,9 +32,9 @@ import org.maxkey.authz.oauth2.provider.OAuth2Authentication;
 import org.maxkey.authz.oauth2.provider.token.DefaultTokenServices;
 import org.maxkey.constants.ContentType;
 import org.maxkey.crypto.jwt.encryption.service.JwtEncryptionAndDecryptionService;
-import org.maxkey.crypto.jwt.encryption.service.impl.RecipientJwtEncryptionAndDecryptionServiceBuilder;
 import org.maxkey.crypto.jwt.signer.service.JwtSigningAndValidationService;
-import org.maxkey.crypto.jwt.signer.service.impl.SymmetricSigningAndValidationServiceBuilder;
+import org.maxkey.crypto.jwt.signer.service.impl.JWKSetCacheService;
+import org.maxkey.crypto.jwt.signer.service.impl.SymmetricCacheService;
 import org.maxkey.crypto.password.PasswordReciprocal;
 import org.maxkey.entity.UserInfo;
 import org.maxkey.entity.apps.oauth2.provider.ClientDetails;
@@ -98,11 +98,13 @@ public class OpenIdConnectUserInfoEndpoint {
 	
 	
 	
-	private SymmetricSigningAndValidationServiceBuilder symmetricJwtSignerServiceBuilder
-					=new SymmetricSigningAndValidationServiceBuilder();
+	@Autowired
+	@Qualifier("symmetricCacheService")
+	private SymmetricCacheService symmetricCacheService;
 
-	private RecipientJwtEncryptionAndDecryptionServiceBuilder recipientJwtEnDecryptionServiceBuilder
-					=new RecipientJwtEncryptionAndDecryptionServiceBuilder();
+	@Autowired
+	@Qualifier("jwkSetCacheService")
+	private JWKSetCacheService jwkSetCacheService;
 
 	OAuthDefaultUserInfoAdapter defaultOAuthUserInfoAdapter=new OAuthDefaultUserInfoAdapter();
 	
@@ -211,7 +213,7 @@ public class OpenIdConnectUserInfoEndpoint {
 			    //需要加密
 			    response.setContentType(ContentType.APPLICATION_JWT_UTF8);
 				JwtEncryptionAndDecryptionService recipientJwtEnDecryptionService =
-						recipientJwtEnDecryptionServiceBuilder.serviceBuilder(clientDetails.getJwksUri());
+						jwkSetCacheService.getEncrypter(clientDetails.getJwksUri());
 				
 				if (recipientJwtEnDecryptionService != null) {
 					JWEAlgorithm jweAlgorithm=new JWEAlgorithm(clientDetails.getUserInfoEncryptedAlgorithm());
@@ -234,10 +236,12 @@ public class OpenIdConnectUserInfoEndpoint {
 				if (signingAlg.equals(JWSAlgorithm.HS256)
 						|| signingAlg.equals(JWSAlgorithm.HS384)
 						|| signingAlg.equals(JWSAlgorithm.HS512)) {
-					// sign it with the client's secret
-					String client_secret=PasswordReciprocal.getInstance().decoder(clientDetails.getClientSecret());
-					
-					JwtSigningAndValidationService symmetricJwtSignerService =symmetricJwtSignerServiceBuilder.serviceBuilder(client_secret);
+					// sign it with the client's secret,decoded when the client secret changed
+					JwtSigningAndValidationService symmetricJwtSignerService =
+							symmetricCacheService.getSymmetricValidtor(
+									clientDetails.getClientId(),
+									clientDetails.getClientSecret(),
+									() -> PasswordReciprocal.getInstance().decoder(clientDetails.getClientSecret()));
 					if(symmetricJwtSignerService!=null){
 						userInfoJWTClaims = new JWTClaimsSet.Builder(userInfoJWTClaims).claim("kid", "SYMMETRIC-KEY").build();
 						userInfoJWT = new SignedJWT(new JWSHeader(signingAlg), userInfoJWTClaims);
@@ -35,9 +35,9 @@ import org.maxkey.authz.oauth2.provider.OAuth2Request;
 import org.maxkey.authz.oauth2.provider.token.TokenEnhancer;
 import org.maxkey.configuration.oidc.OIDCProviderMetadata;
 import org.maxkey.crypto.jwt.encryption.service.JwtEncryptionAndDecryptionService;
-import org.maxkey.crypto.jwt.encryption.service.impl.RecipientJwtEncryptionAndDecryptionServiceBuilder;
 import org.maxkey.crypto.jwt.signer.service.JwtSigningAndValidationService;
-import org.maxkey.crypto.jwt.signer.service.impl.SymmetricSigningAndValidationServiceBuilder;
+import org.maxkey.crypto.jwt.signer.service.impl.JWKSetCacheService;
+import org.maxkey.crypto.jwt.signer.service.impl.SymmetricCacheService;
 import org.maxkey.crypto.password.PasswordReciprocal;
 import org.maxkey.entity.apps.oauth2.provider.ClientDetails;
 import org.maxkey.web.WebContext;
@@ -76,11 +76,10 @@ public class OIDCIdTokenEnhancer implements TokenEnhancer {
 
 	private ClientDetailsService clientDetailsService;
 	
-	private SymmetricSigningAndValidationServiceBuilder symmetricJwtSignerServiceBuilder
-								=new SymmetricSigningAndValidationServiceBuilder();
+	//shared cache beans,must be injected
+	private SymmetricCacheService symmetricCacheService;
 	
-	private RecipientJwtEncryptionAndDecryptionServiceBuilder recipientJwtEnDecryptionServiceBuilder
-					=new RecipientJwtEncryptionAndDecryptionServiceBuilder();
+	private JWKSetCacheService jwkSetCacheService;
 	
 	public void setProviderMetadata(OIDCProviderMetadata providerMetadata) {
 		this.providerMetadata = providerMetadata;
@@ -99,6 +98,14 @@ public class OIDCIdTokenEnhancer implements TokenEnhancer {
 		this.clientDetailsService = clientDetailsService;
 	}
 
+	public void setSymmetricCacheService(SymmetricCacheService symmetricCacheService) {
+		this.symmetricCacheService = symmetricCacheService;
+	}
+
+	public void setJwkSetCacheService(JWKSetCacheService jwkSetCacheService) {
+		this.jwkSetCacheService = jwkSetCacheService;
+	}
+
 	@Override
 	public OAuth2AccessToken enhance(OAuth2AccessToken accessToken, OAuth2Authentication authentication) {
 		OAuth2Request  request=authentication.getOAuth2Request();
@@ -153,7 +160,7 @@ public class OIDCIdTokenEnhancer implements TokenEnhancer {
 					&&clientDetails.getJwksUri()!=null&&clientDetails.getJwksUri().length()>4) {
 
 				JwtEncryptionAndDecryptionService recipientJwtEnDecryptionService =
-						recipientJwtEnDecryptionServiceBuilder.serviceBuilder(clientDetails.getJwksUri());
+						jwkSetCacheService.getEncrypter(clientDetails.getJwksUri());
 				
 				if (recipientJwtEnDecryptionService != null) {
 					JWEAlgorithm jweAlgorithm=new JWEAlgorithm(clientDetails.getIdTokenEncryptedAlgorithm());
@@ -173,10 +180,12 @@ public class OIDCIdTokenEnhancer implements TokenEnhancer {
 					if (signingAlg.equals(JWSAlgorithm.HS256)
 							|| signingAlg.equals(JWSAlgorithm.HS384)
 							|| signingAlg.equals(JWSAlgorithm.HS512)) {
-						// sign it with the client's secret
-						String client_secret=PasswordReciprocal.getInstance().decoder(clientDetails.getClientSecret());
-						
-						JwtSigningAndValidationService symmetricJwtSignerService =symmetricJwtSignerServiceBuilder.serviceBuilder(client_secret);
+						// sign it with the client's secret,decoded when the client secret changed
+						JwtSigningAndValidationService symmetricJwtSignerService =
+								symmetricCacheService.getSymmetricValidtor(
+										clientDetails.getClientId(),
+										clientDetails.getClientSecret(),
+										() -> PasswordReciprocal.getInstance().decoder(clientDetails.getClientSecret()));
 						if(symmetricJwtSignerService!=null){
 							builder.claim("kid", "SYMMETRIC-KEY");
 							idToken = new SignedJWT(new JWSHeader(signingAlg), builder.build());
@@ -28,8 +28,10 @@ import org.maxkey.authz.oauth2.provider.ClientDetailsService;
 import org.maxkey.authz.oauth2.provider.OAuth2UserDetailsService;
 import org.maxkey.authz.oauth2.provider.approval.TokenApprovalStore;
 import org.maxkey.authz.oauth2.provider.approval.endpoint.OAuth20UserApprovalHandler;
+import org.maxkey.authz.oauth2.provider.client.ClientDetailsCache;
 import org.maxkey.authz.oauth2.provider.client.ClientDetailsUserDetailsService;
 import org.maxkey.authz.oauth2.provider.client.JdbcClientDetailsService;
+import org.maxkey.authz.oauth2.provider.client.RedisClientDetailsInvalidationChannel;
 import org.maxkey.authz.oauth2.provider.code.AuthorizationCodeServices;
 import org.maxkey.authz.oauth2.provider.code.AuthorizationCodeServicesFactory;
 import org.maxkey.authz.oauth2.provider.endpoint.TokenEndpointAuthenticationFilter;
@@ -37,13 +39,20 @@ import org.maxkey.authz.oauth2.provider.request.DefaultOAuth2RequestFactory;
 import org.maxkey.authz.oauth2.provider.token.TokenStore;
 import org.maxkey.authz.oauth2.provider.token.DefaultTokenServices;
 import org.maxkey.authz.oauth2.provider.token.store.JwtAccessTokenConverter;
+import org.maxkey.authz.oauth2.provider.token.store.InMemoryTokenStore;
+import org.maxkey.authz.oauth2.provider.token.store.InMemoryTokenStoreMetrics;
+import org.maxkey.authz.oauth2.provider.token.store.JdbcTokenStore;
 import org.maxkey.authz.oauth2.provider.token.store.TokenStoreFactory;
 import org.maxkey.authz.oidc.idtoken.OIDCIdTokenEnhancer;
 import org.maxkey.configuration.oidc.OIDCProviderMetadataDetails;
 import org.maxkey.crypto.jose.keystore.JWKSetKeyStore;
 import org.maxkey.crypto.jwt.encryption.service.impl.DefaultJwtEncryptionAndDecryptionService;
 import org.maxkey.crypto.jwt.signer.service.impl.DefaultJwtSigningAndValidationService;
+import org.maxkey.crypto.jwt.signer.service.impl.JWKSetCacheService;
+import org.maxkey.crypto.jwt.signer.service.impl.SymmetricCacheService;
 import org.maxkey.persistence.db.LoginService;
+import org.maxkey.persistence.mapper.OAuth2TokenMapper;
+import org.maxkey.constants.ConstantsPersistence;
 import org.maxkey.persistence.redis.RedisConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,6 +71,8 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWEAlgorithm;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+
 @Configuration
 @ComponentScan(basePackages = {
         "org.maxkey.authz.oauth2.provider.endpoint",
@@ -160,6 +171,32 @@ public class Oauth20AutoConfiguration implements InitializingBean {
         return jwtEncryptionService;
     }
     
+    /**
+     * symmetric signers of clients,rebuilt when client secret changed.
+     * @return symmetricCacheService
+     */
+    @Bean(name = "symmetricCacheService")
+    public SymmetricCacheService symmetricCacheService() {
+        _logger.debug("Symmetric Cache Service init.");
+        return new SymmetricCacheService();
+    }
+    
+    /**
+     * relying party jwks fetched in background,refresh ahead and backoff after failures,
+     * fetch threads stopped when bean destroy.
+     * @return jwkSetCacheService
+     */
+    @Bean(name = "jwkSetCacheService", destroyMethod = "shutdown")
+    public JWKSetCacheService jwkSetCacheService(
+            @Value("${maxkey.oidc.jwks.refresh.seconds:3600}") int refreshSeconds,
+            @Value("${maxkey.oidc.jwks.backoff.seconds:5}") int backoffSeconds,
+            @Value("${maxkey.oidc.jwks.backoff.max-seconds:300}") int maxBackoffSeconds,
+            @Value("${maxkey.oidc.jwks.fetch.timeout:3000}") int fetchTimeout) {
+        _logger.debug("JWKSet Cache Service refresh {} seconds , backoff {} - {} seconds",
+                refreshSeconds, backoffSeconds, maxBackoffSeconds);
+        return new JWKSetCacheService(refreshSeconds, backoffSeconds, maxBackoffSeconds, fetchTimeout);
+    }
+    
     /**
      * tokenEnhancer.
      * @return
@@ -169,12 +206,16 @@ public class Oauth20AutoConfiguration implements InitializingBean {
             DefaultJwtSigningAndValidationService jwtSignerValidationService,
             DefaultJwtEncryptionAndDecryptionService jwtEncryptionService,
             OIDCProviderMetadataDetails oidcProviderMetadata,
-            ClientDetailsService oauth20JdbcClientDetailsService) {
+            ClientDetailsService oauth20JdbcClientDetailsService,
+            SymmetricCacheService symmetricCacheService,
+            JWKSetCacheService jwkSetCacheService) {
         OIDCIdTokenEnhancer tokenEnhancer = new OIDCIdTokenEnhancer();
         tokenEnhancer.setJwtSignerService(jwtSignerValidationService);
         tokenEnhancer.setJwtEnDecryptionService(jwtEncryptionService);
         tokenEnhancer.setClientDetailsService(oauth20JdbcClientDetailsService);
         tokenEnhancer.setProviderMetadata(oidcProviderMetadata);
+        tokenEnhancer.setSymmetricCacheService(symmetricCacheService);
+        tokenEnhancer.setJwkSetCacheService(jwkSetCacheService);
         _logger.debug("OIDC IdToken Enhancer init.");
         return tokenEnhancer;
     }
@@ -196,17 +237,48 @@ public class Oauth20AutoConfiguration implements InitializingBean {
     }
     
     /**
-     * TokenStore. 
+     * TokenStore of maxkey.oauth.tokenstore.type,empty same as persistence. 
      * @param persistence int
      * @return oauth20TokenStore
      */
     @Bean(name = "oauth20TokenStore")
     public TokenStore oauth20TokenStore(
             @Value("${maxkey.server.persistence}") int persistence,
-            JdbcTemplate jdbcTemplate,
-            RedisConnectionFactory redisConnFactory) {
-        _logger.debug("OAuth 2 TokenStore init.");
-        return new TokenStoreFactory().getTokenStore(persistence, jdbcTemplate, redisConnFactory);
+            @Value("${maxkey.oauth.tokenstore.type:}") String tokenStoreType,
+            OAuth2TokenMapper oauth2TokenMapper,
+            RedisConnectionFactory redisConnFactory,
+            @Value("${maxkey.oauth.tokenstore.cache.seconds:30}") int cacheSeconds,
+            @Value("${maxkey.oauth.tokenstore.cache.size:10000}") int cacheSize,
+            @Value("${maxkey.oauth.tokenstore.purge.seconds:300}") int purgeSeconds,
+            @Value("${maxkey.oauth.tokenstore.purge.chunk-size:1000}") int purgeChunkSize,
+            @Value("${maxkey.oauth.tokenstore.inmemory.size:100000}") int inMemorySize) {
+        tokenStoreType = TokenStoreFactory.getTokenStoreType(tokenStoreType, persistence);
+        _logger.debug("OAuth 2 TokenStore {} init.", tokenStoreType);
+        if (tokenStoreType.equals(TokenStoreFactory.TYPE_INMEMORY)) {
+            InMemoryTokenStore inMemoryTokenStore = new InMemoryTokenStore(inMemorySize);
+            inMemoryTokenStore.startPurge(purgeSeconds);
+            _logger.debug("InMemoryTokenStore size {} , purge every {} seconds", inMemorySize, purgeSeconds);
+            return inMemoryTokenStore;
+        }
+        if (tokenStoreType.equals(TokenStoreFactory.TYPE_JDBC)) {
+            JdbcTokenStore jdbcTokenStore = new JdbcTokenStore(oauth2TokenMapper, cacheSeconds, cacheSize);
+            jdbcTokenStore.setPurgeChunkSize(purgeChunkSize);
+            jdbcTokenStore.startPurge(purgeSeconds);
+            _logger.debug("JdbcTokenStore cache {} seconds , purge every {} seconds", cacheSeconds, purgeSeconds);
+            return jdbcTokenStore;
+        }
+        return new TokenStoreFactory().getTokenStore(tokenStoreType, oauth2TokenMapper, redisConnFactory);
+    }
+    
+    /**
+     * view on /actuator/metrics/maxkey.oauth.tokenstore.* when InMemoryTokenStore
+     */
+    @Bean
+    public MeterBinder oauth20TokenStoreMetrics(TokenStore oauth20TokenStore) {
+        if (oauth20TokenStore instanceof InMemoryTokenStore) {
+            return new InMemoryTokenStoreMetrics((InMemoryTokenStore) oauth20TokenStore);
+        }
+        return registry -> { };
     }
     
     /**
@@ -220,14 +292,39 @@ public class Oauth20AutoConfiguration implements InitializingBean {
         return jwtAccessTokenConverter;
     }
     
+    /**
+     * ClientDetails cache,unknown client ids in negative cache,
+     * invalidate on other nodes by redis when redis persistence,
+     * otherwise client changed in mgmt seen after local cache seconds
+     */
+    @Bean(name = "oauth20ClientDetailsCache")
+    public ClientDetailsCache oauth20ClientDetailsCache(
+            @Value("${maxkey.server.persistence}") int persistence,
+            RedisConnectionFactory redisConnFactory,
+            @Value("${maxkey.oauth.clientdetails.cache.seconds:1800}") int cacheSeconds,
+            @Value("${maxkey.oauth.clientdetails.cache.local.seconds:30}") int localCacheSeconds,
+            @Value("${maxkey.oauth.clientdetails.cache.size:200000}") int cacheSize,
+            @Value("${maxkey.oauth.clientdetails.negative.seconds:60}") int negativeSeconds,
+            @Value("${maxkey.oauth.clientdetails.negative.size:100000}") int negativeSize) {
+        boolean redis = persistence == ConstantsPersistence.REDIS;
+        if(!redis) {
+            cacheSeconds = Math.min(cacheSeconds, localCacheSeconds);
+        }
+        _logger.debug("OAuth 2 ClientDetails cache {} seconds , negative {} seconds", cacheSeconds, negativeSeconds);
+        return new ClientDetailsCache(cacheSeconds, cacheSize, negativeSeconds, negativeSize,
+                redis ? new RedisClientDetailsInvalidationChannel(redisConnFactory) : null);
+    }
+    
     /**
      * clientDetailsService. 
      * @return oauth20JdbcClientDetailsService
      */
     @Bean(name = "oauth20JdbcClientDetailsService")
-    public JdbcClientDetailsService jdbcClientDetailsService(DataSource dataSource,PasswordEncoder passwordReciprocal) {
+    public JdbcClientDetailsService jdbcClientDetailsService(DataSource dataSource,PasswordEncoder passwordReciprocal,
+            ClientDetailsCache oauth20ClientDetailsCache) {
         JdbcClientDetailsService clientDetailsService = new JdbcClientDetailsService(dataSource);
         clientDetailsService.setPasswordEncoder(passwordReciprocal);
+        clientDetailsService.setClientDetailsCache(oauth20ClientDetailsCache);
         _logger.debug("OAuth 2 Jdbc ClientDetails Service init.");
         return clientDetailsService;
     }    
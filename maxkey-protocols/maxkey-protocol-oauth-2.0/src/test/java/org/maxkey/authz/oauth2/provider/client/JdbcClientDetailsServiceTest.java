@@ -0,0 +1,225 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.maxkey.authz.oauth2.provider.NoSuchClientException;
+import org.maxkey.entity.apps.oauth2.provider.ClientDetails;
+import org.maxkey.entity.apps.oauth2.provider.client.BaseClientDetails;
+import org.maxkey.persistence.redis.EmbeddedRedisServer;
+import org.maxkey.persistence.redis.RedisConnectionFactory;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * two nodes share one invalidation channel,client changed on one node evicted on both
+ */
+public class JdbcClientDetailsServiceTest {
+
+    @Test
+    public void testLoadFromCache() {
+        JdbcTemplate jdbcTemplate = mockJdbcTemplate();
+        mockClient(jdbcTemplate, "client-1", "secret-1");
+        JdbcClientDetailsService node1 = new JdbcClientDetailsService(jdbcTemplate);
+
+        ClientDetails details = node1.loadClientByClientId("client-1");
+        for (int i = 0; i < 100; i++) {
+            assertSame(details, node1.loadClientByClientId("client-1"));
+        }
+        verifyQueried(jdbcTemplate, "client-1", 1);
+    }
+
+    @Test
+    public void testUpdateSecretEvictOtherNodes() {
+        JdbcTemplate jdbcTemplate = mockJdbcTemplate();
+        ClientDetailsInvalidationChannel channel = new InMemoryClientDetailsInvalidationChannel();
+        JdbcClientDetailsService node1 = createNode(jdbcTemplate, channel);
+        JdbcClientDetailsService node2 = createNode(jdbcTemplate, channel);
+
+        mockClient(jdbcTemplate, "client-1", "secret-1");
+        assertEquals("secret-1", node1.loadClientByClientId("client-1").getClientSecret());
+        assertEquals("secret-1", node2.loadClientByClientId("client-1").getClientSecret());
+
+        mockClient(jdbcTemplate, "client-1", "secret-2");
+        when(jdbcTemplate.update(anyString(), any(), eq("client-1"))).thenReturn(1);
+        node1.updateClientSecret("client-1", "secret-2");
+        assertEquals("secret-2", node1.loadClientByClientId("client-1").getClientSecret());
+        assertEquals("secret-2", node2.loadClientByClientId("client-1").getClientSecret());
+    }
+
+    @Test
+    public void testRemoveEvictOtherNodes() {
+        JdbcTemplate jdbcTemplate = mockJdbcTemplate();
+        ClientDetailsInvalidationChannel channel = new InMemoryClientDetailsInvalidationChannel();
+        JdbcClientDetailsService node1 = createNode(jdbcTemplate, channel);
+        JdbcClientDetailsService node2 = createNode(jdbcTemplate, channel);
+
+        mockClient(jdbcTemplate, "client-1", "secret-1");
+        node2.loadClientByClientId("client-1");
+
+        mockClient(jdbcTemplate, "client-1", null);
+        when(jdbcTemplate.update(anyString(), eq("client-1"))).thenReturn(1);
+        node1.removeClientDetails("client-1");
+        assertNoSuchClient(node2, "client-1");
+    }
+
+    @Test
+    public void testUnknownClientInNegativeCache() {
+        JdbcTemplate jdbcTemplate = mockJdbcTemplate();
+        JdbcClientDetailsService node1 = new JdbcClientDetailsService(jdbcTemplate);
+
+        mockClient(jdbcTemplate, "client-9", null);
+        for (int i = 0; i < 100; i++) {
+            assertNoSuchClient(node1, "client-9");
+        }
+        verifyQueried(jdbcTemplate, "client-9", 1);
+
+        //client added with the unknown id
+        mockClient(jdbcTemplate, "client-9", "secret-9");
+        BaseClientDetails clientDetails = new BaseClientDetails("client-9", null, "openid", "authorization_code", null);
+        clientDetails.setClientSecret("secret-9");
+        node1.addClientDetails(clientDetails);
+        assertEquals("secret-9", node1.loadClientByClientId("client-9").getClientSecret());
+    }
+
+    @Test
+    public void testLoadedBeforeInvalidateNotCached() {
+        ClientDetailsCache clientDetailsCache = new ClientDetailsCache();
+        ClientDetails details = clientDetailsCache.get("client-1", clientId -> {
+            //secret rotated during the select
+            clientDetailsCache.invalidate(clientId);
+            return new BaseClientDetails(clientId, null, null, null, null);
+        });
+        assertEquals("client-1", details.getClientId());
+        assertNull(clientDetailsCache.getClientDetailsCache().getIfPresent("client-1"));
+
+        assertNull(clientDetailsCache.get("client-9", clientId -> {
+            clientDetailsCache.invalidateAll();
+            return null;
+        }));
+        assertNull(clientDetailsCache.getNegativeCache().getIfPresent("client-9"));
+    }
+
+    @Test
+    public void testLocalCacheSecondsWithoutChannel() {
+        //changes of other nodes not published,expire soon
+        ClientDetailsCache clientDetailsCache = new ClientDetailsCache();
+        assertNull(clientDetailsCache.getInvalidationChannel());
+        assertEquals(ClientDetailsCache.DEFAULT_LOCAL_CACHE_SECONDS,
+                clientDetailsCache.getClientDetailsCache().policy().expireAfterWrite().get()
+                        .getExpiresAfter(TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRedisChannelEvictOtherNodes() throws Exception {
+        EmbeddedRedisServer redisServer = new EmbeddedRedisServer().start();
+        RedisConnectionFactory connectionFactory = redisServer.createConnectionFactory();
+        RedisClientDetailsInvalidationChannel channel1 = new RedisClientDetailsInvalidationChannel(connectionFactory);
+        RedisClientDetailsInvalidationChannel channel2 = new RedisClientDetailsInvalidationChannel(connectionFactory);
+        try {
+            JdbcTemplate jdbcTemplate = mockJdbcTemplate();
+            JdbcClientDetailsService node1 = createNode(jdbcTemplate, channel1);
+            JdbcClientDetailsService node2 = createNode(jdbcTemplate, channel2);
+            awaitSubscribed(channel1);
+            awaitSubscribed(channel2);
+
+            mockClient(jdbcTemplate, "client-1", "secret-1");
+            node2.loadClientByClientId("client-1");
+            when(jdbcTemplate.update(anyString(), any(), eq("client-1"))).thenReturn(1);
+            node1.updateClientSecret("client-1", "secret-2");
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (node2.getClientDetailsCache().getClientDetailsCache().getIfPresent("client-1") != null
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertNull(node2.getClientDetailsCache().getClientDetailsCache().getIfPresent("client-1"));
+        } finally {
+            channel1.shutdown();
+            channel2.shutdown();
+            connectionFactory.getJedisPool().close();
+            redisServer.close();
+        }
+    }
+
+    JdbcClientDetailsService createNode(JdbcTemplate jdbcTemplate, ClientDetailsInvalidationChannel channel) {
+        JdbcClientDetailsService clientDetailsService = new JdbcClientDetailsService(jdbcTemplate);
+        clientDetailsService.setClientDetailsCache(new ClientDetailsCache(
+                ClientDetailsCache.DEFAULT_CACHE_SECONDS, 1000,
+                ClientDetailsCache.DEFAULT_NEGATIVE_SECONDS, 1000, channel));
+        return clientDetailsService;
+    }
+
+    JdbcTemplate mockJdbcTemplate() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.getDataSource()).thenReturn(mock(DataSource.class));
+        return jdbcTemplate;
+    }
+
+    @SuppressWarnings("unchecked")
+    void mockClient(JdbcTemplate jdbcTemplate, String clientId, String clientSecret) {
+        if (clientSecret == null) {
+            when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class), eq(clientId)))
+                .thenThrow(new EmptyResultDataAccessException(1));
+        } else {
+            BaseClientDetails details = new BaseClientDetails(clientId, null, null, null, null);
+            details.setClientSecret(clientSecret);
+            when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class), eq(clientId)))
+                .thenReturn(details);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void verifyQueried(JdbcTemplate jdbcTemplate, String clientId, int count) {
+        verify(jdbcTemplate, times(count)).queryForObject(anyString(), any(RowMapper.class), eq(clientId));
+    }
+
+    void assertNoSuchClient(JdbcClientDetailsService clientDetailsService, String clientId) {
+        try {
+            clientDetailsService.loadClientByClientId(clientId);
+            fail("client " + clientId + " exists");
+        } catch (NoSuchClientException e) {
+            //expected
+        }
+    }
+
+    void awaitSubscribed(RedisClientDetailsInvalidationChannel channel) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!channel.getInvalidateSubscriber().isSubscribed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(true, channel.getInvalidateSubscriber().isSubscribed());
+    }
+}
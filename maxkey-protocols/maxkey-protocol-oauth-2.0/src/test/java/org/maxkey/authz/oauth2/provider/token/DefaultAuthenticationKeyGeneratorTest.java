@@ -0,0 +1,61 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+import org.junit.Test;
+import org.maxkey.authz.oauth2.provider.OAuth2Authentication;
+import org.maxkey.authz.oauth2.provider.OAuth2Request;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+public class DefaultAuthenticationKeyGeneratorTest {
+
+    DefaultAuthenticationKeyGenerator keyGenerator = new DefaultAuthenticationKeyGenerator();
+
+    @Test
+    public void testExtractKey() {
+        String key = keyGenerator.extractKey(authentication("client-1", "shimingxy", "openid", "profile"));
+        assertEquals(32, key.length());
+        assertEquals(key, keyGenerator.extractKey(authentication("client-1", "shimingxy", "openid", "profile")));
+        //scope order
+        assertEquals(key, keyGenerator.extractKey(authentication("client-1", "shimingxy", "profile", "openid")));
+
+        assertNotEquals(key, keyGenerator.extractKey(authentication("client-1", "shimingxy", "openid")));
+        assertNotEquals(key, keyGenerator.extractKey(authentication("client-2", "shimingxy", "openid", "profile")));
+        assertNotEquals(key, keyGenerator.extractKey(authentication("client-1", null, "openid", "profile")));
+        //values not concatenated
+        assertNotEquals(keyGenerator.extractKey(authentication("client-1", "shimingxy")),
+                keyGenerator.extractKey(authentication("client-1shimingxy", null)));
+    }
+
+    static OAuth2Authentication authentication(String clientId, String username, String... scope) {
+        OAuth2Request request = new OAuth2Request(new HashMap<String, String>(), clientId,
+                new ArrayList<GrantedAuthority>(), true, new LinkedHashSet<String>(Arrays.asList(scope)),
+                null, null, null, null, null, null);
+        return new OAuth2Authentication(request,
+                username == null ? null : new UsernamePasswordAuthenticationToken(username, "N/A"));
+    }
+}
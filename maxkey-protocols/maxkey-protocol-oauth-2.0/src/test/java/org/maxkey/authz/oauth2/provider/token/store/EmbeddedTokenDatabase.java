@@ -0,0 +1,102 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.token.store;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.UUID;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.session.SqlSessionManager;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.maxkey.persistence.mapper.OAuth2TokenMapper;
+
+/**
+ * H2 in mysql mode with the token tables,
+ * OAuth2TokenMapper from the mysql mapper xml,each call in its own session.
+ *
+ */
+public class EmbeddedTokenDatabase {
+
+    static final String MAPPER_XML = "org/maxkey/persistence/mapper/xml/mysql/OAuth2TokenMapper.xml";
+
+    static final String[] DDL = {
+        "create table mxk_oauth_access_token ("
+            + " tokenid varchar(32) not null primary key, token blob not null,"
+            + " authenticationid varchar(32) not null, username varchar(100), clientid varchar(100) not null,"
+            + " authentication blob not null, refreshtoken varchar(32), expiration datetime)",
+        "create index idx_authenticationid on mxk_oauth_access_token (authenticationid)",
+        "create index idx_clientid_username on mxk_oauth_access_token (clientid, username)",
+        "create index idx_refreshtoken on mxk_oauth_access_token (refreshtoken)",
+        "create index idx_expiration on mxk_oauth_access_token (expiration)",
+        "create table mxk_oauth_refresh_token ("
+            + " tokenid varchar(32) not null primary key, token blob not null,"
+            + " authentication blob not null, expiration datetime)",
+        "create index idx_refresh_expiration on mxk_oauth_refresh_token (expiration)"
+    };
+
+    final PooledDataSource dataSource;
+
+    final OAuth2TokenMapper tokenMapper;
+
+    public EmbeddedTokenDatabase() throws Exception {
+        dataSource = new PooledDataSource("org.h2.Driver",
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        dataSource.setPoolMaximumActiveConnections(16);
+        dataSource.setPoolMaximumIdleConnections(16);
+        try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+            for (String ddl : DDL) {
+                statement.execute(ddl);
+            }
+        }
+        Configuration configuration = new Configuration(
+                new Environment("embedded", new JdbcTransactionFactory(), dataSource));
+        try (InputStream mapperXml = Resources.getResourceAsStream(MAPPER_XML)) {
+            new XMLMapperBuilder(mapperXml, configuration, MAPPER_XML, configuration.getSqlFragments()).parse();
+        }
+        SqlSessionManager sqlSessionManager = SqlSessionManager.newInstance(
+                new SqlSessionFactoryBuilder().build(configuration));
+        tokenMapper = sqlSessionManager.getMapper(OAuth2TokenMapper.class);
+    }
+
+    public OAuth2TokenMapper getTokenMapper() {
+        return tokenMapper;
+    }
+
+    public int count(String table) throws Exception {
+        try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+            ResultSet rs = statement.executeQuery("select count(*) from " + table);
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    public void close() throws Exception {
+        try (Connection conn = dataSource.getConnection(); Statement statement = conn.createStatement()) {
+            statement.execute("shutdown");
+        }
+        dataSource.forceCloseAll();
+    }
+}
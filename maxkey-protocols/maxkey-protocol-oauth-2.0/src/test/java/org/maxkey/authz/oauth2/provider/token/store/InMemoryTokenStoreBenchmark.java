@@ -0,0 +1,92 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.token.store;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.maxkey.authz.oauth2.common.OAuth2AccessToken;
+import org.maxkey.authz.oauth2.provider.OAuth2Authentication;
+import org.maxkey.authz.oauth2.provider.token.DefaultAuthenticationKeyGenerator;
+import org.maxkey.authz.oauth2.provider.token.DefaultTokenServices;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * token issue by DefaultTokenServices with InMemoryTokenStore,
+ * tokens valid 1 second for USERS users,so most issues create a new token and the old one expired,
+ * and the authentication key alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class InMemoryTokenStoreBenchmark {
+
+    static final int USERS = 10000;
+
+    DefaultTokenServices tokenServices;
+
+    DefaultAuthenticationKeyGenerator authenticationKeyGenerator = new DefaultAuthenticationKeyGenerator();
+
+    OAuth2Authentication[] authentications = new OAuth2Authentication[USERS];
+
+    @Setup
+    public void setup() throws Exception {
+        tokenServices = new DefaultTokenServices();
+        tokenServices.setTokenStore(new InMemoryTokenStore());
+        tokenServices.setAccessTokenValiditySeconds(1);
+        tokenServices.setSupportRefreshToken(true);
+        for (int i = 0; i < USERS; i++) {
+            authentications[i] = RedisTokenStoreTest.authentication("client-1", "user-" + i);
+        }
+    }
+
+    @Benchmark
+    public OAuth2AccessToken issue() {
+        return tokenServices.createAccessToken(authentications[ThreadLocalRandom.current().nextInt(USERS)]);
+    }
+
+    @Benchmark
+    public String extractKey() {
+        return authenticationKeyGenerator.extractKey(authentications[ThreadLocalRandom.current().nextInt(USERS)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(InMemoryTokenStoreBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
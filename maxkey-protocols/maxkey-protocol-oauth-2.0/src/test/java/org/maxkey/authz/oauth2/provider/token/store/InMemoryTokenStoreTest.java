@@ -0,0 +1,153 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.token.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.maxkey.authz.oauth2.common.DefaultExpiringOAuth2RefreshToken;
+import org.maxkey.authz.oauth2.common.DefaultOAuth2AccessToken;
+import org.maxkey.authz.oauth2.common.OAuth2AccessToken;
+import org.maxkey.authz.oauth2.common.OAuth2RefreshToken;
+import org.maxkey.authz.oauth2.provider.OAuth2Authentication;
+import org.maxkey.authz.oauth2.provider.token.DefaultTokenServices;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class InMemoryTokenStoreTest {
+
+    InMemoryTokenStore tokenStore;
+
+    @Before
+    public void setUp() {
+        tokenStore = new InMemoryTokenStore(3);
+    }
+
+    @After
+    public void tearDown() {
+        tokenStore.shutdown();
+    }
+
+    @Test
+    public void testPurgeExpiredTokens() {
+        OAuth2Authentication authentication = RedisTokenStoreTest.authentication("client-1", "shimingxy");
+        DefaultOAuth2AccessToken expiredToken = RedisTokenStoreTest.accessToken(-1000);
+        OAuth2RefreshToken expiredRefreshToken = new DefaultExpiringOAuth2RefreshToken(
+                UUID.randomUUID().toString(), new Date(System.currentTimeMillis() - 1000));
+        expiredToken.setRefreshToken(expiredRefreshToken);
+        tokenStore.storeAccessToken(expiredToken, authentication);
+        tokenStore.storeRefreshToken(expiredRefreshToken, authentication);
+        OAuth2AccessToken accessToken = RedisTokenStoreTest.accessToken(60000);
+        tokenStore.storeAccessToken(accessToken, RedisTokenStoreTest.authentication("client-1", null));
+        //re-store with the same expiration,indexed once
+        tokenStore.storeAccessToken(accessToken, RedisTokenStoreTest.authentication("client-1", null));
+        assertEquals(3, tokenStore.getExpiryTokenCount());
+
+        assertEquals(2, tokenStore.purgeExpiredTokens());
+        assertEquals(2, tokenStore.getExpiredTokenCount());
+        assertEquals(1, tokenStore.getAccessTokenCount());
+        assertEquals(0, tokenStore.getRefreshTokenCount());
+        assertNull(tokenStore.getAccessToken(authentication));
+        assertTrue(tokenStore.findTokensByClientIdAndUserName("client-1", "shimingxy").isEmpty());
+        assertEquals(RedisTokenStoreTest.values(accessToken),
+                RedisTokenStoreTest.values(tokenStore.findTokensByClientId("client-1")));
+        assertNull(tokenStore.readRefreshToken(expiredRefreshToken.getValue()));
+        assertEquals(0, tokenStore.purgeExpiredTokens());
+    }
+
+    @Test
+    public void testPurgeByTimer() throws Exception {
+        tokenStore.storeAccessToken(RedisTokenStoreTest.accessToken(500),
+                RedisTokenStoreTest.authentication("client-1", "shimingxy"));
+        tokenStore.startPurge(1);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (tokenStore.getAccessTokenCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, tokenStore.getAccessTokenCount());
+        assertEquals(1, tokenStore.getExpiredTokenCount());
+    }
+
+    @Test
+    public void testEvictTokensExpiringFirst() {
+        DefaultOAuth2AccessToken noExpiration = new DefaultOAuth2AccessToken(UUID.randomUUID().toString());
+        OAuth2AccessToken expiringFirst = RedisTokenStoreTest.accessToken(10000);
+        OAuth2AccessToken expiringLast = RedisTokenStoreTest.accessToken(30000);
+        tokenStore.storeAccessToken(noExpiration, RedisTokenStoreTest.authentication("client-1", "user-1"));
+        tokenStore.storeAccessToken(expiringLast, RedisTokenStoreTest.authentication("client-1", "user-2"));
+        tokenStore.storeAccessToken(expiringFirst, RedisTokenStoreTest.authentication("client-1", "user-3"));
+
+        OAuth2AccessToken accessToken = RedisTokenStoreTest.accessToken(20000);
+        tokenStore.storeAccessToken(accessToken, RedisTokenStoreTest.authentication("client-1", "user-4"));
+        assertEquals(3, tokenStore.getAccessTokenCount());
+        assertEquals(1, tokenStore.getEvictedTokenCount());
+        assertNull(tokenStore.readAccessToken(expiringFirst.getValue()));
+        assertNull(tokenStore.getAccessToken(RedisTokenStoreTest.authentication("client-1", "user-3")));
+
+        tokenStore.storeAccessToken(RedisTokenStoreTest.accessToken(40000),
+                RedisTokenStoreTest.authentication("client-1", "user-5"));
+        tokenStore.storeAccessToken(RedisTokenStoreTest.accessToken(40000),
+                RedisTokenStoreTest.authentication("client-1", "user-6"));
+        assertEquals(3, tokenStore.getAccessTokenCount());
+        assertNotNull(tokenStore.readAccessToken(noExpiration.getValue()));
+        assertEquals(3, tokenStore.findTokensByClientId("client-1").size());
+    }
+
+    @Test
+    public void testMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new InMemoryTokenStoreMetrics(tokenStore).bindTo(registry);
+        for (int i = 0; i < 4; i++) {
+            tokenStore.storeAccessToken(RedisTokenStoreTest.accessToken(10000 + i),
+                    RedisTokenStoreTest.authentication("client-1", "user-" + i));
+        }
+        assertEquals(3, registry.get("maxkey.oauth.tokenstore.access.size").gauge().value(), 0);
+        assertEquals(3, registry.get("maxkey.oauth.tokenstore.maximum.size").gauge().value(), 0);
+        assertEquals(1, registry.get("maxkey.oauth.tokenstore.evicted").functionCounter().count(), 0);
+        assertEquals(0, registry.get("maxkey.oauth.tokenstore.expired").functionCounter().count(), 0);
+    }
+
+    @Test
+    public void testIssueAfterExpired() throws Exception {
+        DefaultTokenServices tokenServices = new DefaultTokenServices();
+        tokenServices.setTokenStore(tokenStore);
+        tokenServices.setSupportRefreshToken(true);
+        tokenServices.setAccessTokenValiditySeconds(1);
+        OAuth2Authentication authentication = RedisTokenStoreTest.authentication("client-1", "shimingxy");
+        OAuth2AccessToken accessToken = tokenServices.createAccessToken(authentication);
+        assertEquals(accessToken.getValue(), tokenServices.createAccessToken(authentication).getValue());
+
+        Thread.sleep(1100);
+        OAuth2AccessToken newAccessToken = tokenServices.createAccessToken(authentication);
+        assertTrue(!accessToken.getValue().equals(newAccessToken.getValue()));
+        //the refresh token of the expired access token reused
+        assertEquals(accessToken.getRefreshToken().getValue(), newAccessToken.getRefreshToken().getValue());
+        tokenStore.purgeExpiredTokens();
+        assertEquals(newAccessToken.getValue(), tokenStore.getAccessToken(authentication).getValue());
+        assertEquals(RedisTokenStoreTest.values(newAccessToken),
+                RedisTokenStoreTest.values(tokenStore.findTokensByClientIdAndUserName("client-1", "shimingxy")));
+    }
+}
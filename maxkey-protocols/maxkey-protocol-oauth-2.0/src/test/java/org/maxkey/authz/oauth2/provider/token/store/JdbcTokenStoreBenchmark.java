@@ -0,0 +1,118 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.token.store;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.maxkey.authz.oauth2.common.OAuth2AccessToken;
+import org.maxkey.authz.oauth2.provider.OAuth2Authentication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JdbcTokenStore against H2,token issue and validate,
+ * validate read the access token and authentication like DefaultTokenServices.loadAuthentication,
+ * with the read cache and without.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class JdbcTokenStoreBenchmark {
+
+    static final int TOKENS = 10000;
+
+    EmbeddedTokenDatabase database;
+
+    JdbcTokenStore cachedTokenStore;
+
+    JdbcTokenStore uncachedTokenStore;
+
+    OAuth2Authentication authentication;
+
+    String[] tokenValues = new String[TOKENS];
+
+    @Setup
+    public void setup() throws Exception {
+        database = new EmbeddedTokenDatabase();
+        cachedTokenStore = new JdbcTokenStore(database.getTokenMapper());
+        uncachedTokenStore = new JdbcTokenStore(database.getTokenMapper(), 0, 0);
+        authentication = RedisTokenStoreTest.authentication("client-1", "shimingxy");
+        for (int i = 0; i < TOKENS; i++) {
+            OAuth2AccessToken accessToken = RedisTokenStoreTest.accessToken(3600000);
+            uncachedTokenStore.storeAccessToken(accessToken, authentication);
+            tokenValues[i] = accessToken.getValue();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public OAuth2AccessToken issue() {
+        OAuth2AccessToken accessToken = RedisTokenStoreTest.accessToken(3600000);
+        cachedTokenStore.storeAccessToken(accessToken, authentication);
+        return accessToken;
+    }
+
+    @Benchmark
+    public OAuth2Authentication validateCached() {
+        return validate(cachedTokenStore);
+    }
+
+    @Benchmark
+    public OAuth2Authentication validateUncached() {
+        return validate(uncachedTokenStore);
+    }
+
+    OAuth2Authentication validate(JdbcTokenStore tokenStore) {
+        String tokenValue = tokenValues[ThreadLocalRandom.current().nextInt(TOKENS)];
+        OAuth2AccessToken accessToken = tokenStore.readAccessToken(tokenValue);
+        if (accessToken == null || accessToken.isExpired()) {
+            throw new IllegalStateException("invalid token " + tokenValue);
+        }
+        return tokenStore.readAuthentication(tokenValue);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JdbcTokenStoreBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
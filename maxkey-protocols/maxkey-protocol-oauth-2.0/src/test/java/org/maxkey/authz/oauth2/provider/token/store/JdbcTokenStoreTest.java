@@ -0,0 +1,153 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.token.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.maxkey.authz.oauth2.common.DefaultExpiringOAuth2RefreshToken;
+import org.maxkey.authz.oauth2.common.DefaultOAuth2AccessToken;
+import org.maxkey.authz.oauth2.common.OAuth2AccessToken;
+import org.maxkey.authz.oauth2.common.OAuth2RefreshToken;
+import org.maxkey.authz.oauth2.provider.OAuth2Authentication;
+
+public class JdbcTokenStoreTest {
+
+    EmbeddedTokenDatabase database;
+
+    JdbcTokenStore tokenStore;
+
+    @Before
+    public void setUp() throws Exception {
+        database = new EmbeddedTokenDatabase();
+        tokenStore = new JdbcTokenStore(database.getTokenMapper());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        tokenStore.shutdown();
+        database.close();
+    }
+
+    @Test
+    public void testStoreAndFindTokens() {
+        OAuth2AccessToken userToken1 = RedisTokenStoreTest.accessToken(60000);
+        OAuth2AccessToken userToken2 = RedisTokenStoreTest.accessToken(60000);
+        OAuth2AccessToken clientToken = RedisTokenStoreTest.accessToken(60000);
+        OAuth2Authentication authentication = RedisTokenStoreTest.authentication("client-1", "shimingxy");
+        tokenStore.storeAccessToken(userToken1, authentication);
+        tokenStore.storeAccessToken(userToken2, RedisTokenStoreTest.authentication("client-1", "shimingxy"));
+        tokenStore.storeAccessToken(clientToken, RedisTokenStoreTest.authentication("client-1", null));
+        //expired token not found
+        tokenStore.storeAccessToken(RedisTokenStoreTest.accessToken(-1000),
+                RedisTokenStoreTest.authentication("client-1", "shimingxy"));
+
+        assertEquals(RedisTokenStoreTest.values(userToken1, userToken2),
+                RedisTokenStoreTest.values(tokenStore.findTokensByClientIdAndUserName("client-1", "shimingxy")));
+        assertEquals(RedisTokenStoreTest.values(userToken1, userToken2, clientToken),
+                RedisTokenStoreTest.values(tokenStore.findTokensByClientId("client-1")));
+        assertTrue(tokenStore.findTokensByClientId("client-2").isEmpty());
+        assertNotNull(tokenStore.getAccessToken(RedisTokenStoreTest.authentication("client-1", null)));
+        assertEquals("shimingxy", tokenStore.readAuthentication(userToken1).getName());
+
+        tokenStore.removeAccessToken(userToken1);
+        assertNull(tokenStore.readAccessToken(userToken1.getValue()));
+        assertNull(tokenStore.readAuthentication(userToken1.getValue()));
+        assertEquals(RedisTokenStoreTest.values(userToken2, clientToken),
+                RedisTokenStoreTest.values(tokenStore.findTokensByClientId("client-1")));
+    }
+
+    @Test
+    public void testReadThroughCache() throws Exception {
+        OAuth2AccessToken accessToken = RedisTokenStoreTest.accessToken(60000);
+        tokenStore.storeAccessToken(accessToken, RedisTokenStoreTest.authentication("client-1", "shimingxy"));
+        //read by a node without the token in cache
+        JdbcTokenStore otherTokenStore = new JdbcTokenStore(database.getTokenMapper());
+        assertEquals(accessToken.getValue(), otherTokenStore.readAccessToken(accessToken.getValue()).getValue());
+
+        //row deleted,the cached token still read until cache expired
+        database.getTokenMapper().deleteAccessToken(JdbcTokenStore.extractTokenKey(accessToken.getValue()));
+        assertNotNull(otherTokenStore.readAccessToken(accessToken.getValue()));
+        assertNotNull(otherTokenStore.readAuthentication(accessToken.getValue()));
+        //removed on the node,evicted
+        otherTokenStore.removeAccessToken(accessToken);
+        assertNull(otherTokenStore.readAccessToken(accessToken.getValue()));
+
+        //not cached without rows
+        String tokenValue = UUID.randomUUID().toString();
+        assertNull(otherTokenStore.readAccessToken(tokenValue));
+        DefaultOAuth2AccessToken newToken = new DefaultOAuth2AccessToken(tokenValue);
+        tokenStore.storeAccessToken(newToken, RedisTokenStoreTest.authentication("client-1", "shimingxy"));
+        assertNotNull(otherTokenStore.readAccessToken(tokenValue));
+    }
+
+    @Test
+    public void testRefreshToken() {
+        DefaultOAuth2AccessToken accessToken = RedisTokenStoreTest.accessToken(60000);
+        OAuth2RefreshToken refreshToken = new DefaultExpiringOAuth2RefreshToken(
+                UUID.randomUUID().toString(), new Date(System.currentTimeMillis() + 60000));
+        accessToken.setRefreshToken(refreshToken);
+        OAuth2Authentication authentication = RedisTokenStoreTest.authentication("client-1", "shimingxy");
+        tokenStore.storeAccessToken(accessToken, authentication);
+        tokenStore.storeRefreshToken(refreshToken, authentication);
+
+        assertEquals(refreshToken.getValue(), tokenStore.readRefreshToken(refreshToken.getValue()).getValue());
+        assertEquals("shimingxy", tokenStore.readAuthenticationForRefreshToken(refreshToken).getName());
+
+        tokenStore.removeAccessTokenUsingRefreshToken(refreshToken);
+        assertNull(tokenStore.readAccessToken(accessToken.getValue()));
+        assertNull(tokenStore.getAccessToken(authentication));
+        assertNotNull(tokenStore.readRefreshToken(refreshToken.getValue()));
+
+        tokenStore.removeRefreshToken(refreshToken);
+        assertNull(tokenStore.readRefreshToken(refreshToken.getValue()));
+        assertNull(tokenStore.readAuthenticationForRefreshToken(refreshToken));
+    }
+
+    @Test
+    public void testPurgeExpiredTokens() throws Exception {
+        OAuth2Authentication authentication = RedisTokenStoreTest.authentication("client-1", "shimingxy");
+        for (int i = 0; i < 25; i++) {
+            DefaultOAuth2AccessToken accessToken = RedisTokenStoreTest.accessToken(-1000);
+            OAuth2RefreshToken refreshToken = new DefaultExpiringOAuth2RefreshToken(
+                    UUID.randomUUID().toString(), new Date(System.currentTimeMillis() - 1000));
+            accessToken.setRefreshToken(refreshToken);
+            tokenStore.storeAccessToken(accessToken, authentication);
+            tokenStore.storeRefreshToken(refreshToken, authentication);
+        }
+        OAuth2AccessToken accessToken = RedisTokenStoreTest.accessToken(60000);
+        tokenStore.storeAccessToken(accessToken, authentication);
+        tokenStore.storeAccessToken(new DefaultOAuth2AccessToken(UUID.randomUUID().toString()), authentication);
+
+        tokenStore.setPurgeChunkSize(10);
+        //3 chunks of access tokens and 3 chunks of refresh tokens
+        assertEquals(50, tokenStore.purgeExpiredTokens());
+        assertEquals(2, database.count("mxk_oauth_access_token"));
+        assertEquals(0, database.count("mxk_oauth_refresh_token"));
+        assertNotNull(tokenStore.readAccessToken(accessToken.getValue()));
+        assertEquals(0, tokenStore.purgeExpiredTokens());
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.token.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.maxkey.authz.oauth2.common.DefaultOAuth2AccessToken;
+import org.maxkey.authz.oauth2.common.DefaultOAuth2RefreshToken;
+import org.maxkey.authz.oauth2.common.OAuth2AccessToken;
+import org.maxkey.authz.oauth2.provider.OAuth2Authentication;
+import org.maxkey.authz.oauth2.provider.OAuth2Request;
+import org.maxkey.persistence.redis.EmbeddedRedisServer;
+import org.maxkey.persistence.redis.RedisConnectionFactory;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+public class RedisTokenStoreTest {
+
+    static final String CLIENT_INDEX = "REDIS_OAUTH_V20_CLIENT_ID_TO_ACCESS_Z_client-1";
+
+    static final String USER_INDEX = "REDIS_OAUTH_V20_UNAME_TO_ACCESS_Z_client-1_shimingxy";
+
+    EmbeddedRedisServer redisServer;
+
+    RedisConnectionFactory connectionFactory;
+
+    RedisTokenStore tokenStore;
+
+    @Before
+    public void setUp() throws Exception {
+        redisServer = new EmbeddedRedisServer().start();
+        connectionFactory = redisServer.createConnectionFactory();
+        tokenStore = new RedisTokenStore(connectionFactory);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connectionFactory.getJedisPool().close();
+        redisServer.close();
+    }
+
+    @Test
+    public void testFindTokens() {
+        OAuth2AccessToken userToken1 = accessToken(60000);
+        OAuth2AccessToken userToken2 = accessToken(60000);
+        OAuth2AccessToken clientToken = accessToken(60000);
+        tokenStore.storeAccessToken(userToken1, authentication("client-1", "shimingxy"));
+        tokenStore.storeAccessToken(userToken2, authentication("client-1", "shimingxy"));
+        tokenStore.storeAccessToken(clientToken, authentication("client-1", null));
+
+        long roundTrips = connectionFactory.getRoundTrips();
+        assertEquals(values(userToken1, userToken2),
+                values(tokenStore.findTokensByClientIdAndUserName("client-1", "shimingxy")));
+        //ZRANGEBYSCORE and MGET
+        assertEquals(roundTrips + 2, connectionFactory.getRoundTrips());
+        assertEquals(values(userToken1, userToken2, clientToken), values(tokenStore.findTokensByClientId("client-1")));
+        assertTrue(tokenStore.findTokensByClientId("client-2").isEmpty());
+
+        tokenStore.removeAccessToken(userToken1);
+        assertNull(tokenStore.readAccessToken(userToken1.getValue()));
+        assertNull(tokenStore.readAuthentication(userToken1.getValue()));
+        assertEquals(1, redisServer.zcard(USER_INDEX));
+        assertEquals(2, redisServer.zcard(CLIENT_INDEX));
+        assertEquals(values(userToken2, clientToken), values(tokenStore.findTokensByClientId("client-1")));
+    }
+
+    @Test
+    public void testRemoveAccessTokenUsingRefreshToken() {
+        DefaultOAuth2AccessToken accessToken = accessToken(60000);
+        accessToken.setRefreshToken(new DefaultOAuth2RefreshToken(UUID.randomUUID().toString()));
+        OAuth2Authentication authentication = authentication("client-1", "shimingxy");
+        tokenStore.storeAccessToken(accessToken, authentication);
+        tokenStore.storeRefreshToken(accessToken.getRefreshToken(), authentication);
+        assertNotNull(tokenStore.getAccessToken(authentication));
+
+        tokenStore.removeAccessTokenUsingRefreshToken(accessToken.getRefreshToken());
+        assertNull(tokenStore.readAccessToken(accessToken.getValue()));
+        assertNull(tokenStore.getAccessToken(authentication));
+        assertEquals(0, redisServer.zcard(USER_INDEX));
+        assertEquals(0, redisServer.zcard(CLIENT_INDEX));
+    }
+
+    @Test
+    public void testIndexTtlOnlyExtended() {
+        tokenStore.storeAccessToken(accessToken(600000), authentication("client-1", "shimingxy"));
+        tokenStore.storeAccessToken(accessToken(10000), authentication("client-1", "shimingxy"));
+        //expire with the last expiring token,not the last stored
+        assertTrue(redisServer.ttl(CLIENT_INDEX) > 590);
+        assertTrue(redisServer.ttl(USER_INDEX) > 590);
+
+        //token never expire
+        tokenStore.storeAccessToken(
+                new DefaultOAuth2AccessToken(UUID.randomUUID().toString()), authentication("client-1", "shimingxy"));
+        tokenStore.storeAccessToken(accessToken(10000), authentication("client-1", "shimingxy"));
+        assertEquals(-1, redisServer.ttl(CLIENT_INDEX));
+        assertEquals(-1, redisServer.ttl(USER_INDEX));
+        assertEquals(4, redisServer.zcard(CLIENT_INDEX));
+    }
+
+    /**
+     * 1000000 tokens with -Dmaxkey.test.redis.tokens=1000000
+     */
+    @Test
+    public void testIndexBoundedAfterExpiredTokens() throws Exception {
+        int tokens = Integer.getInteger("maxkey.test.redis.tokens", 20000);
+        int bound = Math.min(10000, tokens / 4);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                OAuth2Authentication authentication = authentication("client-1", "shimingxy");
+                for (int i = 0; i < tokens / threads; i++) {
+                    //issued and expired in 20 ms
+                    tokenStore.storeAccessToken(accessToken(20), authentication);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        //only tokens issued in the last milliseconds left
+        assertTrue("client index " + redisServer.zcard(CLIENT_INDEX), redisServer.zcard(CLIENT_INDEX) < bound);
+        assertTrue("user index " + redisServer.zcard(USER_INDEX), redisServer.zcard(USER_INDEX) < bound);
+
+        Thread.sleep(50);
+        OAuth2AccessToken accessToken = accessToken(60000);
+        tokenStore.storeAccessToken(accessToken, authentication("client-1", "shimingxy"));
+        assertEquals(1, redisServer.zcard(CLIENT_INDEX));
+        assertEquals(1, redisServer.zcard(USER_INDEX));
+        assertEquals(values(accessToken), values(tokenStore.findTokensByClientId("client-1")));
+    }
+
+    static DefaultOAuth2AccessToken accessToken(long expiresInMillis) {
+        DefaultOAuth2AccessToken accessToken = new DefaultOAuth2AccessToken(UUID.randomUUID().toString());
+        accessToken.setExpiration(new Date(System.currentTimeMillis() + expiresInMillis));
+        return accessToken;
+    }
+
+    static OAuth2Authentication authentication(String clientId, String username) {
+        List<GrantedAuthority> authorities = new ArrayList<GrantedAuthority>();
+        authorities.add(new SimpleGrantedAuthority("ROLE_USER"));
+        OAuth2Request request = new OAuth2Request(new HashMap<String, String>(), clientId, authorities, true,
+                Collections.singleton("openid"), null, null, null, null, null, null);
+        return new OAuth2Authentication(request,
+                username == null ? null : new UsernamePasswordAuthenticationToken(username, "N/A", authorities));
+    }
+
+    static HashSet<String> values(OAuth2AccessToken... accessTokens) {
+        HashSet<String> values = new HashSet<String>();
+        for (OAuth2AccessToken accessToken : accessTokens) {
+            values.add(accessToken.getValue());
+        }
+        return values;
+    }
+
+    static HashSet<String> values(Iterable<OAuth2AccessToken> accessTokens) {
+        HashSet<String> values = new HashSet<String>();
+        for (OAuth2AccessToken accessToken : accessTokens) {
+            values.add(accessToken.getValue());
+        }
+        return values;
+    }
+}
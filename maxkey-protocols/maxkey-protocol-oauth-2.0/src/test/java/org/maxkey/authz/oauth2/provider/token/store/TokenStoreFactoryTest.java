@@ -0,0 +1,46 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oauth2.provider.token.store;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.maxkey.constants.ConstantsPersistence;
+
+public class TokenStoreFactoryTest {
+
+    @Test
+    public void testTokenStoreTypeIndependentOfPersistence() {
+        assertEquals(TokenStoreFactory.TYPE_JDBC,
+                TokenStoreFactory.getTokenStoreType("jdbc", ConstantsPersistence.REDIS));
+        assertEquals(TokenStoreFactory.TYPE_REDIS,
+                TokenStoreFactory.getTokenStoreType(" Redis ", ConstantsPersistence.INMEMORY));
+        //empty same as persistence
+        assertEquals(TokenStoreFactory.TYPE_INMEMORY,
+                TokenStoreFactory.getTokenStoreType("", ConstantsPersistence.INMEMORY));
+        assertEquals(TokenStoreFactory.TYPE_JDBC,
+                TokenStoreFactory.getTokenStoreType(null, ConstantsPersistence.JDBC));
+        assertEquals(TokenStoreFactory.TYPE_REDIS,
+                TokenStoreFactory.getTokenStoreType(null, ConstantsPersistence.REDIS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedTokenStoreType() {
+        TokenStoreFactory.getTokenStoreType("mongodb", ConstantsPersistence.INMEMORY);
+    }
+}
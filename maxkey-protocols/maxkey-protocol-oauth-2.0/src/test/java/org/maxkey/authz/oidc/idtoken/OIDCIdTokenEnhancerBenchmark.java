@@ -0,0 +1,127 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.authz.oidc.idtoken;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.maxkey.authz.oauth2.common.DefaultOAuth2AccessToken;
+import org.maxkey.authz.oauth2.common.OAuth2AccessToken;
+import org.maxkey.authz.oauth2.provider.OAuth2Authentication;
+import org.maxkey.authz.oauth2.provider.OAuth2Request;
+import org.maxkey.configuration.oidc.OIDCProviderMetadataDetails;
+import org.maxkey.crypto.jwt.signer.service.impl.DefaultJwtSigningAndValidationService;
+import org.maxkey.crypto.jwt.signer.service.impl.SymmetricCacheService;
+import org.maxkey.crypto.password.PasswordReciprocal;
+import org.maxkey.entity.apps.oauth2.provider.client.BaseClientDetails;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+
+/**
+ * ID token issue by OIDCIdTokenEnhancer,RS256 and ES256 signed with the server key,
+ * HS256 with the client secret by the cached symmetric signer of the client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class OIDCIdTokenEnhancerBenchmark {
+
+    @Param({ "RS256", "ES256", "HS256" })
+    String algorithm;
+
+    OIDCIdTokenEnhancer tokenEnhancer;
+
+    OAuth2AccessToken accessToken;
+
+    OAuth2Authentication authentication;
+
+    @Setup
+    public void setup() throws Exception {
+        JWK serverKey = algorithm.startsWith("ES")
+                ? new ECKeyGenerator(Curve.P_256).keyID("maxkey_ec").generate()
+                : new RSAKeyGenerator(2048).keyID("maxkey_rsa").generate();
+        DefaultJwtSigningAndValidationService jwtSignerService = 
+                new DefaultJwtSigningAndValidationService(Collections.singletonMap(serverKey.getKeyID(), serverKey));
+        jwtSignerService.setDefaultSigningAlgorithmName(algorithm);
+
+        BaseClientDetails clientDetails = new BaseClientDetails();
+        clientDetails.setClientId("client-1");
+        clientDetails.setClientSecret(PasswordReciprocal.getInstance().encode("7a1c5d2e9f3b4c8a6d0e1f2a3b4c5d6e"));
+        OIDCProviderMetadataDetails providerMetadata = new OIDCProviderMetadataDetails();
+        providerMetadata.setIssuer("https://sso.maxkey.top/sign");
+
+        tokenEnhancer = new OIDCIdTokenEnhancer();
+        tokenEnhancer.setJwtSignerService(jwtSignerService);
+        tokenEnhancer.setClientDetailsService(clientId -> clientDetails);
+        tokenEnhancer.setProviderMetadata(providerMetadata);
+        //id token not encrypted,jwkSetCacheService not used
+        tokenEnhancer.setSymmetricCacheService(new SymmetricCacheService());
+
+        DefaultOAuth2AccessToken defaultAccessToken = new DefaultOAuth2AccessToken(UUID.randomUUID().toString());
+        defaultAccessToken.setExpiration(new Date(System.currentTimeMillis() + 3600000));
+        accessToken = defaultAccessToken;
+        OAuth2Request request = new OAuth2Request(new HashMap<String, String>(), "client-1", null, true,
+                new HashSet<String>(Collections.singleton(OIDCIdTokenEnhancer.ID_TOKEN_SCOPE)),
+                null, null, Collections.singleton("code"), null, null, null);
+        authentication = new OAuth2Authentication(request,
+                new UsernamePasswordAuthenticationToken("shimingxy", "N/A", Collections.emptyList()));
+        if (enhance().getAdditionalInformation().get("id_token") == null) {
+            throw new IllegalStateException("id_token not issued with " + algorithm);
+        }
+    }
+
+    @Benchmark
+    public OAuth2AccessToken enhance() {
+        return tokenEnhancer.enhance(accessToken, authentication);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(OIDCIdTokenEnhancerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.autoconfigure;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.maxkey.crypto.jwt.signer.service.impl.JWKSetCacheService;
+import org.maxkey.crypto.jwt.signer.service.impl.SymmetricCacheService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * cache service beans of Oauth20AutoConfiguration started with the component scan of the application,
+ * bean definition overriding is disabled as spring boot default.
+ */
+public class Oauth20AutoConfigurationTest {
+
+    @Configuration
+    static class CacheServiceConfiguration {
+        Oauth20AutoConfiguration oauth20AutoConfiguration = new Oauth20AutoConfiguration();
+
+        @Bean(name = "symmetricCacheService")
+        public SymmetricCacheService symmetricCacheService() {
+            return oauth20AutoConfiguration.symmetricCacheService();
+        }
+
+        @Bean(name = "jwkSetCacheService", destroyMethod = "shutdown")
+        public JWKSetCacheService jwkSetCacheService() {
+            return oauth20AutoConfiguration.jwkSetCacheService(3600, 5, 300, 3000);
+        }
+    }
+
+    @Test
+    public void testCacheServiceBeans() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.setAllowBeanDefinitionOverriding(false);
+        try {
+            context.scan("org.maxkey.crypto");
+            context.register(CacheServiceConfiguration.class);
+            context.refresh();
+
+            assertEquals(1, context.getBeansOfType(SymmetricCacheService.class).size());
+            assertEquals(1, context.getBeansOfType(JWKSetCacheService.class).size());
+        } finally {
+            context.close();
+        }
+    }
+}
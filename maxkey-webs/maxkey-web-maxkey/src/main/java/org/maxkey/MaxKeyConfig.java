@@ -115,32 +115,52 @@ public class MaxKeyConfig  implements InitializingBean {
     			String baseDN,
     			String domain,
     			String product,
+    			int poolMaxIdle,
+    			long poolIdleSeconds,
+    			int connectTimeout,
+    			int readTimeout,
+    			long dnCacheSeconds,
+    			long failoverMillis,
                 JdbcTemplate jdbcTemplate) {
     	
     	AbstractAuthenticationRealm authenticationRealm =null;
     	if(ldapSupport) {
+    		//space separated urls,one server for each url
+    		String [] providerUrls = providerUrl.trim().split("\\s+");
 	    	if(product.equalsIgnoreCase("activedirectory")) {
 	    		ActiveDirectoryAuthenticationRealm activeDirectoryAuthenticationRealm = new ActiveDirectoryAuthenticationRealm(jdbcTemplate);
-	            ActiveDirectoryServer ldapServer=new ActiveDirectoryServer();
-	            ActiveDirectoryUtils ldapUtils = new ActiveDirectoryUtils(providerUrl,principal,credentials,domain);
-	            ldapServer.setActiveDirectoryUtils(ldapUtils);
-	            
 	            List<IAuthenticationServer> ldapServers = new ArrayList<IAuthenticationServer>();
-	            ldapServers.add(ldapServer);
+	            for(String url : providerUrls) {
+		            ActiveDirectoryServer ldapServer=new ActiveDirectoryServer();
+		            ActiveDirectoryUtils ldapUtils = new ActiveDirectoryUtils(url,principal,credentials,domain);
+		            ldapUtils.setPool(poolMaxIdle, poolIdleSeconds * 1000);
+		            ldapUtils.setConnectTimeout(connectTimeout);
+		            ldapUtils.setReadTimeout(readTimeout);
+		            ldapServer.setActiveDirectoryUtils(ldapUtils);
+		            ldapServers.add(ldapServer);
+	            }
+	            activeDirectoryAuthenticationRealm.setFailoverMillis(failoverMillis);
 	            activeDirectoryAuthenticationRealm.setActiveDirectoryServers(ldapServers);
 	            authenticationRealm = activeDirectoryAuthenticationRealm;
-	            _logger.debug("ActiveDirectoryAuthenticationRealm inited.");
+	            _logger.debug("ActiveDirectoryAuthenticationRealm inited {}." , ldapServers);
 	    	}else {
 	    		LdapAuthenticationRealm ldapAuthenticationRealm = new LdapAuthenticationRealm(jdbcTemplate);
-		        LdapServer ldapServer=new LdapServer();
-		        LdapUtils ldapUtils = new LdapUtils(providerUrl,principal,credentials,baseDN);
-		        ldapServer.setLdapUtils(ldapUtils);
-		        ldapServer.setFilterAttribute(filter);
 		        List<IAuthenticationServer> ldapServers = new ArrayList<IAuthenticationServer>();
-		        ldapServers.add(ldapServer);
+		        for(String url : providerUrls) {
+			        LdapServer ldapServer=new LdapServer();
+			        LdapUtils ldapUtils = new LdapUtils(url,principal,credentials,baseDN);
+			        ldapUtils.setPool(poolMaxIdle, poolIdleSeconds * 1000);
+			        ldapUtils.setConnectTimeout(connectTimeout);
+			        ldapUtils.setReadTimeout(readTimeout);
+			        ldapServer.setLdapUtils(ldapUtils);
+			        ldapServer.setFilterAttribute(filter);
+			        ldapServer.setDnCacheSeconds(dnCacheSeconds);
+			        ldapServers.add(ldapServer);
+		        }
+		        ldapAuthenticationRealm.setFailoverMillis(failoverMillis);
 		        ldapAuthenticationRealm.setLdapServers(ldapServers);
 		        authenticationRealm = ldapAuthenticationRealm;
-		        _logger.debug("LdapAuthenticationRealm inited.");
+		        _logger.debug("LdapAuthenticationRealm inited {}." , ldapServers);
 	    	}
     	}
         return authenticationRealm;
@@ -165,12 +185,21 @@ public class MaxKeyConfig  implements InitializingBean {
     			@Value("${maxkey.login.ldap.filter}")String filter,
     			@Value("${maxkey.login.ldap.basedn}")String baseDN,
     			@Value("${maxkey.login.ldap.activedirectory.domain}")String domain,
-    			@Value("${maxkey.login.ldap.product:openldap}")String product) {
+    			@Value("${maxkey.login.ldap.product:openldap}")String product,
+    			@Value("${maxkey.login.ldap.pool.maxidle:8}")int poolMaxIdle,
+    			@Value("${maxkey.login.ldap.pool.idle-seconds:300}")long poolIdleSeconds,
+    			@Value("${maxkey.login.ldap.connect-timeout-millis:3000}")int connectTimeout,
+    			@Value("${maxkey.login.ldap.read-timeout-millis:5000}")int readTimeout,
+    			@Value("${maxkey.login.ldap.dn-cache-seconds:600}")long dnCacheSeconds,
+    			@Value("${maxkey.login.ldap.failover-millis:500}")long failoverMillis) {
     	AbstractAuthenticationRealm ldapAuthenticationRealm = 
     			ldapAuthenticationRealm(
 					ldapSupport,ldapJit,
 					providerUrl,principal,credentials,
 					filter,baseDN,domain,product,
+					poolMaxIdle,poolIdleSeconds,
+					connectTimeout,readTimeout,
+					dnCacheSeconds,failoverMillis,
 					jdbcTemplate
 				);
         JdbcAuthenticationRealm authenticationRealm = new JdbcAuthenticationRealm(
@@ -22,7 +22,6 @@ import javax.servlet.http.HttpServletResponse;
 import org.maxkey.entity.HistoryLogs;
 import org.maxkey.entity.UserInfo;
 import org.maxkey.persistence.service.HistorySystemLogsService;
-import org.maxkey.util.JsonUtils;
 import org.maxkey.web.WebContext;
 import org.maxkey.web.message.Message;
 import org.maxkey.web.message.MessageScope;
@@ -68,7 +67,7 @@ public class HistoryLogsAdapter  implements AsyncHandlerInterceptor  {
                         message.getServiceName(),
                         message.getCode(),
                         message.getMessage(),
-                        JsonUtils.object2Json(message.getMessageObject()),
+                        null,
                         message.getMessageType().toString(),
                         message.getOperateType().toString(),
                         userInfo == null ? null : userInfo.getId(),
@@ -77,7 +76,7 @@ public class HistoryLogsAdapter  implements AsyncHandlerInterceptor  {
                         );
                 historyLogs.setInstId(userInfo.getInstId());
                 _logger.debug("insert db historyLogs content : " + historyLogs);
-                historySystemLogsService.insert(historyLogs);//日志插入数据库
+                historySystemLogsService.insert(historyLogs, message.getMessageObject());//日志插入数据库
                 //message类型仅插入数据库
                 if (message.getMessageScope() == MessageScope.DB) {
                     WebContext.clearMessage();//清除message
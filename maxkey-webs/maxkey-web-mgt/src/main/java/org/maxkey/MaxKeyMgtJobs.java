@@ -19,8 +19,12 @@ package org.maxkey;
 
 import org.maxkey.jobs.AccountsStrategyJob;
 import org.maxkey.jobs.DynamicGroupsJob;
+import org.maxkey.jobs.HistoryArchiveJob;
+import org.maxkey.jobs.ReportRollupJob;
 import org.maxkey.persistence.service.AccountsService;
 import org.maxkey.persistence.service.GroupsService;
+import org.maxkey.persistence.service.HistoryArchiveService;
+import org.maxkey.persistence.service.ReportService;
 import org.opensaml.xml.ConfigurationException;
 import org.quartz.CronScheduleBuilder;
 import org.quartz.CronTrigger;
@@ -54,7 +58,11 @@ public class MaxKeyMgtJobs  implements InitializingBean {
             SchedulerFactoryBean schedulerFactoryBean,
             GroupsService groupsService,
             AccountsService accountsService,
-            @Value("${maxkey.job.cron.schedule}") String cronSchedule
+            ReportService reportService,
+            HistoryArchiveService historyArchiveService,
+            @Value("${maxkey.job.cron.schedule}") String cronSchedule,
+            @Value("${maxkey.job.report.schedule:0 0/5 * * * ?}") String reportSchedule,
+            @Value("${maxkey.job.history.archive.schedule:0 30 2 * * ?}") String historyArchiveSchedule
             ) throws SchedulerException {
     	_logger.debug("cron schedule : " + cronSchedule);
     	
@@ -76,6 +84,22 @@ public class MaxKeyMgtJobs  implements InitializingBean {
         			"AccountsStrategy"
         		);
         
+        addServiceJob(
+        			ReportRollupJob.class,
+        			scheduler,
+        			reportService,
+        			reportSchedule,
+        			"ReportRollup"
+        		);
+        
+        addServiceJob(
+        			HistoryArchiveJob.class,
+        			scheduler,
+        			historyArchiveService,
+        			historyArchiveSchedule,
+        			"HistoryArchive"
+        		);
+        
         return "schedulerJobs";
     }
     
@@ -134,6 +158,36 @@ public class MaxKeyMgtJobs  implements InitializingBean {
 		scheduler.scheduleJob(jobDetail,cronTrigger);    
 	}
     
+    /**
+     * job with the service in job data map
+     */
+    private void addServiceJob(Class <? extends Job> jobClass,
+    									Scheduler scheduler ,
+            							Object service,
+            							String cronSchedule,
+            							String identity
+            						) throws SchedulerException {
+    	
+    	_logger.debug("add " + identity + " Job , cron schedule : " + cronSchedule);
+		JobDetail jobDetail = 
+		JobBuilder.newJob(jobClass) 
+			.withIdentity(identity + "Job", identity + "Group")
+			.build();
+		
+		JobDataMap jobDataMap = new JobDataMap();
+		jobDataMap.put("service", service);
+		
+		CronScheduleBuilder scheduleBuilder = CronScheduleBuilder.cronSchedule(cronSchedule);
+		CronTrigger cronTrigger = 
+		TriggerBuilder.newTrigger()
+			.withIdentity("trigger" + identity, identity + "TriggerGroup")
+			.usingJobData(jobDataMap)
+			.withSchedule(scheduleBuilder)
+			.build();
+		
+		scheduler.scheduleJob(jobDetail,cronTrigger);    
+	}
+    
     @Override
     public void afterPropertiesSet() throws Exception {
         
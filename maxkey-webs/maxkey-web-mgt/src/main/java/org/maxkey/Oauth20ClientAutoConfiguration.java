@@ -19,12 +19,15 @@ package org.maxkey;
 
 import javax.sql.DataSource;
 
+import org.maxkey.authz.oauth2.provider.client.ClientDetailsCache;
 import org.maxkey.authz.oauth2.provider.client.ClientDetailsUserDetailsService;
 import org.maxkey.authz.oauth2.provider.client.JdbcClientDetailsService;
+import org.maxkey.authz.oauth2.provider.client.RedisClientDetailsInvalidationChannel;
 import org.maxkey.authz.oauth2.provider.token.DefaultTokenServices;
 import org.maxkey.authz.oauth2.provider.token.TokenStore;
-import org.maxkey.authz.oauth2.provider.token.store.InMemoryTokenStore;
-import org.maxkey.authz.oauth2.provider.token.store.RedisTokenStore;
+import org.maxkey.authz.oauth2.provider.token.store.TokenStoreFactory;
+import org.maxkey.constants.ConstantsPersistence;
+import org.maxkey.persistence.mapper.OAuth2TokenMapper;
 import org.maxkey.persistence.redis.RedisConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,7 +35,6 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -46,35 +48,53 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 public class Oauth20ClientAutoConfiguration  implements InitializingBean {
     private static final  Logger _logger = LoggerFactory.getLogger(Oauth20ClientAutoConfiguration.class);
     
+    /**
+     * ClientDetails cache,client changed in mgmt evicted on maxkey nodes by redis when redis persistence,
+     * otherwise seen after local cache seconds
+     */
+    @Bean(name = "oauth20ClientDetailsCache")
+    public ClientDetailsCache oauth20ClientDetailsCache(
+            @Value("${maxkey.server.persistence}") int persistence,
+            RedisConnectionFactory redisConnFactory,
+            @Value("${maxkey.oauth.clientdetails.cache.seconds:1800}") int cacheSeconds,
+            @Value("${maxkey.oauth.clientdetails.cache.local.seconds:30}") int localCacheSeconds,
+            @Value("${maxkey.oauth.clientdetails.cache.size:200000}") int cacheSize,
+            @Value("${maxkey.oauth.clientdetails.negative.seconds:60}") int negativeSeconds,
+            @Value("${maxkey.oauth.clientdetails.negative.size:100000}") int negativeSize) {
+        boolean redis = persistence == ConstantsPersistence.REDIS;
+        return new ClientDetailsCache(redis ? cacheSeconds : Math.min(cacheSeconds, localCacheSeconds),
+                cacheSize, negativeSeconds, negativeSize,
+                redis ? new RedisClientDetailsInvalidationChannel(redisConnFactory) : null);
+    }
+    
     @Bean(name = "oauth20JdbcClientDetailsService")
     public JdbcClientDetailsService jdbcClientDetailsService(
-                DataSource dataSource,PasswordEncoder passwordReciprocal) {
+                DataSource dataSource,PasswordEncoder passwordReciprocal,
+                ClientDetailsCache oauth20ClientDetailsCache) {
 	    JdbcClientDetailsService clientDetailsService = new JdbcClientDetailsService(dataSource);
 	    clientDetailsService.setPasswordEncoder(passwordReciprocal);
+	    clientDetailsService.setClientDetailsCache(oauth20ClientDetailsCache);
 	    _logger.debug("JdbcClientDetailsService inited.");
         return clientDetailsService;
     }
 	
     /**
-     * TokenStore. 
+     * TokenStore of maxkey.oauth.tokenstore.type,empty same as persistence,
+     * the same store as maxkey nodes. 
      * @param persistence int
      * @return oauth20TokenStore
      */
     @Bean(name = "oauth20TokenStore")
     public TokenStore oauth20TokenStore(
             @Value("${maxkey.server.persistence}") int persistence,
-            JdbcTemplate jdbcTemplate,
+            @Value("${maxkey.oauth.tokenstore.type:}") String tokenStoreType,
+            OAuth2TokenMapper oauth2TokenMapper,
             RedisConnectionFactory jedisConnectionFactory) {
-        TokenStore tokenStore = null;
-        if (persistence == 2) {
-            tokenStore = new RedisTokenStore(jedisConnectionFactory);
-            _logger.debug("RedisTokenStore");
-        }else {
-            tokenStore = new InMemoryTokenStore();
-            _logger.debug("InMemoryTokenStore"); 
-        }
-        
-        return tokenStore;
+        //expired tokens of jdbc purged by maxkey nodes
+        return new TokenStoreFactory().getTokenStore(
+                TokenStoreFactory.getTokenStoreType(tokenStoreType, persistence),
+                oauth2TokenMapper,
+                jedisConnectionFactory);
     }
     
     /**
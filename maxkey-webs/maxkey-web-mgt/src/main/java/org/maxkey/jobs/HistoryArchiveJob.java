@@ -0,0 +1,52 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.jobs;
+
+import java.io.Serializable;
+import org.maxkey.persistence.service.HistoryArchiveService;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * move history older than retention days to archive tables
+ *
+ */
+@DisallowConcurrentExecution
+public class HistoryArchiveJob  implements Job , Serializable {
+
+    private static final long serialVersionUID = 5412690361147809321L;
+
+    final static Logger _logger = LoggerFactory.getLogger(HistoryArchiveJob.class);
+
+    @Override
+    public void execute(JobExecutionContext context){
+        _logger.debug("HistoryArchiveJob is running ... " );
+        try {
+            HistoryArchiveService historyArchiveService = 
+                    (HistoryArchiveService) context.getMergedJobDataMap().get("service");
+            historyArchiveService.archive();
+            _logger.debug("HistoryArchiveJob is success  " );
+        }catch(Exception e) {
+            _logger.error("Exception " ,e);
+        }
+    }
+
+}
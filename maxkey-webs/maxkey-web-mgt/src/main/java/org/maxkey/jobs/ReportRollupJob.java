@@ -0,0 +1,52 @@
+/*
+ * Copyright [2021] [MaxKey of copyright http://www.maxkey.top]
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+ 
+
+package org.maxkey.jobs;
+
+import java.io.Serializable;
+import org.maxkey.persistence.service.ReportService;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * rollup login history for dashboard reports
+ *
+ */
+@DisallowConcurrentExecution
+public class ReportRollupJob  implements Job , Serializable {
+
+    private static final long serialVersionUID = -2217398311529620352L;
+
+    final static Logger _logger = LoggerFactory.getLogger(ReportRollupJob.class);
+
+    @Override
+    public void execute(JobExecutionContext context){
+        _logger.debug("ReportRollupJob is running ... " );
+        try {
+            ReportService reportService = 
+                    (ReportService) context.getMergedJobDataMap().get("service");
+            reportService.rollup();
+            _logger.debug("ReportRollupJob is success  " );
+        }catch(Exception e) {
+            _logger.error("Exception " ,e);
+        }
+    }
+
+}
@@ -17,6 +17,9 @@
 
 package org.maxkey.web.contorller;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.mybatis.jpa.persistence.JpaPageResults;
 import org.maxkey.constants.ConstantsOperateMessage;
 import org.maxkey.entity.GroupPrivileges;
@@ -103,18 +106,18 @@ public class GroupPrivilegesController {
 		String groupId = groupApp.getGroupId();
 		
 		
-		boolean result = true;
 		String appIds = groupApp.getAppId();
 		if (appIds != null) {
 			String[] arrAppIds = appIds.split(",");
-			
+			List<GroupPrivileges> listGroupApps = new ArrayList<GroupPrivileges>(arrAppIds.length);
 			for (int i = 0; i < arrAppIds.length; i++) {
 				GroupPrivileges newGroupApp = 
 						new GroupPrivileges(groupId, arrAppIds[i],WebContext.getUserInfo().getInstId());
 				newGroupApp.setId(WebContext.genId());
-				result = groupPrivilegesService.insert(newGroupApp);
+				listGroupApps.add(newGroupApp);
 			}
-			if(!result) {
+			//group apps index invalidated and published once
+			if(!groupPrivilegesService.insertBatch(listGroupApps)) {
 				return  new Message(WebContext.getI18nValue(ConstantsOperateMessage.INSERT_ERROR),MessageType.error);
 			}
 			
@@ -21,6 +21,7 @@ import javax.validation.Valid;
 
 import org.maxkey.constants.ConstantsOperateMessage;
 import org.maxkey.entity.PasswordPolicy;
+import org.maxkey.persistence.db.PasswordPolicyValidator;
 import org.maxkey.persistence.service.PasswordPolicyService;
 import org.maxkey.web.WebContext;
 import org.maxkey.web.message.Message;
@@ -46,6 +47,9 @@ public class PasswordPolicyController {
 		@Autowired
 		private PasswordPolicyService passwordPolicyService;
 		
+		@Autowired
+		private PasswordPolicyValidator passwordPolicyValidator;
+		
 		/**
 		 * 读取
 		 * @return
@@ -70,6 +74,8 @@ public class PasswordPolicyController {
 				return message;
 			}
 			if(passwordPolicyService.update(passwordPolicy)) {
+				//compile the new policy now,login node reload in one hour
+				passwordPolicyValidator.refresh();
 				return new Message(WebContext.getI18nValue(ConstantsOperateMessage.UPDATE_SUCCESS),MessageType.success);
 			} else {
 				return new Message(WebContext.getI18nValue(ConstantsOperateMessage.UPDATE_ERROR),MessageType.error);
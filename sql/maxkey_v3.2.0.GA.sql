@@ -347,6 +347,24 @@ CREATE TABLE `mxk_groups` (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='groups';
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `mxk_history_archive`
+--
+
+DROP TABLE IF EXISTS `mxk_history_archive`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `mxk_history_archive` (
+  `ID` varchar(45) NOT NULL,
+  `TABLENAME` varchar(100) NOT NULL COMMENT 'history table',
+  `ARCHIVEMONTH` varchar(6) NOT NULL COMMENT 'yyyyMM',
+  `ARCHIVETABLE` varchar(100) NOT NULL COMMENT 'archive table of the month',
+  `CREATEDDATE` datetime DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`ID`),
+  UNIQUE KEY `UNIQUE_TABLE_MONTH` (`TABLENAME`,`ARCHIVEMONTH`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='history archive tables';
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `mxk_history_connector`
 --
@@ -366,7 +384,8 @@ CREATE TABLE `mxk_history_connector` (
   `SYNCTIME` varchar(45) DEFAULT NULL,
   `RESULT` varchar(45) DEFAULT NULL,
   `INSTID` varchar(45) NOT NULL,
-  PRIMARY KEY (`ID`)
+  PRIMARY KEY (`ID`),
+  KEY `IDX_HISTORY_CONNECTOR_SYNCTIME` (`SYNCTIME`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
@@ -414,7 +433,8 @@ CREATE TABLE `mxk_history_login` (
   `LOGOUTTIME` varchar(50) NOT NULL DEFAULT '0000-00-00 00:00:00' COMMENT 'LOGOUTTIME',
   `SESSIONSTATUS` int DEFAULT '1',
   `INSTID` varchar(45) DEFAULT NULL,
-  PRIMARY KEY (`ID`)
+  PRIMARY KEY (`ID`),
+  KEY `IDX_HISTORY_LOGIN_LOGINTIME` (`LOGINTIME`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='history_login';
 /*!40101 SET character_set_client = @saved_cs_client */;
 
@@ -435,7 +455,8 @@ CREATE TABLE `mxk_history_login_apps` (
   `USERNAME` varchar(45) DEFAULT NULL COMMENT 'USERNAME',
   `DISPLAYNAME` varchar(45) DEFAULT NULL COMMENT 'DISPLAYNAME',
   `INSTID` varchar(45) NOT NULL,
-  PRIMARY KEY (`ID`)
+  PRIMARY KEY (`ID`),
+  KEY `IDX_HISTORY_LOGIN_APPS_LOGINTIME` (`LOGINTIME`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='Sign On apps Records';
 /*!40101 SET character_set_client = @saved_cs_client */;
 
@@ -460,7 +481,8 @@ CREATE TABLE `mxk_history_logs` (
   `TID` varchar(45) DEFAULT NULL COMMENT 'TID',
   `TNAME` varchar(45) DEFAULT NULL COMMENT 'TNAME',
   `INSTID` varchar(45) NOT NULL,
-  PRIMARY KEY (`ID`)
+  PRIMARY KEY (`ID`),
+  KEY `IDX_HISTORY_LOGS_CREATEDDATE` (`CREATEDDATE`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='USER OPERATE LOGS';
 /*!40101 SET character_set_client = @saved_cs_client */;
 
@@ -481,7 +503,8 @@ CREATE TABLE `mxk_history_synchronizer` (
   `SYNCTIME` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT 'SYNCTIME',
   `RESULT` varchar(45) DEFAULT NULL,
   `INSTID` varchar(45) NOT NULL,
-  PRIMARY KEY (`ID`)
+  PRIMARY KEY (`ID`),
+  KEY `IDX_HISTORY_SYNCHRONIZER_SYNCTIME` (`SYNCTIME`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='synchronizer logs';
 /*!40101 SET character_set_client = @saved_cs_client */;
 
@@ -542,6 +565,47 @@ CREATE TABLE `mxk_notices` (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='通知';
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `mxk_oauth_access_token`
+--
+
+DROP TABLE IF EXISTS `mxk_oauth_access_token`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `mxk_oauth_access_token` (
+  `TOKENID` varchar(32) NOT NULL COMMENT 'md5 of token value',
+  `TOKEN` mediumblob NOT NULL,
+  `AUTHENTICATIONID` varchar(32) NOT NULL COMMENT 'authentication key',
+  `USERNAME` varchar(100) DEFAULT NULL COMMENT 'null when client only',
+  `CLIENTID` varchar(100) NOT NULL,
+  `AUTHENTICATION` mediumblob NOT NULL,
+  `REFRESHTOKEN` varchar(32) DEFAULT NULL COMMENT 'md5 of refresh token value',
+  `EXPIRATION` datetime DEFAULT NULL,
+  PRIMARY KEY (`TOKENID`),
+  KEY `IDX_AUTHENTICATIONID` (`AUTHENTICATIONID`),
+  KEY `IDX_CLIENTID_USERNAME` (`CLIENTID`,`USERNAME`),
+  KEY `IDX_REFRESHTOKEN` (`REFRESHTOKEN`),
+  KEY `IDX_EXPIRATION` (`EXPIRATION`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='oauth access tokens';
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `mxk_oauth_refresh_token`
+--
+
+DROP TABLE IF EXISTS `mxk_oauth_refresh_token`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `mxk_oauth_refresh_token` (
+  `TOKENID` varchar(32) NOT NULL COMMENT 'md5 of token value',
+  `TOKEN` mediumblob NOT NULL,
+  `AUTHENTICATION` mediumblob NOT NULL,
+  `EXPIRATION` datetime DEFAULT NULL,
+  PRIMARY KEY (`TOKENID`),
+  KEY `IDX_EXPIRATION` (`EXPIRATION`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='oauth refresh tokens';
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `mxk_organizations`
 --
@@ -641,6 +705,56 @@ CREATE TABLE `mxk_password_policy` (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='password policy';
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `mxk_report_login_apps`
+--
+
+DROP TABLE IF EXISTS `mxk_report_login_apps`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `mxk_report_login_apps` (
+  `INSTID` varchar(45) NOT NULL,
+  `REPORTDATE` date NOT NULL COMMENT 'REPORTDATE',
+  `APPID` varchar(45) NOT NULL COMMENT 'APPID',
+  `APPNAME` varchar(45) DEFAULT NULL COMMENT 'APPNAME',
+  `LOGINCOUNT` int NOT NULL DEFAULT '0' COMMENT 'LOGINCOUNT',
+  PRIMARY KEY (`INSTID`,`REPORTDATE`,`APPID`),
+  KEY `IDX_REPORT_LOGIN_APPS_DATE` (`REPORTDATE`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='Sign On apps Daily Report';
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `mxk_report_login_hour`
+--
+
+DROP TABLE IF EXISTS `mxk_report_login_hour`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `mxk_report_login_hour` (
+  `INSTID` varchar(45) NOT NULL,
+  `REPORTDATE` date NOT NULL COMMENT 'REPORTDATE',
+  `REPORTHOUR` int NOT NULL COMMENT 'REPORTHOUR',
+  `BROWSER` varchar(45) NOT NULL COMMENT 'BROWSER',
+  `LOGINCOUNT` int NOT NULL DEFAULT '0' COMMENT 'LOGINCOUNT',
+  PRIMARY KEY (`INSTID`,`REPORTDATE`,`REPORTHOUR`,`BROWSER`),
+  KEY `IDX_REPORT_LOGIN_HOUR_DATE` (`REPORTDATE`,`REPORTHOUR`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='Login Hourly Report';
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `mxk_report_watermark`
+--
+
+DROP TABLE IF EXISTS `mxk_report_watermark`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `mxk_report_watermark` (
+  `ID` varchar(45) NOT NULL COMMENT 'ID',
+  `WATERMARK` timestamp NULL DEFAULT NULL COMMENT 'HISTORY ROLLUP TO',
+  PRIMARY KEY (`ID`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='Report Rollup Watermark';
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `mxk_resources`
 --
@@ -929,7 +1043,7 @@ CREATE TABLE `mxk_userinfo` (
   `LDAPDN` varchar(500) DEFAULT NULL,
   `INSTID` varchar(45) NOT NULL,
   PRIMARY KEY (`ID`),
-  UNIQUE KEY `USERNAME_UNIQUE` (`USERNAME`) /*!80000 INVISIBLE */,
+  UNIQUE KEY `USERNAME_UNIQUE` (`USERNAME`),
   UNIQUE KEY `MOBILE_UNIQUE` (`MOBILE`),
   UNIQUE KEY `EMAIL_UNIQUE` (`EMAIL`),
   KEY `EMPLOYEENUMBER_UNIQUE` (`EMPLOYEENUMBER`)